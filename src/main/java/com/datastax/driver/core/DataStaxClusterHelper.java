@@ -20,14 +20,76 @@
  */
 package com.datastax.driver.core;
 
+import com.datastax.driver.core.exceptions.DriverException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 public class DataStaxClusterHelper {
     /**
-     * Check if given Cluster instance still contains live sessions.
+     * Check if given Cluster instance still has sessions, closed or not, created from it.
      *
      * @param cluster cluster instance that may or may not be null
-     * @return true the cluster contains live session(s); false otherwise
+     * @return true the cluster has session(s); false otherwise
+     */
+    public static boolean hasSessions(Cluster cluster) {
+        return cluster != null && !cluster.manager.sessions.isEmpty();
+    }
+
+    /**
+     * Get sessions created from given Cluster instance.
+     *
+     * @param cluster cluster instance
+     * @return copy of sessions
      */
-    public static boolean hasLiveSessions(Cluster cluster) {
-        return cluster == null ? false : (!cluster.manager.isClosed() && cluster.manager.sessions.size() <= 1);
+    public static List<Session> getSessions(Cluster cluster) {
+        return new ArrayList<Session>(cluster.manager.sessions);
+    }
+
+    /**
+     * Load schema metadata of given keyspace through the control connection. Unlike schema refresh triggered by
+     * the driver, this works even when metadata is disabled in query options.
+     *
+     * @param cluster  cluster instance
+     * @param keyspace name of the keyspace, or null to load all keyspaces
+     * @throws InterruptedException when interrupted while waiting for the schema queries
+     */
+    public static void refreshSchema(Cluster cluster, String keyspace) throws InterruptedException {
+        cluster.manager.controlConnection.refreshSchema(
+                keyspace == null ? null : SchemaElement.KEYSPACE, keyspace, null, null);
+    }
+
+    /**
+     * Send an OPTIONS request through the control connection, same as what the driver does for heartbeat. It's
+     * the cheapest round trip to the cluster as nothing is read from storage.
+     *
+     * @param cluster       cluster instance
+     * @param timeoutMillis how long to wait for the response
+     * @return true if the cluster responded in time; false otherwise
+     * @throws InterruptedException when interrupted while waiting for the response
+     */
+    public static boolean ping(Cluster cluster, long timeoutMillis) throws InterruptedException {
+        Connection connection = cluster.manager.controlConnection.connectionRef.get();
+        if (connection == null || connection.isClosed() || connection.isDefunct()) {
+            return false;
+        }
+
+        boolean alive = false;
+        try {
+            Message.Response response = connection.write(new Requests.Options()).get(timeoutMillis,
+                    TimeUnit.MILLISECONDS);
+            alive = response instanceof Responses.Supported;
+        } catch (DriverException e) {
+            // connection is closed or busy
+        } catch (ExecutionException e) {
+            // failed to get response
+        } catch (TimeoutException e) {
+            // no response in time
+        }
+
+        return alive;
     }
 }
@@ -149,10 +149,7 @@ public abstract class BaseCassandraConnection extends BaseJdbcObject implements
             throws SQLException {
         validateState();
 
-        // FIXME incomplete
-        Struct result = createObject(Struct.class);
-
-        return result;
+        return new CassandraStruct(typeName, attributes);
     }
 
     public boolean getAutoCommit() throws SQLException {
@@ -223,11 +220,20 @@ public abstract class BaseCassandraConnection extends BaseJdbcObject implements
         return config.isReadOnly();
     }
 
+    /**
+     * Check if the underlying session is usable, which is called frequently by connection pools.
+     *
+     * @param timeoutMillis how long to wait if a round trip to the cluster is required
+     * @return true if the session is usable; false otherwise
+     */
+    protected abstract boolean isSessionValid(long timeoutMillis);
+
     public boolean isValid(int timeout) throws SQLException {
-        validateState();
+        if (timeout < 0) {
+            throw CassandraErrors.invalidTimeoutException(timeout);
+        }
 
-        // FIXME incomplete
-        return !closed;
+        return !closed && isSessionValid(timeout == 0 ? config.getReadTimeout() : timeout * 1000L);
     }
 
     public String nativeSQL(String sql) throws SQLException {
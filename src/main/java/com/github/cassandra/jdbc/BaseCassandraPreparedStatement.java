@@ -101,29 +101,34 @@ public abstract class BaseCassandraPreparedStatement extends BaseCassandraStatem
 
     public void setBinaryStream(int parameterIndex, InputStream x)
             throws SQLException {
-        // FIXME slow and will run into OOM issue
-        try {
-            setBytes(parameterIndex, ByteStreams.toByteArray(x));
-        } catch (IOException e) {
-            throw new SQLException(e);
-        }
+        setBinaryStream(parameterIndex, x, -1L);
     }
 
     public void setBinaryStream(int parameterIndex, InputStream x, int length)
             throws SQLException {
-        setBinaryStream(parameterIndex, ByteStreams.limit(x, length));
+        setBinaryStream(parameterIndex, x, (long) length);
     }
 
     public void setBinaryStream(int parameterIndex, InputStream x, long length)
             throws SQLException {
-        setBinaryStream(parameterIndex, ByteStreams.limit(x, length));
+        if (x == null) {
+            setParameter(parameterIndex, null);
+        } else {
+            try {
+                setParameter(parameterIndex, CassandraBlob.read(x, length));
+            } catch (IOException e) {
+                throw new SQLException(e);
+            }
+        }
     }
 
     public void setBlob(int parameterIndex, Blob x) throws SQLException {
         if (x == null) {
             setParameter(parameterIndex, null);
+        } else if (x instanceof CassandraBlob) {
+            setParameter(parameterIndex, ((CassandraBlob) x).asByteBuffer());
         } else {
-            setBinaryStream(parameterIndex, x.getBinaryStream());
+            setBinaryStream(parameterIndex, x.getBinaryStream(), x.length());
         }
     }
 
@@ -46,7 +46,7 @@ public abstract class BaseCassandraResultSet extends BaseJdbcObject implements
 
     protected final BaseCassandraStatement statement;
     protected final CassandraCqlStatement cqlStmt;
-    protected final int maxRows;
+    protected final long maxRows;
     protected final int maxFieldSize;
     protected boolean wasNull;
 
@@ -48,7 +48,7 @@ public abstract class BaseCassandraStatement extends BaseJdbcObject implements S
     protected int fetchSize = 100;
     protected final int hodability = ResultSet.HOLD_CURSORS_OVER_COMMIT;
     protected int maxFieldSize = 0; // unlimited
-    protected int maxRows = 0; // unlimited
+    protected long maxRows = 0L; // unlimited
     protected boolean poolable = false;
     protected int queryTimeout = 0; // unlimited
     protected final int resultType = ResultSet.TYPE_FORWARD_ONLY;
@@ -144,6 +144,12 @@ public abstract class BaseCassandraStatement extends BaseJdbcObject implements S
     public int getMaxRows() throws SQLException {
         validateState();
 
+        return (int) Math.min(maxRows, Integer.MAX_VALUE);
+    }
+
+    public long getLargeMaxRows() throws SQLException {
+        validateState();
+
         return maxRows;
     }
 
@@ -231,8 +237,16 @@ public abstract class BaseCassandraStatement extends BaseJdbcObject implements S
     }
 
     public void setMaxRows(int max) throws SQLException {
+        setLargeMaxRows(max);
+    }
+
+    public void setLargeMaxRows(long max) throws SQLException {
         validateState();
 
+        if (max < 0L) {
+            throw CassandraErrors.invalidMaxRowsException(max);
+        }
+
         maxRows = max;
     }
 
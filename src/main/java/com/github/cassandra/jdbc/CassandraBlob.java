@@ -22,7 +22,6 @@ package com.github.cassandra.jdbc;
 
 import com.google.common.io.ByteStreams;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -30,7 +29,112 @@ import java.nio.ByteBuffer;
 import java.sql.Blob;
 import java.sql.SQLException;
 
+/**
+ * Blob backed by a {@link ByteBuffer}. Only bytes between position and limit of the given buffer are visible, and
+ * they're never copied unless {@link #getBytes(long, int)} is called.
+ */
 public class CassandraBlob implements Blob {
+    /**
+     * Input stream reading directly from a buffer.
+     */
+    static final class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            } else if (!buffer.hasRemaining()) {
+                return -1;
+            }
+
+            len = Math.min(len, buffer.remaining());
+            buffer.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            int skipped = (int) Math.max(0L, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return buffer.remaining();
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public synchronized void mark(int readlimit) {
+            buffer.mark();
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            buffer.reset();
+        }
+    }
+
+    /**
+     * Read everything from the given stream. When length is known, the bytes are read into one array of the exact
+     * size, otherwise into a growing array which is wrapped as it is instead of being copied once more.
+     *
+     * @param in     input stream
+     * @param length number of bytes to read, negative means read until end of the stream
+     * @return buffer holding bytes read from the stream
+     * @throws IOException when failed to read from the stream
+     */
+    static ByteBuffer read(InputStream in, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Not able to read more than 2GB into a blob");
+        }
+
+        byte[] bytes;
+        int count;
+        if (length >= 0L) {
+            bytes = new byte[(int) length];
+            count = ByteStreams.read(in, bytes, 0, bytes.length);
+        } else {
+            bytes = new byte[Math.max(in.available(), 8192)];
+            count = 0;
+            int n;
+            while ((n = in.read(bytes, count, bytes.length - count)) >= 0) {
+                count += n;
+                if (count == bytes.length) {
+                    int next = in.read();
+                    if (next < 0) {
+                        break;
+                    }
+
+                    byte[] newBytes = new byte[(int) Math.min(bytes.length * 2L, Integer.MAX_VALUE)];
+                    if (newBytes.length == bytes.length) {
+                        throw new IOException("Not able to read more than 2GB into a blob");
+                    }
+                    System.arraycopy(bytes, 0, newBytes, 0, count);
+                    bytes = newBytes;
+                    bytes[count++] = (byte) next;
+                }
+            }
+        }
+
+        return ByteBuffer.wrap(bytes, 0, count);
+    }
+
     private final ByteBuffer _bytes;
 
     public CassandraBlob(byte[] bytes) {
@@ -38,21 +142,43 @@ public class CassandraBlob implements Blob {
     }
 
     public CassandraBlob(ByteBuffer bytes) {
-        _bytes = bytes == null ? ByteBuffer.wrap(new byte[0]) : bytes;
+        // a view of remaining bytes, so that we don't need to care about position and offset any more
+        _bytes = bytes == null ? ByteBuffer.wrap(new byte[0]) : bytes.slice();
+    }
+
+    private ByteBuffer view(long pos, long length) throws SQLException {
+        if (pos < 1L || length < 0L || pos - 1L + length > _bytes.limit()) {
+            throw new SQLException("Invalid position " + pos + " and length " + length
+                    + " for blob of " + _bytes.limit() + " bytes");
+        }
+
+        ByteBuffer view = _bytes.duplicate();
+        view.position((int) pos - 1);
+        view.limit((int) (pos - 1L + length));
+        return view;
+    }
+
+    /**
+     * Get a read-only view of the blob without copying.
+     *
+     * @return read-only buffer
+     */
+    public ByteBuffer asByteBuffer() {
+        return _bytes.asReadOnlyBuffer();
     }
 
     public long length() throws SQLException {
-        return _bytes.capacity();
+        return _bytes.limit();
     }
 
     public byte[] getBytes(long pos, int length) throws SQLException {
         byte[] bytes = new byte[length];
-        _bytes.get(bytes, (int) pos - 1, length);
+        view(pos, length).get(bytes);
         return bytes;
     }
 
     public InputStream getBinaryStream() throws SQLException {
-        return new ByteArrayInputStream(_bytes.array());
+        return new BufferInputStream(_bytes.duplicate());
     }
 
     public long position(byte[] pattern, long start) throws SQLException {
@@ -77,8 +203,7 @@ public class CassandraBlob implements Blob {
 
     public int setBytes(long pos, byte[] bytes, int offset, int len) throws SQLException {
         if (bytes != null) {
-            _bytes.position((int) pos - 1);
-            _bytes.put(bytes, offset, len);
+            view(pos, len).put(bytes, offset, len);
         }
 
         return len;
@@ -97,6 +222,6 @@ public class CassandraBlob implements Blob {
     }
 
     public InputStream getBinaryStream(long pos, long length) throws SQLException {
-        return new ByteArrayInputStream(getBytes(pos, (int) length));
+        return new BufferInputStream(view(pos, length));
     }
 }
@@ -50,11 +50,34 @@ public final class CassandraConfiguration {
         public boolean tracing = false;
         public CassandraEnums.Batch batch = CassandraEnums.Batch.UNLOGGED;
         public int fetchSize = 100;
+        public boolean adaptiveFetchSize = false;
+        public int pageSizeLimit = 1024; // in KB
         public long rowLimit = 10000L;
         public int cqlCacheSize = 1000;
+        public int joinMemoryLimit = 64; // in MB
+        public int joinConcurrency = 32;
+        public int pagingStateCacheSize = 100;
+        public boolean adaptivePooling = false;
+        public int minConnectionsPerHost = 1;
+        public int maxConnectionsPerHost = 8;
+        public boolean lazySchema = false;
+        public boolean latencyAware = false;
+        public String speculativeExecution = "NONE";
+        public int maxSpeculativeExecutions = 2;
+        public int maxRetries = 2;
+        public int retryDelay = 100; // in milliseconds
+        public int maxRetryDelay = 2000; // in milliseconds
+        public int retryBudget = 10; // in percentage of requests
         public int readTimeout = 30 * 1000;
         public int connectionTimeout = 5 * 1000;
+        public int drainTimeout = 30 * 1000;
         public boolean keepAlive = true;
+        public boolean tcpNoDelay = true;
+        public int sendBufferSize = 0; // in KB
+        public int receiveBufferSize = 0; // in KB
+        public boolean epoll = false;
+        public int ioThreads = 0;
+        public boolean sharedEventLoop = false;
         public CassandraEnums.Compression compression = CassandraEnums.Compression.LZ4;
         public String localDc = "";
         public String loadBalancingPolicy = "";
@@ -330,6 +353,7 @@ public final class CassandraConfiguration {
         // update timeouts
         config.connectionTimeout = config.connectionTimeout * 1000;
         config.readTimeout = config.readTimeout * 1000;
+        config.drainTimeout = config.drainTimeout * 1000;
     }
 
     private CassandraConfiguration(DriverConfig config) throws SQLException {
@@ -407,10 +431,38 @@ public final class CassandraConfiguration {
         return config.readTimeout;
     }
 
+    public int getDrainTimeout() {
+        return config.drainTimeout;
+    }
+
     public boolean isKeepAlive() {
         return config.keepAlive;
     }
 
+    public boolean isTcpNoDelay() {
+        return config.tcpNoDelay;
+    }
+
+    public int getSendBufferSize() {
+        return config.sendBufferSize;
+    }
+
+    public int getReceiveBufferSize() {
+        return config.receiveBufferSize;
+    }
+
+    public boolean isEpoll() {
+        return config.epoll;
+    }
+
+    public int getIoThreads() {
+        return config.ioThreads;
+    }
+
+    public boolean isSharedEventLoop() {
+        return config.sharedEventLoop;
+    }
+
     public CassandraEnums.ConsistencyLevel getReadConsistencyLevel() {
         return config.readConsistencyLevel;
     }
@@ -444,6 +496,14 @@ public final class CassandraConfiguration {
         return config.fetchSize;
     }
 
+    public boolean isAdaptiveFetchSize() {
+        return config.adaptiveFetchSize;
+    }
+
+    public int getPageSizeLimit() {
+        return config.pageSizeLimit;
+    }
+
     public long getRowLimit() {
         return config.rowLimit;
     }
@@ -452,6 +512,62 @@ public final class CassandraConfiguration {
         return config.cqlCacheSize;
     }
 
+    public int getJoinMemoryLimit() {
+        return config.joinMemoryLimit;
+    }
+
+    public int getJoinConcurrency() {
+        return config.joinConcurrency;
+    }
+
+    public int getPagingStateCacheSize() {
+        return config.pagingStateCacheSize;
+    }
+
+    public boolean isAdaptivePooling() {
+        return config.adaptivePooling;
+    }
+
+    public int getMinConnectionsPerHost() {
+        return config.minConnectionsPerHost;
+    }
+
+    public int getMaxConnectionsPerHost() {
+        return config.maxConnectionsPerHost;
+    }
+
+    public boolean isLazySchema() {
+        return config.lazySchema;
+    }
+
+    public boolean isLatencyAware() {
+        return config.latencyAware;
+    }
+
+    public String getSpeculativeExecution() {
+        return config.speculativeExecution;
+    }
+
+    public int getMaxSpeculativeExecutions() {
+        return config.maxSpeculativeExecutions;
+    }
+
+    public int getMaxRetries() {
+        return config.maxRetries;
+    }
+
+    public int getRetryDelay() {
+        return config.retryDelay;
+    }
+
+    public int getMaxRetryDelay() {
+        return config.maxRetryDelay;
+    }
+
+    public int getRetryBudget() {
+        return config.retryBudget;
+    }
+
     public CassandraEnums.Compression getCompression() {
         return config.compression;
     }
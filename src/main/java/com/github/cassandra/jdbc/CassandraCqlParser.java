@@ -20,6 +20,9 @@
  */
 package com.github.cassandra.jdbc;
 
+import com.github.cassandra.jdbc.cql.CqlJoinPlan;
+import com.github.cassandra.jdbc.cql.CqlOffsetPlan;
+import com.github.cassandra.jdbc.cql.SqlJoinTranslator;
 import com.github.cassandra.jdbc.cql.SqlToCqlTranslator;
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
@@ -27,7 +30,9 @@ import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import net.sf.jsqlparser.parser.CCJSqlParserUtil;
 import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.PlainSelect;
 import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.select.SelectBody;
 import org.pmw.tinylog.Logger;
 
 import java.util.HashMap;
@@ -94,6 +99,8 @@ public class CassandraCqlParser {
 
         CassandraCqlStatement sqlStmt = null;
         CassandraCqlStmtConfiguration stmtConfig = null;
+        CqlJoinPlan joinPlan = null;
+        CqlOffsetPlan offsetPlan = null;
         try {
             // workaround for limitation of JSqlParser - escaping keyword-like columns
             Matcher m = SQL_KEYWORDS_PATTERN.matcher(sql);
@@ -126,9 +133,16 @@ public class CassandraCqlParser {
 
             if (stmtType.isQuery()) {
                 Select select = (Select) s;
-                SqlToCqlTranslator trans = new SqlToCqlTranslator(stmtConfig);
-                select.getSelectBody().accept(trans);
-                sql = select.toString();
+                SelectBody body = select.getSelectBody();
+                if (body instanceof PlainSelect && ((PlainSelect) body).getJoins() != null) {
+                    // join has to be done on client side, keep the SQL as is
+                    joinPlan = new SqlJoinTranslator(stmtConfig).translate((PlainSelect) body);
+                } else {
+                    SqlToCqlTranslator trans = new SqlToCqlTranslator(stmtConfig);
+                    body.accept(trans);
+                    sql = select.toString();
+                    offsetPlan = trans.getOffsetPlan();
+                }
             }
         } catch (Throwable t) {
             Logger.debug("Failed to parse the given SQL, fall back to CQL parser");
@@ -138,7 +152,7 @@ public class CassandraCqlParser {
 
         if (sqlStmt == null) {
             sqlStmt = new CassandraCqlStatement(sql, stmtConfig == null
-                    ? new CassandraCqlStmtConfiguration(config, stmtType, hints) : stmtConfig);
+                    ? new CassandraCqlStmtConfiguration(config, stmtType, hints) : stmtConfig, joinPlan, offsetPlan);
         }
 
         return sqlStmt;
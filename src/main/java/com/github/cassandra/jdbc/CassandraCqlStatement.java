@@ -20,6 +20,10 @@
  */
 package com.github.cassandra.jdbc;
 
+import com.github.cassandra.jdbc.cql.CqlIdempotence;
+import com.github.cassandra.jdbc.cql.CqlJoinPlan;
+import com.github.cassandra.jdbc.cql.CqlLimitRewriter;
+import com.github.cassandra.jdbc.cql.CqlOffsetPlan;
 import com.google.common.base.Objects;
 import com.google.common.base.Strings;
 
@@ -35,10 +39,29 @@ public class CassandraCqlStatement {
     // private final SortedMap<String, Integer> name2type;
     private final CassandraCqlStmtConfiguration config;
     private final Object[] parameters;
+    // only available when the SQL joins two tables, in which case the cql is for reference only
+    private final CqlJoinPlan joinPlan;
+    // only available when the SQL has offset
+    private final CqlOffsetPlan offsetPlan;
+    // safe to retry or speculatively execute
+    private final boolean idempotent;
 
     public CassandraCqlStatement(String cql, CassandraCqlStmtConfiguration config, Object... params) {
+        this(cql, config, null, null, params);
+    }
+
+    public CassandraCqlStatement(String cql, CassandraCqlStmtConfiguration config,
+                                 CqlJoinPlan joinPlan, CqlOffsetPlan offsetPlan) {
+        this(cql, config, joinPlan, offsetPlan, (Object[]) null);
+    }
+
+    private CassandraCqlStatement(String cql, CassandraCqlStmtConfiguration config,
+                                  CqlJoinPlan joinPlan, CqlOffsetPlan offsetPlan, Object[] params) {
         this.cql = Strings.nullToEmpty(cql);
         this.config = config;
+        this.joinPlan = joinPlan;
+        this.offsetPlan = offsetPlan;
+        this.idempotent = config != null && CqlIdempotence.isIdempotent(config.getStatementType(), this.cql);
 
         this.parameters = new Object[params == null ? 0 : params.length];
 
@@ -54,10 +77,42 @@ public class CassandraCqlStatement {
         return this.cql;
     }
 
+    /**
+     * Get CQL with given row limit pushed down to the query, so that no more rows than necessary are returned
+     * from Cassandra. Join is not affected as the limit is applied on client side anyway.
+     *
+     * @param maxRows maximum number of rows, non-positive number means no limit
+     * @return CQL with the limit applied, or the original CQL if there's no change
+     */
+    public String getCql(long maxRows) {
+        return maxRows <= 0L || this.joinPlan != null || this.config == null
+                || !this.config.getStatementType().isQuery() ? this.cql : CqlLimitRewriter.rewrite(this.cql, maxRows);
+    }
+
     public CassandraCqlStmtConfiguration getConfiguration() {
         return this.config;
     }
 
+    public CqlJoinPlan getJoinPlan() {
+        return this.joinPlan;
+    }
+
+    public boolean hasJoin() {
+        return this.joinPlan != null;
+    }
+
+    public CqlOffsetPlan getOffsetPlan() {
+        return this.offsetPlan;
+    }
+
+    public boolean hasOffset() {
+        return this.offsetPlan != null;
+    }
+
+    public boolean isIdempotent() {
+        return this.idempotent;
+    }
+
     public boolean hasParameter() {
         return this.parameters.length > 0;
     }
@@ -94,6 +149,8 @@ public class CassandraCqlStatement {
                 .addValue(this.cql)
                 .addValue(this.config)
                 .addValue(this.parameters)
+                .add("join", this.joinPlan)
+                .add("offset", this.offsetPlan)
                 .toString();
     }
 }
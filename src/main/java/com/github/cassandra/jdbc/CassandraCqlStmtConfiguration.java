@@ -27,16 +27,20 @@ import com.google.common.primitives.Ints;
 import java.util.Map;
 import java.util.Properties;
 
+import static com.github.cassandra.jdbc.CassandraUtils.EMPTY_STRING;
+
 public class CassandraCqlStmtConfiguration {
     private static final String FLD_STATEMENT_TYPE = "StatementType";
     private static final String FLD_SERIAL_CONSISTENCY_LEVEL = "SerialConsistencyLevel";
 
     private static final String KEY_CONSISTENCY_LEVEL = "consistency_level";
+    private static final String KEY_CURSOR = "cursor";
     private static final String KEY_FETCH_SIZE = "fetch_size";
     private static final String KEY_NO_LIMIT = "no_limit";
     private static final String KEY_NO_WAIT = "no_wait";
     private static final String KEY_READ_TIMEOUT = "read_timeout";
     private static final String KEY_REPLACE_NULL_VALUE = "replace_null_value";
+    private static final String KEY_SPECULATIVE = "speculative";
     private static final String KEY_SQL_PARSER = "sql_parser";
     private static final String KEY_TRACING = "tracing";
 
@@ -44,12 +48,14 @@ public class CassandraCqlStmtConfiguration {
     private final CassandraConfiguration connectionConfig;
 
     private final String consistencyLevel;
+    private final String cursor;
     private final String serialConsistencyLevel;
     private final int fetchSize;
     private final boolean noLimit;
     private final boolean noWait;
     private final int readTimeout; // in seconds
     private final boolean replaceNullValue;
+    private final String speculative;
     private final boolean sqlParser;
     private final boolean tracing;
 
@@ -76,6 +82,8 @@ public class CassandraCqlStmtConfiguration {
                 && (preferredCL == CassandraEnums.ConsistencyLevel.LOCAL_SERIAL
                 || preferredCL == CassandraEnums.ConsistencyLevel.SERIAL) ? preferredCL.name() : null;
 
+        cursor = Strings.emptyToNull(options.getProperty(KEY_CURSOR, EMPTY_STRING).trim());
+
         String value = options.getProperty(KEY_FETCH_SIZE);
         // -1 implies using the one defined in Statement / PreparedStatement
         fetchSize = Strings.isNullOrEmpty(value) ? -1 : Ints.tryParse(value);
@@ -86,6 +94,7 @@ public class CassandraCqlStmtConfiguration {
         // convert second to millisecond
         readTimeout = Strings.isNullOrEmpty(value) ? connectionConfig.getReadTimeout() : Ints.tryParse(value) * 1000;
         replaceNullValue = Boolean.valueOf(options.getProperty(KEY_REPLACE_NULL_VALUE, null));
+        speculative = Strings.emptyToNull(options.getProperty(KEY_SPECULATIVE, EMPTY_STRING).trim());
         sqlParser = Boolean.valueOf(options.getProperty(KEY_SQL_PARSER, String.valueOf(connectionConfig.isSqlFriendly())));
     }
 
@@ -123,6 +132,24 @@ public class CassandraCqlStmtConfiguration {
         return consistencyLevel;
     }
 
+    /**
+     * Get cursor(cursor) from magic comment, which tells where to resume the query.
+     *
+     * @return cursor token, or null if not set
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Get speculative execution(speculative) from magic comment, for example: "p99", "200" or "NONE".
+     *
+     * @return speculative execution, or null if not set
+     */
+    public String getSpeculativeExecution() {
+        return speculative;
+    }
+
     public String getSerialConsistencyLevel() {
         return serialConsistencyLevel;
     }
@@ -150,7 +177,7 @@ public class CassandraCqlStmtConfiguration {
     @Override
     public int hashCode() {
         return Objects.hashCode(stmtType, consistencyLevel, serialConsistencyLevel, fetchSize, noLimit, noWait, tracing,
-                readTimeout, replaceNullValue, sqlParser);
+                readTimeout, replaceNullValue, sqlParser, cursor, speculative);
     }
 
     @Override
@@ -172,7 +199,9 @@ public class CassandraCqlStmtConfiguration {
                 && Objects.equal(this.tracing, other.tracing)
                 && Objects.equal(this.readTimeout, other.readTimeout)
                 && Objects.equal(this.replaceNullValue, other.replaceNullValue)
-                && Objects.equal(this.sqlParser, other.sqlParser);
+                && Objects.equal(this.sqlParser, other.sqlParser)
+                && Objects.equal(this.cursor, other.cursor)
+                && Objects.equal(this.speculative, other.speculative);
     }
 
     @Override
@@ -188,6 +217,8 @@ public class CassandraCqlStmtConfiguration {
                 .add(KEY_READ_TIMEOUT, this.readTimeout)
                 .add(KEY_REPLACE_NULL_VALUE, this.replaceNullValue)
                 .add(KEY_SQL_PARSER, this.sqlParser)
+                .add(KEY_CURSOR, this.cursor)
+                .add(KEY_SPECULATIVE, this.speculative)
                 .toString();
     }
 }
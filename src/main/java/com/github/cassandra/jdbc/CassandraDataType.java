@@ -42,6 +42,7 @@ public enum CassandraDataType {
     TIMEUUID("timeuuid"),
     TINYINT("tinyint"),
     TUPLE("tuple"),
+    UDT("udt"),
     UUID("uuid"),
     VARCHAR("varchar"),
     VARINT("varint");
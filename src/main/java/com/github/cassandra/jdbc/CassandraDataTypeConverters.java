@@ -22,16 +22,19 @@ package com.github.cassandra.jdbc;
 
 import com.google.common.base.Function;
 import com.google.common.base.Splitter;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.*;
 import com.google.common.io.ByteStreams;
 import com.google.common.io.CharStreams;
+import com.google.common.net.InetAddresses;
 import com.google.common.primitives.Doubles;
 import com.google.common.primitives.Ints;
 import org.joda.time.Instant;
 import org.joda.time.LocalDate;
 import org.joda.time.LocalTime;
-import org.pmw.tinylog.Logger;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
@@ -44,6 +47,8 @@ import java.sql.Date;
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class CassandraDataTypeConverters {
     private static final Splitter valueSplitter = Splitter.on(',').trimResults().omitEmptyStrings();
@@ -54,10 +59,172 @@ public class CassandraDataTypeConverters {
     private static final Set emptySet = ImmutableSet.builder().build();
     private static final Map emptyMap = ImmutableMap.builder().build();
 
+    // never resolve host name as it may take seconds
+    private static final InetAddress LOOPBACK_ADDRESS = toInetAddress(new byte[]{127, 0, 0, 1});
+
+    private static final byte[] HEX_DIGITS = new byte[128];
+
+    static {
+        Arrays.fill(HEX_DIGITS, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            HEX_DIGITS['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            HEX_DIGITS['a' + i] = (byte) (10 + i);
+            HEX_DIGITS['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    // longValue() is exact only for these - other numbers may carry a fraction
+    private static final Set<Class<?>> INTEGRAL_TYPES = ImmutableSet.<Class<?>>of(
+            Byte.class, Short.class, Integer.class, Long.class, AtomicInteger.class, AtomicLong.class);
+
+    private static final Function<Object, BigDecimal> INTEGRAL_TO_DECIMAL = new Function<Object, BigDecimal>() {
+        public BigDecimal apply(Object input) {
+            return BigDecimal.valueOf(((Number) input).longValue());
+        }
+    };
+    private static final Function<Object, BigInteger> INTEGRAL_TO_BIG_INTEGER = new Function<Object, BigInteger>() {
+        public BigInteger apply(Object input) {
+            return BigInteger.valueOf(((Number) input).longValue());
+        }
+    };
+    private static final Function<Object, BigDecimal> FLOATING_TO_DECIMAL = new Function<Object, BigDecimal>() {
+        public BigDecimal apply(Object input) {
+            // same as new BigDecimal(Double.toString(value))
+            return BigDecimal.valueOf(((Number) input).doubleValue());
+        }
+    };
+    private static final Function<Object, BigInteger> FLOATING_TO_BIG_INTEGER = new Function<Object, BigInteger>() {
+        public BigInteger apply(Object input) {
+            return BigDecimal.valueOf(((Number) input).doubleValue()).toBigIntegerExact();
+        }
+    };
+
     static final CassandraDataTypeConverters instance = new CassandraDataTypeConverters();
 
-    private final Map<String, Object> defaultValues = new HashMap<String, Object>();
-    private final Map<String, Function> typeMappings = new HashMap<String, Function>();
+    /**
+     * Get bytes between position and limit of the given buffer. The backing array is returned as it is when it
+     * holds exactly the same bytes, otherwise the bytes will be copied.
+     *
+     * @param buffer byte buffer
+     * @return byte array
+     */
+    static byte[] toByteArray(ByteBuffer buffer) {
+        byte[] bytes;
+        if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0
+                && buffer.remaining() == buffer.array().length) {
+            bytes = buffer.array();
+        } else {
+            bytes = new byte[buffer.remaining()];
+            buffer.duplicate().get(bytes);
+        }
+
+        return bytes;
+    }
+
+    private static InetAddress toInetAddress(byte[] address) {
+        try {
+            return InetAddress.getByAddress(address);
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Invalid IP address " + Arrays.toString(address), e);
+        }
+    }
+
+    /**
+     * Parse IPv4 or IPv6 address literal without any DNS lookup. Besides literals accepted by
+     * {@link InetAddresses#forString(String)}, bracketed IPv6 address like "[::1]" and output of
+     * {@link InetAddress#toString()} like "localhost/127.0.0.1" are supported as well.
+     *
+     * @param input address literal
+     * @return IP address
+     * @throws IllegalArgumentException when given input is not an IP address literal
+     */
+    static InetAddress parseInetAddress(Object input) {
+        String str = String.valueOf(input).trim();
+        int index = str.lastIndexOf('/');
+        if (index >= 0) {
+            str = str.substring(index + 1);
+        }
+
+        int len = str.length();
+        if (len > 1 && str.charAt(0) == '[' && str.charAt(len - 1) == ']') {
+            str = str.substring(1, len - 1);
+        }
+
+        return InetAddresses.forString(str);
+    }
+
+    /**
+     * Parse UUID in canonical form like "01234567-89ab-cdef-0123-456789abcdef" without splitting the string.
+     * Non-canonical forms are handed over to {@link UUID#fromString(String)}.
+     *
+     * @param str UUID string
+     * @return UUID
+     * @throws IllegalArgumentException when given string is not a valid UUID
+     */
+    static UUID parseUuid(String str) {
+        if (str.length() == 36 && str.charAt(8) == '-' && str.charAt(13) == '-'
+                && str.charAt(18) == '-' && str.charAt(23) == '-') {
+            long msb = 0L;
+            long lsb = 0L;
+            int digits = 0;
+            for (int i = 0; i < 36; i++) {
+                if (i == 8 || i == 13 || i == 18 || i == 23) {
+                    continue;
+                }
+
+                char c = str.charAt(i);
+                int digit = c < HEX_DIGITS.length ? HEX_DIGITS[c] : -1;
+                if (digit < 0) {
+                    break;
+                }
+
+                if (digits++ < 16) {
+                    msb = (msb << 4) | digit;
+                } else {
+                    lsb = (lsb << 4) | digit;
+                }
+            }
+
+            if (digits == 32) {
+                return new UUID(msb, lsb);
+            }
+        }
+
+        return UUID.fromString(str);
+    }
+
+    private static UUID toUuid(ByteBuffer bytes) {
+        if (bytes.remaining() != 16) {
+            throw new IllegalArgumentException("UUID must be 16 bytes but got " + bytes.remaining());
+        }
+
+        int position = bytes.position();
+        return new UUID(bytes.getLong(position), bytes.getLong(position + 8));
+    }
+
+    /**
+     * Decode serialized CQL decimal, which is a 4-byte scale followed by unscaled value in two's complement.
+     */
+    private static BigDecimal toBigDecimal(ByteBuffer bytes) {
+        if (bytes.remaining() < 4) {
+            throw new IllegalArgumentException("Decimal must have at least 4 bytes but got " + bytes.remaining());
+        }
+
+        ByteBuffer unscaled = bytes.duplicate();
+        unscaled.position(bytes.position() + 4);
+        return new BigDecimal(new BigInteger(toByteArray(unscaled)), bytes.getInt(bytes.position()));
+    }
+
+    // keyed by class identity, which is cheaper than looking up by class name
+    private final Map<Class, Object> defaultValues = new IdentityHashMap<Class, Object>();
+    // default values computed on first use
+    private final Map<Class, Supplier> lazyDefaultValues = new IdentityHashMap<Class, Supplier>();
+    private final Map<Class, Function> typeMappings = new IdentityHashMap<Class, Function>();
+    // conversions between specific source and target types, keyed by target type and then source type
+    private final Map<Class, Map<Class, Function>> conversionMatrix
+            = new IdentityHashMap<Class, Map<Class, Function>>();
 
     protected void init() {
         // use "null" instead of empty string to avoid "InvalidQueryException: Key may not be empty"
@@ -77,25 +244,29 @@ public class CassandraDataTypeConverters {
                 return result;
             }
         });
-        addMapping(java.util.UUID.class, java.util.UUID.randomUUID(), new Function<Object, UUID>() {
+        // SecureRandom might block on initialization, so defer it until we really need the default value
+        addMapping(java.util.UUID.class, new Supplier<UUID>() {
+            public UUID get() {
+                return java.util.UUID.randomUUID();
+            }
+        }, new Function<Object, UUID>() {
             public UUID apply(Object input) {
-                return java.util.UUID.fromString(String.valueOf(input));
+                UUID result;
+                if (input instanceof ByteBuffer) {
+                    result = toUuid((ByteBuffer) input);
+                } else if (input instanceof byte[]) {
+                    result = toUuid(ByteBuffer.wrap((byte[]) input));
+                } else {
+                    result = parseUuid(String.valueOf(input));
+                }
+
+                return result;
             }
         });
 
-        InetAddress defaultAddress = null;
-        try {
-            defaultAddress = InetAddress.getLocalHost();
-        } catch (UnknownHostException e) {
-            Logger.warn(e, "Failed to get local host");
-        }
-        addMapping(InetAddress.class, defaultAddress, new Function<Object, InetAddress>() {
+        addMapping(InetAddress.class, LOOPBACK_ADDRESS, new Function<Object, InetAddress>() {
             public InetAddress apply(Object input) {
-                try {
-                    return InetAddress.getByName(String.valueOf(input));
-                } catch (UnknownHostException e) {
-                    throw CassandraErrors.unexpectedException(e);
-                }
+                return input instanceof byte[] ? toInetAddress((byte[]) input) : parseInetAddress(input);
             }
         });
         addMapping(Blob.class, new CassandraBlob(new byte[0]), new Function<Object, Blob>() {
@@ -124,7 +295,9 @@ public class CassandraDataTypeConverters {
                 byte[] result;
 
                 if (input instanceof ByteBuffer) {
-                    result = ((ByteBuffer) input).array();
+                    result = toByteArray((ByteBuffer) input);
+                } else if (input instanceof CassandraBlob) {
+                    result = toByteArray(((CassandraBlob) input).asByteBuffer());
                 } else {
                     result = String.valueOf(input).getBytes();
                 }
@@ -132,13 +305,38 @@ public class CassandraDataTypeConverters {
                 return result;
             }
         });
-        /*
-        addMapping(ByteBuffer.class, ByteBuffer.wrap(new byte[0]), new Function<Object, ByteBuffer>() {
+        addMapping(ByteBuffer.class, ByteBuffer.wrap(emptyByteArray), new Function<Object, ByteBuffer>() {
             public ByteBuffer apply(Object input) {
-                return ByteBuffer.wrap(input instanceof byte[] ? (byte[]) input : String.valueOf(input).getBytes());
+                ByteBuffer result;
+
+                if (input instanceof byte[]) {
+                    result = ByteBuffer.wrap((byte[]) input);
+                } else if (input instanceof CassandraBlob) {
+                    result = ((CassandraBlob) input).asByteBuffer();
+                } else {
+                    result = ByteBuffer.wrap(String.valueOf(input).getBytes());
+                }
+
+                return result;
+            }
+        });
+        addMapping(InputStream.class, new ByteArrayInputStream(emptyByteArray), new Function<Object, InputStream>() {
+            public InputStream apply(Object input) {
+                InputStream result;
+
+                if (input instanceof ByteBuffer) {
+                    result = new CassandraBlob.BufferInputStream(((ByteBuffer) input).duplicate());
+                } else if (input instanceof byte[]) {
+                    result = new ByteArrayInputStream((byte[]) input);
+                } else if (input instanceof CassandraBlob) {
+                    result = new CassandraBlob.BufferInputStream(((CassandraBlob) input).asByteBuffer());
+                } else {
+                    result = new ByteArrayInputStream(String.valueOf(input).getBytes());
+                }
+
+                return result;
             }
         });
-        */
         addMapping(Boolean.class, Boolean.FALSE, new Function<Object, Boolean>() {
             public Boolean apply(Object input) {
                 return Boolean.valueOf(String.valueOf(input));
@@ -188,12 +386,44 @@ public class CassandraDataTypeConverters {
         });
         addMapping(BigDecimal.class, BigDecimal.ZERO, new Function<Object, BigDecimal>() {
             public BigDecimal apply(Object input) {
-                return new BigDecimal(String.valueOf(input));
+                BigDecimal result;
+                if (input instanceof BigInteger) {
+                    result = new BigDecimal((BigInteger) input);
+                } else if (input instanceof Double) {
+                    result = BigDecimal.valueOf((Double) input);
+                } else if (input != null && INTEGRAL_TYPES.contains(input.getClass())) {
+                    result = BigDecimal.valueOf(((Number) input).longValue());
+                } else if (input instanceof ByteBuffer) {
+                    result = toBigDecimal((ByteBuffer) input);
+                } else if (input instanceof byte[]) {
+                    result = toBigDecimal(ByteBuffer.wrap((byte[]) input));
+                } else {
+                    result = new BigDecimal(String.valueOf(input));
+                }
+
+                return result;
             }
         });
         addMapping(BigInteger.class, BigInteger.ZERO, new Function<Object, BigInteger>() {
             public BigInteger apply(Object input) {
-                return new BigInteger(String.valueOf(input));
+                BigInteger result;
+                if (input instanceof BigDecimal) {
+                    result = ((BigDecimal) input).toBigIntegerExact();
+                } else if (input instanceof Double || input instanceof Float) {
+                    result = BigDecimal.valueOf(((Number) input).doubleValue()).toBigIntegerExact();
+                } else if (input != null && INTEGRAL_TYPES.contains(input.getClass())) {
+                    result = BigInteger.valueOf(((Number) input).longValue());
+                } else if (input instanceof Number) {
+                    result = new BigDecimal(input.toString()).toBigIntegerExact();
+                } else if (input instanceof ByteBuffer) { // serialized varint
+                    result = new BigInteger(toByteArray((ByteBuffer) input));
+                } else if (input instanceof byte[]) {
+                    result = new BigInteger((byte[]) input);
+                } else {
+                    result = new BigInteger(String.valueOf(input));
+                }
+
+                return result;
             }
         });
 
@@ -201,11 +431,13 @@ public class CassandraDataTypeConverters {
             public Date apply(Object input) {
                 Date result;
                 if (input instanceof LocalDate) {
-                    result = new Date(((LocalDate) input).toDate().getTime());
+                    LocalDate date = (LocalDate) input;
+                    result = CassandraDateTimes.toSqlDate(date.getYear(), date.getMonthOfYear(), date.getDayOfMonth());
                 } else if (input instanceof java.util.Date) {
                     result = new Date(((java.util.Date) input).getTime());
                 } else {
-                    result = new Date(LocalDate.parse(String.valueOf(input)).toDate().getTime());
+                    result = CassandraDateTimes.toSqlDate(CassandraDateTimes.parseDate(
+                            input instanceof CharSequence ? (CharSequence) input : String.valueOf(input)));
                 }
                 return result;
             }
@@ -214,11 +446,13 @@ public class CassandraDataTypeConverters {
             public Time apply(Object input) {
                 Time result;
                 if (input instanceof LocalTime) {
-                    result = new Time(((LocalTime) input).toDateTimeToday().getMillis());
+                    result = CassandraDateTimes.toSqlTime(((LocalTime) input).getMillisOfDay());
                 } else if (input instanceof java.util.Date) {
                     result = new Time(((java.util.Date) input).getTime());
                 } else {
-                    result = new Time(LocalTime.parse(String.valueOf(input)).toDateTimeToday().getMillis());
+                    result = CassandraDateTimes.toSqlTime(CassandraDateTimes.parseTime(
+                            input instanceof CharSequence ? (CharSequence) input : String.valueOf(input))
+                            / CassandraDateTimes.NANOS_PER_MILLI);
                 }
                 return result;
             }
@@ -233,27 +467,23 @@ public class CassandraDataTypeConverters {
                 } else if (input instanceof Number) {
                     result = new Timestamp(((Number) input).longValue());
                 } else {
-                    String dateTime = String.valueOf(input);
-                    if (dateTime.indexOf(' ') == 10 && dateTime.indexOf('Z') < 0) {
-                        StringBuilder builder = new StringBuilder(dateTime).append('Z');
-                        builder.setCharAt(10, 'T');
-                        dateTime = builder.toString();
-                    }
-
-                    result = new Timestamp(Instant.parse(dateTime).toDate().getTime());
+                    result = new Timestamp(CassandraDateTimes.parseTimestamp(
+                            input instanceof CharSequence ? (CharSequence) input : String.valueOf(input)));
                 }
                 return result;
             }
         });
 
-        // now collections
+        // now collections - avoid copying and sorting as much as we can
         addMapping(List.class, emptyList, new Function<Object, List>() {
             public List apply(Object input) {
                 List result;
-                if (input instanceof Iterable) {
-                    result = Lists.newArrayList((Iterable) input);
+                if (input instanceof Collection) {
+                    result = Collections.unmodifiableList(new ArrayList((Collection) input));
+                } else if (input instanceof Iterable) {
+                    result = Collections.unmodifiableList(Lists.newArrayList((Iterable) input));
                 } else if (input instanceof Object[]) {
-                    result = Lists.newArrayList((Object[]) input);
+                    result = Arrays.asList((Object[]) input);
                 } else {
                     result = valueSplitter.splitToList(String.valueOf(input));
                 }
@@ -264,54 +494,120 @@ public class CassandraDataTypeConverters {
         addMapping(Set.class, emptySet, new Function<Object, Set>() {
             public Set apply(Object input) {
                 Set result;
-                if (input instanceof Iterable) {
-                    result = Sets.newTreeSet((Iterable) input);
+                if (input instanceof Collection) {
+                    result = Collections.unmodifiableSet(new LinkedHashSet((Collection) input));
+                } else if (input instanceof Iterable) {
+                    result = Collections.unmodifiableSet(Sets.newLinkedHashSet((Iterable) input));
                 } else if (input instanceof Object[]) {
-                    result = Sets.newHashSet((Object[]) input);
+                    result = Collections.unmodifiableSet(new LinkedHashSet(Arrays.asList((Object[]) input)));
                 } else {
-                    result = Sets.newTreeSet(valueSplitter.splitToList(String.valueOf(input)));
+                    result = Collections.unmodifiableSet(
+                            new LinkedHashSet(valueSplitter.splitToList(String.valueOf(input))));
                 }
 
                 return result;
             }
         });
-        addMapping(Set.class, emptyMap, new Function<Object, Map>() {
+        addMapping(Map.class, emptyMap, new Function<Object, Map>() {
             public Map apply(Object input) {
                 return Map.class.cast(input);
             }
         });
+
+        // direct paths between numbers, without going through String
+        for (Class source : INTEGRAL_TYPES) {
+            addConversion(source, BigDecimal.class, INTEGRAL_TO_DECIMAL);
+            addConversion(source, BigInteger.class, INTEGRAL_TO_BIG_INTEGER);
+        }
+        addConversion(Double.class, BigDecimal.class, FLOATING_TO_DECIMAL);
+        addConversion(Double.class, BigInteger.class, FLOATING_TO_BIG_INTEGER);
+        addConversion(Float.class, BigInteger.class, FLOATING_TO_BIG_INTEGER);
+        addConversion(BigInteger.class, BigDecimal.class, new Function<Object, BigDecimal>() {
+            public BigDecimal apply(Object input) {
+                return new BigDecimal((BigInteger) input);
+            }
+        });
+        addConversion(BigDecimal.class, BigInteger.class, new Function<Object, BigInteger>() {
+            public BigInteger apply(Object input) {
+                return ((BigDecimal) input).toBigIntegerExact();
+            }
+        });
     }
 
     protected void addMapping(Class clazz, Object defaultValue, Function converter) {
-        String key = clazz == null ? null : clazz.getName();
+        if (defaultValue != null) {
+            defaultValues.put(clazz, defaultValue);
+            lazyDefaultValues.remove(clazz);
+        }
 
+        if (converter != null) {
+            typeMappings.put(clazz, converter);
+        }
+    }
+
+    /**
+     * Same as {@link #addMapping(Class, Object, Function)} but the default value will not be computed until it's
+     * required.
+     *
+     * @param clazz        target type
+     * @param defaultValue supplier of the default value, which will be called at most once
+     * @param converter    conversion function
+     */
+    protected void addMapping(Class clazz, Supplier defaultValue, Function converter) {
         if (defaultValue != null) {
-            defaultValues.put(key, defaultValue);
+            lazyDefaultValues.put(clazz, Suppliers.memoize(defaultValue));
+            defaultValues.remove(clazz);
         }
 
         if (converter != null) {
-            typeMappings.put(key, converter);
+            typeMappings.put(clazz, converter);
         }
     }
 
+    /**
+     * Add conversion from one specific type to another, which takes precedence over the mapping of target type.
+     *
+     * @param source    exact type of the value to convert
+     * @param target    type to convert to
+     * @param converter conversion function
+     */
+    protected void addConversion(Class source, Class target, Function converter) {
+        Map<Class, Function> conversions = conversionMatrix.get(target);
+        if (conversions == null) {
+            conversions = new IdentityHashMap<Class, Function>();
+            conversionMatrix.put(target, conversions);
+        }
+
+        conversions.put(source, converter);
+    }
+
     protected CassandraDataTypeConverters() {
         init();
     }
 
     public <T> T defaultValueOf(Class<T> type) {
-        return (T) defaultValues.get(type.getName());
+        Object value = defaultValues.get(type);
+        if (value == null) {
+            Supplier supplier = lazyDefaultValues.get(type);
+            value = supplier == null ? null : supplier.get();
+        }
+
+        return (T) value;
     }
 
     public <T> T convert(Object value, Class<T> type, boolean replaceNullValue) {
         T result;
 
-        String key = type.getName();
         if (value == null) {
-            result = replaceNullValue ? (T) defaultValues.get(key) : null;
-        } else if (type.isInstance(value)) {
+            result = replaceNullValue ? defaultValueOf(type) : null;
+        } else if (value.getClass() == type || type.isInstance(value)) {
             result = (T) value;
         } else {
-            Function<Object, T> func = typeMappings.get(key);
+            Map<Class, Function> conversions = conversionMatrix.get(type);
+            Function<Object, T> func = conversions == null ? null : conversions.get(value.getClass());
+            if (func == null) {
+                func = typeMappings.get(type);
+            }
             result = func == null // convert function is not available for this type
                     ? type.cast(value) // this will usually end up with ClassCastException
                     : func.apply(value);
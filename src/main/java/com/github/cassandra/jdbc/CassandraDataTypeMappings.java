@@ -23,6 +23,7 @@ package com.github.cassandra.jdbc;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.net.InetAddress;
+import java.sql.Struct;
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.sql.Types;
@@ -70,7 +71,9 @@ public class CassandraDataTypeMappings {
         addMappings(list, CassandraDataType.TIMESTAMP.getTypeName(), Types.TIMESTAMP, Timestamp.class, 19, 0);
         addMappings(list, CassandraDataType.TIMEUUID.getTypeName(), Types.CHAR, UUID.class, 36, 0);
         addMappings(list, CassandraDataType.TINYINT.getTypeName(), Types.TINYINT, Byte.class, 4, 0);
-        addMappings(list, CassandraDataType.TUPLE.getTypeName(), Types.OTHER, Object.class,
+        addMappings(list, CassandraDataType.TUPLE.getTypeName(), Types.STRUCT, Struct.class,
+                Integer.MAX_VALUE, 0);
+        addMappings(list, CassandraDataType.UDT.getTypeName(), Types.STRUCT, Struct.class,
                 Integer.MAX_VALUE, 0);
         addMappings(list, CassandraDataType.UUID.getTypeName(), Types.CHAR, UUID.class, 36, 0); // UUID1
         addMappings(list, CassandraDataType.VARCHAR.getTypeName(), Types.VARCHAR, String.class,
@@ -0,0 +1,448 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc;
+
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.DateTimeFormatterBuilder;
+import org.joda.time.format.ISODateTimeFormat;
+
+import java.sql.Date;
+import java.sql.Time;
+
+/**
+ * This parses and formats timestamp, date and time literals accepted by CQL without creating intermediate
+ * objects. Common formats like "2017-01-01 12:34:56.789+0800" are handled by hand-written code, while
+ * rarely used ISO-8601 variants(e.g. week dates) fall back to Joda.
+ *
+ * @author Zhichun Wu
+ */
+public final class CassandraDateTimes {
+    static final long NANOS_PER_MILLI = 1000000L;
+    static final long MILLIS_PER_SECOND = 1000L;
+    static final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+    static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+    static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+    // returned by fast path when the literal is not in common format
+    private static final long UNRECOGNIZED = Long.MIN_VALUE;
+
+    // parsed value and where it ends are packed into one long to avoid allocation
+    private static final int INDEX_BITS = 20;
+    private static final int MAX_INDEX = (1 << INDEX_BITS) - 1;
+    private static final int TIME_INDEX_BITS = 16;
+    private static final int MAX_TIME_INDEX = (1 << TIME_INDEX_BITS) - 1;
+    // leave room for time of day and time zone offset so that milliseconds since epoch won't overflow
+    private static final long MAX_EPOCH_DAYS = Long.MAX_VALUE / MILLIS_PER_DAY - 2;
+
+    // same as what's used in JavaSqlTimestampCodec
+    private static final DateTimeFormatter TIMESTAMP_PARSER = new DateTimeFormatterBuilder()
+            .append(ISODateTimeFormat.dateOptionalTimeParser().getParser())
+            .appendOptional(new DateTimeFormatterBuilder().appendTimeZoneOffset("Z", true, 2, 4).toParser())
+            .toFormatter()
+            .withZoneUTC();
+    private static final DateTimeFormatter DATE_PARSER = ISODateTimeFormat.localDateParser().withZoneUTC();
+    private static final DateTimeFormatter TIME_PARSER = ISODateTimeFormat.localTimeParser().withZoneUTC();
+
+    private static final char[] DIGITS = "0123456789".toCharArray();
+
+    /**
+     * Get number of days since epoch for given date in proleptic Gregorian calendar.
+     */
+    static long toEpochDays(long year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static boolean isLeapYear(long year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static int lengthOfMonth(long year, int month) {
+        return month == 2 ? (isLeapYear(year) ? 29 : 28)
+                : (month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31);
+    }
+
+    private static int digitAt(CharSequence s, int index) {
+        if (index >= s.length()) {
+            return -1;
+        }
+
+        char c = s.charAt(index);
+        return c >= '0' && c <= '9' ? c - '0' : -1;
+    }
+
+    private static int twoDigitsAt(CharSequence s, int index) {
+        int d1 = digitAt(s, index);
+        int d2 = digitAt(s, index + 1);
+        return d1 < 0 || d2 < 0 ? -1 : d1 * 10 + d2;
+    }
+
+    /**
+     * Parse date part, i.e. "yyyy-MM-dd" at the beginning of given literal.
+     *
+     * @param s literal
+     * @return days since epoch shifted left by 20 bits, with end index of the date in lower bits; or
+     * {@link #UNRECOGNIZED} if it's not in expected format
+     */
+    private static long parseDatePart(CharSequence s) {
+        int len = s.length();
+        if (len > MAX_INDEX) {
+            return UNRECOGNIZED;
+        }
+
+        int i = 0;
+        boolean negative = false;
+        if (len > 0 && (s.charAt(0) == '-' || s.charAt(0) == '+')) {
+            negative = s.charAt(0) == '-';
+            i++;
+        }
+
+        long year = 0L;
+        int start = i;
+        for (int d; i - start < 9 && (d = digitAt(s, i)) >= 0; i++) {
+            year = year * 10 + d;
+        }
+        if (i - start < 4 || i >= len || s.charAt(i++) != '-') {
+            return UNRECOGNIZED;
+        }
+
+        int month = 0;
+        start = i;
+        for (int d; i - start < 2 && (d = digitAt(s, i)) >= 0; i++) {
+            month = month * 10 + d;
+        }
+        if (i == start || i >= len || s.charAt(i++) != '-') {
+            return UNRECOGNIZED;
+        }
+
+        int day = 0;
+        start = i;
+        for (int d; i - start < 2 && (d = digitAt(s, i)) >= 0; i++) {
+            day = day * 10 + d;
+        }
+
+        year = negative ? -year : year;
+        if (i == start || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+            return UNRECOGNIZED;
+        }
+
+        return (toEpochDays(year, month, day) << INDEX_BITS) | i;
+    }
+
+    /**
+     * Parse time part, i.e. "HH:mm[:ss[.fffffffff]]" in given literal.
+     *
+     * @param s      literal
+     * @param offset where the time starts
+     * @return nanoseconds of day shifted left by 16 bits, with end index of the time in lower bits; or
+     * {@link #UNRECOGNIZED} if it's not in expected format
+     */
+    private static long parseTimePart(CharSequence s, int offset) {
+        int len = s.length();
+        if (len > MAX_TIME_INDEX) {
+            return UNRECOGNIZED;
+        }
+
+        int i = offset;
+        int hour = twoDigitsAt(s, i);
+        if (hour < 0 || hour > 23 || i + 2 >= len || s.charAt(i + 2) != ':') {
+            return UNRECOGNIZED;
+        }
+        i += 3;
+
+        int minute = twoDigitsAt(s, i);
+        if (minute < 0 || minute > 59) {
+            return UNRECOGNIZED;
+        }
+        i += 2;
+
+        int second = 0;
+        long nanos = 0L;
+        if (i < len && s.charAt(i) == ':') {
+            second = twoDigitsAt(s, i + 1);
+            if (second < 0 || second > 59) {
+                return UNRECOGNIZED;
+            }
+            i += 3;
+
+            if (i < len && (s.charAt(i) == '.' || s.charAt(i) == ',')) {
+                int start = ++i;
+                // digits beyond nanosecond are ignored
+                for (long scale = 100000000L, d; (d = digitAt(s, i)) >= 0; i++, scale /= 10) {
+                    nanos += d * scale;
+                }
+                if (i == start) {
+                    return UNRECOGNIZED;
+                }
+            }
+        }
+
+        long millis = hour * MILLIS_PER_HOUR + minute * MILLIS_PER_MINUTE + second * MILLIS_PER_SECOND;
+        return ((millis * NANOS_PER_MILLI + nanos) << TIME_INDEX_BITS) | i;
+    }
+
+    private static long parseTimestampFast(CharSequence s) {
+        long date = parseDatePart(s);
+        if (date == UNRECOGNIZED) {
+            return UNRECOGNIZED;
+        }
+
+        long days = date >> INDEX_BITS;
+        if (days > MAX_EPOCH_DAYS || days < -MAX_EPOCH_DAYS) {
+            return UNRECOGNIZED;
+        }
+
+        int len = s.length();
+        long millis = days * MILLIS_PER_DAY;
+        int i = (int) (date & MAX_INDEX);
+        if (i == len) {
+            return millis;
+        }
+
+        char c = s.charAt(i);
+        long time = c == 'T' || c == ' ' ? parseTimePart(s, i + 1) : UNRECOGNIZED;
+        if (time == UNRECOGNIZED) {
+            return UNRECOGNIZED;
+        }
+        millis += (time >> TIME_INDEX_BITS) / NANOS_PER_MILLI;
+        i = (int) (time & MAX_TIME_INDEX);
+
+        // time zone offset - Z, +hh, +hhmm or +hh:mm
+        if (i < len) {
+            c = s.charAt(i++);
+            if (c == 'Z') {
+                return i == len ? millis : UNRECOGNIZED;
+            } else if (c != '+' && c != '-') {
+                return UNRECOGNIZED;
+            }
+
+            int hours = twoDigitsAt(s, i);
+            int minutes = 0;
+            i += 2;
+            if (i < len) {
+                if (s.charAt(i) == ':') {
+                    i++;
+                }
+                minutes = twoDigitsAt(s, i);
+                i += 2;
+            }
+            if (hours < 0 || hours > 23 || minutes < 0 || minutes > 59 || i != len) {
+                return UNRECOGNIZED;
+            }
+
+            long offset = hours * MILLIS_PER_HOUR + minutes * MILLIS_PER_MINUTE;
+            millis -= c == '+' ? offset : -offset;
+        }
+
+        return millis;
+    }
+
+    /**
+     * Parse timestamp literal like "2017-01-01", "2017-01-01 12:34", "2017-01-01T12:34:56.789Z" or
+     * "2017-01-01 12:34:56+08:00". UTC is assumed when there's no time zone.
+     *
+     * @param s timestamp literal
+     * @return milliseconds since epoch
+     * @throws IllegalArgumentException when the literal is invalid
+     */
+    public static long parseTimestamp(CharSequence s) {
+        long millis = parseTimestampFast(s);
+        return millis != UNRECOGNIZED ? millis : TIMESTAMP_PARSER.parseMillis(s.toString());
+    }
+
+    /**
+     * Parse date literal like "2017-01-01".
+     *
+     * @param s date literal
+     * @return days since epoch
+     * @throws IllegalArgumentException when the literal is invalid
+     */
+    public static int parseDate(CharSequence s) {
+        long date = parseDatePart(s);
+        long days = date != UNRECOGNIZED && (date & MAX_INDEX) == s.length()
+                ? date >> INDEX_BITS : floorDiv(DATE_PARSER.parseMillis(s.toString()), MILLIS_PER_DAY);
+        if (days < Integer.MIN_VALUE || days > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Date out of range: " + s);
+        }
+
+        return (int) days;
+    }
+
+    /**
+     * Parse time literal like "12:34", "12:34:56" or "12:34:56.123456789".
+     *
+     * @param s time literal
+     * @return nanoseconds since midnight
+     * @throws IllegalArgumentException when the literal is invalid
+     */
+    public static long parseTime(CharSequence s) {
+        long time = parseTimePart(s, 0);
+        return time != UNRECOGNIZED && (time & MAX_TIME_INDEX) == s.length()
+                ? time >> TIME_INDEX_BITS : TIME_PARSER.parseMillis(s.toString()) * NANOS_PER_MILLI;
+    }
+
+    static long floorDiv(long x, long y) {
+        long q = x / y;
+        return (x % y != 0 && ((x ^ y) < 0)) ? q - 1 : q;
+    }
+
+    private static StringBuilder appendPadded(StringBuilder builder, long value, int width) {
+        long limit = 1L;
+        for (int i = 1; i < width; i++) {
+            limit *= 10;
+        }
+        for (; limit > 1 && value < limit; limit /= 10) {
+            builder.append('0');
+        }
+
+        return builder.append(value);
+    }
+
+    private static StringBuilder appendTwoDigits(StringBuilder builder, int value) {
+        return builder.append(DIGITS[value / 10]).append(DIGITS[value % 10]);
+    }
+
+    /**
+     * Get year, month and day of given days since epoch, packed as (year << 9) | (month << 5) | day.
+     */
+    private static long toYearMonthDay(long days) {
+        long z = days + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (int) ((5 * dayOfYear + 2) / 153);
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        return (year << 9) | (month << 5) | day;
+    }
+
+    /**
+     * Same as {@link Date#valueOf(String)} but without parsing.
+     *
+     * @param year  year
+     * @param month month of year, from 1 to 12
+     * @param day   day of month
+     * @return date at midnight in default time zone
+     */
+    @SuppressWarnings("deprecation")
+    public static Date toSqlDate(int year, int month, int day) {
+        return new Date(year - 1900, month - 1, day);
+    }
+
+    /**
+     * Get {@link Date} of given days since epoch, at midnight in default time zone as required by JDBC.
+     *
+     * @param days days since epoch
+     * @return date
+     */
+    public static Date toSqlDate(long days) {
+        long date = toYearMonthDay(days);
+        return toSqlDate((int) (date >> 9), (int) (date >> 5 & 0xF), (int) (date & 0x1F));
+    }
+
+    /**
+     * Get {@link Time} of given time of day, on the zero epoch date in default time zone as required by JDBC.
+     *
+     * @param millisOfDay milliseconds since midnight
+     * @return time
+     */
+    @SuppressWarnings("deprecation")
+    public static Time toSqlTime(long millisOfDay) {
+        int seconds = (int) (millisOfDay / MILLIS_PER_SECOND);
+        Time time = new Time(seconds / 3600, seconds / 60 % 60, seconds % 60);
+        time.setTime(time.getTime() + millisOfDay % MILLIS_PER_SECOND);
+        return time;
+    }
+
+    /**
+     * Append date in format "yyyy-MM-dd".
+     *
+     * @param builder string builder
+     * @param days    days since epoch
+     * @return the string builder
+     */
+    public static StringBuilder appendDate(StringBuilder builder, long days) {
+        long date = toYearMonthDay(days);
+        long year = date >> 9;
+        int month = (int) (date >> 5 & 0xF);
+        int day = (int) (date & 0x1F);
+
+        if (year < 0) {
+            builder.append('-');
+        }
+        appendPadded(builder, Math.abs(year), 4).append('-');
+        appendTwoDigits(builder, month).append('-');
+        return appendTwoDigits(builder, day);
+    }
+
+    /**
+     * Append time in format "HH:mm:ss.SSS", or "HH:mm:ss.SSSSSSSSS" if it's more precise than millisecond.
+     *
+     * @param builder    string builder
+     * @param nanosOfDay nanoseconds since midnight
+     * @return the string builder
+     */
+    public static StringBuilder appendTime(StringBuilder builder, long nanosOfDay) {
+        long millis = nanosOfDay / NANOS_PER_MILLI;
+        appendTwoDigits(builder, (int) (millis / MILLIS_PER_HOUR)).append(':');
+        appendTwoDigits(builder, (int) (millis % MILLIS_PER_HOUR / MILLIS_PER_MINUTE)).append(':');
+        appendTwoDigits(builder, (int) (millis % MILLIS_PER_MINUTE / MILLIS_PER_SECOND)).append('.');
+
+        long fraction = nanosOfDay % (MILLIS_PER_SECOND * NANOS_PER_MILLI);
+        return fraction % NANOS_PER_MILLI == 0
+                ? appendPadded(builder, fraction / NANOS_PER_MILLI, 3) : appendPadded(builder, fraction, 9);
+    }
+
+    /**
+     * Append timestamp in UTC, e.g. "2017-01-01T12:34:56.789Z".
+     *
+     * @param builder string builder
+     * @param millis  milliseconds since epoch
+     * @return the string builder
+     */
+    public static StringBuilder appendTimestamp(StringBuilder builder, long millis) {
+        long days = floorDiv(millis, MILLIS_PER_DAY);
+        appendDate(builder, days).append('T');
+        return appendTime(builder, (millis - days * MILLIS_PER_DAY) * NANOS_PER_MILLI).append('Z');
+    }
+
+    public static String formatDate(long days) {
+        return appendDate(new StringBuilder(10), days).toString();
+    }
+
+    public static String formatTime(long nanosOfDay) {
+        return appendTime(new StringBuilder(18), nanosOfDay).toString();
+    }
+
+    public static String formatTimestamp(long millis) {
+        return appendTimestamp(new StringBuilder(24), millis).toString();
+    }
+
+    private CassandraDateTimes() {
+    }
+}
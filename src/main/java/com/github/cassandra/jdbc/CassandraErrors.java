@@ -66,18 +66,36 @@ public final class CassandraErrors {
                 ERROR_CODE_GENERAL, cause);
     }
 
+    public static SQLException invalidCursorException(String cursor, Throwable cause) {
+        return new SQLException(CassandraUtils.getString(
+                "EXCEPTION_INVALID_CURSOR", new Object[]{cursor}), null,
+                ERROR_CODE_GENERAL, cause);
+    }
+
     public static SQLException invalidKeyspaceException(String keyspace) {
         return new SQLException(CassandraUtils.getString(
                 "EXCEPTION_INVALID_KEYSPACE", new Object[]{keyspace}), null,
                 ERROR_CODE_GENERAL);
     }
 
+    public static SQLException invalidMaxRowsException(long maxRows) {
+        return new SQLException(CassandraUtils.getString(
+                "EXCEPTION_INVALID_MAX_ROWS", new Object[]{maxRows}), null,
+                ERROR_CODE_GENERAL);
+    }
+
     public static SQLException invalidQueryException(String query) {
         return new SQLException(CassandraUtils.getString(
                 "EXCEPTION_INVALID_QUERY", new Object[]{query}), null,
                 ERROR_CODE_GENERAL);
     }
 
+    public static SQLException invalidTimeoutException(int timeout) {
+        return new SQLException(CassandraUtils.getString(
+                "EXCEPTION_INVALID_TIMEOUT", new Object[]{timeout}), null,
+                ERROR_CODE_GENERAL);
+    }
+
     public static SQLFeatureNotSupportedException notSupportedException() {
         return new SQLFeatureNotSupportedException(
                 CassandraUtils.getString("EXCEPTION_NOT_SUPPORTED"), null,
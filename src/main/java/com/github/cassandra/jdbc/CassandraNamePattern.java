@@ -0,0 +1,157 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.regex.Pattern;
+
+/**
+ * This is a compiled search pattern used in {@link java.sql.DatabaseMetaData}, where "%" matches any substring,
+ * "_" matches any single character, and the search string escape("\") makes them literal. Names are matched
+ * case-sensitively as they are in Cassandra.
+ *
+ * @author Zhichun Wu
+ */
+public final class CassandraNamePattern {
+    public static final char ESCAPE = '\\';
+
+    public static final CassandraNamePattern ANY = new CassandraNamePattern("", false, null);
+
+    public static CassandraNamePattern compile(String pattern) {
+        if (CassandraUtils.isNullOrEmptyString(pattern) || "%".equals(pattern)) {
+            return ANY;
+        }
+
+        StringBuilder literal = new StringBuilder();
+        StringBuilder regex = new StringBuilder();
+        String prefix = null;
+        boolean escaped = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (!escaped && c == ESCAPE) {
+                escaped = true;
+            } else if (!escaped && (c == '%' || c == '_')) {
+                if (prefix == null) {
+                    prefix = literal.toString();
+                }
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '%' ? ".*" : ".");
+            } else {
+                literal.append(c);
+                escaped = false;
+            }
+        }
+
+        if (escaped) { // trailing escape character is taken literally
+            literal.append(ESCAPE);
+        }
+
+        if (prefix == null) {
+            return new CassandraNamePattern(literal.toString(), true, null);
+        }
+
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+
+        return new CassandraNamePattern(prefix, false, Pattern.compile(regex.toString(), Pattern.DOTALL));
+    }
+
+    private final String prefix; // literal part before the first wildcard, or the whole name for literal pattern
+    private final boolean literal;
+    private final Pattern regex; // null for literal pattern or ANY
+
+    private CassandraNamePattern(String prefix, boolean literal, Pattern regex) {
+        this.prefix = prefix;
+        this.literal = literal;
+        this.regex = regex;
+    }
+
+    public boolean isAny() {
+        return this == ANY;
+    }
+
+    /**
+     * Get the name this pattern stands for.
+     *
+     * @return the name, or null if the pattern has wildcard(s)
+     */
+    public String getLiteral() {
+        return literal ? prefix : null;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public boolean matches(String name) {
+        boolean matched;
+        if (name == null) {
+            matched = false;
+        } else if (literal) {
+            matched = prefix.equals(name);
+        } else {
+            matched = name.startsWith(prefix) && (regex == null || regex.matcher(name).matches());
+        }
+
+        return matched;
+    }
+
+    /**
+     * Select values keyed by matched names from given sorted map. Only names sharing the literal prefix of this
+     * pattern are visited, so an exact name takes a single lookup.
+     *
+     * @param map values sorted by name
+     * @param <V> type of value
+     * @return matched values in name order
+     */
+    public <V> List<V> select(NavigableMap<String, V> map) {
+        List<V> list = new ArrayList<V>();
+
+        if (literal) {
+            V value = map.get(prefix);
+            if (value != null) {
+                list.add(value);
+            }
+        } else {
+            NavigableMap<String, V> candidates = prefix.length() == 0
+                    ? map : map.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+            for (Map.Entry<String, V> entry : candidates.entrySet()) {
+                if (regex == null || regex.matcher(entry.getKey()).matches()) {
+                    list.add(entry.getValue());
+                }
+            }
+        }
+
+        return list;
+    }
+
+    @Override
+    public String toString() {
+        return literal ? prefix : (regex == null ? "%" : regex.pattern());
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc;
+
+import java.sql.SQLException;
+import java.sql.Struct;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Struct holding attributes of a user-defined type or a tuple.
+ *
+ * @author Zhichun Wu
+ */
+public class CassandraStruct implements Struct {
+    private final String _typeName;
+    private final Object[] _attributes;
+
+    public CassandraStruct(String typeName, Object[] attributes) {
+        _typeName = typeName;
+        _attributes = attributes == null ? new Object[0] : attributes;
+    }
+
+    public String getSQLTypeName() throws SQLException {
+        return _typeName;
+    }
+
+    public Object[] getAttributes() throws SQLException {
+        return _attributes.clone();
+    }
+
+    public Object[] getAttributes(Map<String, Class<?>> map) throws SQLException {
+        if (map != null && !map.isEmpty()) {
+            throw CassandraErrors.notSupportedException();
+        }
+
+        return getAttributes();
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder().append(_typeName).append(Arrays.toString(_attributes)).toString();
+    }
+}
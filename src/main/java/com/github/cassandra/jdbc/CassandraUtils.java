@@ -304,8 +304,7 @@ public class CassandraUtils {
     }
 
     public static boolean matchesPattern(String name, String pattern) {
-        return isNullOrEmptyString(pattern) || pattern.equals("%")
-                || pattern.equals(name);
+        return CassandraNamePattern.compile(pattern).matches(name);
     }
 
     public static SQLException tryClose(AutoCloseable resource) {
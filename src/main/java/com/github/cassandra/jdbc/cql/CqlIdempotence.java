@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.cql;
+
+import com.github.cassandra.jdbc.CassandraStatementType;
+
+import java.util.List;
+
+/**
+ * This tells if a CQL statement can be applied more than once without changing the outcome, so that it's safe to
+ * retry or speculatively execute. Queries are always idempotent, while an update is not when it's a lightweight
+ * transaction, increments a counter, appends / prepends to a list, removes list element by index, or generates
+ * values on server side(e.g. now() and uuid()). As column types are unknown here, we err on the safe side - for
+ * example, adding elements to a set is taken as non-idempotent as well.
+ *
+ * @author Zhichun Wu
+ */
+public final class CqlIdempotence {
+    private static final String KEYWORD_FROM = "FROM";
+    private static final String KEYWORD_IF = "IF";
+    private static final String KEYWORD_WHERE = "WHERE";
+
+    private static final String[] VOLATILE_FUNCTIONS = new String[]{"NOW", "UUID", "CURRENTTIMEUUID"};
+
+    private static char charAt(String cql, List<int[]> tokens, int index) {
+        return index < 0 || index >= tokens.size() ? '\0' : cql.charAt(tokens.get(index)[0]);
+    }
+
+    private static boolean isSameName(String cql, List<int[]> tokens, int index, int nameIndex) {
+        if (index < 0 || index >= tokens.size()) {
+            return false;
+        }
+
+        int[] token = tokens.get(index);
+        int[] name = tokens.get(nameIndex);
+        int len = name[1] - name[0];
+        // quoted identifier is case-sensitive
+        return token[1] - token[0] == len
+                && cql.regionMatches(cql.charAt(name[0]) != '"', token[0], cql, name[0], len);
+    }
+
+    private static boolean isVolatileFunction(String cql, List<int[]> tokens, int index) {
+        for (String function : VOLATILE_FUNCTIONS) {
+            if (CqlLimitRewriter.matches(cql, tokens, index, function)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Check if the assignment at given index refers to the column being assigned, like "c = c + 1" for counter,
+     * or "l = [1] + l" for list.
+     */
+    private static boolean isSelfReferenced(String cql, List<int[]> tokens, int index) {
+        int nameIndex = index - 1;
+        char c = charAt(cql, tokens, nameIndex);
+        if (c != '"' && c != '_' && !Character.isLetter(c)) {
+            return false;
+        }
+
+        int depth = 0;
+        for (int i = index + 1; i < tokens.size(); i++) {
+            c = charAt(cql, tokens, i);
+            if (c == '(' || c == '[' || c == '{') {
+                depth++;
+            } else if (c == ')' || c == ']' || c == '}') {
+                depth--;
+            } else if (depth == 0) {
+                if (c == ',' || c == ';' || CqlLimitRewriter.matches(cql, tokens, i, KEYWORD_WHERE)
+                        || CqlLimitRewriter.matches(cql, tokens, i, KEYWORD_IF)) {
+                    break;
+                } else if ((c == '+' || c == '-')
+                        && (isSameName(cql, tokens, i - 1, nameIndex) || isSameName(cql, tokens, i + 1, nameIndex))) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Check if given statement is idempotent.
+     *
+     * @param type type of the statement
+     * @param cql  CQL
+     * @return true if the statement is idempotent; false otherwise, including unknown statements
+     */
+    public static boolean isIdempotent(CassandraStatementType type, String cql) {
+        if (type == null || cql == null) {
+            return false;
+        } else if (type.isQuery()) {
+            return true;
+        } else if (type != CassandraStatementType.INSERT && type != CassandraStatementType.UPDATE
+                && type != CassandraStatementType.DELETE) {
+            return false;
+        }
+
+        List<int[]> tokens = CqlLimitRewriter.tokenize(cql);
+        // columns to delete come before FROM
+        boolean deleting = type == CassandraStatementType.DELETE;
+        for (int i = 0; i < tokens.size(); i++) {
+            char c = charAt(cql, tokens, i);
+            if (CqlLimitRewriter.matches(cql, tokens, i, KEYWORD_IF)) {
+                // IF NOT EXISTS, IF EXISTS, or IF conditions
+                return false;
+            } else if (deleting) {
+                if (CqlLimitRewriter.matches(cql, tokens, i, KEYWORD_FROM)) {
+                    deleting = false;
+                } else if (c == '[') {
+                    return false;
+                }
+            } else if (c == '(' && isVolatileFunction(cql, tokens, i - 1)) {
+                return false;
+            } else if (c == '=' && isSelfReferenced(cql, tokens, i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private CqlIdempotence() {
+    }
+}
@@ -0,0 +1,276 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.cql;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Objects;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This describes an equi-join between two tables, which cannot be expressed in CQL and has to be
+ * executed on client side. Each side is turned into a standalone CQL query, while projections tell
+ * how to assemble the joined row.
+ *
+ * @author Zhichun Wu
+ */
+public final class CqlJoinPlan {
+    public static final int LEFT = 0;
+    public static final int RIGHT = 1;
+
+    private static final Joiner COLUMN_JOINER = Joiner.on(", ");
+
+    // same keywords we escaped in CassandraCqlParser
+    private static final Set<String> KEYWORDS = ImmutableSet.of(
+            "select", "insert", "update", "delete", "into", "from", "where", "key", "alter", "drop", "create");
+
+    public static final class Side {
+        private final String tableRef; // table reference as it is in the SQL
+        private final String keyspace; // normalized keyspace name, null means current keyspace
+        private final String table; // normalized table name
+        private final String alias;
+        private final String joinColumn; // normalized
+        private final List<String> columns; // normalized, null means all columns
+        private final String condition;
+        private final Set<String> conditionColumns; // normalized
+
+        Side(String tableRef, String keyspace, String table, String alias,
+             String joinColumn, List<String> columns, String condition, Collection<String> conditionColumns) {
+            this.tableRef = tableRef;
+            this.keyspace = keyspace;
+            this.table = table;
+            this.alias = alias;
+            this.joinColumn = joinColumn;
+            this.columns = columns == null ? null : ImmutableList.copyOf(columns);
+            this.condition = Strings.emptyToNull(condition);
+            this.conditionColumns = conditionColumns == null
+                    ? ImmutableSet.<String>of() : ImmutableSet.copyOf(conditionColumns);
+        }
+
+        private StringBuilder appendColumns(StringBuilder builder, List<String> columnNames) {
+            if (columnNames == null) {
+                builder.append('*');
+            } else {
+                int index = 0;
+                for (String column : columnNames) {
+                    if (index++ > 0) {
+                        builder.append(", ");
+                    }
+                    builder.append(quote(column));
+                }
+            }
+
+            return builder;
+        }
+
+        public String getKeyspace() {
+            return keyspace;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public String getAlias() {
+            return alias;
+        }
+
+        public String getJoinColumn() {
+            return joinColumn;
+        }
+
+        /**
+         * Get columns required from this side, including the join column.
+         *
+         * @return list of column names, or null if all columns are required
+         */
+        public List<String> getColumns() {
+            return columns;
+        }
+
+        public String getCondition() {
+            return condition;
+        }
+
+        /**
+         * Get columns referenced by the condition pushed down to this side.
+         *
+         * @return set of column names, empty if there's no condition
+         */
+        public Set<String> getConditionColumns() {
+            return conditionColumns;
+        }
+
+        /**
+         * Get CQL for scanning this side of the join.
+         *
+         * @return CQL query
+         */
+        public String getCql() {
+            StringBuilder builder = appendColumns(new StringBuilder("SELECT "), columns)
+                    .append(" FROM ").append(tableRef);
+            if (condition != null) {
+                builder.append(" WHERE ").append(condition);
+            }
+
+            return builder.toString();
+        }
+
+        /**
+         * Get CQL for looking up rows in this side by join column, which is supposed to be the partition key.
+         * Cassandra rejects the lookup when the condition restricts columns outside of primary key, unless
+         * filtering is allowed - which is cheap here as it only happens within one partition.
+         *
+         * @param columnNames columns to query, or null for all columns
+         * @param primaryKey  names of primary key columns of the table
+         * @return CQL query with one bind variable for the join column
+         */
+        public String getLookupCql(List<String> columnNames, Collection<String> primaryKey) {
+            StringBuilder builder = appendColumns(new StringBuilder("SELECT "), columnNames)
+                    .append(" FROM ").append(tableRef)
+                    .append(" WHERE ").append(quote(joinColumn)).append(" = ?");
+            if (condition != null) {
+                builder.append(" AND ").append(condition);
+                if (!primaryKey.containsAll(conditionColumns)) {
+                    builder.append(" ALLOW FILTERING");
+                }
+            }
+
+            return builder.toString();
+        }
+
+        @Override
+        public String toString() {
+            return Objects.toStringHelper(this)
+                    .add("table", tableRef)
+                    .add("alias", alias)
+                    .add("joinColumn", joinColumn)
+                    .add("columns", columns == null ? "*" : COLUMN_JOINER.join(columns))
+                    .add("condition", condition)
+                    .toString();
+        }
+    }
+
+    public static final class Projection {
+        private final int side;
+        private final String column; // null means all columns of the side
+        private final String label;
+
+        Projection(int side, String column, String label) {
+            this.side = side;
+            this.column = column;
+            this.label = Strings.isNullOrEmpty(label) ? column : label;
+        }
+
+        public int getSide() {
+            return side;
+        }
+
+        public String getColumn() {
+            return column;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public boolean isAllColumns() {
+            return column == null;
+        }
+    }
+
+    static String quote(String identifier) {
+        boolean needQuote = identifier.length() == 0 || !Character.isLowerCase(identifier.charAt(0))
+                || KEYWORDS.contains(identifier);
+        for (int i = 0; !needQuote && i < identifier.length(); i++) {
+            char c = identifier.charAt(i);
+            needQuote = !(c == '_' || Character.isDigit(c) || (c >= 'a' && c <= 'z'));
+        }
+
+        return needQuote ? new StringBuilder().append('"')
+                .append(identifier.replace("\"", "\"\"")).append('"').toString() : identifier;
+    }
+
+    /**
+     * Normalize given CQL identifier - quoted identifier is case-sensitive, while unquoted one is not.
+     *
+     * @param identifier identifier
+     * @return normalized identifier
+     */
+    static String normalize(String identifier) {
+        if (identifier == null) {
+            return null;
+        }
+
+        int len = identifier.length();
+        return len > 1 && identifier.charAt(0) == '"' && identifier.charAt(len - 1) == '"'
+                ? identifier.substring(1, len - 1).replace("\"\"", "\"") : identifier.toLowerCase();
+    }
+
+    private final Side[] sides;
+    private final List<Projection> projections;
+    private final long limit;
+
+    CqlJoinPlan(Side left, Side right, List<Projection> projections, long limit) {
+        this.sides = new Side[]{left, right};
+        this.projections = ImmutableList.copyOf(projections);
+        this.limit = limit;
+    }
+
+    public Side getSide(int side) {
+        return sides[side];
+    }
+
+    public Side getLeft() {
+        return sides[LEFT];
+    }
+
+    public Side getRight() {
+        return sides[RIGHT];
+    }
+
+    public List<Projection> getProjections() {
+        return projections;
+    }
+
+    /**
+     * Get maximum number of joined rows to return.
+     *
+     * @return row limit, non-positive number means no limit
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("left", sides[LEFT])
+                .add("right", sides[RIGHT])
+                .add("limit", limit)
+                .toString();
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.cql;
+
+import com.google.common.primitives.Longs;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This pushes a row limit down to a CQL query by tightening, or adding, its LIMIT clause. As the query may
+ * come from user as is, it's tokenized without a full parser - string literals, quoted identifiers and
+ * comments are skipped so that only keywords of the query itself are looked at.
+ *
+ * @author Zhichun Wu
+ */
+public final class CqlLimitRewriter {
+    private static final String KEYWORD_ALLOW = "ALLOW";
+    private static final String KEYWORD_FILTERING = "FILTERING";
+    private static final String KEYWORD_LIMIT = "LIMIT";
+    private static final String KEYWORD_PARTITION = "PARTITION";
+    private static final String KEYWORD_SELECT = "SELECT";
+
+    private static int skipQuoted(String cql, int start, char quote) {
+        int i = start + 1;
+        int len = cql.length();
+        while (i < len) {
+            if (cql.charAt(i++) == quote) {
+                // doubled quote is an escaped one
+                if (i < len && cql.charAt(i) == quote) {
+                    i++;
+                } else {
+                    break;
+                }
+            }
+        }
+
+        return i;
+    }
+
+    private static int skipTo(String cql, int start, String end) {
+        int i = cql.indexOf(end, start);
+        return i < 0 ? cql.length() : i + end.length();
+    }
+
+    private static boolean isWordChar(char c) {
+        return c == '_' || Character.isLetterOrDigit(c);
+    }
+
+    /**
+     * Split given CQL into tokens, each of which is represented by its start and end index.
+     *
+     * @param cql CQL
+     * @return list of tokens
+     */
+    static List<int[]> tokenize(String cql) {
+        List<int[]> tokens = new ArrayList<int[]>();
+
+        int len = cql.length();
+        int i = 0;
+        while (i < len) {
+            char c = cql.charAt(i);
+            char next = i + 1 < len ? cql.charAt(i + 1) : '\0';
+            int start = i;
+
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if ((c == '-' && next == '-') || (c == '/' && next == '/')) {
+                i = skipTo(cql, i, "\n");
+            } else if (c == '/' && next == '*') {
+                i = skipTo(cql, i + 2, "*/");
+            } else {
+                if (c == '\'' || c == '"') {
+                    i = skipQuoted(cql, i, c);
+                } else if (c == '$' && next == '$') {
+                    i = skipTo(cql, i + 2, "$$");
+                } else if (isWordChar(c)) {
+                    while (i < len && isWordChar(cql.charAt(i))) {
+                        i++;
+                    }
+                } else {
+                    i++;
+                }
+
+                tokens.add(new int[]{start, i});
+            }
+        }
+
+        return tokens;
+    }
+
+    static boolean matches(String cql, List<int[]> tokens, int index, String keyword) {
+        if (index < 0 || index >= tokens.size()) {
+            return false;
+        }
+
+        int[] token = tokens.get(index);
+        return token[1] - token[0] == keyword.length()
+                && cql.regionMatches(true, token[0], keyword, 0, keyword.length());
+    }
+
+    /**
+     * Make sure the given query returns no more than the given number of rows. Existing limit is kept when
+     * it's smaller, or when it's a bind marker that cannot be evaluated here.
+     *
+     * @param cql     CQL
+     * @param maxRows maximum number of rows, non-positive number means no limit
+     * @return CQL with limit applied, or the same CQL if it's not a query or no change is needed
+     */
+    public static String rewrite(String cql, long maxRows) {
+        if (cql == null || maxRows <= 0L) {
+            return cql;
+        }
+
+        List<int[]> tokens = tokenize(cql);
+        if (!matches(cql, tokens, 0, KEYWORD_SELECT)) {
+            return cql;
+        }
+
+        int limitIndex = -1;
+        int allowIndex = -1;
+        for (int i = tokens.size() - 1; i > 0 && limitIndex < 0; i--) {
+            if (matches(cql, tokens, i, KEYWORD_LIMIT) && !matches(cql, tokens, i - 1, KEYWORD_PARTITION)) {
+                limitIndex = i;
+            } else if (matches(cql, tokens, i, KEYWORD_ALLOW) && matches(cql, tokens, i + 1, KEYWORD_FILTERING)) {
+                allowIndex = i;
+            }
+        }
+
+        StringBuilder builder = new StringBuilder(cql.length() + 24);
+        if (limitIndex > 0) {
+            if (limitIndex + 1 >= tokens.size()) {
+                return cql;
+            }
+
+            int[] token = tokens.get(limitIndex + 1);
+            String rowCount = cql.substring(token[0], token[1]);
+            for (int i = 0; i < rowCount.length(); i++) {
+                if (!Character.isDigit(rowCount.charAt(i))) {
+                    // bind marker
+                    return cql;
+                }
+            }
+
+            Long limit = Longs.tryParse(rowCount);
+            if (limit != null && limit <= maxRows) {
+                return cql;
+            }
+
+            builder.append(cql, 0, token[0]).append(maxRows).append(cql, token[1], cql.length());
+        } else if (allowIndex > 0) {
+            int start = tokens.get(allowIndex)[0];
+            builder.append(cql, 0, start).append(KEYWORD_LIMIT).append(' ').append(maxRows).append(' ')
+                    .append(cql, start, cql.length());
+        } else {
+            int last = tokens.size() - 1;
+            int[] token = tokens.get(last);
+            if (cql.charAt(token[0]) == ';' && last > 0) {
+                token = tokens.get(last - 1);
+            }
+
+            builder.append(cql, 0, token[1]).append(' ').append(KEYWORD_LIMIT).append(' ').append(maxRows)
+                    .append(cql, token[1], cql.length());
+        }
+
+        return builder.toString();
+    }
+
+    private CqlLimitRewriter() {
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.cql;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Objects;
+
+import java.util.List;
+
+/**
+ * This describes how to serve a query with offset. As there's no offset in CQL, rows before the offset
+ * are skipped by paging through a lean query, which only selects primary key columns, and then the original
+ * query is resumed from where the lean query stopped.
+ *
+ * @author Zhichun Wu
+ */
+public final class CqlOffsetPlan {
+    private static final Joiner COLUMN_JOINER = Joiner.on(", ");
+
+    private final long offset;
+    private final long limit;
+    private final String keyspace; // normalized, null means current keyspace
+    private final String table; // normalized, null if not querying a table
+    private final String cql; // without limit and offset
+    private final String fromClause; // null when lean query is not applicable
+
+    CqlOffsetPlan(long offset, long limit, String keyspace, String table, String cql, String fromClause) {
+        this.offset = offset;
+        this.limit = limit;
+        this.keyspace = keyspace;
+        this.table = table;
+        this.cql = cql;
+        this.fromClause = fromClause;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Get maximum number of rows to return after the offset.
+     *
+     * @return row limit, non-positive number means no limit
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * Get a plan returning no more than the given number of rows after the offset.
+     *
+     * @param maxRows maximum number of rows, non-positive number means no limit
+     * @return plan with the smaller limit, or this plan if there's no change
+     */
+    public CqlOffsetPlan withMaxRows(long maxRows) {
+        return maxRows <= 0L || (limit > 0L && limit <= maxRows)
+                ? this : new CqlOffsetPlan(offset, maxRows, keyspace, table, cql, fromClause);
+    }
+
+    public String getKeyspace() {
+        return keyspace;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * Get the query without limit and offset. Paging states of this query are not affected by the limit,
+     * so they can be reused no matter how many rows are requested.
+     *
+     * @return CQL query
+     */
+    public String getCql() {
+        return cql;
+    }
+
+    /**
+     * Get lean query for skipping rows.
+     *
+     * @param keyColumns quoted primary key columns
+     * @return lean CQL query, or null if it's not applicable
+     */
+    public String getLeanCql(List<String> keyColumns) {
+        return fromClause == null || keyColumns == null || keyColumns.isEmpty() ? null
+                : new StringBuilder().append("SELECT ").append(COLUMN_JOINER.join(keyColumns))
+                .append(' ').append(fromClause).toString();
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("offset", offset)
+                .add("limit", limit)
+                .add("cql", cql)
+                .add("lean", fromClause != null)
+                .toString();
+    }
+}
@@ -0,0 +1,250 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.cql;
+
+import com.github.cassandra.jdbc.CassandraCqlStmtConfiguration;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.ExpressionVisitorAdapter;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.select.*;
+
+import java.util.*;
+
+/**
+ * This translates a two-table equi-join in SQL into a {@link CqlJoinPlan}. Supported queries look like:
+ * <pre>
+ * select f.*, d.name from fact f join dim d on f.dim_id = d.id where f.day = '2017-01-01'
+ * </pre>
+ * All columns must be qualified by table name or alias, and conditions in where clause must be
+ * connected by "AND" so that each of them can be pushed down to one side of the join.
+ *
+ * @author Zhichun Wu
+ */
+public class SqlJoinTranslator {
+    private static class ColumnCollector extends ExpressionVisitorAdapter {
+        private final List<Column> columns = new ArrayList<Column>();
+
+        @Override
+        public void visit(Column column) {
+            columns.add(column);
+        }
+    }
+
+    private static class TableRef {
+        private final Table table;
+        private final String keyspace;
+        private final String name;
+        private final String alias;
+
+        TableRef(Table table) {
+            this.table = table;
+            this.keyspace = CqlJoinPlan.normalize(table.getSchemaName());
+            this.name = CqlJoinPlan.normalize(table.getName());
+            this.alias = table.getAlias() == null ? null : CqlJoinPlan.normalize(table.getAlias().getName());
+        }
+
+        boolean matches(Table qualifier) {
+            String qualifierName = CqlJoinPlan.normalize(qualifier.getName());
+            String qualifierSchema = CqlJoinPlan.normalize(qualifier.getSchemaName());
+
+            boolean matched;
+            if (qualifierSchema != null) {
+                matched = qualifierSchema.equals(keyspace) && qualifierName.equals(name);
+            } else {
+                matched = alias != null ? alias.equals(qualifierName) : name.equals(qualifierName);
+            }
+
+            return matched;
+        }
+    }
+
+    private static void flatten(Expression expr, List<Expression> conjuncts) {
+        if (expr instanceof AndExpression) {
+            AndExpression and = (AndExpression) expr;
+            flatten(and.getLeftExpression(), conjuncts);
+            flatten(and.getRightExpression(), conjuncts);
+        } else if (expr != null) {
+            conjuncts.add(expr);
+        }
+    }
+
+    private static Table asTable(FromItem item) {
+        if (!(item instanceof Table)) {
+            throw new UnsupportedOperationException("Only table can be joined");
+        }
+
+        return (Table) item;
+    }
+
+    private final CassandraCqlStmtConfiguration config;
+
+    public SqlJoinTranslator(CassandraCqlStmtConfiguration config) {
+        this.config = config;
+    }
+
+    private int resolveSide(TableRef[] refs, Column column) {
+        Table qualifier = column.getTable();
+        if (qualifier == null || qualifier.getName() == null) {
+            throw new UnsupportedOperationException("Column must be qualified in join: " + column);
+        }
+
+        boolean matchesLeft = refs[CqlJoinPlan.LEFT].matches(qualifier);
+        boolean matchesRight = refs[CqlJoinPlan.RIGHT].matches(qualifier);
+        if (matchesLeft == matchesRight) {
+            throw new UnsupportedOperationException("Not able to tell which table the column belongs to: " + column);
+        }
+
+        return matchesLeft ? CqlJoinPlan.LEFT : CqlJoinPlan.RIGHT;
+    }
+
+    public CqlJoinPlan translate(PlainSelect plainSelect) {
+        List<Join> joins = plainSelect.getJoins();
+        if (joins == null || joins.size() != 1
+                || plainSelect.getIntoTables() != null
+                || plainSelect.getGroupByColumnReferences() != null
+                || plainSelect.getOrderByElements() != null
+                || plainSelect.getHaving() != null
+                || plainSelect.getDistinct() != null
+                || plainSelect.getSelectItems() == null) {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        Join join = joins.get(0);
+        if (join.isOuter() || join.isLeft() || join.isRight() || join.isFull()
+                || join.isNatural() || join.isCross() || join.isSemi() || join.getUsingColumns() != null) {
+            throw new UnsupportedOperationException("Only inner equi-join is supported");
+        }
+
+        TableRef[] refs = new TableRef[]{
+                new TableRef(asTable(plainSelect.getFromItem())), new TableRef(asTable(join.getRightItem()))};
+
+        // join condition can be either in on clause or where clause
+        List<Expression> conjuncts = new ArrayList<Expression>();
+        flatten(join.getOnExpression(), conjuncts);
+        flatten(plainSelect.getWhere(), conjuncts);
+
+        String[] joinColumns = new String[2];
+        List<List<String>> conditions = new ArrayList<List<String>>();
+        conditions.add(new ArrayList<String>());
+        conditions.add(new ArrayList<String>());
+        List<Set<String>> conditionColumns = new ArrayList<Set<String>>();
+        conditionColumns.add(new HashSet<String>());
+        conditionColumns.add(new HashSet<String>());
+        for (Expression expr : conjuncts) {
+            ColumnCollector collector = new ColumnCollector();
+            expr.accept(collector);
+
+            Set<Integer> sides = new HashSet<Integer>();
+            for (Column c : collector.columns) {
+                sides.add(resolveSide(refs, c));
+            }
+
+            if (sides.size() == 2) {
+                if (!(expr instanceof EqualsTo) || joinColumns[CqlJoinPlan.LEFT] != null) {
+                    throw new UnsupportedOperationException("Only one equality join condition is supported");
+                }
+
+                EqualsTo equalsTo = (EqualsTo) expr;
+                if (!(equalsTo.getLeftExpression() instanceof Column)
+                        || !(equalsTo.getRightExpression() instanceof Column)) {
+                    throw new UnsupportedOperationException("Join condition must compare two columns");
+                }
+
+                for (Column c : collector.columns) {
+                    joinColumns[resolveSide(refs, c)] = CqlJoinPlan.normalize(c.getColumnName());
+                }
+            } else if (sides.size() == 1) {
+                // push down the condition after removing table qualifiers
+                int side = sides.iterator().next();
+                for (Column c : collector.columns) {
+                    c.setTable(null);
+                    conditionColumns.get(side).add(CqlJoinPlan.normalize(c.getColumnName()));
+                }
+                conditions.get(side).add(expr.toString());
+            } else {
+                throw new UnsupportedOperationException("Condition without column is not supported: " + expr);
+            }
+        }
+
+        if (joinColumns[CqlJoinPlan.LEFT] == null) {
+            throw new UnsupportedOperationException("Join condition is required");
+        }
+
+        List<CqlJoinPlan.Projection> projections = new ArrayList<CqlJoinPlan.Projection>();
+        boolean[] allColumns = new boolean[2];
+        List<Set<String>> columns = new ArrayList<Set<String>>();
+        columns.add(new LinkedHashSet<String>());
+        columns.add(new LinkedHashSet<String>());
+        for (SelectItem item : plainSelect.getSelectItems()) {
+            if (item instanceof AllColumns) {
+                for (int side = CqlJoinPlan.LEFT; side <= CqlJoinPlan.RIGHT; side++) {
+                    projections.add(new CqlJoinPlan.Projection(side, null, null));
+                    allColumns[side] = true;
+                }
+            } else if (item instanceof AllTableColumns) {
+                int side = resolveSide(refs, new Column(((AllTableColumns) item).getTable(), "*"));
+                projections.add(new CqlJoinPlan.Projection(side, null, null));
+                allColumns[side] = true;
+            } else if (item instanceof SelectExpressionItem
+                    && ((SelectExpressionItem) item).getExpression() instanceof Column) {
+                SelectExpressionItem sei = (SelectExpressionItem) item;
+                Column c = (Column) sei.getExpression();
+                int side = resolveSide(refs, c);
+                String name = CqlJoinPlan.normalize(c.getColumnName());
+                projections.add(new CqlJoinPlan.Projection(side, name,
+                        sei.getAlias() == null ? null : CqlJoinPlan.normalize(sei.getAlias().getName())));
+                columns.get(side).add(name);
+            } else {
+                throw new UnsupportedOperationException("Only columns can be selected in join: " + item);
+            }
+        }
+
+        CqlJoinPlan.Side[] sides = new CqlJoinPlan.Side[2];
+        for (int side = CqlJoinPlan.LEFT; side <= CqlJoinPlan.RIGHT; side++) {
+            TableRef ref = refs[side];
+            Set<String> sideColumns = columns.get(side);
+            sideColumns.add(joinColumns[side]);
+
+            StringBuilder condition = new StringBuilder();
+            for (String c : conditions.get(side)) {
+                if (condition.length() > 0) {
+                    condition.append(" AND ");
+                }
+                condition.append(c);
+            }
+
+            sides[side] = new CqlJoinPlan.Side(ref.table.getFullyQualifiedName(), ref.keyspace, ref.name, ref.alias,
+                    joinColumns[side], allColumns[side] ? null : new ArrayList<String>(sideColumns),
+                    condition.toString(), conditionColumns.get(side));
+        }
+
+        long limit = -1L;
+        if (!config.noLimit()) {
+            Limit l = plainSelect.getLimit();
+            limit = l != null && l.getRowCount() > 0 ? l.getRowCount() : config.getConnectionConfig().getRowLimit();
+        }
+
+        return new CqlJoinPlan(sides[CqlJoinPlan.LEFT], sides[CqlJoinPlan.RIGHT], projections, limit);
+    }
+}
@@ -30,6 +30,7 @@ import net.sf.jsqlparser.schema.Column;
 import net.sf.jsqlparser.schema.Table;
 import net.sf.jsqlparser.statement.select.*;
 
+import java.util.ArrayList;
 import java.util.List;
 
 
@@ -37,10 +38,62 @@ public class SqlToCqlTranslator implements SelectVisitor, FromItemVisitor,
         SelectItemVisitor, ExpressionVisitor {
     private final CassandraCqlStmtConfiguration config;
 
+    private CqlOffsetPlan offsetPlan;
+
     public SqlToCqlTranslator(CassandraCqlStmtConfiguration config) {
         this.config = config;
     }
 
+    private CqlOffsetPlan buildOffsetPlan(PlainSelect plainSelect, long offset) {
+        Limit limit = plainSelect.getLimit();
+        plainSelect.setLimit(null);
+        String cql = plainSelect.toString();
+
+        // lean query only makes sense when selecting columns from a table
+        String fromClause = null;
+        String keyspace = null;
+        String table = null;
+        FromItem from = plainSelect.getFromItem();
+        if (from instanceof Table && plainSelect.getDistinct() == null) {
+            keyspace = CqlJoinPlan.normalize(((Table) from).getSchemaName());
+            table = CqlJoinPlan.normalize(((Table) from).getName());
+
+            List<SelectItem> items = plainSelect.getSelectItems();
+            boolean columnsOnly = true;
+            for (SelectItem item : items) {
+                columnsOnly = columnsOnly && (item instanceof AllColumns || (item instanceof SelectExpressionItem
+                        && ((SelectExpressionItem) item).getExpression() instanceof Column));
+            }
+
+            if (columnsOnly) {
+                List<SelectItem> allColumns = new ArrayList<SelectItem>(1);
+                allColumns.add(new AllColumns());
+                plainSelect.setSelectItems(allColumns);
+                String leanCql = plainSelect.toString();
+                plainSelect.setSelectItems(items);
+
+                String prefix = "SELECT * ";
+                if (leanCql.startsWith(prefix)) {
+                    fromClause = leanCql.substring(prefix.length());
+                }
+            }
+        }
+
+        plainSelect.setLimit(limit);
+
+        return new CqlOffsetPlan(offset, limit == null ? -1L : limit.getRowCount(),
+                keyspace, table, cql, fromClause);
+    }
+
+    /**
+     * Get offset plan of the translated query.
+     *
+     * @return offset plan, or null if the query has no offset
+     */
+    public CqlOffsetPlan getOffsetPlan() {
+        return offsetPlan;
+    }
+
     public void visit(Addition addition) {
         // throw new UnsupportedOperationException("Not supported yet.");
     }
@@ -248,11 +301,24 @@ public class SqlToCqlTranslator implements SelectVisitor, FromItemVisitor,
             index++;
         }
 
+        // offset is not supported in CQL, remember it and remove it from the query
+        long offset = 0L;
+        Limit limit = plainSelect.getLimit();
+        if (limit != null) {
+            offset = limit.isOffsetJdbcParameter() ? 0L : limit.getOffset();
+            limit.setOffsetJdbcParameter(false);
+            limit.setOffset(-1);
+        }
+        Offset sqlOffset = plainSelect.getOffset();
+        if (sqlOffset != null) {
+            offset = sqlOffset.isOffsetJdbcParameter() ? offset : sqlOffset.getOffset();
+            plainSelect.setOffset(null);
+        }
+
         long rowLimit = config.getConnectionConfig().getRowLimit();
         if (config.noLimit()) {
             plainSelect.setLimit(null);
         } else if (rowLimit > 0) {
-            Limit limit = plainSelect.getLimit();
             if (limit == null) {
                 limit = new Limit();
                 limit.setRowCount(rowLimit);
@@ -260,8 +326,6 @@ public class SqlToCqlTranslator implements SelectVisitor, FromItemVisitor,
             } else {
                 // turn off not supported features
                 limit.setLimitAll(false);
-                limit.setOffsetJdbcParameter(false);
-                limit.setOffset(-1);
 
                 // apply default limits
                 if (limit.getRowCount() <= 0) {
@@ -270,6 +334,9 @@ public class SqlToCqlTranslator implements SelectVisitor, FromItemVisitor,
             }
         }
 
+        if (offset > 0L) {
+            offsetPlan = buildOffsetPlan(plainSelect, offset);
+        }
     }
 
     public void visit(RegExpMatchOperator rexpr) {
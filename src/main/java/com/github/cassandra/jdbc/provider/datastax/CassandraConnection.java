@@ -28,7 +28,9 @@ import org.pmw.tinylog.Logger;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import static com.github.cassandra.jdbc.CassandraUtils.*;
@@ -50,6 +52,8 @@ public class CassandraConnection extends BaseCassandraConnection {
     }
 
     private DataStaxSessionWrapper _session;
+    // sessions obtained by this connection, so that switching back to a keyspace costs nothing
+    private final Map<String, DataStaxSessionWrapper> _sessions = new HashMap<String, DataStaxSessionWrapper>();
 
     private String _keyspace;
 
@@ -58,6 +62,7 @@ public class CassandraConnection extends BaseCassandraConnection {
 
         _keyspace = driverConfig.getKeyspace();
         _session = DataStaxSessionFactory.getSession(driverConfig);
+        _sessions.put(_keyspace, _session);
 
         // populate meta data
         metaData.setProperty(KEY_DRIVER_NAME, DRIVER_NAME);
@@ -188,10 +193,10 @@ public class CassandraConnection extends BaseCassandraConnection {
         };
     }
 
-    private Object[] populateUdtMetaData(KeyspaceMetadata ks, UserType t) {
+    private Object[] populateUdtMetaData(UserType t) {
         return new Object[]{
                 null, // TYPE_CAT
-                ks.getName(), // TABLE_SCHEM
+                t.getKeyspace(), // TABLE_SCHEM
                 t.getTypeName(), // TYPE_NAME
                 t.getTypeArguments(), //.getCustomTypeClassName(), // CLASS_NAME
                 java.sql.Types.JAVA_OBJECT, // DATA_TYPE
@@ -219,10 +224,14 @@ public class CassandraConnection extends BaseCassandraConnection {
 
         ResultSet rs = new DummyCassandraResultSet();
 
-        Metadata m = _session.getClusterMetaData();
+        // listing keyspaces requires all of them, while other objects can be narrowed down by schema pattern
+        CassandraNamePattern schemaPattern = objectType == CassandraObjectType.KEYSPACE
+                ? CassandraNamePattern.ANY
+                : CassandraNamePattern.compile(CassandraUtils.getPropertyValue(queryPatterns, KEY_SCHEMA_PATTERN));
+        DataStaxSchemaCatalog catalog = _session.getSchemaCatalog(schemaPattern);
         switch (objectType) {
             case KEYSPACE: {
-                List<KeyspaceMetadata> keyspaces = m.getKeyspaces();
+                List<KeyspaceMetadata> keyspaces = catalog.getKeyspaces(schemaPattern);
                 String[][] data = new String[keyspaces.size()][1];
                 int index = 0;
                 for (KeyspaceMetadata km : keyspaces) {
@@ -234,10 +243,8 @@ public class CassandraConnection extends BaseCassandraConnection {
             }
 
             case TABLE: {
-                String schemaPattern = CassandraUtils.getPropertyValue(queryPatterns,
-                        KEY_SCHEMA_PATTERN);
-                String tablePattern = CassandraUtils.getPropertyValue(
-                        queryPatterns, KEY_TABLE_PATTERN);
+                CassandraNamePattern tablePattern = CassandraNamePattern.compile(
+                        CassandraUtils.getPropertyValue(queryPatterns, KEY_TABLE_PATTERN));
 
                 boolean queryTable = false;
                 if (additionalHints != null) {
@@ -253,15 +260,8 @@ public class CassandraConnection extends BaseCassandraConnection {
 
                 List<Object[]> list = new ArrayList<Object[]>();
                 if (queryTable) {
-                    for (KeyspaceMetadata ks : m.getKeyspaces()) {
-                        if (CassandraUtils.matchesPattern(ks.getName(), schemaPattern)) {
-                            for (TableMetadata t : ks.getTables()) {
-                                if (CassandraUtils.matchesPattern(t.getName(),
-                                        tablePattern)) {
-                                    list.add(populateTableMetaData(ks, t));
-                                }
-                            }
-                        }
+                    for (TableMetadata t : catalog.getTables(schemaPattern, tablePattern)) {
+                        list.add(populateTableMetaData(t.getKeyspace(), t));
                     }
                 }
 
@@ -270,34 +270,21 @@ public class CassandraConnection extends BaseCassandraConnection {
             }
 
             case COLUMN: {
-                String schemaPattern = CassandraUtils.getPropertyValue(queryPatterns,
-                        KEY_SCHEMA_PATTERN);
-                String tablePattern = CassandraUtils.getPropertyValue(
-                        queryPatterns, KEY_TABLE_PATTERN);
-                String columnPattern = CassandraUtils.getPropertyValue(
-                        queryPatterns, KEY_COLUMN_PATTERN);
+                CassandraNamePattern tablePattern = CassandraNamePattern.compile(
+                        CassandraUtils.getPropertyValue(queryPatterns, KEY_TABLE_PATTERN));
+                CassandraNamePattern columnPattern = CassandraNamePattern.compile(
+                        CassandraUtils.getPropertyValue(queryPatterns, KEY_COLUMN_PATTERN));
 
                 List<Object[]> list = new ArrayList<Object[]>();
-                for (KeyspaceMetadata ks : m.getKeyspaces()) {
-                    if (CassandraUtils.matchesPattern(ks.getName(), schemaPattern)) {
-                        for (TableMetadata t : ks.getTables()) {
-                            if (CassandraUtils.matchesPattern(t.getName(),
-                                    tablePattern)) {
-                                int colIndex = 0;
-                                for (ColumnMetadata c : t.getColumns()) {
-                                    colIndex++;
-                                    // Why DataStax Java driver returned additional
-                                    // blob column?
-                                    // Try system.IndexInfo...
-                                    if (!CassandraUtils.isNullOrEmptyString(c
-                                            .getName())
-                                            && CassandraUtils.matchesPattern(
-                                            c.getName(), columnPattern)) {
-                                        list.add(populateColumnMetaData(ks, t, c,
-                                                colIndex));
-                                    }
-                                }
-                            }
+                for (TableMetadata t : catalog.getTables(schemaPattern, tablePattern)) {
+                    int colIndex = 0;
+                    for (ColumnMetadata c : t.getColumns()) {
+                        colIndex++;
+                        // Why DataStax Java driver returned additional
+                        // blob column?
+                        // Try system.IndexInfo...
+                        if (!CassandraUtils.isNullOrEmptyString(c.getName()) && columnPattern.matches(c.getName())) {
+                            list.add(populateColumnMetaData(t.getKeyspace(), t, c, colIndex));
                         }
                     }
                 }
@@ -307,10 +294,8 @@ public class CassandraConnection extends BaseCassandraConnection {
             }
 
             case INDEX: {
-                String schemaPattern = CassandraUtils.getPropertyValue(queryPatterns,
-                        KEY_SCHEMA_PATTERN);
-                String tablePattern = CassandraUtils.getPropertyValue(queryPatterns,
-                        KEY_TABLE_PATTERN);
+                CassandraNamePattern tablePattern = CassandraNamePattern.compile(
+                        CassandraUtils.getPropertyValue(queryPatterns, KEY_TABLE_PATTERN));
                 boolean uniqueIndexOnly = Boolean.valueOf(CassandraUtils
                         .getPropertyValue(queryPatterns, KEY_UNIQUE_INDEX,
                                 Boolean.FALSE.toString()));
@@ -319,28 +304,20 @@ public class CassandraConnection extends BaseCassandraConnection {
                 // Boolean.TRUE.toString()));
 
                 List<Object[]> list = new ArrayList<Object[]>();
-                for (KeyspaceMetadata ks : m.getKeyspaces()) {
-                    if (CassandraUtils.matchesPattern(ks.getName(), schemaPattern)) {
-                        for (TableMetadata t : ks.getTables()) {
-                            if (CassandraUtils.matchesPattern(t.getName(), tablePattern)) {
-                                int colIndex = 0;
-                                List<ColumnMetadata> primaryKeys = t
-                                        .getPrimaryKey();
-                                boolean uniquePk = primaryKeys.size() == 1;
-                                if (!uniqueIndexOnly || uniquePk) {
-                                    for (ColumnMetadata c : primaryKeys) {
-                                        list.add(populateIndexMetaData(ks, t, c,
-                                                ++colIndex, uniquePk));
-                                    }
-                                }
-
-
-                                for (IndexMetadata i : t.getIndexes()) {
-                                    if (i != null && i.getKind() != IndexMetadata.Kind.KEYS) {
-                                        list.add(populateIndexMetaData(ks, t, i));
-                                    }
-                                }
-                            }
+                for (TableMetadata t : catalog.getTables(schemaPattern, tablePattern)) {
+                    KeyspaceMetadata ks = t.getKeyspace();
+                    int colIndex = 0;
+                    List<ColumnMetadata> primaryKeys = t.getPrimaryKey();
+                    boolean uniquePk = primaryKeys.size() == 1;
+                    if (!uniqueIndexOnly || uniquePk) {
+                        for (ColumnMetadata c : primaryKeys) {
+                            list.add(populateIndexMetaData(ks, t, c, ++colIndex, uniquePk));
+                        }
+                    }
+
+                    for (IndexMetadata i : t.getIndexes()) {
+                        if (i != null && i.getKind() != IndexMetadata.Kind.KEYS) {
+                            list.add(populateIndexMetaData(ks, t, i));
                         }
                     }
                 }
@@ -350,23 +327,14 @@ public class CassandraConnection extends BaseCassandraConnection {
             }
 
             case PRIMARY_KEY: {
-                String schemaPattern = CassandraUtils.getPropertyValue(queryPatterns,
-                        KEY_SCHEMA_PATTERN);
-                String tablePattern = CassandraUtils.getPropertyValue(queryPatterns,
-                        KEY_TABLE_PATTERN);
+                CassandraNamePattern tablePattern = CassandraNamePattern.compile(
+                        CassandraUtils.getPropertyValue(queryPatterns, KEY_TABLE_PATTERN));
 
                 List<Object[]> list = new ArrayList<Object[]>();
-                for (KeyspaceMetadata ks : m.getKeyspaces()) {
-                    if (CassandraUtils.matchesPattern(ks.getName(), schemaPattern)) {
-                        for (TableMetadata t : ks.getTables()) {
-                            if (CassandraUtils.matchesPattern(t.getName(), tablePattern)) {
-                                int colIndex = 0;
-                                for (ColumnMetadata c : t.getPrimaryKey()) {
-                                    list.add(populatePrimaryKeyMetaData(ks, t, c,
-                                            ++colIndex));
-                                }
-                            }
-                        }
+                for (TableMetadata t : catalog.getTables(schemaPattern, tablePattern)) {
+                    int colIndex = 0;
+                    for (ColumnMetadata c : t.getPrimaryKey()) {
+                        list.add(populatePrimaryKeyMetaData(t.getKeyspace(), t, c, ++colIndex));
                     }
                 }
 
@@ -375,23 +343,14 @@ public class CassandraConnection extends BaseCassandraConnection {
             }
 
             case UDT: {
-                String schemaPattern = CassandraUtils.getPropertyValue(queryPatterns,
-                        KEY_SCHEMA_PATTERN);
-                String typePattern = CassandraUtils.getPropertyValue(queryPatterns,
-                        KEY_TYPE_PATTERN);
+                CassandraNamePattern typePattern = CassandraNamePattern.compile(
+                        CassandraUtils.getPropertyValue(queryPatterns, KEY_TYPE_PATTERN));
 
                 // FIXME deal with additionalHints
 
                 List<Object[]> list = new ArrayList<Object[]>();
-                for (KeyspaceMetadata ks : m.getKeyspaces()) {
-                    if (CassandraUtils.matchesPattern(ks.getName(), schemaPattern)) {
-                        for (UserType t : ks.getUserTypes()) {
-                            if (CassandraUtils.matchesPattern(t.getTypeName(),
-                                    typePattern)) {
-                                list.add(populateUdtMetaData(ks, t));
-                            }
-                        }
-                    }
+                for (UserType t : catalog.getUserTypes(schemaPattern, typePattern)) {
+                    list.add(populateUdtMetaData(t));
                 }
 
                 rs = buildResultSet(UDT_COLUMNS, list);
@@ -423,12 +382,23 @@ public class CassandraConnection extends BaseCassandraConnection {
 
     @Override
     protected SQLException tryClose() {
-        SQLException e = CassandraUtils.tryClose(_session);
+        SQLException e = null;
+        for (DataStaxSessionWrapper session : _sessions.values()) {
+            SQLException ex = CassandraUtils.tryClose(session);
+            e = e == null ? ex : e;
+        }
+        _sessions.clear();
         _session = null;
 
         return e;
     }
 
+    @Override
+    protected boolean isSessionValid(long timeoutMillis) {
+        DataStaxSessionWrapper session = _session;
+        return session != null && session.isValid(timeoutMillis);
+    }
+
     @Override
     protected Object unwrap() {
         return _session;
@@ -481,8 +451,13 @@ public class CassandraConnection extends BaseCassandraConnection {
         }
 
         try {
-            // _session.closeAsync().force();
-            _session = DataStaxSessionFactory.getSession(getConfiguration(), schema);
+            // sessions of all keyspaces share the same cluster, so this is cheap
+            DataStaxSessionWrapper session = _sessions.get(schema);
+            if (session == null || session.isClosed()) {
+                session = DataStaxSessionFactory.getSession(getConfiguration(), schema);
+                CassandraUtils.tryClose(_sessions.put(schema, session));
+            }
+            _session = session;
 
             Logger.debug(new StringBuilder(
                     "Current keyspace changed from \"").append(_keyspace)
@@ -0,0 +1,205 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.provider.datastax;
+
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.TypeCodec;
+import com.datastax.driver.core.exceptions.CodecNotFoundException;
+import com.github.cassandra.jdbc.*;
+import com.github.cassandra.jdbc.cql.CqlJoinPlan;
+import org.pmw.tinylog.Logger;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This is a result set of joined rows, which are assembled on client side by {@link DataStaxJoinExecutor}.
+ *
+ * @author Zhichun Wu
+ */
+public class CassandraJoinResultSet extends BaseCassandraResultSet {
+    private final CodecRegistry codecRegistry;
+    private final ProtocolVersion protocolVersion;
+    private final long limit;
+
+    private final int[] sides;
+    private final int[] indexes;
+    private final DataType[] types;
+
+    private DataStaxJoinExecutor.JoinedRows _rows;
+    private ByteBuffer[][] _currentRow;
+    private ByteBuffer[][] _nextRow;
+    private long _count;
+
+    protected CassandraJoinResultSet(BaseCassandraStatement statement, CassandraCqlStatement parsedStmt,
+                                     DataStaxJoinExecutor executor, DataStaxJoinExecutor.JoinedRows rows,
+                                     CodecRegistry codecRegistry, ProtocolVersion protocolVersion)
+            throws SQLException {
+        super(statement, parsedStmt);
+
+        this.codecRegistry = codecRegistry;
+        this.protocolVersion = protocolVersion;
+        this.limit = executor.getPlan().getLimit();
+
+        List<int[]> positions = new ArrayList<int[]>();
+        List<DataType> dataTypes = new ArrayList<DataType>();
+        for (CqlJoinPlan.Projection p : executor.getPlan().getProjections()) {
+            DataStaxJoinExecutor.SideColumns columns = executor.getColumns(p.getSide());
+            int from = 0;
+            int to = columns.names.length;
+            if (!p.isAllColumns()) {
+                from = columns.indexOf(p.getColumn());
+                if (from < 0) {
+                    throw CassandraErrors.invalidQueryException(parsedStmt.getCql());
+                }
+                to = from + 1;
+            }
+
+            for (int i = from; i < to; i++) {
+                // use label as column name, as columns are looked up by name in metadata
+                String label = p.isAllColumns() ? columns.names[i] : p.getLabel();
+                metadata.addColumnDefinition(new CassandraColumnDefinition(columns.keyspace, columns.table,
+                        label, label, columns.types[i].getName().toString(), false, false));
+                positions.add(new int[]{p.getSide(), i});
+                dataTypes.add(columns.types[i]);
+            }
+        }
+
+        int size = positions.size();
+        this.sides = new int[size];
+        this.indexes = new int[size];
+        this.types = dataTypes.toArray(new DataType[size]);
+        for (int i = 0; i < size; i++) {
+            this.sides[i] = positions.get(i)[0];
+            this.indexes[i] = positions.get(i)[1];
+        }
+
+        _rows = rows;
+        // read ahead so that we know if there's more
+        _nextRow = rows.next();
+    }
+
+    private TypeCodec<?> codecFor(DataType type, Class<?> clazz) {
+        TypeCodec<?> codec = null;
+        if (clazz == String.class) {
+            String typeName = type.getName().toString();
+            if (CassandraDataType.TIME.getTypeName().equals(typeName)
+                    || CassandraDataType.TIMESTAMP.getTypeName().equals(typeName)) {
+                try {
+                    codec = codecRegistry.codecFor(type, String.class);
+                } catch (CodecNotFoundException e) {
+                    Logger.trace(e, "No string codec for {}", type);
+                }
+            }
+        }
+
+        return codec == null ? codecRegistry.codecFor(type) : codec;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected <T> T getValue(int columnIndex, Class<T> clazz)
+            throws SQLException {
+        Logger.trace("Trying to get value with inputs: line={}, column={}, type={}", getRow(), columnIndex, clazz);
+
+        Object rawValue = null;
+        T result = null;
+        if (_currentRow != null) {
+            int index = columnIndex - 1;
+            ByteBuffer bytes = _currentRow[sides[index]][indexes[index]];
+
+            try {
+                rawValue = bytes == null ? null
+                        : codecFor(types[index], clazz).deserialize(bytes.duplicate(), protocolVersion);
+            } catch (Exception e) {
+                throw new SQLException(e);
+            }
+
+            Logger.trace("Got raw value [{}] from line #{}", rawValue, getRow());
+
+            wasNull = rawValue == null;
+
+            try {
+                result = getDataTypeConverters().convert(rawValue, clazz, true);
+            } catch (ClassCastException e) {
+                Logger.warn(e, "Not able to convert [{}] to {}", rawValue, clazz);
+
+                if (!quiet) {
+                    throw new SQLException(e);
+                }
+            }
+        }
+
+        Logger.trace("Return value: raw={}, converted={}", rawValue, result);
+
+        return result;
+    }
+
+    @Override
+    protected boolean hasMore() {
+        return _nextRow != null;
+    }
+
+    @Override
+    protected <T> void setValue(int columnIndex, T value) throws SQLException {
+        throw CassandraErrors.notSupportedException();
+    }
+
+    @Override
+    protected SQLException tryClose() {
+        if (_rows != null) {
+            _rows.close();
+            _rows = null;
+            _currentRow = null;
+            _nextRow = null;
+        }
+
+        return null;
+    }
+
+    @Override
+    protected boolean tryIterate() throws SQLException {
+        _currentRow = _nextRow;
+        if (_currentRow == null) {
+            return false;
+        }
+
+        _count++;
+        _nextRow = _rows == null || (limit > 0 && _count >= limit) ? null : _rows.next();
+
+        return true;
+    }
+
+    @Override
+    protected boolean tryMoveTo(int rows, boolean relativeIndex)
+            throws SQLException {
+        throw CassandraErrors.notSupportedException();
+    }
+
+    @Override
+    protected Object unwrap() {
+        return _rows;
+    }
+}
@@ -22,9 +22,8 @@ package com.github.cassandra.jdbc.provider.datastax;
 
 import com.datastax.driver.core.*;
 import com.github.cassandra.jdbc.*;
+import com.github.cassandra.jdbc.cql.CqlLimitRewriter;
 import com.google.common.base.Objects;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import org.joda.time.LocalDate;
 import org.joda.time.LocalTime;
 import org.pmw.tinylog.Logger;
@@ -33,10 +32,11 @@ import java.nio.ByteBuffer;
 import java.sql.Date;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Struct;
 import java.sql.Time;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
 
 /**
  * This is a prepared statement implementation built on top of DataStax Java
@@ -46,15 +46,14 @@ import java.util.concurrent.ExecutionException;
  */
 public class CassandraPreparedStatement extends CassandraStatement
         implements java.sql.PreparedStatement {
-    protected final Cache<String, PreparedStatement> preparedStmtCache;
+    // full CQL types of parameters, which are needed for collections
+    protected final List<DataType> parameterTypes = new ArrayList<DataType>();
 
     protected CassandraPreparedStatement(CassandraConnection conn,
                                          DataStaxSessionWrapper session,
                                          String sql) throws SQLException {
         super(conn, session, sql);
 
-        preparedStmtCache = CacheBuilder.newBuilder().maximumSize(50).build();
-
         // FIXME convert given string(sql or cql) to CassandraCqlStatement and put in a cache for further usage
         if (conn != null) { // connection might be null in unit tests
             updateParameterMetaData(this.cqlStmt, true);
@@ -62,31 +61,35 @@ public class CassandraPreparedStatement extends CassandraStatement
     }
 
 
-    protected PreparedStatement getInnerPreparedStatement(final String cql) throws SQLException {
-        PreparedStatement preparedStmt = null;
+    protected DataStaxParameterBinder getParameterBinder(String cql) throws SQLException {
+        // statements are prepared once per session instead of per statement object
+        return session.getParameterBinder(cql);
+    }
 
-        try {
-            preparedStmt = preparedStmtCache.get(cql, new Callable<PreparedStatement>() {
-                public PreparedStatement call() throws Exception {
-                    return session.prepare(cql);
-                }
-            });
-        } catch (ExecutionException e) {
-            throw new SQLException(e);
-        }
+    protected PreparedStatement getInnerPreparedStatement(String cql) throws SQLException {
+        return getParameterBinder(cql).getStatement();
+    }
 
-        return preparedStmt;
+    @Override
+    protected Statement newStatement(String cql, Object... params) throws SQLException {
+        return getParameterBinder(cql).bind(params);
     }
 
     protected void updateParameterMetaData(CassandraCqlStatement cql, boolean force) throws SQLException {
         if (force || !Objects.equal(this.cqlStmt.getCql(), cql.getCql())) {
             this.cqlStmt = cql;
-            PreparedStatement preparedStmt = getInnerPreparedStatement(cql.getCql());
             parameterMetaData.clear();
+            parameterTypes.clear();
+            if (cql.hasJoin()) { // nothing to prepare as join is done on client side
+                return;
+            }
+
+            PreparedStatement preparedStmt = getInnerPreparedStatement(cql.getCql());
             for (ColumnDefinitions.Definition def : preparedStmt.getVariables().asList()) {
                 parameterMetaData.addParameterDefinition(new CassandraColumnDefinition(
                         def.getKeyspace(), def.getTable(), def.getName(), def.getName(),
-                        def.getType().toString(), false, false));
+                        def.getType().getName().toString(), false, false));
+                parameterTypes.add(def.getType());
             }
         }
     }
@@ -98,7 +101,26 @@ public class CassandraPreparedStatement extends CassandraStatement
 
         boolean replaceNullValue = this.cqlStmt.getConfiguration().replaceNullValue();
 
-        if (javaClass != null) {
+        if (DataStaxJavaTime.AVAILABLE && paramValue != null
+                && DataStaxJavaTime.isJavaTimeType(paramValue.getClass())) {
+            // bind java.time objects as they are, the codecs will take care of the rest
+            Object value = DataStaxJavaTime.toParameter(paramValue, typeName);
+            if (value != null) {
+                parameters.put(paramIndex, value);
+                return;
+            }
+        }
+
+        if (paramValue instanceof ByteBuffer && CassandraDataType.BLOB.getTypeName().equals(typeName)) {
+            // bind as it is to avoid copying
+            parameters.put(paramIndex, paramValue);
+        } else if (paramValue instanceof UDTValue || paramValue instanceof TupleValue) {
+            parameters.put(paramIndex, paramValue);
+        } else if (paramValue instanceof Struct && paramIndex <= parameterTypes.size()
+                && DataStaxStructs.isStruct(parameterTypes.get(paramIndex - 1))) {
+            parameters.put(paramIndex, DataStaxStructs.of(parameterTypes.get(paramIndex - 1)).encode(
+                    (Struct) paramValue, getDataTypeConverters(), session.getProtocolVersion()));
+        } else if (javaClass != null) {
             paramValue = getDataTypeConverters().convert(paramValue, javaClass, replaceNullValue);
             // time is mapped by the driver to a primitive long, representing the number of nanoseconds since midnight
             if (CassandraDataType.TIME.getTypeName().equals(typeName) && paramValue instanceof Time) {
@@ -112,6 +134,9 @@ public class CassandraPreparedStatement extends CassandraStatement
             } else if (CassandraDataType.BLOB.getTypeName().equals(typeName)
                     && paramValue instanceof byte[]) {
                 paramValue = ByteBuffer.wrap((byte[]) paramValue);
+            } else if (DataStaxCollections.isCollection(typeName) && paramIndex <= parameterTypes.size()) {
+                paramValue = DataStaxCollections.bind(paramValue, parameterTypes.get(paramIndex - 1),
+                        getDataTypeConverters());
             }
 
             parameters.put(paramIndex, paramValue);
@@ -132,10 +157,24 @@ public class CassandraPreparedStatement extends CassandraStatement
 
         updateParameterMetaData(CassandraCqlParser.parse(getConfiguration(), cql), false);
 
-        PreparedStatement preparedStmt = getInnerPreparedStatement(cql);
-        BoundStatement boundStatement = preparedStmt.bind(params);
+        if (parsedStmt.hasJoin()) {
+            if (params != null && params.length > 0) {
+                throw CassandraErrors.notSupportedException();
+            }
+
+            executeJoin(parsedStmt);
+            return null;
+        } else if (parsedStmt.hasOffset()) {
+            return executeWithOffset(parsedStmt, params);
+        }
+
+        String limitedCql = CqlLimitRewriter.rewrite(cql, maxRows);
+        BoundStatement boundStatement = getParameterBinder(limitedCql).bind(params);
+
+        configureStatement(boundStatement, parsedStmt);
 
-        configureStatement(boundStatement, stmtConf);
+        DataStaxCursor origin = getOrigin(parsedStmt, limitedCql, params);
+        resume(boundStatement, origin);
 
         com.datastax.driver.core.ResultSet rs = null;
         if (stmtConf.noWait()) {
@@ -144,7 +183,7 @@ public class CassandraPreparedStatement extends CassandraStatement
             rs = session.execute(boundStatement);
         }
 
-        postStatementExecution(parsedStmt, rs);
+        postStatementExecution(parsedStmt, rs, -1L, origin);
 
         return rs;
     }
@@ -159,7 +198,7 @@ public class CassandraPreparedStatement extends CassandraStatement
         for (CassandraCqlStatement stmt : batch) {
             String cql = stmt.getCql();
             if (stmt.hasParameter()) {
-                batchStmt.add(getInnerPreparedStatement(cql).bind(stmt.getParameters()));
+                batchStmt.add(getParameterBinder(cql).bind(stmt.getParameters()));
             } else {
                 batchStmt.add(new SimpleStatement(cql));
             }
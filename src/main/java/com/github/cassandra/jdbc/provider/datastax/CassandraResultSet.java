@@ -20,13 +20,19 @@
  */
 package com.github.cassandra.jdbc.provider.datastax;
 
+import com.datastax.driver.core.CodecRegistry;
 import com.datastax.driver.core.ColumnDefinitions.Definition;
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.ProtocolVersion;
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Row;
 import com.github.cassandra.jdbc.*;
 import org.pmw.tinylog.Logger;
 
+import java.nio.ByteBuffer;
 import java.sql.SQLException;
+import java.sql.Struct;
+import java.util.List;
 
 /**
  * This is a result set implementation built on top of DataStax Java driver.
@@ -36,8 +42,31 @@ import java.sql.SQLException;
 public class CassandraResultSet extends BaseCassandraResultSet {
     private Row _currentRow;
     private ResultSet _resultSet;
+    // rows left to return, negative means no limit
+    private long _remaining;
+
+    // where the query started, and where we are now in terms of pages
+    private final DataStaxCursor _origin;
+    private int _pageIndex;
+    private int _rowsInPage;
+    private boolean _pageConsumed;
+    private int _rowsToSkip;
+
+    // null when adaptive fetch size is disabled
+    private final DataStaxFetchSizeAdvisor.Sampler _sampler;
+
+    // for decoding collections, resolved on first use
+    private ProtocolVersion _protocolVersion;
+    private CodecRegistry _codecRegistry;
+    // so that we don't need to look up struct types for each row
+    private DataStaxStructs.StructType[] _structTypes;
 
     protected CassandraResultSet(BaseCassandraStatement statement, CassandraCqlStatement parsedStmt, ResultSet rs) {
+        this(statement, parsedStmt, rs, -1L, null);
+    }
+
+    protected CassandraResultSet(BaseCassandraStatement statement, CassandraCqlStatement parsedStmt, ResultSet rs,
+                                 long rowLimit, DataStaxCursor origin) {
         super(statement, parsedStmt);
 
         if (rs != null) {
@@ -50,6 +79,111 @@ public class CassandraResultSet extends BaseCassandraResultSet {
         }
 
         _resultSet = rs;
+        _remaining = rowLimit;
+        _origin = origin;
+        // rows already returned before the cursor was created
+        _rowsToSkip = origin == null ? 0 : origin.getSkip();
+
+        DataStaxFetchSizeAdvisor advisor = statement instanceof CassandraStatement
+                ? ((CassandraStatement) statement).session.getFetchSizeAdvisor() : null;
+        _sampler = advisor == null || rs == null ? null : advisor.newSampler(rs.getExecutionInfo().getStatement());
+    }
+
+    private void resolveCodecs() throws SQLException {
+        if (_protocolVersion == null) {
+            DataStaxSessionWrapper session = statement instanceof CassandraStatement
+                    ? ((CassandraStatement) statement).session : null;
+            _protocolVersion = session == null
+                    ? ProtocolVersion.NEWEST_SUPPORTED : session.getProtocolVersion();
+            _codecRegistry = session == null
+                    ? DataStaxSessionFactory.getCodecRegistry() : session.getCodecRegistry();
+        }
+    }
+
+    private DataStaxStructs.StructType getStructType(int columnIndex) {
+        if (_structTypes == null) {
+            _structTypes = new DataStaxStructs.StructType[_currentRow.getColumnDefinitions().size()];
+        }
+
+        DataStaxStructs.StructType structType = _structTypes[columnIndex - 1];
+        if (structType == null) {
+            structType = _structTypes[columnIndex - 1] = DataStaxStructs.of(
+                    _currentRow.getColumnDefinitions().getType(columnIndex - 1));
+        }
+
+        return structType;
+    }
+
+    private Row nextRow() throws SQLException {
+        for (; _rowsToSkip > 0; _rowsToSkip--) {
+            if (fetchRow() == null) {
+                _rowsToSkip = 0;
+                return null;
+            }
+        }
+
+        return fetchRow();
+    }
+
+    private Row fetchRow() throws SQLException {
+        if (_pageConsumed) {
+            _pageIndex++;
+            _rowsInPage = 0;
+            _pageConsumed = false;
+        }
+
+        Row row;
+        try {
+            row = _resultSet.one();
+        } catch (Exception e) {
+            throw new SQLException(e);
+        }
+
+        if (row != null) {
+            _rowsInPage++;
+            _pageConsumed = _resultSet.getAvailableWithoutFetching() == 0;
+
+            if (_sampler != null) {
+                _sampler.rowFetched(row, _rowsInPage, _pageConsumed);
+            }
+        }
+
+        return row;
+    }
+
+    /**
+     * Get an opaque token representing current position of this result set. It can be passed to
+     * {@link CassandraStatement#setCursor(String)}, or magic comment "cursor", to resume the same query
+     * later with one page fetch. This is a driver-specific extension.
+     *
+     * @return cursor token, or null if there's no more rows after current position
+     * @throws SQLException when the result set is closed
+     */
+    public String getCursor() throws SQLException {
+        validateState();
+
+        if (_origin == null || _resultSet == null) {
+            return null;
+        } else if (_rowsToSkip > 0) { // not even started
+            return _origin.encode();
+        }
+
+        List<ExecutionInfo> pages = _resultSet.getAllExecutionInfo();
+        byte[] pagingState;
+        int skip;
+        if (_pageConsumed) { // move to the start of next page
+            pagingState = pages.get(_pageIndex).getPagingStateUnsafe();
+            if (pagingState == null) {
+                return null;
+            }
+            skip = 0;
+        } else {
+            pagingState = _pageIndex == 0
+                    ? _origin.getPagingState() : pages.get(_pageIndex - 1).getPagingStateUnsafe();
+            skip = _rowsInPage;
+        }
+
+        return new DataStaxCursor(_origin.getFingerprint(), pagingState, skip).encode();
     }
 
     @SuppressWarnings("unchecked")
@@ -67,6 +201,22 @@ public class CassandraResultSet extends BaseCassandraResultSet {
                     && (CassandraDataType.TIME.getTypeName().equals(typeName)
                     || CassandraDataType.TIMESTAMP.getTypeName().equals(typeName))) {
                 rawValue = _currentRow.getString(columnIndex - 1);
+            } else if (clazz == ByteBuffer.class && CassandraDataType.BLOB.getTypeName().equals(typeName)) {
+                // read-only view so that the row stays intact
+                ByteBuffer bytes = _currentRow.getBytes(columnIndex - 1);
+                rawValue = bytes == null ? null : bytes.asReadOnlyBuffer();
+            } else if (DataStaxCollections.isCollection(typeName)
+                    && clazz.isAssignableFrom(getDataTypeMappings().javaTypeFor(typeName))) {
+                resolveCodecs();
+                rawValue = DataStaxCollections.read(_currentRow, columnIndex - 1, _protocolVersion, _codecRegistry);
+            } else if ((CassandraDataType.UDT.getTypeName().equals(typeName)
+                    || CassandraDataType.TUPLE.getTypeName().equals(typeName))
+                    && clazz.isAssignableFrom(Struct.class)) {
+                resolveCodecs();
+                ByteBuffer bytes = _currentRow.getBytesUnsafe(columnIndex - 1);
+                rawValue = bytes == null ? null : getStructType(columnIndex).decode(bytes, _protocolVersion);
+            } else if (DataStaxJavaTime.AVAILABLE && DataStaxJavaTime.isJavaTimeType(clazz)) {
+                rawValue = DataStaxJavaTime.getObject(_currentRow, columnIndex - 1, typeName, clazz);
             } else {
                 rawValue = _currentRow.getObject(columnIndex - 1);
             }
@@ -93,7 +243,20 @@ public class CassandraResultSet extends BaseCassandraResultSet {
 
     @Override
     protected boolean hasMore() {
-        return _resultSet != null && !_resultSet.isExhausted();
+        if (_remaining == 0L || _resultSet == null) {
+            return false;
+        }
+
+        // next page, if any, is fetched synchronously when checking if the result set is exhausted
+        if (_sampler != null && _pageConsumed
+                && _resultSet.getAvailableWithoutFetching() == 0 && !_resultSet.isFullyFetched()) {
+            long startTime = System.nanoTime();
+            boolean exhausted = _resultSet.isExhausted();
+            _sampler.pageFetched(_resultSet.getAvailableWithoutFetching(), System.nanoTime() - startTime);
+            return !exhausted;
+        }
+
+        return !_resultSet.isExhausted();
     }
 
     @Override
@@ -114,14 +277,12 @@ public class CassandraResultSet extends BaseCassandraResultSet {
     @Override
     protected boolean tryIterate() throws SQLException {
         boolean result = false;
-        if (_resultSet != null) {
-            try {
-                _currentRow = _resultSet.one();
-            } catch (Exception e) {
-                throw new SQLException(e);
-            }
-
+        if (_resultSet != null && _remaining != 0L) {
+            _currentRow = nextRow();
             result = _currentRow != null;
+            if (result && _remaining > 0L) {
+                _remaining--;
+            }
         }
 
         return result;
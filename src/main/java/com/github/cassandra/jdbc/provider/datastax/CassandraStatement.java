@@ -22,13 +22,16 @@ package com.github.cassandra.jdbc.provider.datastax;
 
 import com.datastax.driver.core.*;
 import com.github.cassandra.jdbc.*;
+import com.github.cassandra.jdbc.cql.CqlOffsetPlan;
 import com.google.common.base.Strings;
 import org.pmw.tinylog.Level;
 import org.pmw.tinylog.Logger;
 
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import static com.github.cassandra.jdbc.CassandraUtils.EMPTY_STRING;
 
@@ -40,8 +43,12 @@ import static com.github.cassandra.jdbc.CassandraUtils.EMPTY_STRING;
 public class CassandraStatement extends BaseCassandraPreparedStatement {
     private static final Level LOG_LEVEL = Logger.getLevel(CassandraStatement.class);
 
-    protected CassandraResultSet currentResultSet;
+    // rows to skip in one round trip when paging through the lean query
+    private static final int SKIP_FETCH_SIZE = 5000;
+
+    protected BaseCassandraResultSet currentResultSet;
     protected DataStaxSessionWrapper session;
+    protected String cursor;
 
     protected CassandraStatement(CassandraConnection conn,
                                  DataStaxSessionWrapper session) {
@@ -71,19 +78,82 @@ public class CassandraStatement extends BaseCassandraPreparedStatement {
         if (!Strings.isNullOrEmpty(scl)) {
             stmt.setSerialConsistencyLevel(ConsistencyLevel.valueOf(scl));
         }
-        stmt.setFetchSize(config.hasSetFetchSize() ? config.getFetchSize() : this.getFetchSize());
-
+        DataStaxFetchSizeAdvisor advisor = session.getFetchSizeAdvisor();
+        if (config.hasSetFetchSize()) {
+            stmt.setFetchSize(config.getFetchSize());
+        } else if (advisor != null && config.getStatementType().isQuery()) {
+            stmt.setFetchSize(advisor.advise(stmt, this.getFetchSize()));
+        } else {
+            stmt.setFetchSize(this.getFetchSize());
+        }
         if (config.tracingEnabled()) {
             stmt.enableTracing();
         }
 
         stmt.setReadTimeoutMillis(config.getReadTimeout());
 
+        // the driver only retries or speculatively executes idempotent statements, and queries are safe for sure
+        if (config.getStatementType().isQuery()) {
+            stmt.setIdempotent(true);
+        }
+        if (config.getSpeculativeExecution() != null) {
+            session.setSpeculativeExecution(stmt, config.getSpeculativeExecution());
+        }
+
         // TODO: for prepared statement, we'd better set routing key as hints for token-aware load-balancing policy
         // http://www.cyanicautomation.com/cassandra-routing-keys-datastax-c-driver/
     }
 
+    protected void configureStatement(Statement stmt, CassandraCqlStatement parsedStmt) throws SQLException {
+        configureStatement(stmt, parsedStmt.getConfiguration());
+        // updates are retried only when it's safe to do so, see CqlIdempotence
+        stmt.setIdempotent(parsedStmt.isIdempotent());
+        // no point to fetch more rows than what's going to be returned, but only for the statement issued on
+        // behalf of the user - internal ones, like the scan and lookups of a join, are not bound by max rows
+        if (maxRows > 0L && (stmt.getFetchSize() <= 0 || stmt.getFetchSize() > maxRows)) {
+            stmt.setFetchSize((int) Math.min(maxRows, Integer.MAX_VALUE));
+        }
+    }
+
+    protected Statement newStatement(String cql, Object... params) throws SQLException {
+        return params == null || params.length == 0 ? new SimpleStatement(cql) : new SimpleStatement(cql, params);
+    }
+
+    /**
+     * Get where the query is going to start - either the beginning, or the cursor set in magic comment or
+     * the statement.
+     *
+     * @param parsedStmt parsed statement
+     * @param cql        CQL to execute
+     * @param params     parameters, could be null
+     * @return position of the query, or null if it's not a query
+     * @throws SQLException when the cursor is not valid for the query
+     */
+    protected DataStaxCursor getOrigin(CassandraCqlStatement parsedStmt, String cql, Object... params)
+            throws SQLException {
+        CassandraCqlStmtConfiguration stmtConf = parsedStmt.getConfiguration();
+        if (!stmtConf.getStatementType().isQuery()) {
+            return null;
+        }
+
+        long fingerprint = DataStaxCursor.fingerprint(cql, params);
+        String token = stmtConf.getCursor() == null ? this.cursor : stmtConf.getCursor();
+        return Strings.isNullOrEmpty(token)
+                ? new DataStaxCursor(fingerprint, null, 0) : DataStaxCursor.decode(token, fingerprint);
+    }
+
+    protected void resume(Statement stmt, DataStaxCursor origin) {
+        if (origin != null && origin.getPagingState() != null) {
+            stmt.setPagingStateUnsafe(origin.getPagingState());
+        }
+    }
+
     protected void postStatementExecution(CassandraCqlStatement parsedStmt, ResultSet rs) {
+        postStatementExecution(parsedStmt, rs, -1L, null);
+    }
+
+    protected void postStatementExecution(CassandraCqlStatement parsedStmt, ResultSet rs,
+                                          long rowLimit, DataStaxCursor origin) {
         if (LOG_LEVEL.compareTo(Level.DEBUG) >= 0 && rs != null) {
             List<ExecutionInfo> list = rs.getAllExecutionInfo();
             int size = list == null ? 0 : list.size();
@@ -106,7 +176,129 @@ public class CassandraStatement extends BaseCassandraPreparedStatement {
             }
         }
 
-        replaceCurrentResultSet(parsedStmt, rs);
+        replaceCurrentResultSet(parsedStmt, rs, rowLimit, origin);
+    }
+
+    private String getSkipCql(CqlOffsetPlan plan) throws SQLException {
+        String cql = null;
+
+        // paging state of protocol v4 only has clustering, so it works for queries selecting different columns
+        if (plan.getTable() != null && session.getProtocolVersion().compareTo(ProtocolVersion.V4) >= 0) {
+            String keyspace = plan.getKeyspace() == null ? session.getLoggedKeyspace() : plan.getKeyspace();
+            KeyspaceMetadata ks = keyspace == null ? null : session.getKeyspaceMetaData(keyspace);
+            TableMetadata table = ks == null ? null : ks.getTable(Metadata.quote(plan.getTable()));
+            if (table != null) {
+                List<String> keyColumns = new ArrayList<String>();
+                for (ColumnMetadata c : table.getPrimaryKey()) {
+                    keyColumns.add(Metadata.quote(c.getName()));
+                }
+                cql = plan.getLeanCql(keyColumns);
+            }
+        }
+
+        return cql == null ? plan.getCql() : cql;
+    }
+
+    /**
+     * Execute query with offset. Rows before the offset are skipped by paging through a lean query, and then
+     * the query is resumed using paging state of the lean query. Offset is ignored when resuming from a cursor.
+     *
+     * @param parsedStmt parsed statement with offset
+     * @param params     parameters, could be null
+     * @return result set after the offset
+     * @throws SQLException when failed to execute the query
+     */
+    protected ResultSet executeWithOffset(CassandraCqlStatement parsedStmt, Object... params) throws SQLException {
+        CqlOffsetPlan plan = parsedStmt.getOffsetPlan().withMaxRows(maxRows);
+        DataStaxPagingStateCache pagingStates = session.getPagingStates();
+        // paging states are not reusable when values are bound
+        String shape = params == null || params.length == 0 ? plan.getCql() : null;
+
+        DataStaxCursor origin = getOrigin(parsedStmt, plan.getCql(), params);
+        boolean resuming = origin.getPagingState() != null || origin.getSkip() > 0;
+
+        long skipped = resuming ? plan.getOffset() : 0L;
+        byte[] pagingState = origin.getPagingState();
+        Map.Entry<Long, byte[]> nearest = shape == null || resuming
+                ? null : pagingStates.floor(shape, plan.getOffset());
+        if (nearest != null) {
+            skipped = nearest.getKey();
+            pagingState = nearest.getValue();
+        }
+
+        boolean exhausted = false;
+        if (skipped < plan.getOffset()) {
+            String skipCql = getSkipCql(plan);
+            Logger.debug("Skipping {} rows from offset {} using:\n{}", plan.getOffset() - skipped, skipped, skipCql);
+
+            while (!exhausted && skipped < plan.getOffset()) {
+                Statement stmt = newStatement(skipCql, params);
+                configureStatement(stmt, parsedStmt);
+                stmt.setFetchSize((int) Math.min(plan.getOffset() - skipped, SKIP_FETCH_SIZE));
+                if (pagingState != null) {
+                    stmt.setPagingStateUnsafe(pagingState);
+                }
+
+                ResultSet rs = session.execute(stmt);
+                skipped += rs.getAvailableWithoutFetching();
+                pagingState = rs.getExecutionInfo().getPagingStateUnsafe();
+                exhausted = pagingState == null;
+                if (!exhausted && shape != null) {
+                    pagingStates.put(shape, skipped, pagingState);
+                }
+            }
+        }
+
+        Statement stmt = newStatement(plan.getCql(), params);
+        configureStatement(stmt, parsedStmt);
+
+        ResultSet rs;
+        long limit = plan.getLimit();
+        if (exhausted) {
+            // nothing left after the offset, but we still need column definitions
+            stmt.setFetchSize(1);
+            rs = session.execute(stmt);
+            limit = 0L;
+        } else {
+            if (limit > 0L && (stmt.getFetchSize() <= 0 || limit < stmt.getFetchSize())) {
+                stmt.setFetchSize((int) Math.min(limit, Integer.MAX_VALUE));
+            }
+            if (pagingState != null) {
+                stmt.setPagingStateUnsafe(pagingState);
+            }
+            rs = session.execute(stmt);
+
+            // remember where the next page starts
+            byte[] nextState = rs.getExecutionInfo().getPagingStateUnsafe();
+            if (!resuming && shape != null && nextState != null
+                    && limit > 0L && rs.getAvailableWithoutFetching() == limit) {
+                pagingStates.put(shape, skipped + limit, nextState);
+            }
+
+            if (!resuming) {
+                origin = new DataStaxCursor(origin.getFingerprint(), pagingState, 0);
+            }
+        }
+
+        postStatementExecution(parsedStmt, rs, limit, origin);
+
+        return rs;
+    }
+
+    protected void executeJoin(CassandraCqlStatement parsedStmt) throws SQLException {
+        Logger.debug("Joining tables on client side:\n{}", parsedStmt.getJoinPlan());
+
+        DataStaxJoinExecutor executor = new DataStaxJoinExecutor(this, session, parsedStmt);
+        DataStaxJoinExecutor.JoinedRows rows = executor.execute();
+        try {
+            closeCurrentResultSet();
+            this.cqlStmt = parsedStmt;
+            currentResultSet = new CassandraJoinResultSet(this, parsedStmt, executor, rows,
+                    session.getCodecRegistry(), session.getProtocolVersion());
+        } catch (SQLException e) {
+            rows.close();
+            throw e;
+        }
     }
 
     protected ResultSet executeCql(String cql) throws SQLException {
@@ -117,9 +309,20 @@ public class CassandraStatement extends BaseCassandraPreparedStatement {
 
         Logger.debug("Statement Configuration:\n{}", stmtConf);
 
-        SimpleStatement ss = new SimpleStatement(parsedStmt.getCql());
+        if (parsedStmt.hasJoin()) {
+            executeJoin(parsedStmt);
+            return null;
+        } else if (parsedStmt.hasOffset()) {
+            return executeWithOffset(parsedStmt);
+        }
+
+        String limitedCql = parsedStmt.getCql(maxRows);
+        SimpleStatement ss = new SimpleStatement(limitedCql);
 
-        configureStatement(ss, stmtConf);
+        configureStatement(ss, parsedStmt);
+
+        DataStaxCursor origin = getOrigin(parsedStmt, limitedCql);
+        resume(ss, origin);
 
         ResultSet rs = null;
         if (stmtConf.noWait()) {
@@ -128,7 +331,7 @@ public class CassandraStatement extends BaseCassandraPreparedStatement {
             rs = session.execute(ss);
         }
 
-        postStatementExecution(parsedStmt, rs);
+        postStatementExecution(parsedStmt, rs, -1L, origin);
 
         return rs;
     }
@@ -179,9 +382,7 @@ public class CassandraStatement extends BaseCassandraPreparedStatement {
         return trace.toString();
     }
 
-    protected void replaceCurrentResultSet(CassandraCqlStatement parsedStmt, ResultSet resultSet) {
-        this.cqlStmt = parsedStmt;
-
+    private void closeCurrentResultSet() {
         if (currentResultSet != null) {
             try {
                 if (!currentResultSet.isClosed()) {
@@ -191,8 +392,39 @@ public class CassandraStatement extends BaseCassandraPreparedStatement {
                 Logger.warn(t, "Not able to close the old result set: {}", currentResultSet);
             }
         }
+    }
+
+    protected void replaceCurrentResultSet(CassandraCqlStatement parsedStmt, ResultSet resultSet) {
+        replaceCurrentResultSet(parsedStmt, resultSet, -1L, null);
+    }
+
+    protected void replaceCurrentResultSet(CassandraCqlStatement parsedStmt, ResultSet resultSet,
+                                           long rowLimit, DataStaxCursor origin) {
+        this.cqlStmt = parsedStmt;
+
+        closeCurrentResultSet();
+
+        currentResultSet = new CassandraResultSet(this, parsedStmt, resultSet, rowLimit, origin);
+    }
+
+    /**
+     * Get the cursor, which queries executed by this statement will resume from.
+     *
+     * @return cursor token, or null if not set
+     */
+    public String getCursor() {
+        return cursor;
+    }
 
-        currentResultSet = new CassandraResultSet(this, parsedStmt, resultSet);
+    /**
+     * Set the cursor obtained from {@link CassandraResultSet#getCursor()}, so that the same query executed by
+     * this statement will resume from where the cursor was created. Cursor set by magic comment takes precedence.
+     * This is a driver-specific extension.
+     *
+     * @param cursor cursor token, or null to start from the beginning
+     */
+    public void setCursor(String cursor) {
+        this.cursor = Strings.emptyToNull(cursor);
     }
 
     @Override
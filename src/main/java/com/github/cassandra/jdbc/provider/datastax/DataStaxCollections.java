@@ -0,0 +1,260 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.provider.datastax;
+
+import com.datastax.driver.core.*;
+import com.github.cassandra.jdbc.CassandraDataTypeConverters;
+import com.github.cassandra.jdbc.CassandraDataTypeMappings;
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Doubles;
+import com.google.common.primitives.Floats;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * This reads and binds list, set and map columns based on their full CQL type, for instance list&lt;int&gt;.
+ * Lists are decoded lazily from the serialized value - elements of primitive types end up in a primitive array,
+ * and the rest are decoded one by one on first access. Collections returned are all immutable.
+ *
+ * @author Zhichun Wu
+ */
+final class DataStaxCollections {
+    /**
+     * List decoding elements on demand.
+     */
+    static final class LazyList extends AbstractList<Object> implements RandomAccess {
+        private final ByteBuffer bytes;
+        private final int[] offsets;
+        private final int[] lengths;
+        private final TypeCodec<Object> codec;
+        private final ProtocolVersion protocolVersion;
+        private final Object[] values;
+
+        LazyList(ByteBuffer bytes, int[] offsets, int[] lengths,
+                 TypeCodec<Object> codec, ProtocolVersion protocolVersion) {
+            this.bytes = bytes;
+            this.offsets = offsets;
+            this.lengths = lengths;
+            this.codec = codec;
+            this.protocolVersion = protocolVersion;
+            this.values = new Object[offsets.length];
+        }
+
+        @Override
+        public Object get(int index) {
+            Object value = values[index];
+            if (value == null && lengths[index] >= 0) {
+                ByteBuffer element = bytes.duplicate();
+                element.position(offsets[index]);
+                element.limit(offsets[index] + lengths[index]);
+                value = values[index] = codec.deserialize(element, protocolVersion);
+            }
+
+            return value;
+        }
+
+        @Override
+        public int size() {
+            return offsets.length;
+        }
+    }
+
+    /**
+     * Check if the given type is a list, set or map.
+     *
+     * @param typeName CQL type name without type arguments
+     * @return true if it's a collection type
+     */
+    static boolean isCollection(String typeName) {
+        return DataType.Name.LIST.toString().equals(typeName) || DataType.Name.SET.toString().equals(typeName)
+                || DataType.Name.MAP.toString().equals(typeName);
+    }
+
+    /**
+     * Read collection column from the given row.
+     *
+     * @param row             current row
+     * @param index           zero-based column index
+     * @param protocolVersion protocol version
+     * @param registry        codec registry
+     * @return immutable list, set or map
+     */
+    static Object read(Row row, int index, ProtocolVersion protocolVersion, CodecRegistry registry) {
+        DataType type = row.getColumnDefinitions().getType(index);
+        Object value;
+        if (type.getName() == DataType.Name.LIST && protocolVersion.compareTo(ProtocolVersion.V3) >= 0) {
+            ByteBuffer bytes = row.getBytesUnsafe(index);
+            value = bytes == null ? null : decodeList(bytes, type.getTypeArguments().get(0), protocolVersion, registry);
+        } else {
+            value = row.getObject(index);
+            if (value instanceof Set) {
+                value = Collections.unmodifiableSet((Set) value);
+            } else if (value instanceof Map) {
+                value = Collections.unmodifiableMap((Map) value);
+            } else if (value instanceof List) {
+                value = Collections.unmodifiableList((List) value);
+            }
+        }
+
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    static List decodeList(ByteBuffer bytes, DataType elementType,
+                           ProtocolVersion protocolVersion, CodecRegistry registry) {
+        // in protocol V3 and above: [int n][int length][bytes]...
+        int position = bytes.position();
+        int size = bytes.remaining() == 0 ? 0 : bytes.getInt(position);
+        position += 4;
+
+        List list;
+        switch (elementType.getName()) {
+            case INT: {
+                int[] values = new int[size];
+                for (int i = 0; i < size; i++, position += 8) {
+                    values[i] = bytes.getInt(position + 4);
+                }
+                list = Ints.asList(values);
+                break;
+            }
+            case BIGINT:
+            case COUNTER: {
+                long[] values = new long[size];
+                for (int i = 0; i < size; i++, position += 12) {
+                    values[i] = bytes.getLong(position + 4);
+                }
+                list = Longs.asList(values);
+                break;
+            }
+            case DOUBLE: {
+                double[] values = new double[size];
+                for (int i = 0; i < size; i++, position += 12) {
+                    values[i] = bytes.getDouble(position + 4);
+                }
+                list = Doubles.asList(values);
+                break;
+            }
+            case FLOAT: {
+                float[] values = new float[size];
+                for (int i = 0; i < size; i++, position += 8) {
+                    values[i] = bytes.getFloat(position + 4);
+                }
+                list = Floats.asList(values);
+                break;
+            }
+            default: {
+                int[] offsets = new int[size];
+                int[] lengths = new int[size];
+                for (int i = 0; i < size; i++) {
+                    int length = bytes.getInt(position);
+                    position += 4;
+                    offsets[i] = position;
+                    lengths[i] = length;
+                    position += Math.max(length, 0);
+                }
+                list = new LazyList(bytes, offsets, lengths,
+                        (TypeCodec<Object>) registry.codecFor(elementType), protocolVersion);
+                break;
+            }
+        }
+
+        return Collections.unmodifiableList(list);
+    }
+
+    private static Function<Object, Object> converterFor(DataType elementType, Object sample,
+                                                         final CassandraDataTypeConverters converters) {
+        DataType.Name name = elementType.getName();
+        // leave nested collections, tuples and UDTs to the driver
+        final Class targetClass = elementType.isCollection() || name == DataType.Name.TUPLE
+                || name == DataType.Name.UDT || name == DataType.Name.CUSTOM
+                ? null : CassandraDataTypeMappings.instance.javaTypeFor(name.toString());
+        return targetClass == null || sample == null || targetClass.isInstance(sample) ? null
+                : new Function<Object, Object>() {
+            public Object apply(Object input) {
+                return converters.convert(input, targetClass, false);
+            }
+        };
+    }
+
+    private static Object firstOf(Iterable values) {
+        Iterator it = values.iterator();
+        return it.hasNext() ? it.next() : null;
+    }
+
+    /**
+     * Convert elements of the given collection when they don't match the element type of the column. Nothing is
+     * copied if all elements are in right type already.
+     *
+     * @param value      list, set or map
+     * @param type       full CQL type of the column
+     * @param converters data type converters
+     * @return collection to bind
+     */
+    @SuppressWarnings("unchecked")
+    static Object bind(Object value, DataType type, CassandraDataTypeConverters converters) {
+        List<DataType> args = type.getTypeArguments();
+        Object result = value;
+        if (type.getName() == DataType.Name.MAP && value instanceof Map && args.size() == 2) {
+            Map map = (Map) value;
+            Map.Entry first = map.isEmpty() ? null : (Map.Entry) map.entrySet().iterator().next();
+            Function<Object, Object> keyFunc = converterFor(args.get(0), first == null ? null : first.getKey(),
+                    converters);
+            Function<Object, Object> valueFunc = converterFor(args.get(1), first == null ? null : first.getValue(),
+                    converters);
+            if (keyFunc != null) {
+                Map converted = new LinkedHashMap(map.size() * 4 / 3 + 1);
+                for (Object e : map.entrySet()) {
+                    Map.Entry entry = (Map.Entry) e;
+                    converted.put(keyFunc.apply(entry.getKey()),
+                            valueFunc == null ? entry.getValue() : valueFunc.apply(entry.getValue()));
+                }
+                result = converted;
+            } else if (valueFunc != null) {
+                result = Maps.transformValues(map, valueFunc);
+            }
+        } else if (value instanceof Collection && args.size() == 1) {
+            Collection collection = (Collection) value;
+            Function<Object, Object> func = converterFor(args.get(0), firstOf(collection), converters);
+            if (func != null) {
+                if (type.getName() == DataType.Name.SET) {
+                    Set converted = new LinkedHashSet(collection.size() * 4 / 3 + 1);
+                    for (Object element : collection) {
+                        converted.add(func.apply(element));
+                    }
+                    result = converted;
+                } else {
+                    result = Lists.transform(collection instanceof List
+                            ? (List) collection : new ArrayList(collection), func);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private DataStaxCollections() {
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.provider.datastax;
+
+import com.github.cassandra.jdbc.CassandraErrors;
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * This is a position in the results of a query, which can be passed around as an opaque token and used
+ * to resume the query later. It consists of the paging state of a page and number of rows to skip in
+ * that page, along with a fingerprint of the query so that the token is only accepted by the same query.
+ *
+ * @author Zhichun Wu
+ */
+final class DataStaxCursor {
+    private static final byte VERSION = 1;
+    private static final BaseEncoding ENCODING = BaseEncoding.base64Url().omitPadding();
+    // magic comments, which may carry the cursor itself, should not affect the fingerprint
+    private static final Pattern MAGIC_COMMENT_PATTERN = Pattern.compile("(?m)^\\s*(//|--).*$");
+
+    static long fingerprint(String cql, Object... params) {
+        Hasher hasher = Hashing.murmur3_128().newHasher()
+                .putString(MAGIC_COMMENT_PATTERN.matcher(cql).replaceAll("").trim(), Charsets.UTF_8);
+        if (params != null) {
+            for (Object p : params) {
+                hasher.putInt(0);
+                if (p instanceof ByteBuffer) {
+                    ByteBuffer buffer = ((ByteBuffer) p).duplicate();
+                    while (buffer.hasRemaining()) {
+                        hasher.putByte(buffer.get());
+                    }
+                } else if (p != null) {
+                    hasher.putString(String.valueOf(p), Charsets.UTF_8);
+                }
+            }
+        }
+
+        return hasher.hash().asLong();
+    }
+
+    static DataStaxCursor decode(String token, long expectedFingerprint) throws SQLException {
+        DataStaxCursor cursor = null;
+
+        try {
+            byte[] bytes = ENCODING.decode(token.trim());
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length - 8);
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            if (in.readByte() == VERSION) {
+                long fingerprint = in.readLong();
+                int skip = in.readInt();
+                byte[] pagingState = new byte[in.readInt()];
+                in.readFully(pagingState);
+
+                if (in.readLong() == crc.getValue() && fingerprint == expectedFingerprint && skip >= 0) {
+                    cursor = new DataStaxCursor(fingerprint, pagingState.length == 0 ? null : pagingState, skip);
+                }
+            }
+        } catch (Exception e) {
+            throw CassandraErrors.invalidCursorException(token, e);
+        }
+
+        if (cursor == null) {
+            throw CassandraErrors.invalidCursorException(token, null);
+        }
+
+        return cursor;
+    }
+
+    private final long fingerprint;
+    private final byte[] pagingState;
+    private final int skip;
+
+    DataStaxCursor(long fingerprint, byte[] pagingState, int skip) {
+        this.fingerprint = fingerprint;
+        this.pagingState = pagingState;
+        this.skip = skip;
+    }
+
+    long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Get paging state for fetching the page.
+     *
+     * @return paging state, or null for the first page
+     */
+    byte[] getPagingState() {
+        return pagingState;
+    }
+
+    /**
+     * Get number of rows to skip in the page.
+     *
+     * @return rows to skip
+     */
+    int getSkip() {
+        return skip;
+    }
+
+    String encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(VERSION);
+            out.writeLong(fingerprint);
+            out.writeInt(skip);
+            out.writeInt(pagingState == null ? 0 : pagingState.length);
+            if (pagingState != null) {
+                out.write(pagingState);
+            }
+            out.flush();
+
+            CRC32 crc = new CRC32();
+            crc.update(bytes.toByteArray());
+            out.writeLong(crc.getValue());
+            out.flush();
+        } catch (IOException e) {
+            throw CassandraErrors.unexpectedException(e);
+        }
+
+        return ENCODING.encode(bytes.toByteArray());
+    }
+}
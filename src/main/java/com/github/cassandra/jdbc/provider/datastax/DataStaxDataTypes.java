@@ -23,7 +23,9 @@ package com.github.cassandra.jdbc.provider.datastax;
 import com.datastax.driver.core.utils.UUIDs;
 import com.github.cassandra.jdbc.CassandraDataTypeConverters;
 import com.github.cassandra.jdbc.CassandraDataTypeMappings;
+import com.github.cassandra.jdbc.CassandraDateTimes;
 import com.google.common.base.Function;
+import com.google.common.base.Supplier;
 import org.joda.time.LocalDate;
 import org.joda.time.LocalTime;
 
@@ -57,12 +59,13 @@ final class DataStaxDataTypes extends CassandraDataTypeMappings {
                         }
                     });
 
-            // Use DataStax UUIDs to generate time-based UUID
-            addMapping(java.util.UUID.class, UUIDs.timeBased(), new Function<Object, UUID>() {
-                public UUID apply(Object input) {
-                    return java.util.UUID.fromString(String.valueOf(input));
+            // Use DataStax UUIDs to generate time-based UUID as default value, which is deferred as it looks up
+            // local host and network interfaces on first call
+            addMapping(java.util.UUID.class, new Supplier<UUID>() {
+                public UUID get() {
+                    return UUIDs.timeBased();
                 }
-            });
+            }, null);
 
             // workaround for Date, Time and Timestamp
             addMapping(Date.class, new Date(System.currentTimeMillis()),
@@ -72,11 +75,12 @@ final class DataStaxDataTypes extends CassandraDataTypeMappings {
                             if (input instanceof com.datastax.driver.core.LocalDate) {
                                 com.datastax.driver.core.LocalDate localDate =
                                         (com.datastax.driver.core.LocalDate) input;
-                                date = new Date(new LocalDate(
-                                        localDate.getYear(), localDate.getMonth(),
-                                        localDate.getDay()).toDate().getTime());
+                                date = CassandraDateTimes.toSqlDate(
+                                        localDate.getYear(), localDate.getMonth(), localDate.getDay());
                             } else if (input instanceof LocalDate) {
-                                date = new Date(((LocalDate) input).toDate().getTime());
+                                LocalDate localDate = (LocalDate) input;
+                                date = CassandraDateTimes.toSqlDate(localDate.getYear(), localDate.getMonthOfYear(),
+                                        localDate.getDayOfMonth());
                             } else if (input instanceof java.util.Date) {
                                 date = new Date(((java.util.Date) input).getTime());
                             } else if (input instanceof Number) {
@@ -93,7 +97,7 @@ final class DataStaxDataTypes extends CassandraDataTypeMappings {
                         public Time apply(Object input) {
                             Time time;
                             if (input instanceof LocalTime) {
-                                time = new Time(((LocalTime) input).toDateTimeToday().getMillis());
+                                time = CassandraDateTimes.toSqlTime(((LocalTime) input).getMillisOfDay());
                             } else if (input instanceof java.util.Date) {
                                 time = new Time(((java.util.Date) input).getTime());
                             } else if (input instanceof Number) {
@@ -104,14 +108,23 @@ final class DataStaxDataTypes extends CassandraDataTypeMappings {
                                 if (possibllyNanoSeconds % 1000000 == 0) {
                                     possibllyNanoSeconds = possibllyNanoSeconds / 1000000;
                                 }
-                                time = new Time(
-                                        LocalTime.fromMillisOfDay(possibllyNanoSeconds).toDateTimeToday().getMillis());
+                                time = CassandraDateTimes.toSqlTime(possibllyNanoSeconds);
                             } else {
-                                time = new Time(LocalTime.parse(String.valueOf(input)).toDateTimeToday().getMillis());
+                                time = CassandraDateTimes.toSqlTime(
+                                        CassandraDateTimes.parseTime(String.valueOf(input)) / 1000000L);
                             }
                             return time;
                         }
                     });
+
+            if (DataStaxJavaTime.AVAILABLE) {
+                for (Object[] converter : DataStaxJavaTime.getConverters()) {
+                    addMapping((Class) converter[0], converter[1], (Function) converter[2]);
+                }
+                for (Object[] conversion : DataStaxJavaTime.getConversions()) {
+                    addConversion((Class) conversion[0], (Class) conversion[1], (Function) conversion[2]);
+                }
+            }
         }
     };
 }
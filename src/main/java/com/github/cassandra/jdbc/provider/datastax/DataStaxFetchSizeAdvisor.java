@@ -0,0 +1,225 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.provider.datastax;
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Statement;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This learns fetch size for each statement shape(the query string) from observed bytes per row and page
+ * latency. Fetch size is chosen so that a page is close to the configured byte budget, and it shrinks when
+ * fetching a page takes more than a quarter of read timeout.
+ *
+ * @author Zhichun Wu
+ */
+final class DataStaxFetchSizeAdvisor {
+    static final String METRIC_FETCH_SIZE = "adaptive-fetch-size";
+    static final String METRIC_SHAPES = "adaptive-fetch-size-shapes";
+    static final String METRIC_BYTES_PER_ROW = "adaptive-fetch-size-bytes-per-row";
+
+    static final int MIN_FETCH_SIZE = 10;
+    static final int MAX_FETCH_SIZE = 10000;
+
+    // number of rows to sample in each page for estimating row size
+    static final int SAMPLE_ROWS = 16;
+    // weight of the latest observation
+    private static final double SMOOTHING = 0.3D;
+
+    private static final class Stats {
+        private double bytesPerRow = Double.NaN;
+        private int latencyCap = MAX_FETCH_SIZE;
+
+        synchronized void addBytes(double bytes) {
+            bytesPerRow = Double.isNaN(bytesPerRow) ? bytes : bytesPerRow + SMOOTHING * (bytes - bytesPerRow);
+        }
+
+        synchronized void addPage(int rows, long latencyMillis, long targetMillis) {
+            if (latencyMillis > targetMillis) {
+                latencyCap = (int) Math.max(MIN_FETCH_SIZE, rows * targetMillis / latencyMillis);
+            } else if (rows >= latencyCap) {
+                // fast enough, let the byte budget decide again
+                latencyCap = (int) Math.min(MAX_FETCH_SIZE, latencyCap * 2L);
+            }
+        }
+
+        synchronized int getFetchSize(long pageBytes) {
+            if (Double.isNaN(bytesPerRow)) {
+                return -1;
+            }
+
+            long size = Math.round(pageBytes / Math.max(1D, bytesPerRow));
+            return (int) Math.max(MIN_FETCH_SIZE, Math.min(latencyCap, size));
+        }
+
+        synchronized double getBytesPerRow() {
+            return bytesPerRow;
+        }
+    }
+
+    /**
+     * This collects statistics of one result set.
+     */
+    final class Sampler {
+        private final String shape;
+        private int sampledRows;
+        private long sampledBytes;
+
+        private Sampler(String shape) {
+            this.shape = shape;
+        }
+
+        void pageFetched(int rows, long latencyNanos) {
+            getStats(shape).addPage(rows, TimeUnit.NANOSECONDS.toMillis(latencyNanos), targetLatency);
+        }
+
+        /**
+         * Sample size of the given row if it's one of the first few rows in current page.
+         *
+         * @param row       row fetched
+         * @param rowInPage position of the row in current page, starting from 1
+         * @param lastRow   whether it's the last row of current page
+         */
+        void rowFetched(Row row, int rowInPage, boolean lastRow) {
+            if (rowInPage > SAMPLE_ROWS) {
+                return;
+            }
+
+            int columns = row.getColumnDefinitions().size();
+            for (int i = 0; i < columns; i++) {
+                ByteBuffer bytes = row.getBytesUnsafe(i);
+                // 4 bytes for length of each value
+                sampledBytes += 4 + (bytes == null ? 0 : bytes.remaining());
+            }
+            sampledRows++;
+
+            if (rowInPage == SAMPLE_ROWS || lastRow) {
+                getStats(shape).addBytes((double) sampledBytes / sampledRows);
+                sampledRows = 0;
+                sampledBytes = 0L;
+            }
+        }
+    }
+
+    static String shapeOf(Statement stmt) {
+        String shape = null;
+        if (stmt instanceof RegularStatement) {
+            shape = ((RegularStatement) stmt).getQueryString();
+        } else if (stmt instanceof BoundStatement) {
+            shape = ((BoundStatement) stmt).preparedStatement().getQueryString();
+        }
+
+        return shape;
+    }
+
+    private final Cache<String, Stats> shapes;
+    private final long pageBytes;
+    private final long targetLatency;
+    private final Histogram fetchSizes;
+
+    DataStaxFetchSizeAdvisor(int maxShapes, long pageBytes, long readTimeoutMillis, DataStaxSessionMetrics metrics) {
+        this.shapes = CacheBuilder.newBuilder().maximumSize(Math.max(1, maxShapes)).build();
+        this.pageBytes = Math.max(1L, pageBytes);
+        this.targetLatency = readTimeoutMillis > 0L ? readTimeoutMillis / 4 : Long.MAX_VALUE;
+        this.fetchSizes = metrics.register(METRIC_FETCH_SIZE, new Histogram(new ExponentiallyDecayingReservoir()));
+
+        metrics.register(METRIC_SHAPES, new Gauge<Long>() {
+            public Long getValue() {
+                return shapes.size();
+            }
+        });
+        metrics.register(METRIC_BYTES_PER_ROW, new Gauge<Double>() {
+            public Double getValue() {
+                double total = 0D;
+                int count = 0;
+                for (Stats stats : shapes.asMap().values()) {
+                    double bytes = stats.getBytesPerRow();
+                    if (!Double.isNaN(bytes)) {
+                        total += bytes;
+                        count++;
+                    }
+                }
+                return count == 0 ? 0D : total / count;
+            }
+        });
+    }
+
+    private Stats getStats(String shape) {
+        try {
+            return shapes.get(shape, new Callable<Stats>() {
+                public Stats call() throws Exception {
+                    return new Stats();
+                }
+            });
+        } catch (ExecutionException e) {
+            // never happens
+            return new Stats();
+        }
+    }
+
+    /**
+     * Get fetch size learned for given statement.
+     *
+     * @param stmt             statement to execute
+     * @param defaultFetchSize fetch size to use when nothing has been learned
+     * @return fetch size
+     */
+    int advise(Statement stmt, int defaultFetchSize) {
+        String shape = shapeOf(stmt);
+        Stats stats = shape == null ? null : shapes.getIfPresent(shape);
+        int fetchSize = stats == null ? -1 : stats.getFetchSize(pageBytes);
+        if (fetchSize > 0) {
+            fetchSizes.update(fetchSize);
+        }
+
+        return fetchSize > 0 ? fetchSize : defaultFetchSize;
+    }
+
+    /**
+     * Record a page fetched by executing the given statement.
+     *
+     * @param stmt         statement executed
+     * @param rows         number of rows in the page
+     * @param latencyNanos time spent on fetching the page
+     */
+    void pageFetched(Statement stmt, int rows, long latencyNanos) {
+        String shape = shapeOf(stmt);
+        if (shape != null) {
+            getStats(shape).addPage(rows, TimeUnit.NANOSECONDS.toMillis(latencyNanos), targetLatency);
+        }
+    }
+
+    Sampler newSampler(Statement stmt) {
+        String shape = shapeOf(stmt);
+        return shape == null ? null : new Sampler(shape);
+    }
+}
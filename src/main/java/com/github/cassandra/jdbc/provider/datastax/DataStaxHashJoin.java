@@ -0,0 +1,367 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.provider.datastax;
+
+import org.pmw.tinylog.Logger;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * This is a grace hash join working on serialized rows. Rows from the build side are kept in memory until
+ * the memory limit is reached, in which case both sides are partitioned into temporary files by hash of
+ * the join key, and then joined partition by partition - recursively when a partition is still too large.
+ *
+ * @author Zhichun Wu
+ */
+final class DataStaxHashJoin implements DataStaxJoinExecutor.JoinedRows {
+    private static final int PARTITIONS = 16;
+    private static final int MAX_DEPTH = 3;
+
+    // rough estimation of memory used by a row and its values
+    private static final int ROW_OVERHEAD = 64;
+    private static final int VALUE_OVERHEAD = 48;
+
+    private static final class SpillFile {
+        private final File file;
+        private DataOutputStream out;
+        private int rows;
+
+        SpillFile() throws IOException {
+            file = File.createTempFile("cassandra-join-", ".tmp");
+            file.deleteOnExit();
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        }
+
+        void write(ByteBuffer[] row) throws IOException {
+            out.writeInt(row.length);
+            for (ByteBuffer value : row) {
+                if (value == null) {
+                    out.writeInt(-1);
+                } else {
+                    ByteBuffer v = value.duplicate();
+                    out.writeInt(v.remaining());
+                    if (v.hasArray()) {
+                        out.write(v.array(), v.arrayOffset() + v.position(), v.remaining());
+                    } else {
+                        byte[] bytes = new byte[v.remaining()];
+                        v.get(bytes);
+                        out.write(bytes);
+                    }
+                }
+            }
+            rows++;
+        }
+
+        void finish() throws IOException {
+            if (out != null) {
+                out.close();
+                out = null;
+            }
+        }
+
+        void delete() {
+            try {
+                finish();
+            } catch (IOException e) {
+                Logger.debug(e, "Failed to close {}", file);
+            }
+
+            if (file.exists() && !file.delete()) {
+                Logger.warn("Failed to delete temporary file: {}", file);
+            }
+        }
+    }
+
+    private static final class SpillFileSource implements DataStaxJoinExecutor.RowSource {
+        private final SpillFile spill;
+        private DataInputStream in;
+        private int remaining;
+
+        SpillFileSource(SpillFile spill) throws IOException {
+            this.spill = spill;
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(spill.file)));
+            this.remaining = spill.rows;
+        }
+
+        public ByteBuffer[] next() throws SQLException {
+            if (remaining <= 0) {
+                return null;
+            }
+
+            try {
+                ByteBuffer[] row = new ByteBuffer[in.readInt()];
+                for (int i = 0; i < row.length; i++) {
+                    int len = in.readInt();
+                    if (len >= 0) {
+                        byte[] bytes = new byte[len];
+                        in.readFully(bytes);
+                        row[i] = ByteBuffer.wrap(bytes);
+                    }
+                }
+                remaining--;
+                return row;
+            } catch (IOException e) {
+                throw new SQLException(e);
+            }
+        }
+
+        void close() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                Logger.debug(e, "Failed to close {}", spill.file);
+            }
+            spill.delete();
+        }
+    }
+
+    private static final class Partition {
+        private final SpillFile build;
+        private final SpillFile probe;
+        private final int depth;
+
+        Partition(int depth) throws IOException {
+            this.build = new SpillFile();
+            this.probe = new SpillFile();
+            this.depth = depth;
+        }
+
+        void delete() {
+            build.delete();
+            probe.delete();
+        }
+    }
+
+    static int partitionOf(ByteBuffer key, int depth) {
+        // mix the hash with a different seed on each level, so that a large partition can be split again
+        int h = key.hashCode() ^ (depth * 0x9E3779B9);
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+
+        return (h & Integer.MAX_VALUE) % PARTITIONS;
+    }
+
+    static long sizeOf(ByteBuffer[] row) {
+        long size = ROW_OVERHEAD;
+        for (ByteBuffer value : row) {
+            size += value == null ? 8 : VALUE_OVERHEAD + value.remaining();
+        }
+
+        return size;
+    }
+
+    private static ByteBuffer[] copyOf(ByteBuffer[] row) {
+        ByteBuffer[] copy = new ByteBuffer[row.length];
+        for (int i = 0; i < row.length; i++) {
+            ByteBuffer value = row[i];
+            if (value != null) {
+                ByteBuffer v = ByteBuffer.allocate(value.remaining());
+                v.put(value.duplicate()).flip();
+                copy[i] = v;
+            }
+        }
+
+        return copy;
+    }
+
+    private final DataStaxJoinExecutor.RowSource buildSource;
+    private final DataStaxJoinExecutor.RowSource probeSource;
+    private final int buildKey;
+    private final int probeKey;
+    private final boolean buildOnLeft;
+    private final long memoryLimit;
+
+    private final LinkedList<Partition> pendingPartitions = new LinkedList<Partition>();
+    private final List<SpillFileSource> openSources = new ArrayList<SpillFileSource>(2);
+
+    private boolean started;
+    private Map<ByteBuffer, List<ByteBuffer[]>> table;
+    private DataStaxJoinExecutor.RowSource currentProbe;
+    private ByteBuffer[] probeRow;
+    private List<ByteBuffer[]> matches;
+    private int matchIndex;
+
+    DataStaxHashJoin(DataStaxJoinExecutor.RowSource buildSource, int buildKey,
+                     DataStaxJoinExecutor.RowSource probeSource, int probeKey,
+                     boolean buildOnLeft, long memoryLimit) {
+        this.buildSource = buildSource;
+        this.buildKey = buildKey;
+        this.probeSource = probeSource;
+        this.probeKey = probeKey;
+        this.buildOnLeft = buildOnLeft;
+        this.memoryLimit = memoryLimit;
+    }
+
+    private boolean load(DataStaxJoinExecutor.RowSource build, DataStaxJoinExecutor.RowSource probe, int depth)
+            throws IOException, SQLException {
+        table = new HashMap<ByteBuffer, List<ByteBuffer[]>>();
+        long used = 0L;
+        boolean warned = false;
+
+        ByteBuffer[] row;
+        while ((row = build.next()) != null) {
+            if (row[buildKey] == null) { // null never matches
+                continue;
+            }
+
+            row = copyOf(row);
+            List<ByteBuffer[]> rows = table.get(row[buildKey]);
+            if (rows == null) {
+                rows = new ArrayList<ByteBuffer[]>(2);
+                table.put(row[buildKey], rows);
+                used += ROW_OVERHEAD;
+            }
+            rows.add(row);
+            used += sizeOf(row);
+
+            if (used > memoryLimit) {
+                if (depth < MAX_DEPTH) {
+                    spill(build, probe, depth);
+                    return false;
+                } else if (!warned) {
+                    warned = true;
+                    Logger.warn("Partition is still too large after {} rounds of partitioning, keep it in memory",
+                            depth);
+                }
+            }
+        }
+
+        currentProbe = probe;
+        return true;
+    }
+
+    private void spill(DataStaxJoinExecutor.RowSource build, DataStaxJoinExecutor.RowSource probe, int depth)
+            throws IOException, SQLException {
+        Logger.debug("Spilling rows of hash join into {} partitions (level {})", PARTITIONS, depth);
+
+        Partition[] partitions = new Partition[PARTITIONS];
+        try {
+            for (int i = 0; i < PARTITIONS; i++) {
+                partitions[i] = new Partition(depth + 1);
+            }
+
+            for (Map.Entry<ByteBuffer, List<ByteBuffer[]>> entry : table.entrySet()) {
+                SpillFile file = partitions[partitionOf(entry.getKey(), depth)].build;
+                for (ByteBuffer[] r : entry.getValue()) {
+                    file.write(r);
+                }
+            }
+            table = null;
+
+            ByteBuffer[] row;
+            while ((row = build.next()) != null) {
+                if (row[buildKey] != null) {
+                    partitions[partitionOf(row[buildKey], depth)].build.write(row);
+                }
+            }
+
+            while ((row = probe.next()) != null) {
+                if (row[probeKey] != null) {
+                    partitions[partitionOf(row[probeKey], depth)].probe.write(row);
+                }
+            }
+
+            for (Partition p : partitions) {
+                p.build.finish();
+                p.probe.finish();
+                if (p.build.rows == 0 || p.probe.rows == 0) {
+                    p.delete();
+                } else {
+                    pendingPartitions.addFirst(p);
+                }
+            }
+        } catch (IOException e) {
+            for (Partition p : partitions) {
+                if (p != null) {
+                    p.delete();
+                }
+            }
+            throw e;
+        }
+    }
+
+    private void closeOpenSources() {
+        for (SpillFileSource source : openSources) {
+            source.close();
+        }
+        openSources.clear();
+    }
+
+    public ByteBuffer[][] next() throws SQLException {
+        try {
+            while (true) {
+                if (matches != null && matchIndex < matches.size()) {
+                    ByteBuffer[] buildRow = matches.get(matchIndex++);
+                    return buildOnLeft ? new ByteBuffer[][]{buildRow, probeRow}
+                            : new ByteBuffer[][]{probeRow, buildRow};
+                }
+                matches = null;
+
+                if (currentProbe != null) {
+                    ByteBuffer[] row = currentProbe.next();
+                    if (row == null) {
+                        currentProbe = null;
+                        table = null;
+                        probeRow = null;
+                        closeOpenSources();
+                    } else if (row[probeKey] != null) {
+                        probeRow = row;
+                        matches = table.get(row[probeKey]);
+                        matchIndex = 0;
+                    }
+                } else if (!started) {
+                    started = true;
+                    load(buildSource, probeSource, 0);
+                } else if (!pendingPartitions.isEmpty()) {
+                    Partition p = pendingPartitions.removeFirst();
+                    SpillFileSource build = new SpillFileSource(p.build);
+                    SpillFileSource probe = new SpillFileSource(p.probe);
+                    openSources.add(build);
+                    openSources.add(probe);
+                    if (!load(build, probe, p.depth)) {
+                        closeOpenSources();
+                    }
+                } else {
+                    return null;
+                }
+            }
+        } catch (IOException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    public void close() {
+        table = null;
+        matches = null;
+        currentProbe = null;
+        closeOpenSources();
+        for (Partition p : pendingPartitions) {
+            p.delete();
+        }
+        pendingPartitions.clear();
+    }
+}
@@ -0,0 +1,266 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.provider.datastax;
+
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.extras.codecs.jdk8.InstantCodec;
+import com.datastax.driver.extras.codecs.jdk8.LocalDateCodec;
+import com.datastax.driver.extras.codecs.jdk8.LocalTimeCodec;
+import com.github.cassandra.jdbc.CassandraDataType;
+import com.github.cassandra.jdbc.CassandraDateTimes;
+import com.google.common.base.Function;
+import org.pmw.tinylog.Logger;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This adds java.time support on Java 8 and above. Timestamp, date and time columns are read and written
+ * through codecs of java.time types directly, without going through java.sql or Joda types. This is the only
+ * class referring to java.time, so make sure {@link #AVAILABLE} is checked before touching it.
+ *
+ * @author Zhichun Wu
+ */
+final class DataStaxJavaTime {
+    private static final String JAVA_TIME_PACKAGE = "java.time.";
+
+    static final boolean AVAILABLE;
+
+    static {
+        boolean available = false;
+        try {
+            Class.forName(JAVA_TIME_PACKAGE + "Instant");
+            available = true;
+        } catch (Throwable t) {
+            Logger.debug("java.time is not available");
+        }
+        AVAILABLE = available;
+    }
+
+    static boolean isJavaTimeType(Class clazz) {
+        return clazz != null && clazz.getName().startsWith(JAVA_TIME_PACKAGE);
+    }
+
+    static void registerCodecs(CodecRegistry registry) {
+        registry.register(InstantCodec.instance, LocalDateCodec.instance, LocalTimeCodec.instance);
+    }
+
+    /**
+     * Read column value as the given java.time type, using the codec directly when possible.
+     *
+     * @param row      current row
+     * @param index    zero-based column index
+     * @param typeName CQL type of the column
+     * @param clazz    java.time type
+     * @return column value, which could be in a different type when the codec is not applicable
+     */
+    static Object getObject(Row row, int index, String typeName, Class clazz) {
+        Object value;
+        if (CassandraDataType.TIMESTAMP.getTypeName().equals(typeName)) {
+            Instant instant = row.get(index, Instant.class);
+            if (instant == null || clazz == Instant.class) {
+                value = instant;
+            } else if (clazz == OffsetDateTime.class) {
+                value = OffsetDateTime.ofInstant(instant, ZoneOffset.UTC);
+            } else if (clazz == LocalDateTime.class) {
+                value = LocalDateTime.ofInstant(instant, ZoneOffset.UTC);
+            } else {
+                value = instant;
+            }
+        } else if (clazz == LocalDate.class && CassandraDataType.DATE.getTypeName().equals(typeName)) {
+            value = row.get(index, LocalDate.class);
+        } else if (clazz == LocalTime.class && CassandraDataType.TIME.getTypeName().equals(typeName)) {
+            value = row.get(index, LocalTime.class);
+        } else {
+            value = row.getObject(index);
+        }
+
+        return value;
+    }
+
+    /**
+     * Get parameter value to bind for the given java.time object.
+     *
+     * @param value    java.time object
+     * @param typeName CQL type of the parameter
+     * @return value to bind, or null if it's not applicable to the type
+     */
+    static Object toParameter(Object value, String typeName) {
+        Object result = null;
+        if (CassandraDataType.TIMESTAMP.getTypeName().equals(typeName)) {
+            if (value instanceof Instant) {
+                result = value;
+            } else if (value instanceof OffsetDateTime) {
+                result = ((OffsetDateTime) value).toInstant();
+            } else if (value instanceof ZonedDateTime) {
+                result = ((ZonedDateTime) value).toInstant();
+            } else if (value instanceof LocalDateTime) {
+                // same as timestamp literal without time zone
+                result = ((LocalDateTime) value).toInstant(ZoneOffset.UTC);
+            }
+        } else if (CassandraDataType.DATE.getTypeName().equals(typeName)) {
+            result = value instanceof LocalDate ? value : null;
+        } else if (CassandraDataType.TIME.getTypeName().equals(typeName)) {
+            result = value instanceof LocalTime ? value : null;
+        }
+
+        return result;
+    }
+
+    /**
+     * Get converters for java.time types, each of which is an array of target type, default value and
+     * converter function.
+     *
+     * @return list of converters
+     */
+    static List<Object[]> getConverters() {
+        List<Object[]> list = new ArrayList<Object[]>();
+
+        list.add(new Object[]{Instant.class, Instant.EPOCH, new Function<Object, Instant>() {
+            public Instant apply(Object input) {
+                Instant result;
+                if (input instanceof java.util.Date) {
+                    result = Instant.ofEpochMilli(((java.util.Date) input).getTime());
+                } else if (input instanceof Number) {
+                    result = Instant.ofEpochMilli(((Number) input).longValue());
+                } else if (input instanceof OffsetDateTime) {
+                    result = ((OffsetDateTime) input).toInstant();
+                } else if (input instanceof ZonedDateTime) {
+                    result = ((ZonedDateTime) input).toInstant();
+                } else {
+                    result = Instant.ofEpochMilli(CassandraDateTimes.parseTimestamp(String.valueOf(input)));
+                }
+                return result;
+            }
+        }});
+        list.add(new Object[]{OffsetDateTime.class, OffsetDateTime.ofInstant(Instant.EPOCH, ZoneOffset.UTC),
+                new Function<Object, OffsetDateTime>() {
+                    public OffsetDateTime apply(Object input) {
+                        OffsetDateTime result;
+                        if (input instanceof Instant) {
+                            result = OffsetDateTime.ofInstant((Instant) input, ZoneOffset.UTC);
+                        } else if (input instanceof java.util.Date) {
+                            result = OffsetDateTime.ofInstant(
+                                    Instant.ofEpochMilli(((java.util.Date) input).getTime()), ZoneOffset.UTC);
+                        } else if (input instanceof ZonedDateTime) {
+                            result = ((ZonedDateTime) input).toOffsetDateTime();
+                        } else {
+                            result = OffsetDateTime.parse(String.valueOf(input));
+                        }
+                        return result;
+                    }
+                }});
+        list.add(new Object[]{LocalDateTime.class, LocalDateTime.ofInstant(Instant.EPOCH, ZoneOffset.UTC),
+                new Function<Object, LocalDateTime>() {
+                    public LocalDateTime apply(Object input) {
+                        LocalDateTime result;
+                        if (input instanceof Instant) {
+                            result = LocalDateTime.ofInstant((Instant) input, ZoneOffset.UTC);
+                        } else if (input instanceof Timestamp) {
+                            result = LocalDateTime.ofInstant(((Timestamp) input).toInstant(), ZoneOffset.UTC);
+                        } else if (input instanceof java.util.Date) {
+                            result = LocalDateTime.ofInstant(
+                                    Instant.ofEpochMilli(((java.util.Date) input).getTime()), ZoneOffset.UTC);
+                        } else {
+                            result = LocalDateTime.parse(String.valueOf(input));
+                        }
+                        return result;
+                    }
+                }});
+        list.add(new Object[]{LocalDate.class, LocalDate.ofEpochDay(0L), new Function<Object, LocalDate>() {
+            public LocalDate apply(Object input) {
+                LocalDate result;
+                if (input instanceof com.datastax.driver.core.LocalDate) {
+                    result = LocalDate.ofEpochDay(((com.datastax.driver.core.LocalDate) input).getDaysSinceEpoch());
+                } else if (input instanceof Date) {
+                    result = ((Date) input).toLocalDate();
+                } else if (input instanceof java.util.Date) {
+                    result = Instant.ofEpochMilli(((java.util.Date) input).getTime())
+                            .atZone(ZoneId.systemDefault()).toLocalDate();
+                } else {
+                    result = LocalDate.ofEpochDay(CassandraDateTimes.parseDate(String.valueOf(input)));
+                }
+                return result;
+            }
+        }});
+        list.add(new Object[]{LocalTime.class, LocalTime.MIDNIGHT, new Function<Object, LocalTime>() {
+            public LocalTime apply(Object input) {
+                LocalTime result;
+                if (input instanceof Number) { // nanoseconds since midnight
+                    result = LocalTime.ofNanoOfDay(((Number) input).longValue());
+                } else if (input instanceof Time) {
+                    result = ((Time) input).toLocalTime();
+                } else {
+                    result = LocalTime.ofNanoOfDay(CassandraDateTimes.parseTime(String.valueOf(input)));
+                }
+                return result;
+            }
+        }});
+
+        return list;
+    }
+
+    /**
+     * Get direct conversions from java.time types to java.sql types, each of which is an array of source type,
+     * target type and converter function.
+     *
+     * @return list of conversions
+     */
+    static List<Object[]> getConversions() {
+        List<Object[]> list = new ArrayList<Object[]>();
+
+        list.add(new Object[]{Instant.class, Timestamp.class, new Function<Object, Timestamp>() {
+            public Timestamp apply(Object input) {
+                return Timestamp.from((Instant) input);
+            }
+        }});
+        list.add(new Object[]{OffsetDateTime.class, Timestamp.class, new Function<Object, Timestamp>() {
+            public Timestamp apply(Object input) {
+                return Timestamp.from(((OffsetDateTime) input).toInstant());
+            }
+        }});
+        list.add(new Object[]{ZonedDateTime.class, Timestamp.class, new Function<Object, Timestamp>() {
+            public Timestamp apply(Object input) {
+                return Timestamp.from(((ZonedDateTime) input).toInstant());
+            }
+        }});
+        list.add(new Object[]{LocalDate.class, Date.class, new Function<Object, Date>() {
+            public Date apply(Object input) {
+                return Date.valueOf((LocalDate) input);
+            }
+        }});
+        list.add(new Object[]{LocalTime.class, Time.class, new Function<Object, Time>() {
+            public Time apply(Object input) {
+                return Time.valueOf((LocalTime) input);
+            }
+        }});
+
+        return list;
+    }
+
+    private DataStaxJavaTime() {
+    }
+}
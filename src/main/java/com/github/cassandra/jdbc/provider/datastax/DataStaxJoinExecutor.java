@@ -0,0 +1,405 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.provider.datastax;
+
+import com.datastax.driver.core.*;
+import com.github.cassandra.jdbc.CassandraConfiguration;
+import com.github.cassandra.jdbc.CassandraCqlStatement;
+import com.github.cassandra.jdbc.CassandraCqlStmtConfiguration;
+import com.github.cassandra.jdbc.CassandraErrors;
+import com.github.cassandra.jdbc.cql.CqlJoinPlan;
+import org.pmw.tinylog.Logger;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.*;
+
+import static com.github.cassandra.jdbc.cql.CqlJoinPlan.LEFT;
+import static com.github.cassandra.jdbc.cql.CqlJoinPlan.RIGHT;
+
+/**
+ * This executes a {@link CqlJoinPlan} on client side. When the join column of one table is its partition key,
+ * rows from the other table are joined by concurrent point lookups(index nested loop join). Otherwise both tables
+ * are scanned and joined by {@link DataStaxHashJoin}.
+ *
+ * @author Zhichun Wu
+ */
+final class DataStaxJoinExecutor {
+    // do not hold too many outer rows in one batch even all of them have been looked up before
+    private static final int ROWS_PER_LOOKUP = 16;
+
+    interface RowSource {
+        /**
+         * Get next row.
+         *
+         * @return serialized column values, or null if there's no more rows
+         * @throws SQLException when failed to read the row
+         */
+        ByteBuffer[] next() throws SQLException;
+    }
+
+    interface JoinedRows {
+        /**
+         * Get next joined row.
+         *
+         * @return serialized column values of left and right table, or null if there's no more rows
+         * @throws SQLException when failed to join
+         */
+        ByteBuffer[][] next() throws SQLException;
+
+        void close();
+    }
+
+    static final class SideColumns {
+        final String keyspace;
+        final String table;
+        final String[] names;
+        final DataType[] types;
+
+        SideColumns(String keyspace, String table, String[] names, DataType[] types) {
+            this.keyspace = keyspace;
+            this.table = table;
+            this.names = names;
+            this.types = types;
+        }
+
+        int indexOf(String name) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+    }
+
+    private static final class ResultSetSource implements RowSource {
+        private final ResultSet resultSet;
+        private final int columns;
+
+        ResultSetSource(ResultSet resultSet) {
+            this.resultSet = resultSet;
+            this.columns = resultSet.getColumnDefinitions().size();
+        }
+
+        public ByteBuffer[] next() throws SQLException {
+            Row row;
+            try {
+                row = resultSet.one();
+            } catch (Exception e) {
+                throw new SQLException(e);
+            }
+
+            return row == null ? null : toArray(row, columns);
+        }
+    }
+
+    private final class LookupJoin implements JoinedRows {
+        private final RowSource outerRows;
+        private final int outerKey;
+        private final int innerSide;
+        private final PreparedStatement lookup;
+
+        // recently looked up rows, bounded by memory limit
+        private final LinkedHashMap<ByteBuffer, List<ByteBuffer[]>> cache
+                = new LinkedHashMap<ByteBuffer, List<ByteBuffer[]>>(16, 0.75f, true);
+        private final Map<ByteBuffer, Long> cachedSizes = new HashMap<ByteBuffer, Long>();
+        private long cacheSize;
+
+        private final LinkedList<ByteBuffer[][]> joinedRows = new LinkedList<ByteBuffer[][]>();
+        private boolean exhausted;
+
+        LookupJoin(RowSource outerRows, int outerKey, int innerSide, PreparedStatement lookup) {
+            this.outerRows = outerRows;
+            this.outerKey = outerKey;
+            this.innerSide = innerSide;
+            this.lookup = lookup;
+        }
+
+        private void cache(ByteBuffer key, List<ByteBuffer[]> rows) {
+            long size = 0L;
+            for (ByteBuffer[] row : rows) {
+                size += DataStaxHashJoin.sizeOf(row);
+            }
+
+            if (size <= memoryLimit) {
+                cache.put(key, rows);
+                cachedSizes.put(key, size);
+                cacheSize += size;
+
+                Iterator<ByteBuffer> it = cache.keySet().iterator();
+                while (cacheSize > memoryLimit && it.hasNext()) {
+                    cacheSize -= cachedSizes.remove(it.next());
+                    it.remove();
+                }
+            }
+        }
+
+        private boolean joinNextBatch() throws SQLException {
+            List<ByteBuffer[]> batch = new ArrayList<ByteBuffer[]>(concurrency);
+            Map<ByteBuffer, List<ByteBuffer[]>> found = new HashMap<ByteBuffer, List<ByteBuffer[]>>();
+            Map<ByteBuffer, ResultSetFuture> futures = new LinkedHashMap<ByteBuffer, ResultSetFuture>();
+
+            // fire lookups for distinct keys concurrently
+            ByteBuffer[] row;
+            while (futures.size() < concurrency && batch.size() < concurrency * ROWS_PER_LOOKUP
+                    && (row = outerRows.next()) != null) {
+                ByteBuffer key = row[outerKey];
+                if (key == null) { // null never matches
+                    continue;
+                }
+
+                batch.add(row);
+                if (!found.containsKey(key) && !futures.containsKey(key)) {
+                    List<ByteBuffer[]> cached = cache.get(key);
+                    if (cached != null) {
+                        found.put(key, cached);
+                    } else {
+                        BoundStatement stmt = lookup.bind();
+                        stmt.setBytesUnsafe(0, key);
+                        statement.configureStatement(stmt, config);
+                        futures.put(key, session.executeAsync(stmt));
+                    }
+                }
+            }
+
+            if (batch.isEmpty()) {
+                return false;
+            }
+
+            for (Map.Entry<ByteBuffer, ResultSetFuture> entry : futures.entrySet()) {
+                ResultSet rs;
+                try {
+                    rs = entry.getValue().getUninterruptibly();
+                } catch (Exception e) {
+                    throw new SQLException(e);
+                }
+
+                int size = rs.getColumnDefinitions().size();
+                List<ByteBuffer[]> rows = new ArrayList<ByteBuffer[]>(rs.getAvailableWithoutFetching());
+                for (Row r : rs) {
+                    rows.add(toArray(r, size));
+                }
+
+                ByteBuffer key = ByteBuffer.wrap(toBytes(entry.getKey()));
+                found.put(key, rows);
+                cache(key, rows);
+            }
+
+            for (ByteBuffer[] outerRow : batch) {
+                for (ByteBuffer[] innerRow : found.get(outerRow[outerKey])) {
+                    joinedRows.add(innerSide == LEFT
+                            ? new ByteBuffer[][]{innerRow, outerRow} : new ByteBuffer[][]{outerRow, innerRow});
+                }
+            }
+
+            return true;
+        }
+
+        public ByteBuffer[][] next() throws SQLException {
+            while (joinedRows.isEmpty() && !exhausted) {
+                exhausted = !joinNextBatch();
+            }
+
+            return joinedRows.isEmpty() ? null : joinedRows.removeFirst();
+        }
+
+        public void close() {
+            exhausted = true;
+            joinedRows.clear();
+            cache.clear();
+            cachedSizes.clear();
+        }
+    }
+
+    private static byte[] toBytes(ByteBuffer value) {
+        ByteBuffer v = value.duplicate();
+        byte[] bytes = new byte[v.remaining()];
+        v.get(bytes);
+        return bytes;
+    }
+
+    private static ByteBuffer[] toArray(Row row, int columns) {
+        ByteBuffer[] values = new ByteBuffer[columns];
+        for (int i = 0; i < columns; i++) {
+            values[i] = row.getBytesUnsafe(i);
+        }
+
+        return values;
+    }
+
+    private static SideColumns toSideColumns(ColumnDefinitions definitions) {
+        int size = definitions.size();
+        String[] names = new String[size];
+        DataType[] types = new DataType[size];
+        for (int i = 0; i < size; i++) {
+            names[i] = definitions.getName(i);
+            types[i] = definitions.getType(i);
+        }
+
+        return new SideColumns(size > 0 ? definitions.getKeyspace(0) : null,
+                size > 0 ? definitions.getTable(0) : null, names, types);
+    }
+
+    private static boolean isPartitionKey(TableMetadata table, CqlJoinPlan.Side side) {
+        List<ColumnMetadata> partitionKey = table.getPartitionKey();
+        return partitionKey.size() == 1 && partitionKey.get(0).getName().equals(side.getJoinColumn());
+    }
+
+    private final CassandraStatement statement;
+    private final DataStaxSessionWrapper session;
+    private final CqlJoinPlan plan;
+    private final CassandraCqlStmtConfiguration config;
+    private final long memoryLimit;
+    private final int concurrency;
+
+    private final SideColumns[] columns = new SideColumns[2];
+
+    DataStaxJoinExecutor(CassandraStatement statement, DataStaxSessionWrapper session,
+                         CassandraCqlStatement parsedStmt) {
+        this.statement = statement;
+        this.session = session;
+        this.plan = parsedStmt.getJoinPlan();
+        this.config = parsedStmt.getConfiguration();
+
+        CassandraConfiguration connConfig = config.getConnectionConfig();
+        this.memoryLimit = Math.max(1, connConfig.getJoinMemoryLimit()) * 1024L * 1024L;
+        this.concurrency = Math.max(1, connConfig.getJoinConcurrency());
+    }
+
+    private TableMetadata getTable(CqlJoinPlan.Side side) throws SQLException {
+        String keyspace = side.getKeyspace() == null ? session.getLoggedKeyspace() : side.getKeyspace();
+        KeyspaceMetadata ks = keyspace == null ? null : session.getKeyspaceMetaData(keyspace);
+
+        return ks == null ? null : ks.getTable(Metadata.quote(side.getTable()));
+    }
+
+    private SimpleStatement newScanStatement(CqlJoinPlan.Side side) throws SQLException {
+        String cql = side.getCql();
+        Logger.debug("Scanning table for join:\n{}", cql);
+
+        SimpleStatement stmt = new SimpleStatement(cql);
+        statement.configureStatement(stmt, config);
+
+        return stmt;
+    }
+
+    private int joinColumnIndex(int side) throws SQLException {
+        int index = columns[side].indexOf(plan.getSide(side).getJoinColumn());
+        if (index < 0) {
+            throw CassandraErrors.invalidQueryException(plan.getSide(side).getCql());
+        }
+
+        return index;
+    }
+
+    private JoinedRows hashJoin() throws SQLException {
+        ResultSetFuture leftFuture = session.executeAsync(newScanStatement(plan.getLeft()));
+        ResultSetFuture rightFuture = session.executeAsync(newScanStatement(plan.getRight()));
+        ResultSet left = leftFuture.getUninterruptibly();
+        ResultSet right = rightFuture.getUninterruptibly();
+
+        columns[LEFT] = toSideColumns(left.getColumnDefinitions());
+        columns[RIGHT] = toSideColumns(right.getColumnDefinitions());
+
+        // build hash table from the smaller side, which is usually the dimension table on the right
+        int build = RIGHT;
+        if (left.isFullyFetched() && (!right.isFullyFetched()
+                || left.getAvailableWithoutFetching() < right.getAvailableWithoutFetching())) {
+            build = LEFT;
+        }
+        int probe = 1 - build;
+
+        Logger.debug("Hash join with {} table as build side", build == LEFT ? "left" : "right");
+
+        return new DataStaxHashJoin(new ResultSetSource(build == LEFT ? left : right), joinColumnIndex(build),
+                new ResultSetSource(probe == LEFT ? left : right), joinColumnIndex(probe),
+                build == LEFT, memoryLimit);
+    }
+
+    private JoinedRows lookupJoin(TableMetadata table, int inner) throws SQLException {
+        CqlJoinPlan.Side innerSide = plan.getSide(inner);
+
+        List<String> names = innerSide.getColumns();
+        if (names == null) {
+            names = new ArrayList<String>();
+            for (ColumnMetadata c : table.getColumns()) {
+                names.add(c.getName());
+            }
+        }
+
+        DataType[] types = new DataType[names.size()];
+        for (int i = 0; i < types.length; i++) {
+            ColumnMetadata c = table.getColumn(Metadata.quote(names.get(i)));
+            if (c == null) {
+                throw CassandraErrors.invalidQueryException(innerSide.getCql());
+            }
+            types[i] = c.getType();
+        }
+
+        columns[inner] = new SideColumns(table.getKeyspace().getName(), table.getName(),
+                names.toArray(new String[names.size()]), types);
+
+        List<String> primaryKey = new ArrayList<String>();
+        for (ColumnMetadata c : table.getPrimaryKey()) {
+            primaryKey.add(c.getName());
+        }
+
+        String lookupCql = innerSide.getLookupCql(names, primaryKey);
+        Logger.debug("Index nested loop join with lookup:\n{}", lookupCql);
+        PreparedStatement lookup = session.prepare(lookupCql);
+
+        int outer = 1 - inner;
+        ResultSet outerRows = session.execute(newScanStatement(plan.getSide(outer)));
+        columns[outer] = toSideColumns(outerRows.getColumnDefinitions());
+
+        return new LookupJoin(new ResultSetSource(outerRows), joinColumnIndex(outer), inner, lookup);
+    }
+
+    SideColumns getColumns(int side) {
+        return columns[side];
+    }
+
+    CqlJoinPlan getPlan() {
+        return plan;
+    }
+
+    JoinedRows execute() throws SQLException {
+        TableMetadata[] tables = new TableMetadata[]{getTable(plan.getLeft()), getTable(plan.getRight())};
+
+        // lookup is only possible when join column of the inner table is its partition key
+        int inner = -1;
+        if (tables[LEFT] != null && tables[RIGHT] != null) {
+            ColumnMetadata leftColumn = tables[LEFT].getColumn(Metadata.quote(plan.getLeft().getJoinColumn()));
+            ColumnMetadata rightColumn = tables[RIGHT].getColumn(Metadata.quote(plan.getRight().getJoinColumn()));
+            if (leftColumn != null && rightColumn != null && leftColumn.getType().equals(rightColumn.getType())) {
+                if (isPartitionKey(tables[RIGHT], plan.getRight())) {
+                    inner = RIGHT;
+                } else if (isPartitionKey(tables[LEFT], plan.getLeft())) {
+                    inner = LEFT;
+                }
+            }
+        }
+
+        return inner < 0 ? hashJoin() : lookupJoin(tables[inner], inner);
+    }
+}
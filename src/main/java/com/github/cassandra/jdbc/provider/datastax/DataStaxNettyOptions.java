@@ -0,0 +1,200 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.provider.datastax;
+
+import com.datastax.driver.core.NettyOptions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
+import org.pmw.tinylog.Logger;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * This decides which transport and how many I/O threads each cluster uses. Native epoll transport is used when
+ * requested and netty-transport-native-epoll is available(it's loaded by reflection as it's not a dependency of
+ * ours). When shared, all clusters in the JVM run on one event loop group and one timer, which are released
+ * after the last cluster using them is closed.
+ *
+ * @author Zhichun Wu
+ */
+final class DataStaxNettyOptions extends NettyOptions {
+    private static final String EPOLL = "io.netty.channel.epoll.Epoll";
+    private static final String EPOLL_EVENT_LOOP_GROUP = "io.netty.channel.epoll.EpollEventLoopGroup";
+    private static final String EPOLL_SOCKET_CHANNEL = "io.netty.channel.epoll.EpollSocketChannel";
+
+    static final boolean EPOLL_AVAILABLE = isEpollAvailable();
+
+    private static final Object lock = new Object();
+    // guarded by lock
+    private static EventLoopGroup sharedGroup;
+    private static boolean sharedEpoll;
+    private static int sharedIoThreads;
+    private static int groupReferences = 0;
+    private static Timer sharedTimer;
+    private static int timerReferences = 0;
+
+    private static boolean isEpollAvailable() {
+        boolean available = false;
+        try {
+            available = (Boolean) Class.forName(EPOLL).getMethod("isAvailable").invoke(null);
+        } catch (Throwable t) {
+            // not on the classpath, or not on Linux
+        }
+
+        return available;
+    }
+
+    private static EventLoopGroup newEventLoopGroup(boolean epoll, int threads, ThreadFactory threadFactory) {
+        if (epoll) {
+            try {
+                return (EventLoopGroup) Class.forName(EPOLL_EVENT_LOOP_GROUP)
+                        .getConstructor(int.class, ThreadFactory.class).newInstance(threads, threadFactory);
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to create epoll event loop group", e);
+            }
+        }
+
+        return new NioEventLoopGroup(threads, threadFactory);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<? extends SocketChannel> getChannelClass(boolean epoll) {
+        if (epoll) {
+            try {
+                return (Class<? extends SocketChannel>) Class.forName(EPOLL_SOCKET_CHANNEL);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("Failed to load epoll socket channel", e);
+            }
+        }
+
+        return NioSocketChannel.class;
+    }
+
+    private final int ioThreads; // 0 means netty default, which is twice the number of cores
+    private final boolean shared;
+
+    // transport of the event loop group in use, which could be shared and created with other settings
+    private volatile boolean epoll;
+
+    DataStaxNettyOptions(boolean epoll, int ioThreads, boolean shared) {
+        if (epoll && !EPOLL_AVAILABLE) {
+            Logger.warn("Native epoll transport is not available, fall back to NIO");
+        }
+
+        this.epoll = epoll && EPOLL_AVAILABLE;
+        this.ioThreads = Math.max(0, ioThreads);
+        this.shared = shared;
+    }
+
+    @Override
+    public EventLoopGroup eventLoopGroup(ThreadFactory threadFactory) {
+        if (!shared) {
+            return newEventLoopGroup(epoll, ioThreads, threadFactory);
+        }
+
+        synchronized (lock) {
+            if (groupReferences++ == 0) {
+                sharedEpoll = epoll;
+                sharedIoThreads = ioThreads;
+                sharedGroup = newEventLoopGroup(sharedEpoll, ioThreads, new ThreadFactoryBuilder()
+                        .setNameFormat("cassandra-jdbc-" + (sharedEpoll ? "epoll" : "nio") + "-worker-%d").build());
+            } else {
+                if (sharedEpoll != epoll) {
+                    Logger.warn("Use {} transport as the shared event loop group does",
+                            sharedEpoll ? "epoll" : "NIO");
+                }
+                if (sharedIoThreads != ioThreads) {
+                    Logger.warn("Ignore ioThreads={} as the shared event loop group was created with ioThreads={}",
+                            ioThreads, sharedIoThreads);
+                }
+            }
+
+            epoll = sharedEpoll;
+            return sharedGroup;
+        }
+    }
+
+    @Override
+    public Class<? extends SocketChannel> channelClass() {
+        return getChannelClass(epoll);
+    }
+
+    @Override
+    public void onClusterClose(EventLoopGroup eventLoopGroup) {
+        if (!shared) {
+            super.onClusterClose(eventLoopGroup);
+            return;
+        }
+
+        EventLoopGroup group = null;
+        synchronized (lock) {
+            if (eventLoopGroup == sharedGroup && --groupReferences == 0) {
+                group = sharedGroup;
+                sharedGroup = null;
+            }
+        }
+
+        if (group != null) {
+            super.onClusterClose(group);
+        }
+    }
+
+    @Override
+    public Timer timer(ThreadFactory threadFactory) {
+        if (!shared) {
+            return super.timer(threadFactory);
+        }
+
+        synchronized (lock) {
+            if (timerReferences++ == 0) {
+                sharedTimer = new HashedWheelTimer(
+                        new ThreadFactoryBuilder().setNameFormat("cassandra-jdbc-timeouter-%d").build());
+            }
+
+            return sharedTimer;
+        }
+    }
+
+    @Override
+    public void onClusterClose(Timer timer) {
+        if (!shared) {
+            super.onClusterClose(timer);
+            return;
+        }
+
+        Timer t = null;
+        synchronized (lock) {
+            if (timer == sharedTimer && --timerReferences == 0) {
+                t = sharedTimer;
+                sharedTimer = null;
+            }
+        }
+
+        if (t != null) {
+            super.onClusterClose(t);
+        }
+    }
+}
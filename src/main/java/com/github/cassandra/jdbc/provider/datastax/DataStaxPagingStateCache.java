@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.provider.datastax;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.AbstractMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This caches paging states by offset for each query, so that navigating to a deep page can resume from
+ * the nearest known position instead of starting over.
+ *
+ * @author Zhichun Wu
+ */
+final class DataStaxPagingStateCache {
+    private static final int MAX_STATES_PER_QUERY = 64;
+    private static final int EXPIRE_MINUTES = 10;
+
+    private static final class PagingStates extends LinkedHashMap<Long, byte[]> {
+        PagingStates() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+            return size() > MAX_STATES_PER_QUERY;
+        }
+    }
+
+    private final Cache<String, PagingStates> cache;
+
+    DataStaxPagingStateCache(int maxQueries) {
+        cache = CacheBuilder.newBuilder().maximumSize(Math.max(1, maxQueries))
+                .expireAfterAccess(EXPIRE_MINUTES, TimeUnit.MINUTES).build();
+    }
+
+    /**
+     * Find the paging state nearest to given offset.
+     *
+     * @param query  query without limit and offset
+     * @param offset target offset
+     * @return offset and paging state, or null if nothing found
+     */
+    Map.Entry<Long, byte[]> floor(String query, long offset) {
+        PagingStates states = cache.getIfPresent(query);
+        if (states == null) {
+            return null;
+        }
+
+        synchronized (states) {
+            Long nearest = null;
+            for (Long key : states.keySet()) {
+                if (key <= offset && (nearest == null || key > nearest)) {
+                    nearest = key;
+                }
+            }
+
+            return nearest == null ? null
+                    : new AbstractMap.SimpleImmutableEntry<Long, byte[]>(nearest, states.get(nearest));
+        }
+    }
+
+    void put(String query, long offset, byte[] pagingState) {
+        PagingStates states;
+        try {
+            states = cache.get(query, new Callable<PagingStates>() {
+                public PagingStates call() throws Exception {
+                    return new PagingStates();
+                }
+            });
+        } catch (ExecutionException e) {
+            return;
+        }
+
+        synchronized (states) {
+            states.put(offset, pagingState);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.provider.datastax;
+
+import com.datastax.driver.core.*;
+import com.datastax.driver.core.exceptions.CodecNotFoundException;
+
+/**
+ * This binds parameters of a prepared statement by serializing them directly into their wire form. Codecs are
+ * resolved once from the CQL types of bind variables, so that binding a row does not need to look up codecs in
+ * {@link CodecRegistry} by parameter value again and again.
+ *
+ * @author Zhichun Wu
+ */
+final class DataStaxParameterBinder {
+    private final PreparedStatement statement;
+    private final ProtocolVersion protocolVersion;
+    private final ColumnDefinitions variables;
+    private final CodecRegistry registry;
+    private final TypeCodec[] codecs;
+    // raw java type of each codec, or null if the codec is for a parameterized type like list<int>
+    private final Class[] javaTypes;
+
+    DataStaxParameterBinder(PreparedStatement statement, ProtocolVersion protocolVersion) {
+        this.statement = statement;
+        this.protocolVersion = protocolVersion;
+
+        this.variables = statement.getVariables();
+        this.registry = statement.getCodecRegistry();
+        this.codecs = new TypeCodec[variables.size()];
+        this.javaTypes = new Class[codecs.length];
+        for (int i = 0; i < codecs.length; i++) {
+            try {
+                TypeCodec codec = registry.codecFor(variables.getType(i));
+                codecs[i] = codec;
+                if (codec.getJavaType().getType() instanceof Class) {
+                    javaTypes[i] = codec.getJavaType().getRawType();
+                }
+            } catch (CodecNotFoundException e) {
+                // leave it to the driver
+            }
+        }
+    }
+
+    private boolean accepts(int index, Object value) {
+        TypeCodec codec = codecs[index];
+        Class javaType = javaTypes[index];
+
+        return codec != null && (javaType != null ? javaType.isInstance(value) : codec.accepts(value));
+    }
+
+    PreparedStatement getStatement() {
+        return statement;
+    }
+
+    /**
+     * Create a bound statement using given parameters. Parameters which are not accepted by codecs of the bind
+     * variables, java.time objects or list of java.sql.Date for example, are bound through codec registry as
+     * the driver does - the codec is resolved by both the CQL type and the value.
+     *
+     * @param params parameters
+     * @return bound statement
+     */
+    @SuppressWarnings("unchecked")
+    BoundStatement bind(Object... params) {
+        if (params == null || params.length > codecs.length) {
+            // let the driver complain
+            return statement.bind(params);
+        }
+
+        BoundStatement boundStatement = statement.bind();
+        for (int i = 0; i < params.length; i++) {
+            Object value = params[i];
+            if (value == null) {
+                boundStatement.setToNull(i);
+            } else if (accepts(i, value)) {
+                boundStatement.setBytesUnsafe(i, codecs[i].serialize(value, protocolVersion));
+            } else {
+                boundStatement.setBytesUnsafe(i,
+                        registry.codecFor(variables.getType(i), value).serialize(value, protocolVersion));
+            }
+        }
+
+        return boundStatement;
+    }
+}
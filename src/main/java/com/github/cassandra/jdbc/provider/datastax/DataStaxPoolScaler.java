@@ -0,0 +1,244 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.provider.datastax;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.datastax.driver.core.*;
+import com.datastax.driver.core.policies.LoadBalancingPolicy;
+import org.pmw.tinylog.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This grows and shrinks connections per host based on in-flight requests. Pools of all hosts in same distance
+ * share the same size in DataStax Java driver, so the busiest pool decides for others. To avoid flapping, a pool
+ * grows only after staying above the high watermark for a few samples, and shrinks after staying below the low
+ * watermark for much longer.
+ *
+ * @author Zhichun Wu
+ */
+final class DataStaxPoolScaler implements Runnable {
+    static final String METRIC_CONNECTIONS = "adaptive-pool-connections-";
+    static final String METRIC_PRESSURE = "adaptive-pool-pressure-";
+    static final String METRIC_RESIZES = "adaptive-pool-resizes";
+
+    // in-flight requests against capacity of a pool
+    static final double HIGH_WATERMARK = 0.75D;
+    static final double LOW_WATERMARK = 0.25D;
+    // consecutive samples needed before resizing
+    static final int GROW_AFTER = 2;
+    static final int SHRINK_AFTER = 10;
+
+    private static final long SAMPLE_INTERVAL = 1000L; // in milliseconds
+    private static final HostDistance[] DISTANCES = new HostDistance[]{HostDistance.LOCAL, HostDistance.REMOTE};
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "cassandra-jdbc-pool-scaler");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final Cluster cluster;
+    private final PoolingOptions poolingOptions;
+    private final int minConnections;
+    private final int maxConnections;
+    // indexed by position in DISTANCES
+    private final int[] highSamples = new int[DISTANCES.length];
+    private final int[] lowSamples = new int[DISTANCES.length];
+    private final double[] pressures = new double[DISTANCES.length];
+    private final Counter resizes;
+
+    private volatile ScheduledFuture<?> future;
+
+    /**
+     * Start scaling pools of given cluster, until the cluster is closed.
+     *
+     * @param cluster        initialized cluster
+     * @param minConnections minimum connections per host
+     * @param maxConnections maximum connections per host
+     * @return the scaler
+     */
+    static DataStaxPoolScaler start(Cluster cluster, int minConnections, int maxConnections) {
+        DataStaxPoolScaler scaler = new DataStaxPoolScaler(cluster,
+                cluster.getConfiguration().getPoolingOptions(), minConnections, maxConnections);
+        scaler.future = scheduler.scheduleWithFixedDelay(scaler, SAMPLE_INTERVAL, SAMPLE_INTERVAL,
+                TimeUnit.MILLISECONDS);
+
+        Logger.info("Scaling connections per host of cluster@{} between {} and {}",
+                cluster.hashCode(), scaler.minConnections, scaler.maxConnections);
+
+        return scaler;
+    }
+
+    DataStaxPoolScaler(Cluster cluster, PoolingOptions poolingOptions, int minConnections, int maxConnections) {
+        this.cluster = cluster;
+        this.poolingOptions = poolingOptions;
+        this.minConnections = Math.max(1, minConnections);
+        this.maxConnections = Math.max(this.minConnections, maxConnections);
+
+        for (HostDistance distance : DISTANCES) {
+            poolingOptions.setConnectionsPerHost(distance, this.minConnections, this.minConnections);
+        }
+
+        Metrics metrics = cluster == null ? null : cluster.getMetrics();
+        MetricRegistry registry = metrics == null ? null : metrics.getRegistry();
+        this.resizes = registry == null ? new Counter() : registry.counter(METRIC_RESIZES);
+        if (registry != null) {
+            for (int i = 0; i < DISTANCES.length; i++) {
+                final HostDistance distance = DISTANCES[i];
+                final int index = i;
+                String suffix = distance.name().toLowerCase();
+                try {
+                    registry.register(METRIC_CONNECTIONS + suffix, new Gauge<Integer>() {
+                        public Integer getValue() {
+                            return getConnections(distance);
+                        }
+                    });
+                    registry.register(METRIC_PRESSURE + suffix, new Gauge<Double>() {
+                        public Double getValue() {
+                            return pressures[index];
+                        }
+                    });
+                } catch (IllegalArgumentException e) {
+                    Logger.debug(e, "Metrics of adaptive pool have been registered");
+                }
+            }
+        }
+    }
+
+    private static int indexOf(HostDistance distance) {
+        return distance == HostDistance.LOCAL ? 0 : 1;
+    }
+
+    /**
+     * Calculate pressure of pools in given distance, which is the highest ratio of in-flight requests against
+     * capacity(connections multiplied by max requests per connection) among all pools.
+     *
+     * @param states          states of sessions
+     * @param policy          load balancing policy for telling distance of hosts
+     * @param distance        distance of hosts
+     * @param requestsPerConn max requests per connection
+     * @return pressure, 0 if there's no connection at all
+     */
+    static double getPressure(Collection<Session.State> states, LoadBalancingPolicy policy,
+                              HostDistance distance, int requestsPerConn) {
+        double pressure = 0D;
+
+        for (Session.State state : states) {
+            for (Host host : state.getConnectedHosts()) {
+                int connections = state.getOpenConnections(host);
+                if (connections > 0 && policy.distance(host) == distance) {
+                    pressure = Math.max(pressure,
+                            state.getInFlightQueries(host) / ((double) connections * requestsPerConn));
+                }
+            }
+        }
+
+        return pressure;
+    }
+
+    int getConnections(HostDistance distance) {
+        return poolingOptions.getCoreConnectionsPerHost(distance);
+    }
+
+    /**
+     * Resize pools in given distance according to the pressure.
+     *
+     * @param distance distance of hosts
+     * @param pressure pressure of the pools
+     * @return connections per host after resizing
+     */
+    int resize(HostDistance distance, double pressure) {
+        int index = indexOf(distance);
+        pressures[index] = pressure;
+
+        if (pressure > HIGH_WATERMARK) {
+            highSamples[index]++;
+            lowSamples[index] = 0;
+        } else if (pressure < LOW_WATERMARK) {
+            lowSamples[index]++;
+            highSamples[index] = 0;
+        } else {
+            highSamples[index] = 0;
+            lowSamples[index] = 0;
+        }
+
+        int current = getConnections(distance);
+        int target = current;
+        if (highSamples[index] >= GROW_AFTER) {
+            // grow faster than shrinking, as being short of connections hurts more
+            target = Math.min(maxConnections, Math.max(current + 1, (int) Math.ceil(current * pressure
+                    / HIGH_WATERMARK)));
+        } else if (lowSamples[index] >= SHRINK_AFTER) {
+            target = Math.max(minConnections, current - 1);
+        }
+
+        if (target != current) {
+            highSamples[index] = 0;
+            lowSamples[index] = 0;
+            poolingOptions.setConnectionsPerHost(distance, target, target);
+            resizes.inc();
+
+            Logger.info("Resized {} pools of cluster@{} from {} to {} connections per host (pressure: {})",
+                    distance, cluster == null ? 0 : cluster.hashCode(), current, target,
+                    String.format("%.2f", pressure));
+        }
+
+        return target;
+    }
+
+    public void run() {
+        if (cluster.isClosed()) {
+            if (future != null) {
+                future.cancel(false);
+            }
+            return;
+        }
+
+        try {
+            List<Session.State> states = new ArrayList<Session.State>();
+            for (Session session : DataStaxClusterHelper.getSessions(cluster)) {
+                states.add(session.getState());
+            }
+
+            LoadBalancingPolicy policy = cluster.getConfiguration().getPolicies().getLoadBalancingPolicy();
+            for (HostDistance distance : DISTANCES) {
+                resize(distance, getPressure(states, policy, distance,
+                        poolingOptions.getMaxRequestsPerConnection(distance)));
+            }
+        } catch (Throwable t) {
+            // never stop scaling because of a bad sample
+            Logger.debug(t, "Failed to resize pools of cluster@{}", cluster.hashCode());
+        }
+    }
+}
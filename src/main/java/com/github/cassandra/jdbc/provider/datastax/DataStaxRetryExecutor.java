@@ -0,0 +1,179 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.provider.datastax;
+
+import com.codahale.metrics.Counter;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.exceptions.*;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This decides whether, and when, to retry a statement failed after the driver's own retry policy gave up. Only
+ * idempotent statements failed for transient reasons(timeout, unavailable replicas, overloaded or bootstrapping
+ * coordinator) are retried, with exponential backoff and random jitter so that clients do not retry all at once.
+ * Retries are also limited by a budget earned by requests, which stops retries from multiplying the load on a
+ * cluster that is already struggling. Both the budget and retry metrics belong to one session, i.e. a keyspace.
+ *
+ * @author Zhichun Wu
+ */
+final class DataStaxRetryExecutor {
+    static final String METRIC_PREFIX = "retries-";
+    static final String METRIC_REJECTED = METRIC_PREFIX + "rejected";
+
+    // a retry costs one whole token, while each request earns retryBudget percent of a token
+    private static final long TOKEN = 100L;
+    // retries allowed in a row when there's no failure for a while
+    static final long MAX_BURST = 10L;
+
+    private static final Random random = new Random();
+
+    enum Failure {
+        READ_TIMEOUT, WRITE_TIMEOUT, UNAVAILABLE, OVERLOADED, BOOTSTRAPPING,
+        // not retried, including client-side timeout as the driver already tried next host for it
+        OTHER;
+
+        static Failure of(Throwable e) {
+            Failure failure = OTHER;
+
+            if (e instanceof ReadTimeoutException) {
+                failure = READ_TIMEOUT;
+            } else if (e instanceof WriteTimeoutException) {
+                failure = WRITE_TIMEOUT;
+            } else if (e instanceof UnavailableException) {
+                failure = UNAVAILABLE;
+            } else if (e instanceof OverloadedException) {
+                failure = OVERLOADED;
+            } else if (e instanceof BootstrappingException) {
+                failure = BOOTSTRAPPING;
+            } else if (e instanceof NoHostAvailableException) {
+                // all hosts tried, take the first transient error
+                for (Throwable t : ((NoHostAvailableException) e).getErrors().values()) {
+                    failure = of(t);
+                    if (failure != OTHER) {
+                        break;
+                    }
+                }
+            }
+
+            return failure;
+        }
+
+        String getMetricName() {
+            return METRIC_PREFIX + name().toLowerCase().replace('_', '-');
+        }
+    }
+
+    private final int maxRetries;
+    private final long retryDelay; // in milliseconds
+    private final long maxRetryDelay; // in milliseconds
+    private final long budget; // tokens earned by each request
+
+    private final AtomicLong tokens;
+    private final Counter[] retries;
+    private final Counter rejected;
+
+    DataStaxRetryExecutor(int maxRetries, long retryDelay, long maxRetryDelay, int retryBudget,
+                          DataStaxSessionMetrics metrics) {
+        this.maxRetries = maxRetries;
+        this.retryDelay = Math.max(1L, retryDelay);
+        this.maxRetryDelay = Math.max(this.retryDelay, maxRetryDelay);
+        this.budget = Math.max(0, retryBudget);
+        this.tokens = new AtomicLong(this.budget > 0L ? MAX_BURST * TOKEN : 0L);
+
+        Failure[] failures = Failure.values();
+        this.retries = new Counter[failures.length];
+        for (Failure f : failures) {
+            retries[f.ordinal()] = metrics.register(f.getMetricName(), new Counter());
+        }
+        this.rejected = metrics.register(METRIC_REJECTED, new Counter());
+    }
+
+    private boolean withdraw() {
+        while (true) {
+            long current = tokens.get();
+            if (current < TOKEN) {
+                return false;
+            } else if (tokens.compareAndSet(current, current - TOKEN)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Get backoff of given retry, which is somewhere between half and all of the exponential delay.
+     *
+     * @param retry retry number starting from 1
+     * @return delay in milliseconds
+     */
+    long getBackoff(int retry) {
+        long delay = retry > 31 ? maxRetryDelay : Math.min(maxRetryDelay, retryDelay << (retry - 1));
+        long half = delay / 2L;
+        return delay - half + (long) (random.nextDouble() * (half + 1L));
+    }
+
+    long getRetries(Failure failure) {
+        return retries[failure.ordinal()].getCount();
+    }
+
+    long getRejected() {
+        return rejected.getCount();
+    }
+
+    /**
+     * Earn retry budget for a new request.
+     */
+    void requested() {
+        long max = MAX_BURST * TOKEN;
+        while (budget > 0L) {
+            long current = tokens.get();
+            if (current >= max || tokens.compareAndSet(current, Math.min(max, current + budget))) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Decide if given failed statement should be retried.
+     *
+     * @param statement failed statement
+     * @param error     error of the failure
+     * @param retry     retry number starting from 1
+     * @return delay in milliseconds before the retry, or -1 if it should not be retried
+     */
+    long nextDelay(Statement statement, DriverException error, int retry) {
+        if (retry > maxRetries || !Boolean.TRUE.equals(statement.isIdempotent())) {
+            return -1L;
+        }
+
+        Failure failure = Failure.of(error);
+        if (failure == Failure.OTHER) {
+            return -1L;
+        } else if (!withdraw()) {
+            rejected.inc();
+            return -1L;
+        }
+
+        retries[failure.ordinal()].inc();
+        return getBackoff(retry);
+    }
+}
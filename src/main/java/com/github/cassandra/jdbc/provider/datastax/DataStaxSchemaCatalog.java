@@ -0,0 +1,203 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.provider.datastax;
+
+import com.datastax.driver.core.*;
+import com.github.cassandra.jdbc.CassandraNamePattern;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.pmw.tinylog.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * This indexes schema metadata of a cluster by keyspace and object name for {@link java.sql.DatabaseMetaData}
+ * queries. The index is built once when first requested, and then kept up-to-date by schema change events, so
+ * looking up objects by name or name prefix does not have to walk through the whole schema.
+ *
+ * @author Zhichun Wu
+ */
+final class DataStaxSchemaCatalog extends SchemaChangeListenerBase {
+    private static final Cache<Cluster, DataStaxSchemaCatalog> _catalogs = CacheBuilder.newBuilder()
+            .weakKeys().build();
+
+    private static final class KeyspaceEntry {
+        private final KeyspaceMetadata keyspace;
+        private final ConcurrentNavigableMap<String, TableMetadata> tables;
+        private final ConcurrentNavigableMap<String, UserType> userTypes;
+
+        KeyspaceEntry(KeyspaceMetadata keyspace, KeyspaceEntry previous) {
+            this.keyspace = keyspace;
+
+            if (previous == null) {
+                this.tables = new ConcurrentSkipListMap<String, TableMetadata>();
+                this.userTypes = new ConcurrentSkipListMap<String, UserType>();
+                for (TableMetadata t : keyspace.getTables()) {
+                    tables.put(t.getName(), t);
+                }
+                for (UserType t : keyspace.getUserTypes()) {
+                    userTypes.put(t.getTypeName(), t);
+                }
+            } else { // tables and types come with their own events
+                this.tables = previous.tables;
+                this.userTypes = previous.userTypes;
+            }
+        }
+    }
+
+    /**
+     * Get schema catalog of given cluster, which is created and registered as schema change listener on first
+     * access.
+     *
+     * @param cluster cluster instance
+     * @return schema catalog
+     */
+    static DataStaxSchemaCatalog of(final Cluster cluster) {
+        try {
+            return _catalogs.get(cluster, new Callable<DataStaxSchemaCatalog>() {
+                public DataStaxSchemaCatalog call() throws Exception {
+                    DataStaxSchemaCatalog catalog = new DataStaxSchemaCatalog();
+                    cluster.register(catalog);
+                    return catalog;
+                }
+            });
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private final ConcurrentNavigableMap<String, KeyspaceEntry> keyspaces
+            = new ConcurrentSkipListMap<String, KeyspaceEntry>();
+
+    private KeyspaceEntry getEntry(String keyspace) {
+        return keyspace == null ? null : keyspaces.get(keyspace);
+    }
+
+    /**
+     * Index all keyspaces in given metadata, replacing what we had before.
+     *
+     * @param metadata cluster metadata
+     */
+    synchronized void index(Metadata metadata) {
+        long startTime = System.currentTimeMillis();
+
+        keyspaces.clear();
+        for (KeyspaceMetadata ks : metadata.getKeyspaces()) {
+            keyspaces.put(ks.getName(), new KeyspaceEntry(ks, null));
+        }
+
+        Logger.debug("Indexed {} keyspaces in {} ms", keyspaces.size(), System.currentTimeMillis() - startTime);
+    }
+
+    List<KeyspaceMetadata> getKeyspaces(CassandraNamePattern keyspacePattern) {
+        List<KeyspaceMetadata> list = new ArrayList<KeyspaceMetadata>();
+        for (KeyspaceEntry entry : keyspacePattern.select(keyspaces)) {
+            list.add(entry.keyspace);
+        }
+
+        return list;
+    }
+
+    List<TableMetadata> getTables(CassandraNamePattern keyspacePattern, CassandraNamePattern tablePattern) {
+        List<TableMetadata> list = new ArrayList<TableMetadata>();
+        for (KeyspaceEntry entry : keyspacePattern.select(keyspaces)) {
+            list.addAll(tablePattern.select(entry.tables));
+        }
+
+        return list;
+    }
+
+    List<UserType> getUserTypes(CassandraNamePattern keyspacePattern, CassandraNamePattern typePattern) {
+        List<UserType> list = new ArrayList<UserType>();
+        for (KeyspaceEntry entry : keyspacePattern.select(keyspaces)) {
+            list.addAll(typePattern.select(entry.userTypes));
+        }
+
+        return list;
+    }
+
+    @Override
+    public void onRegister(Cluster cluster) {
+        index(cluster.getMetadata());
+    }
+
+    @Override
+    public synchronized void onKeyspaceAdded(KeyspaceMetadata keyspace) {
+        keyspaces.put(keyspace.getName(), new KeyspaceEntry(keyspace, null));
+    }
+
+    @Override
+    public synchronized void onKeyspaceRemoved(KeyspaceMetadata keyspace) {
+        keyspaces.remove(keyspace.getName());
+    }
+
+    @Override
+    public synchronized void onKeyspaceChanged(KeyspaceMetadata current, KeyspaceMetadata previous) {
+        keyspaces.put(current.getName(), new KeyspaceEntry(current, keyspaces.get(current.getName())));
+    }
+
+    @Override
+    public synchronized void onTableAdded(TableMetadata table) {
+        KeyspaceEntry entry = getEntry(table.getKeyspace().getName());
+        if (entry != null) {
+            entry.tables.put(table.getName(), table);
+        }
+    }
+
+    @Override
+    public synchronized void onTableRemoved(TableMetadata table) {
+        KeyspaceEntry entry = getEntry(table.getKeyspace().getName());
+        if (entry != null) {
+            entry.tables.remove(table.getName());
+        }
+    }
+
+    @Override
+    public void onTableChanged(TableMetadata current, TableMetadata previous) {
+        onTableAdded(current);
+    }
+
+    @Override
+    public synchronized void onUserTypeAdded(UserType type) {
+        KeyspaceEntry entry = getEntry(type.getKeyspace());
+        if (entry != null) {
+            entry.userTypes.put(type.getTypeName(), type);
+        }
+    }
+
+    @Override
+    public synchronized void onUserTypeRemoved(UserType type) {
+        KeyspaceEntry entry = getEntry(type.getKeyspace());
+        if (entry != null) {
+            entry.userTypes.remove(type.getTypeName());
+        }
+    }
+
+    @Override
+    public void onUserTypeChanged(UserType current, UserType previous) {
+        onUserTypeAdded(current);
+    }
+}
@@ -22,57 +22,244 @@ package com.github.cassandra.jdbc.provider.datastax;
 
 import com.datastax.driver.core.*;
 import com.datastax.driver.core.policies.DCAwareRoundRobinPolicy;
+import com.datastax.driver.core.policies.LatencyAwarePolicy;
+import com.datastax.driver.core.policies.LoadBalancingPolicy;
 import com.datastax.driver.core.policies.RoundRobinPolicy;
+import com.datastax.driver.core.policies.TokenAwarePolicy;
 import com.datastax.driver.extras.codecs.joda.InstantCodec;
 import com.datastax.driver.extras.codecs.joda.LocalDateCodec;
 import com.datastax.driver.extras.codecs.joda.LocalTimeCodec;
 import com.github.cassandra.jdbc.CassandraConfiguration;
-import com.github.cassandra.jdbc.provider.datastax.codecs.JavaSqlTimeCodec;
+import com.google.common.base.Charsets;
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.RemovalListener;
-import com.google.common.cache.RemovalNotification;
-import com.google.common.reflect.ClassPath;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Resources;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.pmw.tinylog.Logger;
 
+import java.io.IOException;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Session factory.
  */
 final class DataStaxSessionFactory {
-    private final static Cache<String, DataStaxSessionWrapper> _sessionCache;
-
-    static {
-        _sessionCache = CacheBuilder.newBuilder().weakValues().removalListener(
-                new RemovalListener<String, DataStaxSessionWrapper>() {
-                    public void onRemoval(RemovalNotification<String, DataStaxSessionWrapper> notification) {
-                        DataStaxSessionWrapper session = notification.getValue();
-
-                        Logger.debug("Closing [{}] (cause: {})...", session, notification.getCause());
-                        if (session != null) {
-                            try {
-                                session.close();
-                            } catch (Throwable t) {
-                                Logger.debug(t, "Error occurred when closing session");
-                            }
-                        }
-
-                        Logger.debug("Closed [{0}].", session);
+    private final static Cache<String, Cluster> _clusterCache = CacheBuilder.newBuilder().build();
+    // sessions remove themselves from the cache once closed, see closeSession()
+    private final static Cache<String, DataStaxSessionWrapper> _sessionCache = CacheBuilder.newBuilder().build();
+
+    /**
+     * Index of custom codecs, one class name per line in the same format as {@link java.util.ServiceLoader}.
+     * Codecs are singletons, so each listed class must have a public static field named "instance".
+     */
+    static final String CODEC_INDEX = "META-INF/cassandra-jdbc/codecs";
+
+    // advanced properties read into PoolingOptions when building the cluster
+    private static final String[] POOLING_PROPERTIES = new String[]{"corePoolLocal", "maxPoolLocal",
+            "corePoolRemote", "maxPoolRemote", "idleTimeoutSeconds", "poolTimeoutMillis", "heartbeatIntervalSeconds",
+            "maxRequestsPerConnectionLocal", "maxRequestsPerConnectionRemote", "newConnectionThresholdLocal",
+            "newConnectionThresholdRemote"};
+
+    private static final class CodecRegistryHolder {
+        // codecs are stateless so it's safe to share the registry among clusters
+        static final CodecRegistry registry = newCodecRegistry();
+    }
+
+    private static void registerCodec(CodecRegistry registry, ClassLoader classLoader, String className) {
+        try {
+            registry.register((TypeCodec) Class.forName(className, true, classLoader)
+                    .getField("instance").get(null));
+            Logger.debug("Registered codec: {}", className);
+        } catch (Throwable t) {
+            Logger.warn(t, "Failed to register codec: {}", className);
+        }
+    }
+
+    private static CodecRegistry newCodecRegistry() {
+        long startTime = System.nanoTime();
+
+        CodecRegistry registry = new CodecRegistry();
+        registry.register(LocalDateCodec.instance, LocalTimeCodec.instance, InstantCodec.instance);
+        if (DataStaxJavaTime.AVAILABLE) {
+            DataStaxJavaTime.registerCodecs(registry);
+        }
+
+        ClassLoader classLoader = DataStaxSessionFactory.class.getClassLoader();
+        Set<String> classNames = new LinkedHashSet<String>();
+        try {
+            Enumeration<URL> indexes = classLoader.getResources(CODEC_INDEX);
+            while (indexes.hasMoreElements()) {
+                URL url = indexes.nextElement();
+                for (String line : Resources.readLines(url, Charsets.UTF_8)) {
+                    int index = line.indexOf('#');
+                    String className = (index >= 0 ? line.substring(0, index) : line).trim();
+                    if (className.length() > 0) {
+                        classNames.add(className);
                     }
-                }).build();
+                }
+            }
+        } catch (IOException e) {
+            Logger.warn(e, "Failed to read codec index");
+        }
+
+        for (String className : classNames) {
+            registerCodec(registry, classLoader, className);
+        }
+
+        Logger.debug("Registered {} custom codecs in {} ms",
+                classNames.size(), (System.nanoTime() - startTime) / 1000000L);
+
+        return registry;
+    }
+
+    static CodecRegistry getCodecRegistry() {
+        return CodecRegistryHolder.registry;
+    }
+
+    /**
+     * Get key of the cluster for given configuration. Connections sharing same hosts, port, credentials and
+     * everything else used to build the {@link Cluster} share the same instance regardless which keyspace they're
+     * using. Consistency level and fetch size are left out, as they're set on each statement anyway.
+     *
+     * @param config connection configuration
+     * @return cluster key
+     */
+    static String getClusterKey(CassandraConfiguration config) {
+        StringBuilder key = new StringBuilder().append(config.getHosts()).append(':').append(config.getPort())
+                .append('?').append(config.getUserName()).append('@')
+                .append(Hashing.sha256().hashString(Strings.nullToEmpty(config.getPassword()), Charsets.UTF_8))
+                .append('&').append(config.getCompression())
+                .append(config.isLazySchema() ? "&lazySchema" : "")
+                .append('&').append(config.getLocalDc()).append(config.isLatencyAware() ? "&latencyAware" : "")
+                .append('&').append(config.getSpeculativeExecution()).append('*')
+                .append(config.getMaxSpeculativeExecutions())
+                .append(config.isEpoll() ? "&epoll" : "").append(config.isSharedEventLoop() ? "&shared" : "")
+                .append('&').append(config.getIoThreads()).append(config.isTcpNoDelay() ? "&tcpNoDelay" : "")
+                .append(config.isKeepAlive() ? "&keepAlive" : "")
+                .append('&').append(config.getConnectionTimeout()).append('/').append(config.getReadTimeout())
+                .append('&').append(config.getSendBufferSize()).append('/').append(config.getReceiveBufferSize())
+                .append(config.isAdaptivePooling() ? "&adaptivePooling" : "")
+                .append('&').append(config.getMinConnectionsPerHost()).append('-')
+                .append(config.getMaxConnectionsPerHost());
+        for (String property : POOLING_PROPERTIES) {
+            String value = config.getAdditionalProperty(property, (String) null);
+            if (value != null) {
+                key.append('&').append(property).append('=').append(value);
+            }
+        }
+
+        return key.toString();
+    }
+
+    /**
+     * Get key of the session for given configuration and keyspace. Besides the cluster and keyspace, settings held
+     * by {@link DataStaxSessionWrapper} are part of the key, so that connections asking for different settings
+     * do not silently share the behaviour of whichever connection created the session first.
+     *
+     * @param config   connection configuration
+     * @param keyspace keyspace the session is using
+     * @return session key
+     */
+    static String getSessionKey(CassandraConfiguration config, String keyspace) {
+        return new StringBuilder(getClusterKey(config)).append('/').append(keyspace)
+                .append('?').append(config.getDrainTimeout())
+                .append('&').append(config.getCqlCacheSize()).append('/').append(config.getPagingStateCacheSize())
+                .append(config.isAdaptiveFetchSize() ? "&adaptiveFetchSize" : "")
+                .append('&').append(config.getPageSizeLimit())
+                .append('&').append(config.getMaxRetries()).append('*').append(config.getRetryDelay()).append('-')
+                .append(config.getMaxRetryDelay()).append('/').append(config.getRetryBudget())
+                .toString();
+    }
+
+    private static Cluster getCluster(final CassandraConfiguration config) throws ExecutionException {
+        String key = getClusterKey(config);
+        Cluster cluster = _clusterCache.get(key, new Callable<Cluster>() {
+            public Cluster call() throws Exception {
+                return newCluster(config);
+            }
+        });
+
+        if (cluster.isClosed()) {
+            // closed along with its last session
+            _clusterCache.asMap().remove(key, cluster);
+            cluster = getCluster(config);
+        }
+
+        return cluster;
     }
 
-    private static DataStaxSessionWrapper newSession(CassandraConfiguration config) {
-        return newSession(config, null);
+    private static DataStaxSessionWrapper newSession(CassandraConfiguration config, String keyspace)
+            throws ExecutionException {
+        Cluster cluster = null;
+        ListenableFuture<Session> future = null;
+        while (future == null) {
+            cluster = getCluster(config);
+            try {
+                // the first connect initializes the cluster, which takes a while and should not block others
+                cluster.init();
+            } catch (IllegalStateException e) {
+                if (!cluster.isClosed()) {
+                    throw e;
+                }
+                // closed along with its last session in the meantime
+                continue;
+            }
+
+            // see closeSession() for why we need the lock - the session is added to the cluster before
+            // connectAsync() returns, so waiting for the connection can be done without holding the lock
+            synchronized (cluster) {
+                if (!cluster.isClosed()) {
+                    future = cluster.connectAsync(keyspace);
+                }
+            }
+        }
+        Session session = Uninterruptibles.getUninterruptibly(future);
+
+        Logger.debug("Connected to keyspace [{}] using cluster@{}", keyspace, cluster.hashCode());
+
+        return new DataStaxSessionWrapper(session, config);
     }
 
-    private static DataStaxSessionWrapper newSession(CassandraConfiguration config, String keyspace) {
-        keyspace = Strings.isNullOrEmpty(keyspace)
-                || config.getKeyspace().equals(keyspace) ? config.getKeyspace() : keyspace;
+    /**
+     * Close the session underneath given wrapper, and its cluster if no session is left. This is called only once
+     * per wrapper, after all references were released and in-flight requests were drained.
+     *
+     * @param wrapper session wrapper
+     */
+    static void closeSession(DataStaxSessionWrapper wrapper) {
+        _sessionCache.asMap().values().remove(wrapper);
+
+        Session session = wrapper.getSession();
+        Cluster cluster = session.getCluster();
+        if (cluster == null) {
+            session.close();
+            return;
+        }
+
+        // closing the last session and connecting a new one must not interleave, or we may end up with a
+        // session on a closed cluster
+        synchronized (cluster) {
+            session.close();
+            Logger.info("Session@{} is closed", session.hashCode());
 
+            if (!cluster.isClosed() && !DataStaxClusterHelper.hasSessions(cluster)) {
+                _clusterCache.asMap().values().remove(cluster);
+                cluster.closeAsync();
+                Logger.info("Closing cluster@{} as no session is left", cluster.hashCode());
+            }
+        }
+    }
+
+    private static Cluster newCluster(CassandraConfiguration config) {
         Logger.debug("Connecting to [{}]...", config.getConnectionUrl());
 
         Cluster.Builder builder = Cluster.builder();
@@ -92,14 +279,27 @@ final class DataStaxSessionFactory {
         socketOptions.setConnectTimeoutMillis(config.getConnectionTimeout());
         socketOptions.setReadTimeoutMillis(config.getReadTimeout());
         socketOptions.setKeepAlive(config.isKeepAlive());
+        socketOptions.setTcpNoDelay(config.isTcpNoDelay());
+        if (config.getSendBufferSize() > 0) {
+            socketOptions.setSendBufferSize(config.getSendBufferSize() * 1024);
+        }
+        if (config.getReceiveBufferSize() > 0) {
+            socketOptions.setReceiveBufferSize(config.getReceiveBufferSize() * 1024);
+        }
         builder.withSocketOptions(socketOptions);
 
+        // set transport and I/O threads
+        builder.withNettyOptions(new DataStaxNettyOptions(
+                config.isEpoll(), config.getIoThreads(), config.isSharedEventLoop()));
+
         // set query options
         QueryOptions queryOptions = new QueryOptions();
         queryOptions.setConsistencyLevel(ConsistencyLevel.valueOf(config.getConsistencyLevel().name()));
         if (config.getFetchSize() > 0) {
             queryOptions.setFetchSize(config.getFetchSize());
         }
+        // schema of all keyspaces is loaded on connect when metadata is enabled, which is slow for large schema
+        queryOptions.setMetadataEnabled(!config.isLazySchema());
         builder.withQueryOptions(queryOptions);
 
         // set pool options - use same defaults as in V3
@@ -130,29 +330,21 @@ final class DataStaxSessionFactory {
         builder.withCompression(ProtocolOptions.Compression.valueOf(config.getCompression().name()));
 
         // add custom codecs
-        CodecRegistry registry = new CodecRegistry();
-        registry.register(LocalDateCodec.instance, LocalTimeCodec.instance, InstantCodec.instance);
-        String packageName = JavaSqlTimeCodec.class.getPackage().getName();
-        try {
-            // FIXME one exception will stop loading the rest codecs
-            for (ClassPath.ClassInfo info : ClassPath.from(
-                    DataStaxSessionFactory.class.getClassLoader()).getTopLevelClasses()) {
-                if (packageName.equals(info.getPackageName())) {
-                    Logger.debug("Registering codec: {}", info.getName());
-                    registry.register((TypeCodec) info.load().getField("instance").get(null));
-                }
-            }
-        } catch (Exception e) {
-            Logger.warn(e, "Failed to register codec");
-        }
-        builder.withCodecRegistry(registry);
+        builder.withCodecRegistry(getCodecRegistry());
 
         // FIXME set policies based on configuration
-        if (!Strings.isNullOrEmpty(config.getLocalDc())) {
-            builder.withLoadBalancingPolicy(DCAwareRoundRobinPolicy.builder().withLocalDc(config.getLocalDc()).build());
-        } else {
-            builder.withLoadBalancingPolicy(new RoundRobinPolicy());
+        // token-aware so that bound statements(e.g. lookups in join) go to replicas directly
+        LoadBalancingPolicy policy = Strings.isNullOrEmpty(config.getLocalDc()) ? new RoundRobinPolicy()
+                : DCAwareRoundRobinPolicy.builder().withLocalDc(config.getLocalDc()).build();
+        if (config.isLatencyAware()) {
+            policy = LatencyAwarePolicy.builder(policy).build();
         }
+        builder.withLoadBalancingPolicy(new TokenAwarePolicy(policy));
+
+        // speculative execution can be overridden by statement, so we need it even if it's disabled by default
+        builder.withSpeculativeExecutionPolicy(new DataStaxSpeculativeExecutionPolicy(
+                DataStaxSpeculativeExecutionPolicy.Speculation.parse(config.getSpeculativeExecution()),
+                config.getMaxSpeculativeExecutions()));
 
         // build the cluster
         Cluster cluster = builder.withCredentials(config.getUserName(),
@@ -160,9 +352,11 @@ final class DataStaxSessionFactory {
 
         Logger.debug("Connected to [{}({})] successfully", config.getConnectionUrl(), cluster.hashCode());
 
-        Metadata metadata = cluster.getMetadata();
+        long startTime = System.currentTimeMillis();
+        Metadata metadata = cluster.init().getMetadata();
 
-        Logger.info("Connected to cluster@{}: {}", cluster.hashCode(), metadata.getClusterName());
+        Logger.info("Connected to cluster@{}: {} in {} ms{}", cluster.hashCode(), metadata.getClusterName(),
+                System.currentTimeMillis() - startTime, config.isLazySchema() ? " (schema is loaded lazily)" : "");
         for (Host host : metadata.getAllHosts()) {
             Logger.info("-> Datacenter: {}, Host: {}, Rack: {}",
                     host.getDatacenter(),
@@ -170,7 +364,11 @@ final class DataStaxSessionFactory {
                     host.getRack());
         }
 
-        return new DataStaxSessionWrapper(cluster.connect(keyspace));
+        if (config.isAdaptivePooling()) {
+            DataStaxPoolScaler.start(cluster, config.getMinConnectionsPerHost(), config.getMaxConnectionsPerHost());
+        }
+
+        return cluster;
     }
 
     static DataStaxSessionWrapper getSession(final CassandraConfiguration config) {
@@ -178,25 +376,24 @@ final class DataStaxSessionFactory {
     }
 
     static DataStaxSessionWrapper getSession(final CassandraConfiguration config, final String keyspace) {
-        final String targetKeyspace = Strings.isNullOrEmpty(keyspace)
-                || config.getKeyspace().equals(keyspace) ? config.getKeyspace() : keyspace;
+        final String targetKeyspace = Strings.isNullOrEmpty(keyspace) ? config.getKeyspace() : keyspace;
+        // one session per keyspace and session settings, all sessions on same cluster share one Cluster instance
+        String key = getSessionKey(config, targetKeyspace);
         DataStaxSessionWrapper session = null;
 
         try {
-            session = _sessionCache.get(config.getConnectionUrl(), new Callable<DataStaxSessionWrapper>() {
+            Callable<DataStaxSessionWrapper> loader = new Callable<DataStaxSessionWrapper>() {
                 public DataStaxSessionWrapper call() throws Exception {
                     return newSession(config, targetKeyspace);
                 }
-            });
+            };
 
-            if (session.isClosed() || !session.getLoggedKeyspace().equals(targetKeyspace)) {
-                // FIXME this will cause connection issues in other threads
-                _sessionCache.invalidate(config.getConnectionUrl());
-                session = getSession(config, targetKeyspace);
+            // a session being closed can never be acquired again, so replace it with a new one
+            session = _sessionCache.get(key, loader);
+            while (!session.acquire()) {
+                _sessionCache.asMap().remove(key, session);
+                session = _sessionCache.get(key, loader);
             }
-
-            // active the session and increase the reference counter
-            session.open();
         } catch (Exception e) {
             Logger.error(e, "Failed to obtain session object");
             throw new RuntimeException(e);
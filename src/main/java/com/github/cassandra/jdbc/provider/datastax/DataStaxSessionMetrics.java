@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.provider.datastax;
+
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import org.pmw.tinylog.Logger;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This registers metrics of a session in the registry of its cluster, named after the keyspace it's connected
+ * to(e.g. "adaptive-fetch-size-shapes.ks1"), so that sessions sharing one cluster do not clash with each other.
+ * Metrics are removed when the session is closed, unless they were taken over by a newer session of the same
+ * keyspace.
+ *
+ * @author Zhichun Wu
+ */
+final class DataStaxSessionMetrics {
+    private final MetricRegistry registry; // null when metrics are disabled
+    private final String keyspace;
+    private final Map<String, Metric> registered = new LinkedHashMap<String, Metric>();
+
+    DataStaxSessionMetrics(MetricRegistry registry, String keyspace) {
+        this.registry = registry;
+        this.keyspace = keyspace;
+    }
+
+    String getName(String name) {
+        return MetricRegistry.name(name, keyspace);
+    }
+
+    /**
+     * Register given metric, replacing the one left by previous session of the same keyspace if there's any.
+     *
+     * @param name   name of the metric, without keyspace
+     * @param metric the metric
+     * @param <T>    type of the metric
+     * @return the metric
+     */
+    synchronized <T extends Metric> T register(String name, T metric) {
+        if (registry != null) {
+            String fullName = getName(name);
+            registry.remove(fullName);
+            try {
+                registry.register(fullName, metric);
+                registered.put(fullName, metric);
+            } catch (IllegalArgumentException e) {
+                Logger.debug(e, "Metric [{}] has been registered by another session", fullName);
+            }
+        }
+
+        return metric;
+    }
+
+    /**
+     * Remove metrics registered by this session.
+     */
+    synchronized void close() {
+        if (registry == null || registered.isEmpty()) {
+            return;
+        }
+
+        Map<String, Metric> current = registry.getMetrics();
+        for (Map.Entry<String, Metric> entry : registered.entrySet()) {
+            if (current.get(entry.getKey()) == entry.getValue()) {
+                registry.remove(entry.getKey());
+            }
+        }
+        registered.clear();
+    }
+}
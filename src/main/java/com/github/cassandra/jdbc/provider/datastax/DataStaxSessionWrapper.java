@@ -21,55 +21,366 @@
 package com.github.cassandra.jdbc.provider.datastax;
 
 
+import com.codahale.metrics.MetricRegistry;
 import com.datastax.driver.core.*;
+import com.datastax.driver.core.exceptions.DriverException;
+import com.datastax.driver.core.policies.SpeculativeExecutionPolicy;
+import com.github.cassandra.jdbc.CassandraConfiguration;
 import com.github.cassandra.jdbc.CassandraErrors;
+import com.github.cassandra.jdbc.CassandraNamePattern;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.pmw.tinylog.Logger;
 
 import java.sql.SQLException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * This wraps a session shared by connections. A session is acquired by each connection using it and closed after
+ * the last connection released it. Once closing, it can never be acquired again, and it waits for in-flight
+ * requests(e.g. asynchronous inserts) to complete before closing the underlying session.
+ */
 final class DataStaxSessionWrapper implements AutoCloseable {
+    // reference count, or CLOSING after all references are released
+    private static final int CLOSING = -1;
+    // how long a successful validation is trusted, in nanoseconds
+    static final long VALIDATION_INTERVAL = 1000000000L;
+
     private final AtomicInteger references = new AtomicInteger(0);
+    private final AtomicInteger inFlightRequests = new AtomicInteger(0);
+    private final Object drainLock = new Object();
+    // when the session was found valid last time
+    private volatile long validatedAt = System.nanoTime() - VALIDATION_INTERVAL;
+    private final long drainTimeout; // in milliseconds
+    // schema metadata is not loaded along with the cluster
+    private final boolean lazySchema;
+
+    // prepared statements shared by all connections using this session
+    private final Cache<String, DataStaxParameterBinder> preparedStatements;
+    private final DataStaxPagingStateCache pagingStates;
+    // metrics of this session, removed once the session is closed
+    private final DataStaxSessionMetrics metrics;
+    // null when adaptive fetch size is disabled
+    private final DataStaxFetchSizeAdvisor fetchSizeAdvisor;
+    // retry budget is shared by all connections using this session
+    private final DataStaxRetryExecutor retryExecutor;
 
-    private Session session;
+    private final Session session;
 
-    DataStaxSessionWrapper(Session session) {
+    DataStaxSessionWrapper(Session session, CassandraConfiguration config) {
         this.session = session;
+        this.drainTimeout = config.getDrainTimeout();
+        this.lazySchema = config.isLazySchema();
+        this.preparedStatements = CacheBuilder.newBuilder().maximumSize(config.getCqlCacheSize()).build();
+        this.pagingStates = new DataStaxPagingStateCache(config.getPagingStateCacheSize());
+
+        Cluster cluster = session.getCluster();
+        Metrics metrics = cluster == null ? null : cluster.getMetrics();
+        MetricRegistry registry = metrics == null ? null : metrics.getRegistry();
+        this.metrics = new DataStaxSessionMetrics(registry, session.getLoggedKeyspace());
+        if (config.isAdaptiveFetchSize()) {
+            this.fetchSizeAdvisor = new DataStaxFetchSizeAdvisor(config.getCqlCacheSize(),
+                    config.getPageSizeLimit() * 1024L, config.getReadTimeout(), this.metrics);
+        } else {
+            this.fetchSizeAdvisor = null;
+        }
+
+        this.retryExecutor = new DataStaxRetryExecutor(config.getMaxRetries(), config.getRetryDelay(),
+                config.getMaxRetryDelay(), config.getRetryBudget(), this.metrics);
     }
 
     private void validateState() throws SQLException {
-        if (session == null || session.isClosed()) {
-            session = null;
+        if (isClosed()) {
             throw CassandraErrors.connectionClosedException();
         }
     }
 
+    private void beginRequest() throws SQLException {
+        // count the request first so that it's either drained, or rejected here
+        inFlightRequests.incrementAndGet();
+        if (isClosed()) {
+            endRequest();
+            throw CassandraErrors.connectionClosedException();
+        }
+    }
+
+    private void endRequest() {
+        if (inFlightRequests.decrementAndGet() == 0 && references.get() == CLOSING) {
+            synchronized (drainLock) {
+                drainLock.notifyAll();
+            }
+        }
+    }
+
+    private void drain() {
+        long deadline = System.nanoTime() + drainTimeout * 1000000L;
+
+        synchronized (drainLock) {
+            while (inFlightRequests.get() > 0) {
+                long remaining = (deadline - System.nanoTime()) / 1000000L;
+                if (remaining <= 0L) {
+                    Logger.warn("Closing session@{} with {} in-flight requests after waiting for {} ms",
+                            session.hashCode(), inFlightRequests.get(), drainTimeout);
+                    break;
+                }
+
+                try {
+                    drainLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    private ResultSet doExecute(Statement statement) {
+        if (fetchSizeAdvisor == null) {
+            return session.execute(statement);
+        }
+
+        long startTime = System.nanoTime();
+        ResultSet rs = session.execute(statement);
+        fetchSizeAdvisor.pageFetched(statement, rs.getAvailableWithoutFetching(), System.nanoTime() - startTime);
+
+        return rs;
+    }
+
+    private boolean hasOpenConnections() {
+        Session.State state = session.getState();
+        for (Host host : state.getConnectedHosts()) {
+            if (host.isUp() && state.getOpenConnections(host) > 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Check if the session is still usable. Unless there's no open connection to any live host, this does not
+     * talk to the cluster, and a positive result is trusted for a short while, so it's cheap to call frequently.
+     *
+     * @param timeoutMillis how long to wait for the cluster to respond, when we have to ask
+     * @return true if the session is usable; false otherwise
+     */
+    boolean isValid(long timeoutMillis) {
+        if (isClosed() || session.isClosed()) {
+            return false;
+        }
+
+        long now = System.nanoTime();
+        if (now - validatedAt < VALIDATION_INTERVAL) {
+            return true;
+        }
+
+        boolean valid = hasOpenConnections();
+        if (!valid) {
+            try {
+                valid = DataStaxClusterHelper.ping(session.getCluster(), timeoutMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (valid) {
+            validatedAt = now;
+        }
+
+        return valid;
+    }
+
     ResultSet execute(Statement statement) throws SQLException {
-        validateState();
+        beginRequest();
 
-        return session.execute(statement);
+        try {
+            retryExecutor.requested();
+
+            int retry = 0;
+            while (true) {
+                try {
+                    return doExecute(statement);
+                } catch (DriverException e) {
+                    long delay = isClosed() ? -1L : retryExecutor.nextDelay(statement, e, ++retry);
+                    if (delay < 0L) {
+                        throw e;
+                    }
+
+                    Logger.debug("Retrying statement@{} in {} ms(#{}) due to: {}",
+                            statement.hashCode(), delay, retry, e.getMessage());
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        throw e;
+                    }
+                }
+            }
+        } finally {
+            endRequest();
+        }
     }
 
     ResultSetFuture executeAsync(Statement statement) throws SQLException {
-        validateState();
+        beginRequest();
 
         // DataStax Java driver is asynchronous by default: http://www.datastax.com/dev/blog/java-driver-async-queries
         // this should be only used in two scenarios:
         // 1) insertion when nobody cares if there's any data lost (e.g. vast amount of logs)
         // 2) batch processing based on execution plan (e.g. "select ... in" mentioned in above article)
-        return session.executeAsync(statement);
+        ResultSetFuture future;
+        try {
+            future = session.executeAsync(statement);
+        } catch (RuntimeException e) {
+            endRequest();
+            throw e;
+        }
+
+        future.addListener(new Runnable() {
+            public void run() {
+                endRequest();
+            }
+        }, MoreExecutors.sameThreadExecutor());
+
+        return future;
     }
 
+    private void loadSchema(String keyspace) throws SQLException {
+        long startTime = System.currentTimeMillis();
+        beginRequest();
+
+        try {
+            DataStaxClusterHelper.refreshSchema(session.getCluster(), keyspace);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            endRequest();
+        }
+
+        Logger.debug("Loaded schema of [{}] in {} ms",
+                keyspace == null ? "all keyspaces" : keyspace, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Get cluster metadata. Please be aware of that it only has keyspaces loaded so far when schema is loaded lazily.
+     *
+     * @return cluster metadata
+     * @throws SQLException when the session is closed
+     */
     Metadata getClusterMetaData() throws SQLException {
         validateState();
 
         return session.getCluster().getMetadata();
     }
 
-    PreparedStatement prepare(String cql) throws SQLException {
+    /**
+     * Get metadata of given keyspace, which will be loaded on first access when schema is loaded lazily.
+     *
+     * @param keyspace name of the keyspace
+     * @return keyspace metadata, or null if the keyspace does not exist
+     * @throws SQLException when the session is closed
+     */
+    KeyspaceMetadata getKeyspaceMetaData(String keyspace) throws SQLException {
+        Metadata metadata = getClusterMetaData();
+        String name = Metadata.quote(keyspace);
+        KeyspaceMetadata ks = metadata.getKeyspace(name);
+        if (ks == null && lazySchema) {
+            loadSchema(keyspace);
+            ks = metadata.getKeyspace(name);
+        }
+
+        return ks;
+    }
+
+    /**
+     * Get schema catalog for querying schema objects. When schema is loaded lazily, keyspace(s) matching given
+     * pattern are reloaded each time, as schema changes are not tracked by the driver in this case.
+     *
+     * @param keyspacePattern keyspace name or pattern, null means all keyspaces
+     * @return schema catalog of the cluster
+     * @throws SQLException when the session is closed
+     */
+    DataStaxSchemaCatalog getSchemaCatalog(CassandraNamePattern keyspacePattern) throws SQLException {
         validateState();
 
-        return session.prepare(cql);
+        if (lazySchema) {
+            loadSchema(keyspacePattern == null ? null : keyspacePattern.getLiteral());
+        }
+
+        return DataStaxSchemaCatalog.of(session.getCluster());
+    }
+
+    CodecRegistry getCodecRegistry() throws SQLException {
+        validateState();
+
+        return session.getCluster().getConfiguration().getCodecRegistry();
+    }
+
+    ProtocolVersion getProtocolVersion() throws SQLException {
+        validateState();
+
+        return session.getCluster().getConfiguration().getProtocolOptions().getProtocolVersion();
+    }
+
+    /**
+     * Override speculative execution of given statement.
+     *
+     * @param statement            statement to execute
+     * @param speculativeExecution "NONE", percentile like "p99", or delay in milliseconds
+     * @throws SQLException when the session is closed
+     */
+    void setSpeculativeExecution(Statement statement, String speculativeExecution) throws SQLException {
+        validateState();
+
+        SpeculativeExecutionPolicy policy = session.getCluster().getConfiguration().getPolicies()
+                .getSpeculativeExecutionPolicy();
+        if (policy instanceof DataStaxSpeculativeExecutionPolicy) {
+            ((DataStaxSpeculativeExecutionPolicy) policy).override(statement, speculativeExecution);
+        }
+    }
+
+    DataStaxPagingStateCache getPagingStates() {
+        return pagingStates;
+    }
+
+    DataStaxFetchSizeAdvisor getFetchSizeAdvisor() {
+        return fetchSizeAdvisor;
+    }
+
+    PreparedStatement prepare(String cql) throws SQLException {
+        beginRequest();
+
+        try {
+            return session.prepare(cql);
+        } finally {
+            endRequest();
+        }
+    }
+
+    /**
+     * Get binder of given CQL, which is prepared only once for all connections using this session.
+     *
+     * @param cql CQL to prepare
+     * @return parameter binder of the prepared statement
+     * @throws SQLException when failed to prepare the CQL
+     */
+    DataStaxParameterBinder getParameterBinder(final String cql) throws SQLException {
+        DataStaxParameterBinder binder = null;
+
+        try {
+            binder = preparedStatements.get(cql, new Callable<DataStaxParameterBinder>() {
+                public DataStaxParameterBinder call() throws Exception {
+                    return new DataStaxParameterBinder(prepare(cql), getProtocolVersion());
+                }
+            });
+        } catch (ExecutionException e) {
+            throw new SQLException(e);
+        }
+
+        return binder;
     }
 
     String getLoggedKeyspace() throws SQLException {
@@ -78,27 +389,55 @@ final class DataStaxSessionWrapper implements AutoCloseable {
         return session.getLoggedKeyspace();
     }
 
-    void open() {
-        references.incrementAndGet();
+    Session getSession() {
+        return session;
+    }
+
+    /**
+     * Acquire a reference to the session.
+     *
+     * @return true if acquired; false if the session is being closed and should not be used any more
+     */
+    boolean acquire() {
+        while (true) {
+            int count = references.get();
+            if (count == CLOSING) {
+                return false;
+            } else if (references.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Release a reference to the session.
+     *
+     * @return true if this is the last reference, and the session should be closed by the caller
+     */
+    boolean release() {
+        while (true) {
+            int count = references.get();
+            if (count <= 0) { // not acquired, or being closed
+                return false;
+            } else if (references.compareAndSet(count, count == 1 ? CLOSING : count - 1)) {
+                return count == 1;
+            }
+        }
+    }
+
+    int getInFlightRequests() {
+        return inFlightRequests.get();
     }
 
     boolean isClosed() {
-        return session == null || session.isClosed();
+        return references.get() == CLOSING || session.isClosed();
     }
 
     public void close() throws Exception {
-        if (session == null || references.decrementAndGet() <= 0) {
-            if (session != null) {
-                Cluster cluster = session.getCluster();
-                if (DataStaxClusterHelper.hasLiveSessions(cluster)) {
-                    cluster.closeAsync().force();
-                    Logger.info("Closing cluster@{} and all sessions underneath", cluster.hashCode());
-                } else {
-                    session.close();
-                    Logger.info("Session@{} is closed", session.hashCode());
-                }
-                session = null;
-            }
+        if (release()) {
+            drain();
+            DataStaxSessionFactory.closeSession(this);
+            metrics.close();
         }
     }
 }
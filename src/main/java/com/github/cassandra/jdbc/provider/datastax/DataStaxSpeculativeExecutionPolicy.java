@@ -0,0 +1,259 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.provider.datastax;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Snapshot;
+import com.datastax.driver.core.*;
+import com.datastax.driver.core.policies.SpeculativeExecutionPolicy;
+import com.google.common.collect.MapMaker;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This starts another execution of an idempotent statement when the queried host does not respond within either
+ * a fixed delay, or given percentile of its recent latencies. Unlike percentile policy in DataStax Java driver, it
+ * does not depend on HdrHistogram, and the delay can be overridden for each statement(e.g. by magic comment).
+ * Executions are only started by the driver for idempotent statements, so we do not check it here.
+ *
+ * @author Zhichun Wu
+ */
+final class DataStaxSpeculativeExecutionPolicy implements SpeculativeExecutionPolicy, LatencyTracker {
+    static final String METRIC_WINS = "speculative-execution-wins";
+
+    // latencies are not trusted until we have enough samples of the host
+    static final long MIN_SAMPLES = 100L;
+    private static final long SNAPSHOT_INTERVAL = 1000L; // in milliseconds
+
+    private static final SpeculativeExecutionPlan NO_PLAN = new SpeculativeExecutionPlan() {
+        public long nextExecution(Host lastQueried) {
+            return -1L;
+        }
+    };
+
+    /**
+     * When to start the next execution - it could be "NONE", a percentile like "p99", or delay in milliseconds.
+     */
+    static final class Speculation {
+        static final Speculation NONE = new Speculation(-1D, -1L);
+
+        final double percentile; // negative means fixed delay
+        final long delay; // in milliseconds
+
+        static Speculation parse(String value) {
+            String v = value == null ? "" : value.trim().toLowerCase();
+            Speculation speculation = NONE;
+
+            try {
+                if (v.length() > 1 && v.charAt(0) == 'p') {
+                    double percentile = Double.parseDouble(v.substring(1));
+                    if (percentile > 0D && percentile < 100D) {
+                        speculation = new Speculation(percentile, -1L);
+                    } else {
+                        speculation = null;
+                    }
+                } else if (v.length() > 0 && !"none".equals(v)) {
+                    long delay = Long.parseLong(v.endsWith("ms") ? v.substring(0, v.length() - 2).trim() : v);
+                    speculation = delay >= 0L ? new Speculation(-1D, delay) : null;
+                }
+            } catch (NumberFormatException e) {
+                speculation = null;
+            }
+
+            if (speculation == null) {
+                throw new IllegalArgumentException(
+                        "Speculative execution should be NONE, percentile like p99, or delay in ms, but got " + value);
+            }
+
+            return speculation;
+        }
+
+        private Speculation(double percentile, long delay) {
+            this.percentile = percentile;
+            this.delay = delay;
+        }
+    }
+
+    private static final class HostLatencies {
+        private final Histogram histogram = new Histogram(new ExponentiallyDecayingReservoir()); // in microseconds
+
+        private volatile Snapshot snapshot;
+        private volatile long snapshotTime;
+
+        void update(long latencyNanos) {
+            histogram.update(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+        }
+
+        long getPercentile(double percentile) {
+            if (histogram.getCount() < MIN_SAMPLES) {
+                return -1L;
+            }
+
+            // taking snapshot is expensive so we share one within the interval
+            long now = System.currentTimeMillis();
+            Snapshot s = snapshot;
+            if (s == null || now - snapshotTime > SNAPSHOT_INTERVAL) {
+                snapshot = s = histogram.getSnapshot();
+                snapshotTime = now;
+            }
+
+            return Math.max(1L, (long) Math.ceil(s.getValue(percentile / 100D) / 1000D));
+        }
+    }
+
+    private final class Plan implements SpeculativeExecutionPlan {
+        private final Speculation speculation;
+        // released once tracked, as it's the weak key referring to this plan
+        private Statement statement;
+        private int executions = 0;
+        private Host initialHost;
+
+        Plan(Statement statement, Speculation speculation) {
+            this.statement = statement;
+            this.speculation = speculation;
+        }
+
+        // called each time an execution is sent, no matter it's the initial one or speculative
+        public synchronized long nextExecution(Host lastQueried) {
+            if (++executions == 1) {
+                initialHost = lastQueried;
+            } else if (executions == 2) {
+                // keep track of the statement so that we know which execution completes first
+                speculating.put(statement, this);
+                statement = null;
+            }
+
+            long delay = -1L;
+            if (executions <= maxExecutions) {
+                delay = speculation.percentile > 0D
+                        ? getLatencies(lastQueried).getPercentile(speculation.percentile) : speculation.delay;
+            }
+
+            return delay;
+        }
+
+        synchronized boolean isWonBy(Host host) {
+            return initialHost != null && !initialHost.equals(host);
+        }
+    }
+
+    private final Speculation defaultSpeculation;
+    private final int maxExecutions;
+    private final Counter wins = new Counter();
+
+    // statements with different speculation from the default
+    private final ConcurrentMap<Statement, Speculation> overrides = new MapMaker().weakKeys().makeMap();
+    // statements having speculative executions in flight
+    private final ConcurrentMap<Statement, Plan> speculating = new MapMaker().weakKeys().makeMap();
+    private final ConcurrentMap<Host, HostLatencies> latencies = new ConcurrentHashMap<Host, HostLatencies>();
+
+    // no need to track latencies until there's a percentile based speculation
+    private volatile boolean tracking;
+
+    DataStaxSpeculativeExecutionPolicy(Speculation defaultSpeculation, int maxSpeculativeExecutions) {
+        this.defaultSpeculation = defaultSpeculation;
+        this.maxExecutions = maxSpeculativeExecutions;
+        this.tracking = defaultSpeculation.percentile > 0D;
+    }
+
+    private HostLatencies getLatencies(Host host) {
+        HostLatencies l = latencies.get(host);
+        if (l == null) {
+            HostLatencies newLatencies = new HostLatencies();
+            l = latencies.putIfAbsent(host, newLatencies);
+            if (l == null) {
+                l = newLatencies;
+            }
+        }
+
+        return l;
+    }
+
+    /**
+     * Override speculation of given statement.
+     *
+     * @param statement   statement to execute
+     * @param speculation "NONE", percentile like "p99", or delay in milliseconds
+     */
+    void override(Statement statement, String speculation) {
+        Speculation s = Speculation.parse(speculation);
+        if (s.percentile > 0D) {
+            tracking = true;
+        }
+
+        overrides.put(statement, s);
+    }
+
+    long getWins() {
+        return wins.getCount();
+    }
+
+    public void init(Cluster cluster) {
+        Metrics metrics = cluster.getMetrics();
+        if (metrics != null) {
+            metrics.getRegistry().register(METRIC_WINS, wins);
+        }
+
+        cluster.register(this);
+    }
+
+    public SpeculativeExecutionPlan newPlan(String loggedKeyspace, Statement statement) {
+        Speculation speculation = overrides.isEmpty() ? null : overrides.get(statement);
+        if (speculation == null) {
+            speculation = defaultSpeculation;
+        }
+
+        return speculation == Speculation.NONE || maxExecutions <= 0 ? NO_PLAN : new Plan(statement, speculation);
+    }
+
+    public void update(Host host, Statement statement, Exception exception, long newLatencyNanos) {
+        if (exception != null) {
+            return;
+        }
+
+        if (tracking) {
+            getLatencies(host).update(newLatencyNanos);
+        }
+
+        if (!speculating.isEmpty()) {
+            Plan plan = speculating.remove(statement);
+            if (plan != null && plan.isWonBy(host)) {
+                wins.inc();
+            }
+        }
+    }
+
+    public void onRegister(Cluster cluster) {
+    }
+
+    public void onUnregister(Cluster cluster) {
+    }
+
+    public void close() {
+        overrides.clear();
+        speculating.clear();
+        latencies.clear();
+    }
+}
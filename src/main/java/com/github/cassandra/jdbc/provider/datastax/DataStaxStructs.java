@@ -0,0 +1,195 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.provider.datastax;
+
+import com.datastax.driver.core.*;
+import com.datastax.driver.core.exceptions.CodecNotFoundException;
+import com.github.cassandra.jdbc.CassandraDataTypeConverters;
+import com.github.cassandra.jdbc.CassandraDataTypeMappings;
+import com.github.cassandra.jdbc.CassandraStruct;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.sql.Struct;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * This converts user-defined types and tuples from/to {@link Struct}. Field codecs are resolved once for each
+ * type and cached, so that values can be decoded from serialized form without any further lookup.
+ *
+ * @author Zhichun Wu
+ */
+final class DataStaxStructs {
+    static final class StructType {
+        private final DataType type;
+        private final String name;
+        private final DataType[] fieldTypes;
+        private final TypeCodec<Object>[] codecs;
+        private final StructType[] nested; // for fields of UDTs and tuples
+
+        @SuppressWarnings("unchecked")
+        StructType(DataType type, CodecRegistry registry) {
+            this.type = type;
+
+            List<DataType> types;
+            if (type instanceof UserType) {
+                UserType userType = (UserType) type;
+                this.name = new StringBuilder().append(userType.getKeyspace()).append('.')
+                        .append(userType.getTypeName()).toString();
+                types = new ArrayList<DataType>(userType.size());
+                for (UserType.Field field : userType) {
+                    types.add(field.getType());
+                }
+            } else {
+                TupleType tupleType = (TupleType) type;
+                this.name = tupleType.asFunctionParameterString();
+                types = tupleType.getComponentTypes();
+            }
+
+            int size = types.size();
+            this.fieldTypes = types.toArray(new DataType[size]);
+            this.codecs = new TypeCodec[size];
+            this.nested = new StructType[size];
+            for (int i = 0; i < size; i++) {
+                DataType fieldType = fieldTypes[i];
+                codecs[i] = (TypeCodec<Object>) codecFor(fieldType, registry);
+                if (isStruct(fieldType)) {
+                    nested[i] = of(fieldType);
+                }
+            }
+        }
+
+        String getName() {
+            return name;
+        }
+
+        /**
+         * Decode serialized value, which is a sequence of [int length][bytes] for each field.
+         *
+         * @param bytes           serialized value
+         * @param protocolVersion protocol version
+         * @return struct
+         */
+        CassandraStruct decode(ByteBuffer bytes, ProtocolVersion protocolVersion) {
+            Object[] attributes = new Object[codecs.length];
+            ByteBuffer input = bytes.duplicate();
+            for (int i = 0; i < attributes.length && input.remaining() >= 4; i++) {
+                int length = input.getInt();
+                if (length < 0) {
+                    continue;
+                }
+
+                ByteBuffer field = input.slice();
+                field.limit(length);
+                input.position(input.position() + length);
+
+                attributes[i] = nested[i] != null
+                        ? nested[i].decode(field, protocolVersion) : codecs[i].deserialize(field, protocolVersion);
+            }
+
+            return new CassandraStruct(name, attributes);
+        }
+
+        /**
+         * Encode given struct to a driver value which can be bound to statements.
+         *
+         * @param struct          struct
+         * @param converters      converters for attributes not in expected type
+         * @param protocolVersion protocol version
+         * @return {@link UDTValue} or {@link TupleValue}
+         * @throws SQLException when failed to get attributes from the struct
+         */
+        Object encode(Struct struct, CassandraDataTypeConverters converters, ProtocolVersion protocolVersion)
+                throws SQLException {
+            Object[] attributes = struct.getAttributes();
+            if (attributes.length > codecs.length) {
+                throw new SQLException("Expect at most " + codecs.length + " attributes for " + name
+                        + " but got " + attributes.length);
+            }
+
+            SettableByIndexData<?> value = type instanceof UserType
+                    ? ((UserType) type).newValue() : ((TupleType) type).newValue();
+            for (int i = 0; i < attributes.length; i++) {
+                Object attr = attributes[i];
+                if (attr == null) {
+                    continue;
+                }
+
+                if (nested[i] != null && attr instanceof Struct) {
+                    attr = nested[i].encode((Struct) attr, converters, protocolVersion);
+                } else {
+                    attr = converters.convert(attr, codecs[i].getJavaType().getRawType(), false);
+                }
+                value.setBytesUnsafe(i, codecs[i].serialize(attr, protocolVersion));
+            }
+
+            return value;
+        }
+    }
+
+    private static final Cache<DataType, StructType> STRUCT_TYPES
+            = CacheBuilder.newBuilder().maximumSize(1000).build();
+
+    private static TypeCodec<?> codecFor(DataType type, CodecRegistry registry) {
+        TypeCodec<?> codec = null;
+        if (!isStruct(type) && !type.isCollection()) {
+            // prefer JDBC types like java.sql.Timestamp
+            try {
+                codec = registry.codecFor(type,
+                        CassandraDataTypeMappings.instance.javaTypeFor(type.getName().toString()));
+            } catch (CodecNotFoundException e) {
+                // fall back to default codec
+            }
+        }
+
+        return codec == null ? registry.codecFor(type) : codec;
+    }
+
+    static boolean isStruct(DataType type) {
+        return type instanceof UserType || type instanceof TupleType;
+    }
+
+    /**
+     * Get struct type of the given user-defined type or tuple.
+     *
+     * @param type user-defined type or tuple
+     * @return struct type
+     */
+    static StructType of(final DataType type) {
+        try {
+            return STRUCT_TYPES.get(type, new Callable<StructType>() {
+                public StructType call() throws Exception {
+                    return new StructType(type, DataStaxSessionFactory.getCodecRegistry());
+                }
+            });
+        } catch (ExecutionException e) {
+            throw new IllegalArgumentException("Not able to resolve codecs for " + type, e.getCause());
+        }
+    }
+
+    private DataStaxStructs() {
+    }
+}
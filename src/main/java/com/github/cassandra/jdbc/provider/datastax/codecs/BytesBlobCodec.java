@@ -46,7 +46,7 @@ public class BytesBlobCodec extends TypeCodec<byte[]> {
         if (bytes == null || bytes.remaining() == 0)
             return null;
 
-        return bytes.duplicate().array();
+        return Bytes.getArray(bytes);
     }
 
     @Override
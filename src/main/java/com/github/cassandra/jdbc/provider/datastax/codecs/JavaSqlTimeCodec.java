@@ -25,6 +25,7 @@ import com.datastax.driver.core.ParseUtils;
 import com.datastax.driver.core.ProtocolVersion;
 import com.datastax.driver.core.TypeCodec;
 import com.datastax.driver.core.exceptions.InvalidTypeException;
+import com.github.cassandra.jdbc.CassandraDateTimes;
 import org.joda.time.LocalTime;
 
 import java.nio.ByteBuffer;
@@ -51,7 +52,7 @@ public class JavaSqlTimeCodec extends TypeCodec<Time> {
         if (bytes == null || bytes.remaining() == 0)
             return null;
         long nanosOfDay = bigint().deserializeNoBoxing(bytes, protocolVersion);
-        return new Time(LocalTime.fromMillisOfDay(nanosOfDay / 1000000L).toDateTimeToday().getMillis());
+        return CassandraDateTimes.toSqlTime(nanosOfDay / 1000000L);
     }
 
     @Override
@@ -78,11 +79,11 @@ public class JavaSqlTimeCodec extends TypeCodec<Time> {
             } catch (NumberFormatException e) {
                 throw new InvalidTypeException(String.format("Cannot parse time value from \"%s\"", value), e);
             }
-            return new Time(LocalTime.fromMillisOfDay(nanosOfDay / 1000000L).getMillisOfSecond());
+            return CassandraDateTimes.toSqlTime(nanosOfDay / 1000000L);
         }
 
         try {
-            return new Time(LocalTime.parse(value).toDateTimeToday().getMillis());
+            return CassandraDateTimes.toSqlTime(CassandraDateTimes.parseTime(value) / 1000000L);
         } catch (RuntimeException e) {
             throw new InvalidTypeException(String.format("Cannot parse time value from \"%s\"", value), e);
         }
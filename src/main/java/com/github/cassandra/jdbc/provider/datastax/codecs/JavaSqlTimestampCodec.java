@@ -24,11 +24,7 @@ import com.datastax.driver.core.DataType;
 import com.datastax.driver.core.ProtocolVersion;
 import com.datastax.driver.core.TypeCodec;
 import com.datastax.driver.core.exceptions.InvalidTypeException;
-import org.joda.time.Instant;
-import org.joda.time.format.DateTimeFormat;
-import org.joda.time.format.DateTimeFormatter;
-import org.joda.time.format.DateTimeFormatterBuilder;
-import org.joda.time.format.ISODateTimeFormat;
+import com.github.cassandra.jdbc.CassandraDateTimes;
 
 import java.nio.ByteBuffer;
 import java.sql.Timestamp;
@@ -39,21 +35,6 @@ import static java.lang.Long.parseLong;
 public class JavaSqlTimestampCodec extends TypeCodec<Timestamp> {
     public static final JavaSqlTimestampCodec instance = new JavaSqlTimestampCodec();
 
-    /**
-     * A {@link DateTimeFormatter} that parses (most) of
-     * the ISO formats accepted in CQL.
-     */
-    private static final DateTimeFormatter PARSER = new DateTimeFormatterBuilder()
-            .append(ISODateTimeFormat.dateOptionalTimeParser().getParser())
-            .appendOptional(
-                    new DateTimeFormatterBuilder()
-                            .appendTimeZoneOffset("Z", true, 2, 4)
-                            .toParser())
-            .toFormatter()
-            .withZoneUTC();
-
-    private static final DateTimeFormatter FORMATTER = DateTimeFormat.forPattern("yyyy-MM-dd'T'HH:mm:ss.SSSZZ").withZoneUTC();
-
     private JavaSqlTimestampCodec() {
         super(DataType.timestamp(), Timestamp.class);
     }
@@ -75,7 +56,7 @@ public class JavaSqlTimestampCodec extends TypeCodec<Timestamp> {
     public String format(Timestamp value) {
         if (value == null)
             return "NULL";
-        return quote(FORMATTER.print(new Instant(value.getTime())));
+        return quote(CassandraDateTimes.formatTimestamp(value.getTime()));
     }
 
     @Override
@@ -93,7 +74,7 @@ public class JavaSqlTimestampCodec extends TypeCodec<Timestamp> {
             }
         }
         try {
-            return new Timestamp(PARSER.parseMillis(value));
+            return new Timestamp(CassandraDateTimes.parseTimestamp(value));
         } catch (RuntimeException e) {
             throw new InvalidTypeException(String.format("Cannot parse timestamp value from \"%s\"", value));
         }
@@ -23,25 +23,17 @@ package com.github.cassandra.jdbc.provider.datastax.codecs;
 import com.datastax.driver.core.DataType;
 import com.datastax.driver.core.ProtocolVersion;
 import com.datastax.driver.core.TypeCodec;
-import org.joda.time.Days;
-import org.joda.time.LocalDate;
-import org.joda.time.format.DateTimeFormat;
-import org.joda.time.format.DateTimeFormatter;
+import com.github.cassandra.jdbc.CassandraDateTimes;
 
 import java.nio.ByteBuffer;
 
 import static com.datastax.driver.core.CodecUtils.fromSignedToUnsignedInt;
 import static com.datastax.driver.core.CodecUtils.fromUnsignedToSignedInt;
 import static com.datastax.driver.core.ParseUtils.*;
-import static org.joda.time.Days.daysBetween;
 
 public class StringDateCodec extends TypeCodec<String> {
     public static final StringDateCodec instance = new StringDateCodec();
 
-    private static final LocalDate EPOCH = new LocalDate(1970, 1, 1);
-
-    private static final DateTimeFormatter FORMATTER = DateTimeFormat.forPattern("yyyy-MM-dd").withZoneUTC();
-
     private StringDateCodec() {
         super(DataType.date(), String.class);
     }
@@ -50,8 +42,7 @@ public class StringDateCodec extends TypeCodec<String> {
     public ByteBuffer serialize(String value, ProtocolVersion protocolVersion) {
         if (value == null)
             return null;
-        Days days = daysBetween(EPOCH, LocalDate.parse(value));
-        int unsigned = fromSignedToUnsignedInt(days.getDays());
+        int unsigned = fromSignedToUnsignedInt(CassandraDateTimes.parseDate(value));
         return cint().serializeNoBoxing(unsigned, protocolVersion);
     }
 
@@ -61,7 +52,7 @@ public class StringDateCodec extends TypeCodec<String> {
             return null;
         int unsigned = cint().deserializeNoBoxing(bytes, protocolVersion);
         int signed = fromUnsignedToSignedInt(unsigned);
-        return FORMATTER.print(EPOCH.plusDays(signed));
+        return CassandraDateTimes.formatDate(signed);
     }
 
     @Override
@@ -25,7 +25,7 @@ import com.datastax.driver.core.ParseUtils;
 import com.datastax.driver.core.ProtocolVersion;
 import com.datastax.driver.core.TypeCodec;
 import com.datastax.driver.core.exceptions.InvalidTypeException;
-import org.joda.time.LocalTime;
+import com.github.cassandra.jdbc.CassandraDateTimes;
 
 import java.nio.ByteBuffer;
 
@@ -42,7 +42,7 @@ public class StringTimeCodec extends TypeCodec<String> {
     public ByteBuffer serialize(String value, ProtocolVersion protocolVersion) throws InvalidTypeException {
         if (value == null)
             return null;
-        return bigint().serializeNoBoxing(LocalTime.parse(value).getMillisOfDay() * 1000000, protocolVersion);
+        return bigint().serializeNoBoxing(CassandraDateTimes.parseTime(value), protocolVersion);
     }
 
     @Override
@@ -50,14 +50,14 @@ public class StringTimeCodec extends TypeCodec<String> {
         if (bytes == null || bytes.remaining() == 0)
             return null;
         long nanosOfDay = bigint().deserializeNoBoxing(bytes, protocolVersion);
-        return LocalTime.fromMillisOfDay(nanosOfDay / 1000000).toString();
+        return CassandraDateTimes.formatTime(nanosOfDay);
     }
 
     @Override
     public String format(String value) {
         if (value == null)
             return "NULL";
-        return quote(LocalTime.parse(value).toString());
+        return quote(CassandraDateTimes.formatTime(CassandraDateTimes.parseTime(value)));
     }
 
     @Override
@@ -23,7 +23,7 @@ package com.github.cassandra.jdbc.provider.datastax.codecs;
 import com.datastax.driver.core.DataType;
 import com.datastax.driver.core.ProtocolVersion;
 import com.datastax.driver.core.TypeCodec;
-import org.joda.time.Instant;
+import com.github.cassandra.jdbc.CassandraDateTimes;
 
 import java.nio.ByteBuffer;
 
@@ -42,13 +42,7 @@ public class StringTimestampCodec extends TypeCodec<String> {
             return null;
         }
 
-        if (value.indexOf(' ') == 10 && value.indexOf('Z') < 0) {
-            StringBuilder builder = new StringBuilder(value).append('Z');
-            builder.setCharAt(10, 'T');
-            value = builder.toString();
-        }
-
-        return bigint().serializeNoBoxing(Instant.parse(value).getMillis(), protocolVersion);
+        return bigint().serializeNoBoxing(CassandraDateTimes.parseTimestamp(value), protocolVersion);
     }
 
     @Override
@@ -56,7 +50,7 @@ public class StringTimestampCodec extends TypeCodec<String> {
         if (bytes == null || bytes.remaining() == 0)
             return null;
         long millis = bigint().deserializeNoBoxing(bytes, protocolVersion);
-        return new Instant(millis).toString();
+        return CassandraDateTimes.formatTimestamp(millis);
     }
 
     @Override
@@ -0,0 +1,46 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbcx;
+
+import javax.sql.ConnectionPoolDataSource;
+import javax.sql.PooledConnection;
+import java.sql.SQLException;
+
+/**
+ * This is the data source for connection pools in application servers.
+ *
+ * @author Zhichun Wu
+ */
+public class CassandraConnectionPoolDataSource extends CassandraDataSource implements ConnectionPoolDataSource {
+    public CassandraConnectionPoolDataSource() {
+        super();
+    }
+
+    @Override
+    public PooledConnection getPooledConnection() throws SQLException {
+        return new CassandraPooledConnection(getConnection());
+    }
+
+    @Override
+    public PooledConnection getPooledConnection(String username, String password) throws SQLException {
+        return new CassandraPooledConnection(getConnection(username, password));
+    }
+}
@@ -0,0 +1,290 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbcx;
+
+import com.github.cassandra.jdbc.CassandraErrors;
+
+import java.sql.*;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+
+/**
+ * This is a thin handle of a physical connection, which is handed out by {@link CassandraPooledConnection} to
+ * applications. Closing the handle returns the physical connection to the pool instead of closing it.
+ *
+ * @author Zhichun Wu
+ */
+final class CassandraLogicalConnection implements Connection {
+    private final CassandraPooledConnection pooledConnection;
+    private final Connection physicalConnection;
+
+    private volatile boolean closed;
+
+    CassandraLogicalConnection(CassandraPooledConnection pooledConnection, Connection physicalConnection) {
+        this.pooledConnection = pooledConnection;
+        this.physicalConnection = physicalConnection;
+        this.closed = false;
+    }
+
+    private Connection validate() throws SQLException {
+        if (closed) {
+            throw CassandraErrors.connectionClosedException();
+        }
+
+        return physicalConnection;
+    }
+
+    /**
+     * Invalidate this handle without notifying the pool, which happens when a new handle is requested or the
+     * physical connection is closed.
+     */
+    void invalidate() {
+        closed = true;
+    }
+
+    public Statement createStatement() throws SQLException {
+        return validate().createStatement();
+    }
+
+    public PreparedStatement prepareStatement(String sql) throws SQLException {
+        return validate().prepareStatement(sql);
+    }
+
+    public CallableStatement prepareCall(String sql) throws SQLException {
+        return validate().prepareCall(sql);
+    }
+
+    public String nativeSQL(String sql) throws SQLException {
+        return validate().nativeSQL(sql);
+    }
+
+    public void setAutoCommit(boolean autoCommit) throws SQLException {
+        validate().setAutoCommit(autoCommit);
+    }
+
+    public boolean getAutoCommit() throws SQLException {
+        return validate().getAutoCommit();
+    }
+
+    public void commit() throws SQLException {
+        validate().commit();
+    }
+
+    public void rollback() throws SQLException {
+        validate().rollback();
+    }
+
+    public void close() throws SQLException {
+        if (!closed) {
+            closed = true;
+            pooledConnection.logicalConnectionClosed(this);
+        }
+    }
+
+    public boolean isClosed() throws SQLException {
+        return closed;
+    }
+
+    public DatabaseMetaData getMetaData() throws SQLException {
+        return validate().getMetaData();
+    }
+
+    public void setReadOnly(boolean readOnly) throws SQLException {
+        validate().setReadOnly(readOnly);
+    }
+
+    public boolean isReadOnly() throws SQLException {
+        return validate().isReadOnly();
+    }
+
+    public void setCatalog(String catalog) throws SQLException {
+        validate().setCatalog(catalog);
+    }
+
+    public String getCatalog() throws SQLException {
+        return validate().getCatalog();
+    }
+
+    public void setTransactionIsolation(int level) throws SQLException {
+        validate().setTransactionIsolation(level);
+    }
+
+    public int getTransactionIsolation() throws SQLException {
+        return validate().getTransactionIsolation();
+    }
+
+    public SQLWarning getWarnings() throws SQLException {
+        return validate().getWarnings();
+    }
+
+    public void clearWarnings() throws SQLException {
+        validate().clearWarnings();
+    }
+
+    public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
+        return validate().createStatement(resultSetType, resultSetConcurrency);
+    }
+
+    public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency)
+            throws SQLException {
+        return validate().prepareStatement(sql, resultSetType, resultSetConcurrency);
+    }
+
+    public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency)
+            throws SQLException {
+        return validate().prepareCall(sql, resultSetType, resultSetConcurrency);
+    }
+
+    public Map<String, Class<?>> getTypeMap() throws SQLException {
+        return validate().getTypeMap();
+    }
+
+    public void setTypeMap(Map<String, Class<?>> map) throws SQLException {
+        validate().setTypeMap(map);
+    }
+
+    public void setHoldability(int holdability) throws SQLException {
+        validate().setHoldability(holdability);
+    }
+
+    public int getHoldability() throws SQLException {
+        return validate().getHoldability();
+    }
+
+    public Savepoint setSavepoint() throws SQLException {
+        return validate().setSavepoint();
+    }
+
+    public Savepoint setSavepoint(String name) throws SQLException {
+        return validate().setSavepoint(name);
+    }
+
+    public void rollback(Savepoint savepoint) throws SQLException {
+        validate().rollback(savepoint);
+    }
+
+    public void releaseSavepoint(Savepoint savepoint) throws SQLException {
+        validate().releaseSavepoint(savepoint);
+    }
+
+    public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability)
+            throws SQLException {
+        return validate().createStatement(resultSetType, resultSetConcurrency, resultSetHoldability);
+    }
+
+    public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency,
+                                              int resultSetHoldability) throws SQLException {
+        return validate().prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+    }
+
+    public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency,
+                                         int resultSetHoldability) throws SQLException {
+        return validate().prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+    }
+
+    public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+        return validate().prepareStatement(sql, autoGeneratedKeys);
+    }
+
+    public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+        return validate().prepareStatement(sql, columnIndexes);
+    }
+
+    public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+        return validate().prepareStatement(sql, columnNames);
+    }
+
+    public Clob createClob() throws SQLException {
+        return validate().createClob();
+    }
+
+    public Blob createBlob() throws SQLException {
+        return validate().createBlob();
+    }
+
+    public NClob createNClob() throws SQLException {
+        return validate().createNClob();
+    }
+
+    public SQLXML createSQLXML() throws SQLException {
+        return validate().createSQLXML();
+    }
+
+    public boolean isValid(int timeout) throws SQLException {
+        return !closed && physicalConnection.isValid(timeout);
+    }
+
+    public void setClientInfo(String name, String value) throws SQLClientInfoException {
+        physicalConnection.setClientInfo(name, value);
+    }
+
+    public void setClientInfo(Properties properties) throws SQLClientInfoException {
+        physicalConnection.setClientInfo(properties);
+    }
+
+    public String getClientInfo(String name) throws SQLException {
+        return validate().getClientInfo(name);
+    }
+
+    public Properties getClientInfo() throws SQLException {
+        return validate().getClientInfo();
+    }
+
+    public Array createArrayOf(String typeName, Object[] elements) throws SQLException {
+        return validate().createArrayOf(typeName, elements);
+    }
+
+    public Struct createStruct(String typeName, Object[] attributes) throws SQLException {
+        return validate().createStruct(typeName, attributes);
+    }
+
+    public void setSchema(String schema) throws SQLException {
+        validate().setSchema(schema);
+    }
+
+    public String getSchema() throws SQLException {
+        return validate().getSchema();
+    }
+
+    public void abort(Executor executor) throws SQLException {
+        if (!closed) {
+            closed = true;
+            pooledConnection.logicalConnectionAborted(this);
+        }
+    }
+
+    public void setNetworkTimeout(Executor executor, int milliseconds) throws SQLException {
+        validate().setNetworkTimeout(executor, milliseconds);
+    }
+
+    public int getNetworkTimeout() throws SQLException {
+        return validate().getNetworkTimeout();
+    }
+
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : validate().unwrap(iface);
+    }
+
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || validate().isWrapperFor(iface);
+    }
+}
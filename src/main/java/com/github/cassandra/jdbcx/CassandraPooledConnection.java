@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbcx;
+
+import com.github.cassandra.jdbc.CassandraErrors;
+import com.google.common.base.Objects;
+import org.pmw.tinylog.Logger;
+
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.PooledConnection;
+import javax.sql.StatementEventListener;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This is a physical connection managed by connection pool. Each checkout gets a new
+ * {@link CassandraLogicalConnection}, a thin handle over the physical connection, and the session underneath is
+ * shared by all connections to the same cluster anyway. Prepared statements are cached per session, so they
+ * survive checkouts without pooling statement objects here.
+ *
+ * @author Zhichun Wu
+ */
+public class CassandraPooledConnection implements PooledConnection {
+    private final Connection physicalConnection;
+    private final String defaultSchema;
+    // events are immutable, so there's no need to create one for each checkout
+    private final ConnectionEvent closedEvent;
+
+    private final List<ConnectionEventListener> connectionListeners
+            = new CopyOnWriteArrayList<ConnectionEventListener>();
+    private final List<StatementEventListener> statementListeners = new CopyOnWriteArrayList<StatementEventListener>();
+
+    private final AtomicReference<CassandraLogicalConnection> currentHandle
+            = new AtomicReference<CassandraLogicalConnection>();
+
+    private volatile boolean closed;
+
+    public CassandraPooledConnection(Connection physicalConnection) throws SQLException {
+        this.physicalConnection = physicalConnection;
+        this.defaultSchema = physicalConnection.getSchema();
+        this.closedEvent = new ConnectionEvent(this);
+        this.closed = false;
+    }
+
+    private void fireConnectionError(SQLException e) {
+        ConnectionEvent event = new ConnectionEvent(this, e);
+        for (ConnectionEventListener listener : connectionListeners) {
+            listener.connectionErrorOccurred(event);
+        }
+    }
+
+    void logicalConnectionClosed(CassandraLogicalConnection handle) {
+        if (!currentHandle.compareAndSet(handle, null)) { // replaced by a new handle, or closed already
+            return;
+        }
+
+        SQLException error = null;
+        try {
+            if (physicalConnection.isClosed()) {
+                error = CassandraErrors.connectionClosedException();
+            } else if (!Objects.equal(defaultSchema, physicalConnection.getSchema())) {
+                // next checkout should not see keyspace changed by someone else
+                physicalConnection.setSchema(defaultSchema);
+            }
+        } catch (SQLException e) {
+            error = e;
+        }
+
+        if (error == null) {
+            for (ConnectionEventListener listener : connectionListeners) {
+                listener.connectionClosed(closedEvent);
+            }
+        } else {
+            Logger.debug(error, "Physical connection is not reusable");
+            fireConnectionError(error);
+        }
+    }
+
+    void logicalConnectionAborted(CassandraLogicalConnection handle) {
+        if (currentHandle.compareAndSet(handle, null)) {
+            fireConnectionError(CassandraErrors.connectionClosedException());
+        }
+    }
+
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw CassandraErrors.connectionClosedException();
+        }
+
+        CassandraLogicalConnection handle = new CassandraLogicalConnection(this, physicalConnection);
+        CassandraLogicalConnection previous = currentHandle.getAndSet(handle);
+        if (previous != null) {
+            // only one handle is allowed at a time, and the previous one is closed silently
+            previous.invalidate();
+        }
+
+        return handle;
+    }
+
+    public void close() throws SQLException {
+        if (!closed) {
+            closed = true;
+
+            CassandraLogicalConnection handle = currentHandle.getAndSet(null);
+            if (handle != null) {
+                handle.invalidate();
+            }
+
+            physicalConnection.close();
+        }
+    }
+
+    public void addConnectionEventListener(ConnectionEventListener listener) {
+        connectionListeners.add(listener);
+    }
+
+    public void removeConnectionEventListener(ConnectionEventListener listener) {
+        connectionListeners.remove(listener);
+    }
+
+    public void addStatementEventListener(StatementEventListener listener) {
+        // statements are not pooled so there's no statement event for now
+        statementListeners.add(listener);
+    }
+
+    public void removeStatementEventListener(StatementEventListener listener) {
+        statementListeners.remove(listener);
+    }
+}
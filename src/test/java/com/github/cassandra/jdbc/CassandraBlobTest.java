@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc;
+
+import com.google.common.io.ByteStreams;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.sql.Blob;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import static org.testng.Assert.*;
+
+public class CassandraBlobTest {
+    private static byte[] bytes(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testSlicedBuffer() throws SQLException, IOException {
+        ByteBuffer frame = ByteBuffer.wrap(bytes(100));
+        frame.position(10);
+        frame.limit(20);
+
+        CassandraBlob blob = new CassandraBlob(frame);
+        assertEquals(blob.length(), 10L);
+        assertEquals(blob.getBytes(1, 3), new byte[]{10, 11, 12});
+        assertEquals(ByteStreams.toByteArray(blob.getBinaryStream()), Arrays.copyOfRange(bytes(100), 10, 20));
+        assertEquals(ByteStreams.toByteArray(blob.getBinaryStream(9, 2)), new byte[]{18, 19});
+        assertTrue(blob.asByteBuffer().isReadOnly());
+        assertEquals(blob.asByteBuffer().remaining(), 10);
+
+        // the original buffer is untouched
+        assertEquals(frame.position(), 10);
+        assertEquals(frame.limit(), 20);
+
+        try {
+            blob.getBytes(10, 2);
+            fail("Should fail when reading beyond the blob");
+        } catch (SQLException e) {
+            // expected
+        }
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testDirectBuffer() throws SQLException, IOException {
+        ByteBuffer direct = ByteBuffer.allocateDirect(8);
+        direct.put(bytes(8));
+        direct.flip();
+        direct.position(2);
+
+        Blob blob = CassandraDataTypeConverters.instance.convert(direct, Blob.class, false);
+        assertEquals(ByteStreams.toByteArray(blob.getBinaryStream()), new byte[]{2, 3, 4, 5, 6, 7});
+        assertEquals(CassandraDataTypeConverters.instance.convert(direct, byte[].class, false),
+                new byte[]{2, 3, 4, 5, 6, 7});
+        assertEquals(ByteStreams.toByteArray(
+                CassandraDataTypeConverters.instance.convert(direct, InputStream.class, false)),
+                new byte[]{2, 3, 4, 5, 6, 7});
+        assertEquals(direct.position(), 2);
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testRead() throws IOException {
+        byte[] data = bytes(20000);
+
+        ByteBuffer buffer = CassandraBlob.read(new ByteArrayInputStream(data), -1L);
+        assertEquals(buffer.remaining(), data.length);
+        assertEquals(CassandraDataTypeConverters.toByteArray(buffer), data);
+
+        buffer = CassandraBlob.read(new ByteArrayInputStream(data), 100L);
+        assertEquals(buffer.remaining(), 100);
+        assertEquals(buffer.array().length, 100);
+
+        // stream ends earlier than expected
+        buffer = CassandraBlob.read(new ByteArrayInputStream(data, 0, 10), 100L);
+        assertEquals(buffer.remaining(), 10);
+
+        buffer = CassandraBlob.read(new ByteArrayInputStream(new byte[0]), -1L);
+        assertEquals(buffer.remaining(), 0);
+    }
+}
@@ -21,9 +21,16 @@
 package com.github.cassandra.jdbc;
 
 
+import com.github.cassandra.jdbc.cql.CqlIdempotence;
+import com.github.cassandra.jdbc.cql.CqlJoinPlan;
+import com.github.cassandra.jdbc.cql.CqlLimitRewriter;
+import com.github.cassandra.jdbc.cql.CqlOffsetPlan;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
+
 import static org.testng.Assert.*;
 
 public class CassandraCqlParserTest {
@@ -117,7 +124,7 @@ public class CassandraCqlParserTest {
     public void testMagicComments() {
         String sql = "-- set consistency_level = aNY;fetch_size=991;;;\n" +
                 "-- set no_limit=true ; tracing = true\n" +
-                "-- set read_timeout = 51\n" +
+                "-- set read_timeout = 51; speculative = p99\n" +
                 "-- set replace_null_value = true  ; sql_parser = true; \n" +
                 "/* set replace_null_value = false ; sql_parser = false; \n" +
                 "   set replace_null_value = false ; sql_parser = false; */\n" +
@@ -131,6 +138,7 @@ public class CassandraCqlParserTest {
             assertEquals(conf.getConsistencyLevel(), "ANY");
             assertEquals(conf.getFetchSize(), 991);
             assertEquals(conf.getReadTimeout(), 51 * 1000);
+            assertEquals(conf.getSpeculativeExecution(), "p99");
             assertTrue(conf.noLimit());
             assertTrue(conf.tracingEnabled());
             assertTrue(conf.replaceNullValue());
@@ -140,4 +148,139 @@ public class CassandraCqlParserTest {
             fail("Failed", e);
         }
     }
+
+    @Test(groups = {"unit", "base"})
+    public void testParseJoin() {
+        String sql = "select f.id, f.amount, d.name as dim_name from sales.fact f " +
+                "join dim d on f.dim_id = d.id where f.day = '2017-01-01' and d.\"Type\" = 'X' limit 10";
+
+        try {
+            CassandraCqlStatement stmt = CassandraCqlParser.parse(CassandraConfiguration.DEFAULT, sql);
+            assertEquals(stmt.getConfiguration().getStatementType(), CassandraStatementType.SELECT);
+            assertTrue(stmt.hasJoin());
+
+            CqlJoinPlan plan = stmt.getJoinPlan();
+            assertEquals(plan.getLimit(), 10L);
+            assertEquals(plan.getLeft().getKeyspace(), "sales");
+            assertEquals(plan.getLeft().getTable(), "fact");
+            assertEquals(plan.getLeft().getJoinColumn(), "dim_id");
+            assertEquals(plan.getLeft().getCql(), "SELECT id, amount, dim_id FROM sales.fact WHERE day = '2017-01-01'");
+            assertNull(plan.getRight().getKeyspace());
+            assertEquals(plan.getRight().getJoinColumn(), "id");
+            assertEquals(plan.getRight().getCql(), "SELECT name, id FROM dim WHERE \"Type\" = 'X'");
+            assertEquals(plan.getRight().getConditionColumns(), Collections.singleton("Type"));
+            // non-key condition within the partition needs filtering
+            assertEquals(plan.getRight().getLookupCql(null, Arrays.asList("id")),
+                    "SELECT * FROM dim WHERE id = ? AND \"Type\" = 'X' ALLOW FILTERING");
+            assertEquals(plan.getRight().getLookupCql(null, Arrays.asList("id", "Type")),
+                    "SELECT * FROM dim WHERE id = ? AND \"Type\" = 'X'");
+            assertEquals(plan.getLeft().getLookupCql(Arrays.asList("id"), Arrays.asList("dim_id")),
+                    "SELECT id FROM sales.fact WHERE dim_id = ? AND day = '2017-01-01' ALLOW FILTERING");
+
+            assertEquals(plan.getProjections().size(), 3);
+            assertEquals(plan.getProjections().get(2).getSide(), CqlJoinPlan.RIGHT);
+            assertEquals(plan.getProjections().get(2).getLabel(), "dim_name");
+
+            // unqualified columns are ambiguous
+            stmt = CassandraCqlParser.parse(CassandraConfiguration.DEFAULT,
+                    "select * from a join b on a.id = b.id where x = 1");
+            assertFalse(stmt.hasJoin());
+        } catch (Exception e) {
+            fail("Failed", e);
+        }
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testParseOffset() {
+        try {
+            CassandraCqlStatement stmt = CassandraCqlParser.parse(CassandraConfiguration.DEFAULT,
+                    "select t.a, t.b from ks.t t where a = 1 limit 50 offset 10000");
+            assertEquals(stmt.getCql(), "SELECT a, b FROM ks.t WHERE a = 1 LIMIT 50");
+            assertTrue(stmt.hasOffset());
+
+            CqlOffsetPlan plan = stmt.getOffsetPlan();
+            assertEquals(plan.getOffset(), 10000L);
+            assertEquals(plan.getLimit(), 50L);
+            assertEquals(plan.getKeyspace(), "ks");
+            assertEquals(plan.getTable(), "t");
+            assertEquals(plan.getCql(), "SELECT a, b FROM ks.t WHERE a = 1");
+            assertEquals(plan.getLeanCql(Arrays.asList("a", "\"C\"")), "SELECT a, \"C\" FROM ks.t WHERE a = 1");
+
+            stmt = CassandraCqlParser.parse(CassandraConfiguration.DEFAULT, "select count(*) from t limit 10 offset 1");
+            assertEquals(stmt.getCql(), "SELECT count(*) FROM t LIMIT 10");
+            assertNull(stmt.getOffsetPlan().getLeanCql(Arrays.asList("a")));
+
+            stmt = CassandraCqlParser.parse(CassandraConfiguration.DEFAULT, "select * from t limit 10");
+            assertFalse(stmt.hasOffset());
+        } catch (Exception e) {
+            fail("Failed", e);
+        }
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testMaxRows() {
+        try {
+            CassandraCqlStatement stmt = CassandraCqlParser.parse(CassandraConfiguration.DEFAULT,
+                    "select a from t where a = 1 limit 50");
+            assertEquals(stmt.getCql(0L), "SELECT a FROM t WHERE a = 1 LIMIT 50");
+            assertEquals(stmt.getCql(10L), "SELECT a FROM t WHERE a = 1 LIMIT 10");
+            assertEquals(stmt.getCql(100L), "SELECT a FROM t WHERE a = 1 LIMIT 50");
+
+            stmt = CassandraCqlParser.parse(CassandraConfiguration.DEFAULT, "select a from t limit 10 offset 5");
+            assertEquals(stmt.getOffsetPlan().withMaxRows(3L).getLimit(), 3L);
+            assertSame(stmt.getOffsetPlan().withMaxRows(30L), stmt.getOffsetPlan());
+
+            stmt = CassandraCqlParser.parse(CassandraConfiguration.DEFAULT, "insert into t(a) values(1)");
+            assertEquals(stmt.getCql(10L), stmt.getCql());
+
+            // CQL as is
+            assertEquals(CqlLimitRewriter.rewrite("select * from t;", 10L), "select * from t LIMIT 10;");
+            assertEquals(CqlLimitRewriter.rewrite("-- set fetchSize=5\nselect * from t where b = 'limit 1' "
+                    + "allow filtering", 10L), "-- set fetchSize=5\nselect * from t where b = 'limit 1' "
+                    + "LIMIT 10 allow filtering");
+            assertEquals(CqlLimitRewriter.rewrite("select * from t per partition limit 2 limit 100", 10L),
+                    "select * from t per partition limit 2 limit 10");
+            assertEquals(CqlLimitRewriter.rewrite("select * from t limit ?", 10L), "select * from t limit ?");
+            assertEquals(CqlLimitRewriter.rewrite("select * from t limit 5", 10L), "select * from t limit 5");
+            assertEquals(CqlLimitRewriter.rewrite("select \"limit\" from t /* limit 1 */", 10L),
+                    "select \"limit\" from t LIMIT 10 /* limit 1 */");
+            assertEquals(CqlLimitRewriter.rewrite("update t set a = 1 where b = 2", 10L),
+                    "update t set a = 1 where b = 2");
+        } catch (Exception e) {
+            fail("Failed", e);
+        }
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testIdempotence() {
+        try {
+            assertTrue(CassandraCqlParser.parse(CassandraConfiguration.DEFAULT, "select * from t").isIdempotent());
+            assertTrue(CassandraCqlParser.parse(CassandraConfiguration.DEFAULT,
+                    "insert into t(a, b) values(1, 'x')").isIdempotent());
+            assertFalse(CassandraCqlParser.parse(CassandraConfiguration.DEFAULT,
+                    "insert into t(a, b) values(1, 'x') if not exists").isIdempotent());
+            assertFalse(CassandraCqlParser.parse(CassandraConfiguration.DEFAULT,
+                    "update t set c = c + 1 where a = 1").isIdempotent());
+            assertFalse(CassandraCqlParser.parse(CassandraConfiguration.DEFAULT, "truncate t").isIdempotent());
+
+            CassandraStatementType insert = CassandraStatementType.INSERT;
+            CassandraStatementType update = CassandraStatementType.UPDATE;
+            CassandraStatementType delete = CassandraStatementType.DELETE;
+            assertTrue(CqlIdempotence.isIdempotent(update, "update t set b = 'if', \"C\" = c + 1 where a = ?"));
+            assertTrue(CqlIdempotence.isIdempotent(update, "update t set l[0] = 1, m = {'a': 1} where a <= 1"));
+            assertTrue(CqlIdempotence.isIdempotent(delete, "delete b from t where a = 1 -- if exists"));
+            assertTrue(CqlIdempotence.isIdempotent(insert, "insert into t(a, uuid) values(?, ?) using ttl 10"));
+            assertFalse(CqlIdempotence.isIdempotent(update, "update t set b = 1 where a = 1 if b = 2"));
+            assertFalse(CqlIdempotence.isIdempotent(update, "update t set b = 1, \"C\" = 2 - \"C\" where a = 1"));
+            assertFalse(CqlIdempotence.isIdempotent(update, "update t set l = [1, 2] + l where a = 1"));
+            assertFalse(CqlIdempotence.isIdempotent(update, "UPDATE t SET L = l - [1] WHERE a = 1"));
+            assertFalse(CqlIdempotence.isIdempotent(delete, "delete l[0] from t where a = 1"));
+            assertFalse(CqlIdempotence.isIdempotent(delete, "delete from t where a = 1 if exists"));
+            assertFalse(CqlIdempotence.isIdempotent(insert, "insert into t(a, b) values(1, now())"));
+            assertFalse(CqlIdempotence.isIdempotent(insert, "insert into t(a, b) values(1, UUID ())"));
+            assertFalse(CqlIdempotence.isIdempotent(CassandraStatementType.UNKNOWN, "begin batch apply batch"));
+        } catch (Exception e) {
+            fail("Failed", e);
+        }
+    }
 }
@@ -0,0 +1,226 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc;
+
+import com.google.common.util.concurrent.AtomicDouble;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.sql.Date;
+import java.sql.Time;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.testng.Assert.*;
+
+public class CassandraDataTypeConvertersTest {
+    private final CassandraDataTypeConverters converters = CassandraDataTypeConverters.instance;
+
+    @Test(groups = {"unit", "base"})
+    public void testNumericConversions() {
+        Object[] values = new Object[]{
+                (byte) -128, (short) 32767, 0, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE,
+                0.1D, -1234.5678D, 1E20D, Double.MIN_VALUE, 1.0F, -0.5F,
+                new BigDecimal("123.456"), new BigInteger("123456789012345678901234567890")};
+        Class[] targets = new Class[]{Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class,
+                BigDecimal.class, String.class};
+
+        for (Object value : values) {
+            Number n = (Number) value;
+            for (Class target : targets) {
+                Object expected;
+                if (target == Byte.class) {
+                    expected = n.byteValue();
+                } else if (target == Short.class) {
+                    expected = n.shortValue();
+                } else if (target == Integer.class) {
+                    expected = n.intValue();
+                } else if (target == Long.class) {
+                    expected = n.longValue();
+                } else if (target == Float.class) {
+                    expected = n.floatValue();
+                } else if (target == Double.class) {
+                    expected = n.doubleValue();
+                } else if (target == BigDecimal.class) {
+                    // what we used to get by parsing string
+                    expected = new BigDecimal(String.valueOf(value));
+                } else {
+                    expected = String.valueOf(value);
+                }
+
+                assertEquals(converters.convert(value, target, false), expected,
+                        "Failed to convert " + value.getClass().getSimpleName() + " to " + target.getSimpleName());
+            }
+        }
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testBigIntegerConversions() {
+        assertEquals(converters.convert(Long.MIN_VALUE, BigInteger.class, false), BigInteger.valueOf(Long.MIN_VALUE));
+        assertEquals(converters.convert((short) 7, BigInteger.class, false), BigInteger.valueOf(7L));
+        assertEquals(converters.convert(1E20D, BigInteger.class, false), new BigInteger("100000000000000000000"));
+        assertEquals(converters.convert(new BigDecimal("1E+3"), BigInteger.class, false), BigInteger.valueOf(1000L));
+        assertEquals(converters.convert("12", BigInteger.class, false), BigInteger.valueOf(12L));
+        assertEquals(converters.convert(new AtomicLong(Long.MAX_VALUE), BigInteger.class, false),
+                BigInteger.valueOf(Long.MAX_VALUE));
+        assertEquals(converters.convert(new AtomicDouble(2.0D), BigInteger.class, false), BigInteger.valueOf(2L));
+
+        // numbers outside the integral whitelist keep their fraction
+        assertEquals(converters.convert(new AtomicDouble(1.5D), BigDecimal.class, false), new BigDecimal("1.5"));
+        assertEquals(converters.convert(new AtomicInteger(-3), BigDecimal.class, false), BigDecimal.valueOf(-3L));
+        assertEquals(converters.convert(1.5F, BigDecimal.class, false), new BigDecimal("1.5"));
+
+        try {
+            converters.convert(1.5D, BigInteger.class, false);
+            fail("Should not lose fraction silently");
+        } catch (ArithmeticException e) {
+            // expected
+        }
+        try {
+            converters.convert(new AtomicDouble(1.5D), BigInteger.class, false);
+            fail("Should not lose fraction silently");
+        } catch (ArithmeticException e) {
+            // expected
+        }
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testNullAndIdentity() {
+        assertNull(converters.convert(null, Integer.class, false));
+        assertEquals(converters.convert(null, Integer.class, true), Integer.valueOf(0));
+        assertEquals(converters.defaultValueOf(BigDecimal.class), BigDecimal.ZERO);
+
+        BigDecimal d = new BigDecimal("1.0");
+        assertSame(converters.convert(d, BigDecimal.class, false), d);
+        assertSame(converters.convert(d, Number.class, false), d);
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testCollections() {
+        List<String> list = Arrays.asList("b", "a", "b");
+        assertSame(converters.convert(list, List.class, false), list);
+        assertEquals(new ArrayList(converters.convert(list, Set.class, false)), Arrays.asList("b", "a"));
+        assertEquals(converters.convert(new LinkedHashSet<String>(list), List.class, false), Arrays.asList("b", "a"));
+        assertEquals(converters.convert("x, y", List.class, false), Arrays.asList("x", "y"));
+        assertEquals(converters.convert(null, Map.class, true), Collections.emptyMap());
+        assertEquals(converters.convert(null, Set.class, true), Collections.emptySet());
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testInetAddress() throws Exception {
+        int lookups = CassandraTestHelper.countNameServiceLookups(new Callable<Object>() {
+            public Object call() throws Exception {
+                assertEquals(converters.convert("10.1.2.3", InetAddress.class, false).getHostAddress(), "10.1.2.3");
+                assertEquals(converters.convert("::1", InetAddress.class, false), InetAddress.getByAddress(
+                        new byte[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1}));
+                assertEquals(converters.convert("[fe80::1]", InetAddress.class, false).getHostAddress(),
+                        "fe80:0:0:0:0:0:0:1");
+                assertEquals(converters.convert("localhost/127.0.0.1", InetAddress.class, false).getHostAddress(),
+                        "127.0.0.1");
+                assertEquals(converters.convert(new byte[]{1, 2, 3, 4}, InetAddress.class, false).getHostAddress(),
+                        "1.2.3.4");
+                assertEquals(converters.convert(null, InetAddress.class, true).getHostAddress(), "127.0.0.1");
+                try {
+                    converters.convert("cassandra.example.com", InetAddress.class, false);
+                    fail("Host name should not be resolved");
+                } catch (IllegalArgumentException e) {
+                    // expected
+                }
+                return null;
+            }
+        });
+
+        assertEquals(lookups, 0);
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testUuid() {
+        Random random = new Random(38L);
+        for (int i = 0; i < 1000; i++) {
+            UUID uuid = new UUID(random.nextLong(), random.nextLong());
+            assertEquals(CassandraDataTypeConverters.parseUuid(uuid.toString()), uuid);
+            assertEquals(CassandraDataTypeConverters.parseUuid(uuid.toString().toUpperCase()), uuid);
+        }
+
+        // non-canonical forms accepted by UUID.fromString
+        assertEquals(CassandraDataTypeConverters.parseUuid("1-2-3-4-5"), UUID.fromString("1-2-3-4-5"));
+        for (String invalid : new String[]{"", "not-a-uuid", "0123456x-89ab-cdef-0123-456789abcdef"}) {
+            try {
+                CassandraDataTypeConverters.parseUuid(invalid);
+                fail("Should fail to parse " + invalid);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+
+        UUID uuid = UUID.randomUUID();
+        ByteBuffer bytes = ByteBuffer.allocate(20);
+        bytes.putInt(0).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+        bytes.position(4);
+        assertEquals(converters.convert(bytes, UUID.class, false), uuid);
+        assertEquals(converters.convert(CassandraDataTypeConverters.toByteArray(bytes), UUID.class, false), uuid);
+        assertEquals(converters.convert(uuid.toString(), UUID.class, false), uuid);
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testBinaryNumbers() {
+        BigInteger varint = new BigInteger("-123456789012345678901234567890");
+        assertEquals(converters.convert(ByteBuffer.wrap(varint.toByteArray()), BigInteger.class, false), varint);
+        assertEquals(converters.convert(varint.toByteArray(), BigInteger.class, false), varint);
+
+        BigDecimal decimal = new BigDecimal("-1234567890.0123456789");
+        ByteBuffer bytes = ByteBuffer.allocate(4 + decimal.unscaledValue().toByteArray().length);
+        bytes.putInt(decimal.scale()).put(decimal.unscaledValue().toByteArray());
+        bytes.flip();
+        assertEquals(converters.convert(bytes, BigDecimal.class, false), decimal);
+
+        assertEquals(converters.convert(new AtomicLong(42L), BigDecimal.class, false), BigDecimal.valueOf(42L));
+        assertEquals(converters.convert(new AtomicLong(42L), BigInteger.class, false), BigInteger.valueOf(42L));
+        assertEquals(converters.convert(0.1F, BigDecimal.class, false), new BigDecimal("0.1"));
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testDateTimeInNonUtcZone() {
+        TimeZone defaultZone = TimeZone.getDefault();
+        org.joda.time.DateTimeZone defaultJodaZone = org.joda.time.DateTimeZone.getDefault();
+        try {
+            TimeZone zone = TimeZone.getTimeZone("America/Sao_Paulo");
+            TimeZone.setDefault(zone);
+            org.joda.time.DateTimeZone.setDefault(org.joda.time.DateTimeZone.forTimeZone(zone));
+
+            // strings and Joda types end up the same as what java.sql.Date / Time would give
+            Time time = new Time(Time.valueOf("05:06:07").getTime() + 89L);
+            assertEquals(converters.convert("05:06:07.089", Time.class, false), time);
+            assertEquals(converters.convert(new org.joda.time.LocalTime(5, 6, 7, 89), Time.class, false), time);
+            assertEquals(converters.convert("2017-03-04", Date.class, false), Date.valueOf("2017-03-04"));
+            assertEquals(converters.convert(new org.joda.time.LocalDate(2017, 3, 4), Date.class, false),
+                    Date.valueOf("2017-03-04"));
+        } finally {
+            TimeZone.setDefault(defaultZone);
+            org.joda.time.DateTimeZone.setDefault(defaultJodaZone);
+        }
+    }
+}
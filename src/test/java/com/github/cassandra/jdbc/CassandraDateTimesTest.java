@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc;
+
+import org.joda.time.Days;
+import org.joda.time.Instant;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.DateTimeFormatterBuilder;
+import org.joda.time.format.ISODateTimeFormat;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+import static org.testng.Assert.*;
+
+public class CassandraDateTimesTest {
+    private static final DateTimeFormatter JODA_PARSER = new DateTimeFormatterBuilder()
+            .append(ISODateTimeFormat.dateOptionalTimeParser().getParser())
+            .appendOptional(new DateTimeFormatterBuilder().appendTimeZoneOffset("Z", true, 2, 4).toParser())
+            .toFormatter()
+            .withZoneUTC();
+    private static final LocalDate EPOCH = new LocalDate(1970, 1, 1);
+
+    // year 0001 to 9999
+    private static final long MIN_MILLIS = -62135596800000L;
+    private static final long MAX_MILLIS = 253402300799999L;
+
+    private static final int ROUNDS = 20000;
+
+    private static String pad(int value, int width) {
+        StringBuilder builder = new StringBuilder(String.valueOf(value));
+        while (builder.length() < width) {
+            builder.insert(0, '0');
+        }
+        return builder.toString();
+    }
+
+    private static long randomMillis(Random random) {
+        return MIN_MILLIS + (long) (random.nextDouble() * (MAX_MILLIS - MIN_MILLIS));
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testTimestampAgainstJoda() {
+        Random random = new Random(20170101L);
+        String[] zones = new String[]{"", "Z", "+08", "-0530", "+01:45", "-11:00"};
+
+        for (int i = 0; i < ROUNDS; i++) {
+            long millis = randomMillis(random);
+            String formatted = CassandraDateTimes.formatTimestamp(millis);
+            assertEquals(formatted, new Instant(millis).toString());
+            assertEquals(CassandraDateTimes.parseTimestamp(formatted), millis);
+
+            // build literals in different shapes
+            int hour = random.nextInt(24);
+            int minute = random.nextInt(60);
+            StringBuilder literal = new StringBuilder()
+                    .append(pad(1 + random.nextInt(9999), 4)).append('-')
+                    .append(pad(1 + random.nextInt(12), random.nextInt(2) + 1)).append('-')
+                    .append(pad(1 + random.nextInt(28), random.nextInt(2) + 1));
+            switch (random.nextInt(4)) {
+                case 0:
+                    break;
+                case 1:
+                    literal.append('T').append(pad(hour, 2)).append(':').append(pad(minute, 2));
+                    break;
+                default:
+                    literal.append('T').append(pad(hour, 2)).append(':').append(pad(minute, 2))
+                            .append(':').append(pad(random.nextInt(60), 2));
+                    int digits = random.nextInt(10);
+                    if (digits > 0) {
+                        literal.append('.').append(pad(random.nextInt(1000000000), 9).substring(0, digits));
+                    }
+                    break;
+            }
+            if (literal.length() > 10) {
+                literal.append(zones[random.nextInt(zones.length)]);
+            }
+
+            String s = literal.toString();
+            assertEquals(CassandraDateTimes.parseTimestamp(s), JODA_PARSER.parseMillis(s), s);
+            // space is also accepted in CQL
+            assertEquals(CassandraDateTimes.parseTimestamp(s.replace('T', ' ')), JODA_PARSER.parseMillis(s), s);
+        }
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testDateAgainstJoda() {
+        Random random = new Random(19700101L);
+        for (int i = 0; i < ROUNDS; i++) {
+            // 0001-01-01 to 9999-12-31
+            int days = random.nextInt(719162 + 2932897) - 719162;
+            LocalDate date = EPOCH.plusDays(days);
+            String formatted = CassandraDateTimes.formatDate(days);
+            assertEquals(formatted, date.toString());
+            assertEquals(CassandraDateTimes.parseDate(formatted), days);
+            assertEquals(Days.daysBetween(EPOCH, LocalDate.parse(formatted)).getDays(), days);
+        }
+
+        assertEquals(CassandraDateTimes.parseDate("2016-2-9"),
+                Days.daysBetween(EPOCH, new LocalDate(2016, 2, 9)).getDays());
+        // week date is handled by Joda
+        assertEquals(CassandraDateTimes.parseDate("2017-W01-1"),
+                Days.daysBetween(EPOCH, new LocalDate(2017, 1, 2)).getDays());
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testTimeAgainstJoda() {
+        Random random = new Random(86400L);
+        for (int i = 0; i < ROUNDS; i++) {
+            int millisOfDay = random.nextInt(86400000);
+            LocalTime time = LocalTime.fromMillisOfDay(millisOfDay);
+            String formatted = CassandraDateTimes.formatTime(millisOfDay * 1000000L);
+            assertEquals(formatted, time.toString());
+            assertEquals(CassandraDateTimes.parseTime(formatted), millisOfDay * 1000000L);
+            assertEquals(CassandraDateTimes.parseTime(formatted.substring(0, 8)),
+                    (millisOfDay / 1000) * 1000000000L);
+        }
+
+        assertEquals(CassandraDateTimes.parseTime("12:34"), 45240000000000L);
+        assertEquals(CassandraDateTimes.parseTime("00:00:00.123456789"), 123456789L);
+        assertEquals(CassandraDateTimes.formatTime(123456789L), "00:00:00.123456789");
+        assertEquals(CassandraDateTimes.parseTime("23"), 23 * 3600000000000L);
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testInvalidLiterals() {
+        String[] timestamps = new String[]{"", "abc", "2017-02-29", "2017-13-01", "2017-01-32", "2017-01-01T24:00",
+                "2017-01-01T10:60", "2017-01-01T10:00:00.", "2017-01-01T10:00+08:", "2017-01-01T10:00+2400",
+                "2017-01-01T10:00Zx", "2017-01-01X10:00"};
+        for (String s : timestamps) {
+            try {
+                CassandraDateTimes.parseTimestamp(s);
+                fail("Should not be able to parse " + s);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+
+        String[] times = new String[]{"", "24:00", "12:60", "1a:00", "12:00:00.x"};
+        for (String s : times) {
+            try {
+                CassandraDateTimes.parseTime(s);
+                fail("Should not be able to parse " + s);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testToSqlDateTime() {
+        Random random = new Random(15821015L);
+        // java.sql.Date switches to Julian calendar before 1582
+        for (int i = 0; i < 1000; i++) {
+            long days = random.nextInt(2900000) - 25567;
+            String date = CassandraDateTimes.formatDate(days);
+            assertEquals(CassandraDateTimes.toSqlDate(days).toString(), date);
+        }
+
+        assertEquals(CassandraDateTimes.toSqlDate(0L), java.sql.Date.valueOf("1970-01-01"));
+        assertEquals(CassandraDateTimes.toSqlTime(18367089L),
+                new java.sql.Time(java.sql.Time.valueOf("05:06:07").getTime() + 89L));
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import static org.testng.Assert.*;
+
+public class CassandraNamePatternTest {
+    @Test(groups = {"unit", "base"})
+    public void testCompile() {
+        assertSame(CassandraNamePattern.compile(null), CassandraNamePattern.ANY);
+        assertSame(CassandraNamePattern.compile(""), CassandraNamePattern.ANY);
+        assertSame(CassandraNamePattern.compile("%"), CassandraNamePattern.ANY);
+
+        CassandraNamePattern pattern = CassandraNamePattern.compile("system_auth");
+        assertNull(pattern.getLiteral());
+        assertEquals(pattern.getPrefix(), "system");
+        assertTrue(pattern.matches("system_auth"));
+        assertTrue(pattern.matches("system.auth"));
+        assertFalse(pattern.matches("system__auth"));
+
+        pattern = CassandraNamePattern.compile("system\\_auth");
+        assertEquals(pattern.getLiteral(), "system_auth");
+        assertTrue(pattern.matches("system_auth"));
+        assertFalse(pattern.matches("system.auth"));
+
+        pattern = CassandraNamePattern.compile("us%r\\%");
+        assertEquals(pattern.getPrefix(), "us");
+        assertTrue(pattern.matches("user%"));
+        assertTrue(pattern.matches("usr%"));
+        assertFalse(pattern.matches("user"));
+        assertFalse(pattern.matches("User%"));
+
+        // regular expression is not a thing here
+        pattern = CassandraNamePattern.compile("a.*b%");
+        assertTrue(pattern.matches("a.*bc"));
+        assertFalse(pattern.matches("axxbc"));
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testSelect() {
+        NavigableMap<String, Integer> map = new TreeMap<String, Integer>();
+        map.put("address", 1);
+        map.put("user", 2);
+        map.put("user_events", 3);
+        map.put("users", 4);
+        map.put("x_user", 5);
+
+        assertEquals(CassandraNamePattern.ANY.select(map), Arrays.asList(1, 2, 3, 4, 5));
+        assertEquals(CassandraNamePattern.compile("user").select(map), Arrays.asList(2));
+        assertEquals(CassandraNamePattern.compile("user%").select(map), Arrays.asList(2, 3, 4));
+        assertEquals(CassandraNamePattern.compile("user_").select(map), Arrays.asList(4));
+        assertEquals(CassandraNamePattern.compile("%user").select(map), Arrays.asList(2, 5));
+        assertEquals(CassandraNamePattern.compile("unknown").select(map), Arrays.<Integer>asList());
+    }
+}
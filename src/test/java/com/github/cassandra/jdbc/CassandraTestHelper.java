@@ -23,9 +23,19 @@ package com.github.cassandra.jdbc;
 import com.datastax.driver.core.LocalDate;
 import org.joda.time.Instant;
 import org.joda.time.LocalTime;
+import org.testng.SkipException;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.UnknownHostException;
 import java.sql.Time;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CassandraTestHelper {
     private static CassandraTestHelper instance = new CassandraTestHelper();
@@ -108,6 +118,48 @@ public class CassandraTestHelper {
         return instance;
     }
 
+    /**
+     * Run the given task with a name service that counts and rejects all lookups. The calling test is skipped when
+     * name services cannot be replaced, which is the case since Java 9.
+     *
+     * @param task task to run
+     * @return number of name service lookups made by the task
+     * @throws Exception when failed to run the task
+     */
+    @SuppressWarnings("unchecked")
+    public static int countNameServiceLookups(Callable<?> task) throws Exception {
+        Field field;
+        try {
+            field = java.net.InetAddress.class.getDeclaredField("nameServices");
+        } catch (NoSuchFieldException e) {
+            throw new SkipException("Name services are not replaceable in Java " + System.getProperty("java.version"));
+        }
+        field.setAccessible(true);
+
+        final AtomicInteger lookups = new AtomicInteger();
+        Class nameServiceClass = Class.forName("sun.net.spi.nameservice.NameService");
+        Object nameService = Proxy.newProxyInstance(nameServiceClass.getClassLoader(), new Class[]{nameServiceClass},
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        lookups.incrementAndGet();
+                        throw new UnknownHostException();
+                    }
+                });
+        List nameServices = (List) field.get(null);
+        List original = new ArrayList(nameServices);
+        nameServices.clear();
+        nameServices.add(nameService);
+
+        try {
+            task.call();
+        } finally {
+            nameServices.clear();
+            nameServices.addAll(original);
+        }
+
+        return lookups.get();
+    }
+
     public String replaceScript(String script) {
         return script;
     }
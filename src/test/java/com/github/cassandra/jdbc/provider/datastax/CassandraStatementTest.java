@@ -32,6 +32,7 @@ import java.math.BigInteger;
 import java.net.InetAddress;
 import java.nio.ByteBuffer;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.UUID;
 
 import static org.testng.Assert.*;
@@ -161,6 +162,13 @@ public class CassandraStatementTest extends BaseCassandraTest {
             java.sql.Statement s = conn.createStatement();
             assertTrue(s instanceof CassandraStatement);
 
+            try {
+                s.setMaxRows(-1);
+                fail("Negative max rows should be rejected");
+            } catch (SQLException e) {
+                assertEquals(s.getMaxRows(), 0);
+            }
+
             s.setMaxRows(1);
             ResultSet rs = s.executeQuery(cql);
             assertTrue(rs instanceof CassandraResultSet);
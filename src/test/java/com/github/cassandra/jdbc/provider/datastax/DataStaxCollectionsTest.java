@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.provider.datastax;
+
+import com.datastax.driver.core.*;
+import com.github.cassandra.jdbc.CassandraConfiguration;
+import com.github.cassandra.jdbc.CassandraCqlParser;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.*;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.*;
+
+public class DataStaxCollectionsTest {
+    private static final ProtocolVersion PROTOCOL_VERSION = ProtocolVersion.V4;
+
+    static class MockPreparedStatement extends CassandraPreparedStatement {
+        MockPreparedStatement(Session session, CassandraConfiguration config, String cql) throws SQLException {
+            super(null, new DataStaxSessionWrapper(session, config), cql);
+            updateParameterMetaData(CassandraCqlParser.parse(config, cql), true);
+        }
+
+        Object getParameter(int index) {
+            return parameters.get(index);
+        }
+    }
+
+    private static ColumnDefinitions.Definition newDefinition(String name, DataType type) throws Exception {
+        // not meant to be created outside of the driver
+        Constructor<ColumnDefinitions.Definition> constructor = ColumnDefinitions.Definition.class
+                .getDeclaredConstructor(String.class, String.class, String.class, DataType.class);
+        constructor.setAccessible(true);
+        return constructor.newInstance("ks", "t", name, type);
+    }
+
+    private static List decode(DataType elementType, List<?> values) {
+        ByteBuffer bytes = DataStaxSessionFactory.getCodecRegistry().codecFor(DataType.list(elementType))
+                .serialize(values, PROTOCOL_VERSION);
+        return DataStaxCollections.decodeList(bytes, elementType, PROTOCOL_VERSION,
+                DataStaxSessionFactory.getCodecRegistry());
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testDecodeList() {
+        assertEquals(decode(DataType.cint(), Arrays.asList(1, -2, Integer.MAX_VALUE)),
+                Arrays.asList(1, -2, Integer.MAX_VALUE));
+        assertEquals(decode(DataType.bigint(), Arrays.asList(1L, Long.MIN_VALUE)), Arrays.asList(1L, Long.MIN_VALUE));
+        assertEquals(decode(DataType.cdouble(), Arrays.asList(1.5D, -0.25D)), Arrays.asList(1.5D, -0.25D));
+        assertEquals(decode(DataType.cfloat(), Arrays.asList(1.5F)), Arrays.asList(1.5F));
+        assertEquals(decode(DataType.text(), Arrays.asList("a", "", "ccc")), Arrays.asList("a", "", "ccc"));
+        assertEquals(decode(DataType.text(), Collections.emptyList()), Collections.emptyList());
+
+        // lazy and immutable
+        List list = decode(DataType.uuid(), Arrays.asList(UUID.randomUUID(), UUID.randomUUID()));
+        assertEquals(list.size(), 2);
+        assertSame(list.get(1), list.get(1));
+        try {
+            list.set(0, null);
+            fail("List should be immutable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testBind() {
+        List<Integer> ints = Arrays.asList(1, 2);
+        assertSame(DataStaxCollections.bind(ints, DataType.list(DataType.cint()), DataStaxDataTypes.converters), ints);
+        assertEquals(DataStaxCollections.bind(Arrays.asList("1", "2"), DataType.list(DataType.cint()),
+                DataStaxDataTypes.converters), ints);
+        assertEquals(DataStaxCollections.bind(Arrays.asList("1", "2"), DataType.set(DataType.bigint()),
+                DataStaxDataTypes.converters), new LinkedHashSet<Long>(Arrays.asList(1L, 2L)));
+
+        Map<String, String> map = new LinkedHashMap<String, String>();
+        map.put("a", "1");
+        Map<String, Long> expected = new LinkedHashMap<String, Long>();
+        expected.put("a", 1L);
+        assertEquals(DataStaxCollections.bind(map, DataType.map(DataType.text(), DataType.bigint()),
+                DataStaxDataTypes.converters), expected);
+        assertSame(DataStaxCollections.bind(map, DataType.map(DataType.text(), DataType.text()),
+                DataStaxDataTypes.converters), map);
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testSetObject() throws Exception {
+        String cql = "insert into t(id, ints, tags, history) values(?, ?, ?, ?)";
+        List<ColumnDefinitions.Definition> defs = Arrays.asList(newDefinition("id", DataType.cint()),
+                newDefinition("ints", DataType.list(DataType.cint())),
+                newDefinition("tags", DataType.map(DataType.text(), DataType.bigint())),
+                newDefinition("history", DataType.list(DataType.cint(), true)));
+        ColumnDefinitions variables = mock(ColumnDefinitions.class);
+        when(variables.asList()).thenReturn(defs);
+        PreparedStatement prepared = mock(PreparedStatement.class);
+        when(prepared.getVariables()).thenReturn(variables);
+        ProtocolOptions options = mock(ProtocolOptions.class);
+        when(options.getProtocolVersion()).thenReturn(PROTOCOL_VERSION);
+        Configuration configuration = mock(Configuration.class);
+        when(configuration.getProtocolOptions()).thenReturn(options);
+        Cluster cluster = mock(Cluster.class);
+        when(cluster.getConfiguration()).thenReturn(configuration);
+        Session session = mock(Session.class);
+        when(session.getCluster()).thenReturn(cluster);
+        when(session.prepare(anyString())).thenReturn(prepared);
+
+        MockPreparedStatement stmt = new MockPreparedStatement(session,
+                new CassandraConfiguration("jdbc:c*://localhost/system", new Properties()), cql);
+        assertEquals(stmt.getParameterMetaData().getParameterTypeName(2), "list");
+        assertEquals(stmt.getParameterMetaData().getParameterTypeName(3), "map");
+        assertEquals(stmt.getParameterMetaData().getParameterTypeName(4), "list");
+
+        // elements are converted according to the full type of each parameter
+        stmt.setObject(2, Arrays.asList("1", "2"));
+        assertEquals(stmt.getParameter(2), Arrays.asList(1, 2));
+        Map<String, String> tags = new LinkedHashMap<String, String>();
+        tags.put("a", "1");
+        stmt.setObject(3, tags);
+        assertEquals(stmt.getParameter(3), Collections.singletonMap("a", 1L));
+        // frozen collections are bound in the same way
+        stmt.setObject(4, Arrays.asList(3L));
+        assertEquals(stmt.getParameter(4), Arrays.asList(3));
+    }
+}
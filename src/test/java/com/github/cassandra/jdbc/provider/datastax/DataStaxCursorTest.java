@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.provider.datastax;
+
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+
+import static org.testng.Assert.*;
+
+public class DataStaxCursorTest {
+    @Test(groups = {"unit", "base"})
+    public void testFingerprint() {
+        String cql = "select * from system.peers";
+        assertEquals(DataStaxCursor.fingerprint(cql), DataStaxCursor.fingerprint(cql, (Object[]) null));
+        assertEquals(DataStaxCursor.fingerprint(cql),
+                DataStaxCursor.fingerprint("-- set cursor=abc\n" + cql));
+        assertNotEquals(DataStaxCursor.fingerprint(cql), DataStaxCursor.fingerprint(cql + " limit 1"));
+        assertEquals(DataStaxCursor.fingerprint(cql, 1, ByteBuffer.wrap(new byte[]{1, 2})),
+                DataStaxCursor.fingerprint(cql, 1, ByteBuffer.wrap(new byte[]{1, 2})));
+        assertNotEquals(DataStaxCursor.fingerprint(cql, 1, ByteBuffer.wrap(new byte[]{1, 2})),
+                DataStaxCursor.fingerprint(cql, 1, ByteBuffer.wrap(new byte[]{1, 3})));
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testEncodeAndDecode() throws SQLException {
+        long fingerprint = DataStaxCursor.fingerprint("select * from a");
+        byte[] state = new byte[]{0, 1, 2, 3, 4, 5};
+
+        String token = new DataStaxCursor(fingerprint, state, 27).encode();
+        DataStaxCursor cursor = DataStaxCursor.decode(token, fingerprint);
+        assertEquals(cursor.getFingerprint(), fingerprint);
+        assertEquals(cursor.getPagingState(), state);
+        assertEquals(cursor.getSkip(), 27);
+
+        cursor = DataStaxCursor.decode(new DataStaxCursor(fingerprint, null, 3).encode(), fingerprint);
+        assertNull(cursor.getPagingState());
+        assertEquals(cursor.getSkip(), 3);
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testInvalidCursor() {
+        long fingerprint = DataStaxCursor.fingerprint("select * from a");
+        String token = new DataStaxCursor(fingerprint, new byte[]{9, 8, 7}, 0).encode();
+
+        String[] invalidTokens = new String[]{"", "not a token", token.substring(1),
+                token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA")};
+        for (String t : invalidTokens) {
+            try {
+                DataStaxCursor.decode(t, fingerprint);
+                fail("Should fail for " + t);
+            } catch (SQLException e) {
+                // expected
+            }
+        }
+
+        try {
+            DataStaxCursor.decode(token, DataStaxCursor.fingerprint("select * from b"));
+            fail("Should not accept cursor of a different query");
+        } catch (SQLException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.provider.datastax;
+
+import com.datastax.driver.core.*;
+import com.github.cassandra.jdbc.CassandraConfiguration;
+import com.github.cassandra.jdbc.CassandraTestHelper;
+import org.testng.annotations.Test;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.*;
+
+public class DataStaxDataTypesTest {
+    private static final ProtocolVersion PROTOCOL_VERSION = ProtocolVersion.V4;
+
+    private static ResultSet echo(BoundStatement boundStatement) {
+        // return bound values as they are, in the same way as selecting them back from the server
+        ColumnDefinitions columns = boundStatement.preparedStatement().getVariables();
+        Row row = mock(Row.class);
+        for (int i = 0; i < columns.size(); i++) {
+            ByteBuffer bytes = boundStatement.getBytesUnsafe(i);
+            when(row.getObject(i)).thenReturn(DataStaxSessionFactory.getCodecRegistry().codecFor(columns.getType(i))
+                    .deserialize(bytes, PROTOCOL_VERSION));
+        }
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getColumnDefinitions()).thenReturn(columns);
+        when(rs.one()).thenReturn(row, (Row) null);
+        when(rs.isExhausted()).thenReturn(false, true);
+        return rs;
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testInetAddress() throws Exception {
+        PreparedStatement prepared = DataStaxParameterBinderTest.prepare(DataType.inet(), DataType.inet());
+        ProtocolOptions options = mock(ProtocolOptions.class);
+        when(options.getProtocolVersion()).thenReturn(PROTOCOL_VERSION);
+        Configuration configuration = mock(Configuration.class);
+        when(configuration.getProtocolOptions()).thenReturn(options);
+        Cluster cluster = mock(Cluster.class);
+        when(cluster.getConfiguration()).thenReturn(configuration);
+        Session session = mock(Session.class);
+        when(session.getCluster()).thenReturn(cluster);
+        when(session.prepare(anyString())).thenReturn(prepared);
+
+        final String cql = "select a, b from t where a = ? and b = ?";
+        final DataStaxCollectionsTest.MockPreparedStatement stmt = new DataStaxCollectionsTest.MockPreparedStatement(
+                session, new CassandraConfiguration("jdbc:c*://localhost/system", new Properties()), cql);
+        int lookups = CassandraTestHelper.countNameServiceLookups(new Callable<Object>() {
+            public Object call() throws Exception {
+                stmt.setObject(1, "10.1.2.3");
+                stmt.setString(2, "[::1]");
+                assertTrue(stmt.getParameter(1) instanceof InetAddress);
+
+                // bind in the same way as executing the statement, and then read the values back
+                BoundStatement boundStatement = (BoundStatement) stmt.newStatement(cql,
+                        stmt.getParameter(1), stmt.getParameter(2));
+                CassandraResultSet rs = new CassandraResultSet(stmt, null, echo(boundStatement));
+                assertTrue(rs.next());
+                assertEquals(((InetAddress) rs.getObject(1)).getHostAddress(), "10.1.2.3");
+                assertEquals(rs.getObject(2), InetAddress.getByAddress(
+                        new byte[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1}));
+                assertEquals(rs.getString(1), "/10.1.2.3");
+                assertFalse(rs.next());
+                return null;
+            }
+        });
+
+        assertEquals(lookups, 0);
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.provider.datastax;
+
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.*;
+
+import static org.testng.Assert.*;
+
+public class DataStaxHashJoinTest {
+    static class ListRowSource implements DataStaxJoinExecutor.RowSource {
+        private final Iterator<ByteBuffer[]> iterator;
+
+        ListRowSource(List<ByteBuffer[]> rows) {
+            this.iterator = rows.iterator();
+        }
+
+        public ByteBuffer[] next() throws SQLException {
+            return iterator.hasNext() ? iterator.next() : null;
+        }
+    }
+
+    private static ByteBuffer[] row(Integer key, String value) {
+        return new ByteBuffer[]{key == null ? null : ByteBuffer.allocate(4).putInt(0, key),
+                ByteBuffer.wrap(value.getBytes())};
+    }
+
+    private static String toString(ByteBuffer[][] joined) {
+        return new StringBuilder()
+                .append(joined[0][0].getInt(0)).append(':')
+                .append(new String(joined[0][1].array())).append(':')
+                .append(new String(joined[1][1].array())).toString();
+    }
+
+    private Set<String> join(int dimensions, int facts, long memoryLimit) throws SQLException {
+        List<ByteBuffer[]> fact = new ArrayList<ByteBuffer[]>();
+        for (int i = 0; i < facts; i++) {
+            fact.add(row(i % (dimensions * 2), "f" + i));
+        }
+        fact.add(row(null, "no-key"));
+
+        List<ByteBuffer[]> dim = new ArrayList<ByteBuffer[]>();
+        for (int i = 0; i < dimensions; i++) {
+            dim.add(row(i, "d" + i));
+        }
+        dim.add(row(null, "no-key"));
+
+        Set<String> results = new HashSet<String>();
+        DataStaxHashJoin join = new DataStaxHashJoin(new ListRowSource(dim), 0,
+                new ListRowSource(fact), 0, false, memoryLimit);
+        try {
+            ByteBuffer[][] joined;
+            while ((joined = join.next()) != null) {
+                assertEquals(joined[0][0], joined[1][0]);
+                assertTrue(results.add(toString(joined)));
+            }
+        } finally {
+            join.close();
+        }
+
+        return results;
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testJoinInMemory() throws SQLException {
+        Set<String> results = join(10, 100, 1024L * 1024L);
+        assertEquals(results.size(), 50);
+        assertTrue(results.contains("3:f3:d3"));
+        assertFalse(results.contains("13:f13:d13"));
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testJoinWithSpilling() throws SQLException {
+        Set<String> expected = join(500, 3000, 1024L * 1024L);
+        assertEquals(expected.size(), 1500);
+        // small enough to spill on each level
+        assertEquals(join(500, 3000, 1024L), expected);
+    }
+}
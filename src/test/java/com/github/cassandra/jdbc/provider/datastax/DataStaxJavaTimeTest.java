@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.provider.datastax;
+
+import org.testng.annotations.Test;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.*;
+import java.util.TimeZone;
+
+import static org.testng.Assert.*;
+
+public class DataStaxJavaTimeTest {
+    @Test(groups = {"unit", "base"})
+    public void testConverters() {
+        if (!DataStaxJavaTime.AVAILABLE) {
+            return;
+        }
+
+        Instant instant = Instant.parse("2017-03-04T05:06:07.089Z");
+        Timestamp ts = new Timestamp(instant.toEpochMilli());
+        assertEquals(DataStaxDataTypes.converters.convert(ts, Instant.class, false), instant);
+        assertEquals(DataStaxDataTypes.converters.convert(instant, Timestamp.class, false), ts);
+        assertEquals(DataStaxDataTypes.converters.convert("2017-03-04 05:06:07.089", Instant.class, false), instant);
+        assertEquals(DataStaxDataTypes.converters.convert(ts, OffsetDateTime.class, false),
+                OffsetDateTime.of(2017, 3, 4, 5, 6, 7, 89000000, ZoneOffset.UTC));
+
+        assertEquals(DataStaxDataTypes.converters.convert(
+                com.datastax.driver.core.LocalDate.fromYearMonthDay(2017, 3, 4), LocalDate.class, false),
+                LocalDate.of(2017, 3, 4));
+        assertEquals(DataStaxDataTypes.converters.convert(LocalDate.of(2017, 3, 4), Date.class, false),
+                Date.valueOf("2017-03-04"));
+        assertEquals(DataStaxDataTypes.converters.convert(
+                com.datastax.driver.core.LocalDate.fromYearMonthDay(2017, 3, 4), Date.class, false),
+                Date.valueOf("2017-03-04"));
+
+        assertEquals(DataStaxDataTypes.converters.convert(18367000000000L, LocalTime.class, false),
+                LocalTime.of(5, 6, 7));
+        assertEquals(DataStaxDataTypes.converters.convert(LocalTime.of(5, 6, 7), Time.class, false),
+                Time.valueOf("05:06:07"));
+        assertEquals(DataStaxDataTypes.converters.convert(18367000000000L, Time.class, false),
+                Time.valueOf("05:06:07"));
+        assertNull(DataStaxDataTypes.converters.convert(null, Instant.class, false));
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testToParameter() {
+        if (!DataStaxJavaTime.AVAILABLE) {
+            return;
+        }
+
+        Instant instant = Instant.ofEpochMilli(1488603967089L);
+        assertSame(DataStaxJavaTime.toParameter(instant, "timestamp"), instant);
+        assertEquals(DataStaxJavaTime.toParameter(instant.atOffset(ZoneOffset.ofHours(8)), "timestamp"), instant);
+        assertEquals(DataStaxJavaTime.toParameter(LocalDateTime.ofInstant(instant, ZoneOffset.UTC), "timestamp"),
+                instant);
+        assertEquals(DataStaxJavaTime.toParameter(LocalDate.of(2017, 3, 4), "date"), LocalDate.of(2017, 3, 4));
+        assertEquals(DataStaxJavaTime.toParameter(LocalTime.NOON, "time"), LocalTime.NOON);
+        assertNull(DataStaxJavaTime.toParameter(LocalTime.NOON, "timestamp"));
+        assertNull(DataStaxJavaTime.toParameter(instant, "text"));
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testJavaTimeInNonUtcZone() {
+        if (!DataStaxJavaTime.AVAILABLE) {
+            return;
+        }
+
+        TimeZone defaultZone = TimeZone.getDefault();
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone("Asia/Kathmandu"));
+
+            Instant instant = Instant.parse("2017-03-04T05:06:07.089Z");
+            Timestamp ts = new Timestamp(instant.toEpochMilli());
+            ts.setNanos(89000001);
+            // same as what we read from a timestamp column, regardless of default time zone
+            assertEquals(DataStaxDataTypes.converters.convert(ts, LocalDateTime.class, false),
+                    LocalDateTime.of(2017, 3, 4, 5, 6, 7, 89000001));
+            assertEquals(DataStaxDataTypes.converters.convert(instant, LocalDateTime.class, false),
+                    LocalDateTime.of(2017, 3, 4, 5, 6, 7, 89000000));
+        } finally {
+            TimeZone.setDefault(defaultZone);
+        }
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testJodaInNonUtcZone() {
+        TimeZone defaultZone = TimeZone.getDefault();
+        org.joda.time.DateTimeZone defaultJodaZone = org.joda.time.DateTimeZone.getDefault();
+        try {
+            TimeZone zone = TimeZone.getTimeZone("Asia/Kathmandu");
+            TimeZone.setDefault(zone);
+            org.joda.time.DateTimeZone.setDefault(org.joda.time.DateTimeZone.forTimeZone(zone));
+
+            // time is on the epoch date, not today, in default time zone of the JVM
+            assertEquals(DataStaxDataTypes.converters.convert(new org.joda.time.LocalTime(5, 6, 7, 89), Time.class,
+                    false), new Time(Time.valueOf("05:06:07").getTime() + 89L));
+            assertEquals(DataStaxDataTypes.converters.convert(new org.joda.time.LocalDate(2017, 3, 4), Date.class,
+                    false), Date.valueOf("2017-03-04"));
+        } finally {
+            TimeZone.setDefault(defaultZone);
+            org.joda.time.DateTimeZone.setDefault(defaultJodaZone);
+        }
+    }
+}
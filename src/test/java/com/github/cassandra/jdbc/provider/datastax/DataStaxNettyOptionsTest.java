@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.provider.datastax;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.MultithreadEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.Timer;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.ThreadFactory;
+
+import static org.testng.Assert.*;
+
+public class DataStaxNettyOptionsTest {
+    private static final ThreadFactory THREAD_FACTORY = new ThreadFactoryBuilder().setNameFormat("test-%d").build();
+
+    @Test(groups = {"unit", "base"})
+    public void testDedicated() {
+        DataStaxNettyOptions options = new DataStaxNettyOptions(false, 1, false);
+        EventLoopGroup group1 = options.eventLoopGroup(THREAD_FACTORY);
+        EventLoopGroup group2 = options.eventLoopGroup(THREAD_FACTORY);
+        assertNotSame(group1, group2);
+        assertEquals(options.channelClass(), NioSocketChannel.class);
+
+        options.onClusterClose(group1);
+        options.onClusterClose(group2);
+        assertTrue(group1.isShutdown());
+        assertTrue(group2.isShutdown());
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testShared() {
+        // epoll is never available in tests, as netty-transport-native-epoll is not on the classpath
+        DataStaxNettyOptions options1 = new DataStaxNettyOptions(true, 2, true);
+        DataStaxNettyOptions options2 = new DataStaxNettyOptions(false, 4, true);
+        assertFalse(DataStaxNettyOptions.EPOLL_AVAILABLE);
+
+        EventLoopGroup group = options1.eventLoopGroup(THREAD_FACTORY);
+        assertSame(options2.eventLoopGroup(THREAD_FACTORY), group);
+        // created with settings of the first cluster
+        assertEquals(((MultithreadEventLoopGroup) group).executorCount(), 2);
+        assertEquals(options1.channelClass(), NioSocketChannel.class);
+        Timer timer = options1.timer(THREAD_FACTORY);
+        assertSame(options2.timer(THREAD_FACTORY), timer);
+
+        // released along with the last cluster
+        options1.onClusterClose(group);
+        options1.onClusterClose(timer);
+        assertFalse(group.isShuttingDown());
+        options2.onClusterClose(group);
+        options2.onClusterClose(timer);
+        assertTrue(group.isShutdown());
+
+        // and created again for new clusters
+        EventLoopGroup newGroup = options1.eventLoopGroup(THREAD_FACTORY);
+        assertNotSame(newGroup, group);
+        options1.onClusterClose(newGroup);
+        assertTrue(newGroup.isShutdown());
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.provider.datastax;
+
+import com.datastax.driver.core.*;
+import org.pmw.tinylog.Logger;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.testng.Assert.*;
+
+public class DataStaxParameterBinderTest {
+    private static final ProtocolVersion PROTOCOL_VERSION = ProtocolVersion.V4;
+    private static final int COLUMNS = 30;
+
+    private static final DataType[] TYPES = new DataType[]{
+            DataType.cint(), DataType.bigint(), DataType.text(), DataType.cdouble(), DataType.cboolean(),
+            DataType.timestamp(), DataType.uuid(), DataType.blob(), DataType.decimal(),
+            DataType.list(DataType.cint()), DataType.list(DataType.date()), DataType.set(DataType.timestamp()),
+            DataType.map(DataType.text(), DataType.time())
+    };
+
+    private static final Object[] VALUES = new Object[]{
+            1, 2L, "text", 3.5D, true, new Timestamp(1483228800000L), UUID.randomUUID(),
+            ByteBuffer.wrap(new byte[]{1, 2, 3}), new BigDecimal("123.45"), Arrays.asList(1, 2, 3),
+            Arrays.asList(Date.valueOf("2017-01-01")), Collections.singleton(new Timestamp(1483228800000L)),
+            Collections.singletonMap("t", Time.valueOf("12:34:56"))
+    };
+
+    static <T> T newInstance(Class<T> clazz, Class[] parameterTypes, Object... args) throws Exception {
+        Constructor<T> constructor = clazz.getDeclaredConstructor(parameterTypes);
+        constructor.setAccessible(true);
+        return constructor.newInstance(args);
+    }
+
+    static PreparedStatement prepare(DataType... types) throws Exception {
+        final CodecRegistry registry = DataStaxSessionFactory.getCodecRegistry();
+
+        ColumnDefinitions.Definition[] defs = new ColumnDefinitions.Definition[types.length];
+        for (int i = 0; i < types.length; i++) {
+            defs[i] = newInstance(ColumnDefinitions.Definition.class,
+                    new Class[]{String.class, String.class, String.class, DataType.class}, "ks", "tbl", "c" + i, types[i]);
+        }
+        final ColumnDefinitions variables = newInstance(ColumnDefinitions.class,
+                new Class[]{ColumnDefinitions.Definition[].class, CodecRegistry.class}, defs, registry);
+        final PreparedId preparedId = newInstance(PreparedId.class, new Class[]{Class.forName(
+                        "com.datastax.driver.core.MD5Digest"), ColumnDefinitions.class, ColumnDefinitions.class,
+                        int[].class, ProtocolVersion.class},
+                null, variables, null, null, PROTOCOL_VERSION);
+
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class[]{PreparedStatement.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        String name = method.getName();
+                        Object result = null;
+                        if ("getVariables".equals(name)) {
+                            result = variables;
+                        } else if ("getPreparedId".equals(name)) {
+                            result = preparedId;
+                        } else if ("getCodecRegistry".equals(name)) {
+                            result = registry;
+                        } else if ("bind".equals(name)) {
+                            BoundStatement boundStatement = new BoundStatement((PreparedStatement) proxy);
+                            result = args == null ? boundStatement : boundStatement.bind((Object[]) args[0]);
+                        } else if (method.getReturnType() == boolean.class) {
+                            result = false;
+                        }
+
+                        return result;
+                    }
+                });
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testBind() throws Exception {
+        DataType[] types = new DataType[COLUMNS];
+        Object[] params = new Object[COLUMNS];
+        for (int i = 0; i < COLUMNS; i++) {
+            types[i] = TYPES[i % TYPES.length];
+            params[i] = VALUES[i % VALUES.length];
+        }
+        // null, and string which has to be bound by a codec in the registry
+        params[1] = null;
+        params[5] = "2017-01-01 00:00:00";
+
+        PreparedStatement statement = prepare(types);
+        DataStaxParameterBinder binder = new DataStaxParameterBinder(statement, PROTOCOL_VERSION);
+        assertSame(binder.getStatement(), statement);
+
+        BoundStatement expected = statement.bind(params);
+        BoundStatement actual = binder.bind(params);
+        for (int i = 0; i < COLUMNS; i++) {
+            assertEquals(actual.getBytesUnsafe(i), expected.getBytesUnsafe(i), "Column " + i);
+        }
+
+        // trailing parameters are left unset
+        actual = binder.bind(1);
+        assertTrue(actual.isSet(0));
+        assertFalse(actual.isSet(1));
+
+        try {
+            binder.bind(new Object[COLUMNS + 1]);
+            fail("Should fail with too many parameters");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testBindPerformance() throws Exception {
+        DataType[] types = new DataType[COLUMNS];
+        Object[] params = new Object[COLUMNS];
+        for (int i = 0; i < COLUMNS; i++) {
+            types[i] = TYPES[i % TYPES.length];
+            params[i] = VALUES[i % VALUES.length];
+        }
+
+        PreparedStatement statement = prepare(types);
+        DataStaxParameterBinder binder = new DataStaxParameterBinder(statement, PROTOCOL_VERSION);
+
+        int iterations = 20000;
+        long[] elapsed = new long[2];
+        for (int round = 0; round < 2; round++) { // first round is for warming up
+            long startTime = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                statement.bind(params);
+            }
+            elapsed[0] = System.nanoTime() - startTime;
+
+            startTime = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                binder.bind(params);
+            }
+            elapsed[1] = System.nanoTime() - startTime;
+        }
+
+        Logger.info("Bound {} rows of {} columns: {}ns via codec registry, {}ns via resolved codecs",
+                iterations, COLUMNS, elapsed[0], elapsed[1]);
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.provider.datastax;
+
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.HostDistance;
+import com.datastax.driver.core.PoolingOptions;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.policies.LoadBalancingPolicy;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+public class DataStaxPoolScalerTest {
+    @Test(groups = {"unit", "base"})
+    public void testPressure() {
+        Host local1 = mock(Host.class);
+        Host local2 = mock(Host.class);
+        Host remote = mock(Host.class);
+        LoadBalancingPolicy policy = mock(LoadBalancingPolicy.class);
+        when(policy.distance(local1)).thenReturn(HostDistance.LOCAL);
+        when(policy.distance(local2)).thenReturn(HostDistance.LOCAL);
+        when(policy.distance(remote)).thenReturn(HostDistance.REMOTE);
+
+        Session.State state = mock(Session.State.class);
+        when(state.getConnectedHosts()).thenReturn(Arrays.asList(local1, local2, remote));
+        when(state.getOpenConnections(local1)).thenReturn(2);
+        when(state.getInFlightQueries(local1)).thenReturn(100);
+        when(state.getOpenConnections(local2)).thenReturn(1);
+        when(state.getInFlightQueries(local2)).thenReturn(150);
+        when(state.getOpenConnections(remote)).thenReturn(0);
+        when(state.getInFlightQueries(remote)).thenReturn(10);
+
+        // the busiest pool wins
+        assertEquals(DataStaxPoolScaler.getPressure(Collections.singletonList(state), policy,
+                HostDistance.LOCAL, 200), 0.75D);
+        // no connection, no pressure
+        assertEquals(DataStaxPoolScaler.getPressure(Collections.singletonList(state), policy,
+                HostDistance.REMOTE, 200), 0D);
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testResize() {
+        PoolingOptions options = new PoolingOptions();
+        DataStaxPoolScaler scaler = new DataStaxPoolScaler(null, options, 1, 4);
+        assertEquals(scaler.getConnections(HostDistance.LOCAL), 1);
+        assertEquals(options.getMaxConnectionsPerHost(HostDistance.REMOTE), 1);
+
+        // one spike is not enough
+        assertEquals(scaler.resize(HostDistance.LOCAL, 0.9D), 1);
+        assertEquals(scaler.resize(HostDistance.LOCAL, 0.5D), 1);
+        assertEquals(scaler.resize(HostDistance.LOCAL, 0.9D), 1);
+        assertEquals(scaler.resize(HostDistance.LOCAL, 0.9D), 2);
+        assertEquals(options.getMaxConnectionsPerHost(HostDistance.LOCAL), 2);
+
+        // grow proportionally but within bounds
+        assertEquals(scaler.resize(HostDistance.LOCAL, 3D), 2);
+        assertEquals(scaler.resize(HostDistance.LOCAL, 3D), 4);
+        assertEquals(scaler.resize(HostDistance.LOCAL, 3D), 4);
+        assertEquals(scaler.resize(HostDistance.LOCAL, 3D), 4);
+
+        // shrink slowly, one connection at a time
+        for (int i = 1; i < DataStaxPoolScaler.SHRINK_AFTER; i++) {
+            assertEquals(scaler.resize(HostDistance.LOCAL, 0.1D), 4);
+        }
+        assertEquals(scaler.resize(HostDistance.LOCAL, 0.1D), 3);
+        assertEquals(scaler.resize(HostDistance.LOCAL, 0.1D), 3);
+
+        // distances are independent
+        assertEquals(scaler.getConnections(HostDistance.REMOTE), 1);
+        for (int i = 0; i < DataStaxPoolScaler.SHRINK_AFTER * 2; i++) {
+            assertEquals(scaler.resize(HostDistance.REMOTE, 0D), 1);
+        }
+    }
+}
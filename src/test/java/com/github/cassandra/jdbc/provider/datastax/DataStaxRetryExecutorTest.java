@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.provider.datastax;
+
+import com.codahale.metrics.MetricRegistry;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.WriteType;
+import com.datastax.driver.core.exceptions.*;
+import org.testng.annotations.Test;
+
+import java.net.InetSocketAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.github.cassandra.jdbc.provider.datastax.DataStaxRetryExecutor.Failure;
+import static org.testng.Assert.*;
+
+public class DataStaxRetryExecutorTest {
+    private static final InetSocketAddress ADDRESS = new InetSocketAddress("localhost", 9042);
+    private static final DriverException READ_TIMEOUT
+            = new ReadTimeoutException(ConsistencyLevel.QUORUM, 1, 2, false);
+
+    private static Statement newStatement(boolean idempotent) {
+        Statement stmt = new SimpleStatement("select * from t");
+        stmt.setIdempotent(idempotent);
+        return stmt;
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testClassify() {
+        assertEquals(Failure.of(READ_TIMEOUT), Failure.READ_TIMEOUT);
+        assertEquals(Failure.of(new WriteTimeoutException(ConsistencyLevel.ONE, WriteType.SIMPLE, 0, 1)),
+                Failure.WRITE_TIMEOUT);
+        assertEquals(Failure.of(new UnavailableException(ConsistencyLevel.ONE, 1, 0)), Failure.UNAVAILABLE);
+        assertEquals(Failure.of(new OverloadedException(ADDRESS, "busy")), Failure.OVERLOADED);
+        assertEquals(Failure.of(new BootstrappingException(ADDRESS, "joining")), Failure.BOOTSTRAPPING);
+        assertEquals(Failure.of(new InvalidQueryException("bad")), Failure.OTHER);
+        assertEquals(Failure.of(new OperationTimedOutException(ADDRESS)), Failure.OTHER);
+
+        Map<InetSocketAddress, Throwable> errors = new LinkedHashMap<InetSocketAddress, Throwable>();
+        assertEquals(Failure.of(new NoHostAvailableException(errors)), Failure.OTHER);
+        errors.put(ADDRESS, new OperationTimedOutException(ADDRESS));
+        errors.put(new InetSocketAddress("localhost", 9043), new OverloadedException(ADDRESS, "busy"));
+        assertEquals(Failure.of(new NoHostAvailableException(errors)), Failure.OVERLOADED);
+
+        assertEquals(Failure.BOOTSTRAPPING.getMetricName(), "retries-bootstrapping");
+        assertEquals(Failure.READ_TIMEOUT.getMetricName(), "retries-read-timeout");
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testBackoff() {
+        DataStaxRetryExecutor executor = new DataStaxRetryExecutor(5, 100, 1000, 10, new DataStaxSessionMetrics(null, null));
+        for (int i = 0; i < 100; i++) {
+            long delay = executor.getBackoff(1);
+            assertTrue(delay >= 50L && delay <= 100L, String.valueOf(delay));
+            delay = executor.getBackoff(3);
+            assertTrue(delay >= 200L && delay <= 400L, String.valueOf(delay));
+            delay = executor.getBackoff(64);
+            assertTrue(delay >= 500L && delay <= 1000L, String.valueOf(delay));
+        }
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testNextDelay() {
+        MetricRegistry registry = new MetricRegistry();
+        DataStaxSessionMetrics metrics = new DataStaxSessionMetrics(registry, "ks");
+        DataStaxRetryExecutor executor = new DataStaxRetryExecutor(2, 10, 100, 50, metrics);
+
+        assertTrue(executor.nextDelay(newStatement(true), READ_TIMEOUT, 1) > 0L);
+        assertTrue(executor.nextDelay(newStatement(true), READ_TIMEOUT, 2) > 0L);
+        assertEquals(executor.nextDelay(newStatement(true), READ_TIMEOUT, 3), -1L);
+        assertEquals(executor.nextDelay(newStatement(false), READ_TIMEOUT, 1), -1L);
+        assertEquals(executor.nextDelay(new SimpleStatement("update t set a = 1"), READ_TIMEOUT, 1), -1L);
+        assertEquals(executor.nextDelay(newStatement(true), new InvalidQueryException("bad"), 1), -1L);
+        assertEquals(executor.getRetries(Failure.READ_TIMEOUT), 2L);
+        assertEquals(registry.counter("retries-read-timeout.ks").getCount(), 2L);
+
+        // use up the burst, then every two requests earn one retry
+        for (long i = 2L; i < DataStaxRetryExecutor.MAX_BURST; i++) {
+            assertTrue(executor.nextDelay(newStatement(true), READ_TIMEOUT, 1) > 0L);
+        }
+        assertEquals(executor.nextDelay(newStatement(true), READ_TIMEOUT, 1), -1L);
+        assertEquals(executor.getRejected(), 1L);
+        executor.requested();
+        assertEquals(executor.nextDelay(newStatement(true), READ_TIMEOUT, 1), -1L);
+        executor.requested();
+        assertTrue(executor.nextDelay(newStatement(true), READ_TIMEOUT, 1) > 0L);
+        assertEquals(executor.getRejected(), 2L);
+        assertEquals(registry.counter(metrics.getName(DataStaxRetryExecutor.METRIC_REJECTED)).getCount(), 2L);
+        metrics.close();
+        assertTrue(registry.getMetrics().isEmpty());
+
+        // no budget, no retry
+        executor = new DataStaxRetryExecutor(2, 10, 100, 0, new DataStaxSessionMetrics(null, null));
+        executor.requested();
+        assertEquals(executor.nextDelay(newStatement(true), READ_TIMEOUT, 1), -1L);
+    }
+}
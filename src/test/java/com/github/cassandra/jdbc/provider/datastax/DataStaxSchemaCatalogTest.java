@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.provider.datastax;
+
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.UserType;
+import com.github.cassandra.jdbc.CassandraNamePattern;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+public class DataStaxSchemaCatalogTest {
+    private static KeyspaceMetadata mockKeyspace(String name, List<TableMetadata> tables) {
+        KeyspaceMetadata ks = mock(KeyspaceMetadata.class);
+        when(ks.getName()).thenReturn(name);
+        when(ks.getTables()).thenReturn(tables);
+        when(ks.getUserTypes()).thenReturn(Collections.<UserType>emptyList());
+        return ks;
+    }
+
+    private static TableMetadata mockTable(KeyspaceMetadata ks, String name) {
+        TableMetadata t = mock(TableMetadata.class);
+        when(t.getName()).thenReturn(name);
+        when(t.getKeyspace()).thenReturn(ks);
+        return t;
+    }
+
+    private static List<String> names(List<TableMetadata> tables) {
+        List<String> list = new ArrayList<String>();
+        for (TableMetadata t : tables) {
+            list.add(t.getKeyspace().getName() + "." + t.getName());
+        }
+        return list;
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testIndexAndEvents() {
+        List<TableMetadata> systemTables = new ArrayList<TableMetadata>();
+        List<TableMetadata> appTables = new ArrayList<TableMetadata>();
+        KeyspaceMetadata system = mockKeyspace("system", systemTables);
+        KeyspaceMetadata app = mockKeyspace("app", appTables);
+        systemTables.add(mockTable(system, "local"));
+        systemTables.add(mockTable(system, "peers"));
+        appTables.add(mockTable(app, "users"));
+        appTables.add(mockTable(app, "user_events"));
+        appTables.add(mockTable(app, "orders"));
+
+        Metadata metadata = mock(Metadata.class);
+        when(metadata.getKeyspaces()).thenReturn(Arrays.asList(system, app));
+
+        DataStaxSchemaCatalog catalog = new DataStaxSchemaCatalog();
+        catalog.index(metadata);
+
+        assertEquals(catalog.getKeyspaces(CassandraNamePattern.ANY).size(), 2);
+        assertEquals(names(catalog.getTables(CassandraNamePattern.ANY, CassandraNamePattern.ANY)),
+                Arrays.asList("app.orders", "app.user_events", "app.users", "system.local", "system.peers"));
+        assertEquals(names(catalog.getTables(CassandraNamePattern.compile("app"),
+                CassandraNamePattern.compile("user%"))), Arrays.asList("app.user_events", "app.users"));
+        assertEquals(names(catalog.getTables(CassandraNamePattern.compile("sys%"),
+                CassandraNamePattern.compile("peers"))), Arrays.asList("system.peers"));
+
+        // schema changes are applied incrementally
+        TableMetadata added = mockTable(app, "user_roles");
+        catalog.onTableAdded(added);
+        catalog.onTableRemoved(appTables.get(0));
+        assertEquals(names(catalog.getTables(CassandraNamePattern.compile("app"),
+                CassandraNamePattern.compile("user%"))), Arrays.asList("app.user_events", "app.user_roles"));
+
+        KeyspaceMetadata changed = mockKeyspace("app", Collections.<TableMetadata>emptyList());
+        catalog.onKeyspaceChanged(changed, app);
+        assertEquals(catalog.getTables(CassandraNamePattern.compile("app"), CassandraNamePattern.ANY).size(), 3);
+
+        catalog.onKeyspaceRemoved(system);
+        assertEquals(catalog.getKeyspaces(CassandraNamePattern.ANY), Arrays.asList(changed));
+        assertEquals(catalog.getTables(CassandraNamePattern.compile("system"), CassandraNamePattern.ANY).size(), 0);
+    }
+}
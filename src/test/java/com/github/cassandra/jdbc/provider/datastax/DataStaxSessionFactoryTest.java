@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.provider.datastax;
+
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.DataType;
+import com.github.cassandra.jdbc.CassandraConfiguration;
+import com.github.cassandra.jdbc.provider.datastax.codecs.BytesBlobCodec;
+import com.github.cassandra.jdbc.provider.datastax.codecs.JavaSqlTimestampCodec;
+import com.github.cassandra.jdbc.provider.datastax.codecs.StringTimestampCodec;
+import com.google.common.base.Charsets;
+import com.google.common.io.Resources;
+import com.google.common.reflect.ClassPath;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Properties;
+
+import static org.testng.Assert.*;
+
+public class DataStaxSessionFactoryTest {
+    @Test(groups = {"unit", "base"})
+    public void testCodecRegistry() {
+        long startTime = System.nanoTime();
+        CodecRegistry registry = DataStaxSessionFactory.getCodecRegistry();
+        long elapsed = System.nanoTime() - startTime;
+
+        assertSame(DataStaxSessionFactory.getCodecRegistry(), registry);
+        assertSame(registry.codecFor(DataType.timestamp(), String.class), StringTimestampCodec.instance);
+        assertSame(registry.codecFor(DataType.timestamp(), Timestamp.class), JavaSqlTimestampCodec.instance);
+        assertSame(registry.codecFor(DataType.blob(), byte[].class), BytesBlobCodec.instance);
+
+        // should be far less than scanning the whole class path
+        assertTrue(elapsed < 5000000000L, "Took too long to build codec registry: " + elapsed + "ns");
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testClusterKey() throws SQLException {
+        String key = DataStaxSessionFactory.getClusterKey(
+                new CassandraConfiguration("jdbc:c*://host1,host2:9042/keyspace1?user=u&password=p", new Properties()));
+
+        // keyspace and statement level options do not matter
+        assertEquals(DataStaxSessionFactory.getClusterKey(new CassandraConfiguration(
+                "jdbc:c*://host1,host2:9042/keyspace2?user=u&password=p&fetchSize=10", new Properties())), key);
+
+        assertNotEquals(DataStaxSessionFactory.getClusterKey(new CassandraConfiguration(
+                "jdbc:c*://host1,host2:9042/keyspace1?user=u&password=q", new Properties())), key);
+        assertNotEquals(DataStaxSessionFactory.getClusterKey(new CassandraConfiguration(
+                "jdbc:c*://host1,host2:9042/keyspace1?user=u&password=p&compression=SNAPPY", new Properties())), key);
+        assertNotEquals(DataStaxSessionFactory.getClusterKey(new CassandraConfiguration(
+                "jdbc:c*://host1:9042/keyspace1?user=u&password=p", new Properties())), key);
+        assertNotEquals(DataStaxSessionFactory.getClusterKey(new CassandraConfiguration(
+                "jdbc:c*://host1,host2:9042/keyspace1?user=u&password=p&lazySchema=true", new Properties())), key);
+        assertNotEquals(DataStaxSessionFactory.getClusterKey(new CassandraConfiguration(
+                "jdbc:c*://host1,host2:9042/keyspace1?user=u&password=p&speculativeExecution=p99", new Properties())),
+                key);
+        assertNotEquals(DataStaxSessionFactory.getClusterKey(new CassandraConfiguration(
+                "jdbc:c*://host1,host2:9042/keyspace1?user=u&password=p&sharedEventLoop=true", new Properties())),
+                key);
+        assertNotEquals(DataStaxSessionFactory.getClusterKey(new CassandraConfiguration(
+                "jdbc:c*://host1,host2:9042/keyspace1?user=u&password=p&receiveBufferSize=256", new Properties())),
+                key);
+
+        // everything used to build the cluster matters
+        String[] options = new String[]{"localDc=dc2", "connectionTimeout=1234", "readTimeout=4321",
+                "keepAlive=false", "adaptivePooling=true", "minConnectionsPerHost=2", "maxConnectionsPerHost=16"};
+        for (String option : options) {
+            assertNotEquals(DataStaxSessionFactory.getClusterKey(new CassandraConfiguration(
+                    "jdbc:c*://host1,host2:9042/keyspace1?user=u&password=p&" + option, new Properties())),
+                    key, option);
+        }
+
+        // password should not be exposed
+        assertFalse(key.contains("password"));
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testSessionKey() throws SQLException {
+        String url = "jdbc:c*://host1,host2:9042/keyspace1?user=u&password=p";
+        CassandraConfiguration config = new CassandraConfiguration(url, new Properties());
+        String key = DataStaxSessionFactory.getSessionKey(config, "keyspace1");
+        assertTrue(key.startsWith(DataStaxSessionFactory.getClusterKey(config)));
+        assertNotEquals(DataStaxSessionFactory.getSessionKey(config, "keyspace2"), key);
+
+        // statement level options do not matter
+        assertEquals(DataStaxSessionFactory.getSessionKey(
+                new CassandraConfiguration(url + "&fetchSize=10", new Properties()), "keyspace1"), key);
+
+        // while settings held by the session do
+        String[] options = new String[]{"drainTimeout=1234", "cqlCacheSize=10", "pagingStateCacheSize=10",
+                "adaptiveFetchSize=true", "pageSizeLimit=64", "maxRetries=5", "retryDelay=10", "maxRetryDelay=100",
+                "retryBudget=50"};
+        for (String option : options) {
+            assertNotEquals(DataStaxSessionFactory.getSessionKey(
+                    new CassandraConfiguration(url + "&" + option, new Properties()), "keyspace1"), key, option);
+        }
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testCodecIndex() throws IOException {
+        ClassLoader classLoader = getClass().getClassLoader();
+        String index = Resources.toString(classLoader.getResource(DataStaxSessionFactory.CODEC_INDEX), Charsets.UTF_8);
+
+        // make sure the index is up-to-date
+        String packageName = BytesBlobCodec.class.getPackage().getName();
+        for (ClassPath.ClassInfo info : ClassPath.from(classLoader).getTopLevelClasses(packageName)) {
+            assertTrue(index.contains(info.getName() + "\n"), info.getName() + " is missing in codec index");
+        }
+    }
+}
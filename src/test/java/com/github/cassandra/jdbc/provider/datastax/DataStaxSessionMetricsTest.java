@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.provider.datastax;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.datastax.driver.core.SimpleStatement;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+public class DataStaxSessionMetricsTest {
+    @Test(groups = {"unit", "base"})
+    public void testLifecycle() {
+        MetricRegistry registry = new MetricRegistry();
+        DataStaxSessionMetrics ks1 = new DataStaxSessionMetrics(registry, "ks1");
+        DataStaxSessionMetrics ks2 = new DataStaxSessionMetrics(registry, "ks2");
+
+        // sessions of different keyspaces have their own metrics
+        new DataStaxFetchSizeAdvisor(10, 1024L, 1000L, ks1);
+        new DataStaxFetchSizeAdvisor(10, 1024L, 1000L, ks2);
+        String name = DataStaxFetchSizeAdvisor.METRIC_SHAPES;
+        Gauge gauge1 = registry.getGauges().get(name + ".ks1");
+        assertNotNull(gauge1);
+        assertNotNull(registry.getGauges().get(name + ".ks2"));
+
+        // newer session of the same keyspace takes over
+        DataStaxSessionMetrics newKs1 = new DataStaxSessionMetrics(registry, "ks1");
+        new DataStaxFetchSizeAdvisor(10, 1024L, 1000L, newKs1);
+        Gauge gauge2 = registry.getGauges().get(name + ".ks1");
+        assertNotSame(gauge2, gauge1);
+        ks1.close();
+        assertSame(registry.getGauges().get(name + ".ks1"), gauge2);
+
+        // and nothing is left after all sessions are closed
+        newKs1.close();
+        ks2.close();
+        assertTrue(registry.getMetrics().isEmpty());
+
+        // registry is optional
+        DataStaxFetchSizeAdvisor advisor = new DataStaxFetchSizeAdvisor(10, 1024L, 1000L,
+                new DataStaxSessionMetrics(null, "ks1"));
+        assertEquals(advisor.advise(new SimpleStatement("select * from t"), 100), 100);
+    }
+}
@@ -0,0 +1,293 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.provider.datastax;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.exceptions.DriverException;
+import com.datastax.driver.core.exceptions.ReadTimeoutException;
+import com.github.cassandra.jdbc.CassandraConfiguration;
+import com.google.common.util.concurrent.AbstractFuture;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+public class DataStaxSessionWrapperTest {
+    private static final Statement STATEMENT = new SimpleStatement("select * from system.local");
+
+    static final class MockResultSetFuture extends AbstractFuture<ResultSet> implements ResultSetFuture {
+        void complete() {
+            set(null);
+        }
+
+        public ResultSet getUninterruptibly() {
+            throw new UnsupportedOperationException();
+        }
+
+        public ResultSet getUninterruptibly(long timeout, TimeUnit unit) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Mock session which counts requests issued after it's closed, as well as requests still pending when closing.
+     */
+    static final class MockSession implements InvocationHandler {
+        final AtomicInteger violations = new AtomicInteger(0);
+        final AtomicInteger pending = new AtomicInteger(0);
+        final ScheduledExecutorService executor;
+        volatile boolean closed = false;
+
+        MockSession(ScheduledExecutorService executor) {
+            this.executor = executor;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            Object result = null;
+
+            if ("execute".equals(name) || "executeAsync".equals(name)) {
+                if (closed) {
+                    violations.incrementAndGet();
+                }
+
+                if ("executeAsync".equals(name)) {
+                    final MockResultSetFuture future = new MockResultSetFuture();
+                    pending.incrementAndGet();
+                    if (executor != null) {
+                        executor.schedule(new Runnable() {
+                            public void run() {
+                                pending.decrementAndGet();
+                                future.complete();
+                            }
+                        }, 1L, TimeUnit.MILLISECONDS);
+                    }
+                    result = future;
+                }
+            } else if ("close".equals(name)) {
+                closed = true;
+                if (pending.get() > 0) {
+                    violations.incrementAndGet();
+                }
+            } else if ("isClosed".equals(name)) {
+                result = closed;
+            } else if ("hashCode".equals(name)) {
+                result = System.identityHashCode(proxy);
+            } else if ("equals".equals(name)) {
+                result = proxy == args[0];
+            }
+
+            return result;
+        }
+    }
+
+    private static DataStaxSessionWrapper newWrapper(MockSession handler, int drainTimeout) throws SQLException {
+        Session session = (Session) Proxy.newProxyInstance(Session.class.getClassLoader(),
+                new Class[]{Session.class}, handler);
+        return new DataStaxSessionWrapper(session, new CassandraConfiguration(
+                "jdbc:c*://localhost/system?drainTimeout=" + drainTimeout,
+                new Properties()));
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testAcquireAndRelease() throws Exception {
+        MockSession handler = new MockSession(null);
+        DataStaxSessionWrapper wrapper = newWrapper(handler, 1);
+
+        assertFalse(wrapper.release());
+        assertTrue(wrapper.acquire());
+        assertTrue(wrapper.acquire());
+        wrapper.close();
+        assertFalse(wrapper.isClosed());
+
+        // pending request should not block closing forever
+        wrapper.executeAsync(STATEMENT);
+        assertEquals(wrapper.getInFlightRequests(), 1);
+        long startTime = System.nanoTime();
+        wrapper.close();
+        assertTrue(System.nanoTime() - startTime >= 1000000000L);
+        assertTrue(wrapper.isClosed());
+        assertTrue(handler.closed);
+
+        // never comes back
+        assertFalse(wrapper.acquire());
+        try {
+            wrapper.execute(STATEMENT);
+            fail("Should not be able to use closed session");
+        } catch (SQLException e) {
+            // expected
+        }
+        assertEquals(wrapper.getInFlightRequests(), 1);
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testConcurrentLifecycle() throws Exception {
+        final ScheduledExecutorService executor = Executors.newScheduledThreadPool(4);
+        final List<MockSession> sessions = new CopyOnWriteArrayList<MockSession>();
+        final AtomicReference<DataStaxSessionWrapper> current = new AtomicReference<DataStaxSessionWrapper>();
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+
+        MockSession handler = new MockSession(executor);
+        sessions.add(handler);
+        current.set(newWrapper(handler, 10));
+
+        int threads = 64;
+        final int iterations = 500;
+        final CountDownLatch latch = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < iterations; j++) {
+                            // same as what session factory does
+                            DataStaxSessionWrapper wrapper = current.get();
+                            while (!wrapper.acquire()) {
+                                MockSession h = new MockSession(executor);
+                                if (current.compareAndSet(wrapper, newWrapper(h, 10))) {
+                                    sessions.add(h);
+                                }
+                                wrapper = current.get();
+                            }
+
+                            wrapper.execute(STATEMENT);
+                            wrapper.executeAsync(STATEMENT);
+                            wrapper.close();
+                        }
+                    } catch (Throwable t) {
+                        error.compareAndSet(null, t);
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        assertTrue(latch.await(60L, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertNull(error.get());
+
+        // all sessions are closed gracefully after the last connection went away
+        for (MockSession h : sessions) {
+            assertTrue(h.closed);
+            assertEquals(h.violations.get(), 0);
+            assertEquals(h.pending.get(), 0);
+        }
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testKeyspaceMetaData() throws Exception {
+        KeyspaceMetadata ks = mock(KeyspaceMetadata.class);
+        Metadata metadata = mock(Metadata.class);
+        when(metadata.getKeyspace(Metadata.quote("ks"))).thenReturn(ks);
+        Cluster cluster = mock(Cluster.class);
+        when(cluster.getMetadata()).thenReturn(metadata);
+        Session session = mock(Session.class);
+        when(session.getCluster()).thenReturn(cluster);
+
+        // loaded keyspace is returned as it is, mocked cluster would fail if it tried to load the schema
+        DataStaxSessionWrapper lazy = new DataStaxSessionWrapper(session, new CassandraConfiguration(
+                "jdbc:c*://localhost/system?lazySchema=true", new Properties()));
+        assertSame(lazy.getKeyspaceMetaData("ks"), ks);
+
+        // unknown keyspace is not loaded again when schema was loaded along with the cluster
+        DataStaxSessionWrapper eager = new DataStaxSessionWrapper(session, new CassandraConfiguration(
+                "jdbc:c*://localhost/system", new Properties()));
+        assertSame(eager.getKeyspaceMetaData("ks"), ks);
+        assertNull(eager.getKeyspaceMetaData("unknown"));
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testRetry() throws Exception {
+        Statement idempotent = new SimpleStatement("select * from t");
+        idempotent.setIdempotent(true);
+        Statement update = new SimpleStatement("update t set c = c + 1 where a = 1");
+        update.setIdempotent(false);
+        ResultSet rs = mock(ResultSet.class);
+        DriverException timeout = new ReadTimeoutException(ConsistencyLevel.ONE, 0, 1, false);
+        Session session = mock(Session.class);
+        when(session.execute(idempotent)).thenThrow(timeout).thenThrow(timeout).thenReturn(rs);
+        when(session.execute(update)).thenThrow(timeout).thenReturn(rs);
+
+        DataStaxSessionWrapper wrapper = new DataStaxSessionWrapper(session, new CassandraConfiguration(
+                "jdbc:c*://localhost/system?retryDelay=1&maxRetries=2", new Properties()));
+        assertSame(wrapper.execute(idempotent), rs);
+        verify(session, times(3)).execute(idempotent);
+        try {
+            wrapper.execute(update);
+            fail("Should not retry non-idempotent statement");
+        } catch (ReadTimeoutException e) {
+            assertSame(e, timeout);
+        }
+        assertEquals(wrapper.getInFlightRequests(), 0);
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testIsValid() throws Exception {
+        Host host = mock(Host.class);
+        when(host.isUp()).thenReturn(true);
+        Session.State state = mock(Session.State.class);
+        when(state.getConnectedHosts()).thenReturn(Arrays.asList(host));
+        when(state.getOpenConnections(host)).thenReturn(1);
+        Session session = mock(Session.class);
+        when(session.getState()).thenReturn(state);
+
+        DataStaxSessionWrapper wrapper = new DataStaxSessionWrapper(session, new CassandraConfiguration(
+                "jdbc:c*://localhost/system", new Properties()));
+        assertTrue(wrapper.acquire());
+
+        // checked once, and then trusted for a while
+        long startTime = System.nanoTime();
+        for (int i = 0; i < 100000; i++) {
+            assertTrue(wrapper.isValid(1000L));
+        }
+        long elapsed = System.nanoTime() - startTime;
+        if (elapsed < DataStaxSessionWrapper.VALIDATION_INTERVAL) {
+            verify(session, times(1)).getState();
+        }
+
+        when(session.isClosed()).thenReturn(true);
+        assertFalse(wrapper.isValid(1000L));
+        when(session.isClosed()).thenReturn(false);
+        wrapper.close();
+        assertFalse(wrapper.isValid(1000L));
+    }
+}
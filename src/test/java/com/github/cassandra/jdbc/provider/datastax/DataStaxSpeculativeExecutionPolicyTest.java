@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.provider.datastax;
+
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.policies.SpeculativeExecutionPolicy.SpeculativeExecutionPlan;
+import org.testng.annotations.Test;
+
+import static com.github.cassandra.jdbc.provider.datastax.DataStaxSpeculativeExecutionPolicy.Speculation;
+import static org.mockito.Mockito.mock;
+import static org.testng.Assert.*;
+
+public class DataStaxSpeculativeExecutionPolicyTest {
+    @Test(groups = {"unit", "base"})
+    public void testParse() {
+        assertSame(Speculation.parse(null), Speculation.NONE);
+        assertSame(Speculation.parse(" none "), Speculation.NONE);
+        assertEquals(Speculation.parse("P99.9").percentile, 99.9D);
+        assertEquals(Speculation.parse("200").delay, 200L);
+        assertEquals(Speculation.parse("50ms").delay, 50L);
+
+        for (String invalid : new String[]{"p100", "p0", "px", "-1", "1s"}) {
+            try {
+                Speculation.parse(invalid);
+                fail("Should fail to parse " + invalid);
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().contains(invalid));
+            }
+        }
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testFixedDelay() {
+        Host host1 = mock(Host.class);
+        Host host2 = mock(Host.class);
+        DataStaxSpeculativeExecutionPolicy policy = new DataStaxSpeculativeExecutionPolicy(
+                Speculation.parse("100"), 2);
+
+        Statement stmt = new SimpleStatement("select * from t");
+        SpeculativeExecutionPlan plan = policy.newPlan("ks", stmt);
+        assertEquals(plan.nextExecution(host1), 100L);
+        assertEquals(plan.nextExecution(host2), 100L);
+        assertEquals(plan.nextExecution(host1), -1L);
+
+        // the first response comes from a speculative execution
+        policy.update(host2, stmt, null, 1000L);
+        policy.update(host1, stmt, null, 1000L);
+        assertEquals(policy.getWins(), 1L);
+
+        // the initial execution wins
+        stmt = new SimpleStatement("select * from t");
+        plan = policy.newPlan("ks", stmt);
+        plan.nextExecution(host1);
+        plan.nextExecution(host2);
+        policy.update(host2, stmt, new RuntimeException(), 1000L);
+        policy.update(host1, stmt, null, 1000L);
+        assertEquals(policy.getWins(), 1L);
+
+        // statement level override
+        stmt = new SimpleStatement("select * from t");
+        policy.override(stmt, "none");
+        assertEquals(policy.newPlan("ks", stmt).nextExecution(host1), -1L);
+        assertEquals(policy.newPlan("ks", new SimpleStatement("select 1")).nextExecution(host1), 100L);
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testPercentile() {
+        Host host = mock(Host.class);
+        DataStaxSpeculativeExecutionPolicy policy = new DataStaxSpeculativeExecutionPolicy(Speculation.NONE, 1);
+
+        Statement stmt = new SimpleStatement("select * from t");
+        policy.override(stmt, "p90");
+        Statement other = new SimpleStatement("select * from t");
+
+        // not enough samples
+        assertEquals(policy.newPlan("ks", stmt).nextExecution(host), -1L);
+
+        for (int i = 1; i <= DataStaxSpeculativeExecutionPolicy.MIN_SAMPLES; i++) {
+            policy.update(host, other, null, i * 1000000L); // 1 to 100 ms
+        }
+
+        long delay = policy.newPlan("ks", stmt).nextExecution(host);
+        assertTrue(delay >= 89L && delay <= 91L, "Unexpected delay: " + delay);
+        assertEquals(policy.newPlan("ks", other).nextExecution(host), -1L);
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbc.provider.datastax;
+
+import com.datastax.driver.core.*;
+import com.github.cassandra.jdbc.CassandraStruct;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+import static org.testng.Assert.*;
+
+public class DataStaxStructsTest {
+    private static final ProtocolVersion PROTOCOL_VERSION = ProtocolVersion.V4;
+
+    @Test(groups = {"unit", "base"})
+    public void testTuple() throws SQLException {
+        CodecRegistry registry = DataStaxSessionFactory.getCodecRegistry();
+        TupleType inner = TupleType.of(PROTOCOL_VERSION, registry, DataType.bigint(), DataType.blob());
+        TupleType outer = TupleType.of(PROTOCOL_VERSION, registry,
+                DataType.cint(), DataType.text(), DataType.timestamp(), inner);
+
+        DataStaxStructs.StructType structType = DataStaxStructs.of(outer);
+        assertSame(DataStaxStructs.of(TupleType.of(PROTOCOL_VERSION, registry,
+                DataType.cint(), DataType.text(), DataType.timestamp(), inner)), structType);
+        assertEquals(structType.getName(), "tuple<int, text, timestamp, tuple<bigint, blob>>");
+
+        Timestamp ts = new Timestamp(1488603967089L);
+        CassandraStruct struct = new CassandraStruct("whatever", new Object[]{
+                "1", "a", ts, new CassandraStruct(null, new Object[]{2L, new byte[]{1, 2}})});
+        Object value = structType.encode(struct, DataStaxDataTypes.converters, PROTOCOL_VERSION);
+        assertTrue(value instanceof TupleValue);
+
+        TupleValue tuple = (TupleValue) value;
+        assertEquals(tuple.getInt(0), 1);
+        assertEquals(tuple.getString(1), "a");
+        assertEquals(tuple.getTupleValue(3).getLong(0), 2L);
+
+        ByteBuffer bytes = registry.codecFor(outer).serialize(tuple, PROTOCOL_VERSION);
+        CassandraStruct decoded = structType.decode(bytes, PROTOCOL_VERSION);
+        Object[] attributes = decoded.getAttributes();
+        assertEquals(decoded.getSQLTypeName(), structType.getName());
+        assertEquals(attributes[0], 1);
+        assertEquals(attributes[1], "a");
+        assertEquals(attributes[2], ts);
+        assertTrue(attributes[3] instanceof CassandraStruct);
+        assertEquals(((CassandraStruct) attributes[3]).getAttributes()[0], 2L);
+        assertEquals(((CassandraStruct) attributes[3]).getAttributes()[1], new byte[]{1, 2});
+
+        // missing attributes are nulls
+        decoded = structType.decode(registry.codecFor(outer).serialize(
+                structType.encode(new CassandraStruct(null, new Object[]{3}), DataStaxDataTypes.converters,
+                        PROTOCOL_VERSION), PROTOCOL_VERSION), PROTOCOL_VERSION);
+        assertEquals(decoded.getAttributes(), new Object[]{3, null, null, null});
+    }
+}
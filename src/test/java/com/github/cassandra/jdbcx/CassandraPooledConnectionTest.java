@@ -0,0 +1,154 @@
+/**
+ * Copyright (C) 2015-2017, Zhichun Wu
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.github.cassandra.jdbcx;
+
+import org.pmw.tinylog.Logger;
+import org.testng.annotations.Test;
+
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+public class CassandraPooledConnectionTest {
+    static final class MockConnection implements InvocationHandler {
+        volatile boolean closed = false;
+        volatile String schema = "system";
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            Object result = null;
+
+            if ("close".equals(name)) {
+                closed = true;
+            } else if ("isClosed".equals(name)) {
+                result = closed;
+            } else if ("isValid".equals(name)) {
+                result = !closed;
+            } else if ("getSchema".equals(name)) {
+                result = schema;
+            } else if ("setSchema".equals(name)) {
+                schema = (String) args[0];
+            }
+
+            return result;
+        }
+    }
+
+    static final class CountingListener implements ConnectionEventListener {
+        final AtomicInteger closed = new AtomicInteger(0);
+        final AtomicInteger errors = new AtomicInteger(0);
+
+        public void connectionClosed(ConnectionEvent event) {
+            closed.incrementAndGet();
+        }
+
+        public void connectionErrorOccurred(ConnectionEvent event) {
+            errors.incrementAndGet();
+        }
+    }
+
+    private static Connection newConnection(MockConnection handler) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class[]{Connection.class}, handler);
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testCheckoutAndReturn() throws SQLException {
+        MockConnection handler = new MockConnection();
+        CassandraPooledConnection pooledConn = new CassandraPooledConnection(newConnection(handler));
+        CountingListener listener = new CountingListener();
+        pooledConn.addConnectionEventListener(listener);
+
+        Connection conn = pooledConn.getConnection();
+        assertTrue(conn.isValid(1));
+        conn.setSchema("test");
+        assertEquals(handler.schema, "test");
+        conn.close();
+        conn.close();
+        assertTrue(conn.isClosed());
+        assertFalse(conn.isValid(1));
+        assertEquals(listener.closed.get(), 1);
+        // keyspace is reset for next checkout
+        assertEquals(handler.schema, "system");
+        try {
+            conn.createStatement();
+            fail("Should not be able to use closed handle");
+        } catch (SQLException e) {
+            // expected
+        }
+
+        // new handle invalidates the previous one
+        conn = pooledConn.getConnection();
+        Connection anotherConn = pooledConn.getConnection();
+        assertTrue(conn.isClosed());
+        conn.close();
+        assertEquals(listener.closed.get(), 1);
+        anotherConn.close();
+        assertEquals(listener.closed.get(), 2);
+
+        // physical connection is broken
+        conn = pooledConn.getConnection();
+        handler.closed = true;
+        conn.close();
+        assertEquals(listener.closed.get(), 2);
+        assertEquals(listener.errors.get(), 1);
+
+        pooledConn.close();
+        try {
+            pooledConn.getConnection();
+            fail("Should not be able to use closed pooled connection");
+        } catch (SQLException e) {
+            // expected
+        }
+    }
+
+    @Test(groups = {"unit", "base"})
+    public void testCheckoutPerformance() throws SQLException {
+        CassandraPooledConnection pooledConn = new CassandraPooledConnection(newConnection(new MockConnection()));
+        CountingListener listener = new CountingListener();
+        pooledConn.addConnectionEventListener(listener);
+
+        // what a generic pool does on each checkout
+        int iterations = 200000;
+        long elapsed = 0L;
+        for (int round = 0; round < 2; round++) { // first round is for warming up
+            long startTime = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                Connection conn = pooledConn.getConnection();
+                conn.isValid(1);
+                conn.setAutoCommit(true);
+                conn.close();
+            }
+            elapsed = System.nanoTime() - startTime;
+        }
+
+        assertEquals(listener.closed.get(), iterations * 2);
+        Logger.info("Checked out {} connections in {}ns, {}ns per checkout",
+                iterations, elapsed, elapsed / iterations);
+    }
+}